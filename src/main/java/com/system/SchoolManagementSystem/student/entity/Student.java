@@ -22,7 +22,7 @@ import java.util.stream.Stream;
 @AllArgsConstructor
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @ToString(exclude = {"familyMembers", "medicalRecords", "achievements", "interests", "termAssignments"})
-@SQLDelete(sql = "UPDATE students SET deleted = true WHERE id = ?")
+@SQLDelete(sql = "UPDATE students SET deleted = true WHERE id = ? AND version = ?")
 @Where(clause = "deleted = false")
 public class Student {
 
@@ -182,6 +182,11 @@ public class Student {
     @Builder.Default
     private boolean deleted = false;
 
+    // Optimistic lock for concurrent payment application; rows that predate the column start at 0
+    @Version
+    @Column(name = "version", columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
@@ -387,6 +392,12 @@ public class Student {
         }
     }
 
+    // Payment already allocated to fee items and term totals: move the stored totals by exactly that much
+    public void applyPayment(double amount) {
+        this.paidAmount = (this.paidAmount != null ? this.paidAmount : 0.0) + amount;
+        this.pendingAmount = this.totalFee != null ? Math.max(0, this.totalFee - this.paidAmount) : 0.0;
+    }
+
     // Manual due date methods
     public void setFeeDueDateManually(LocalDate dueDate) {
         this.feeDueDate = dueDate;
@@ -0,0 +1,41 @@
+package com.system.SchoolManagementSystem.student.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published whenever a student's matchable data changes (name, status, fee balance,
+ * guardian contacts).
+ *
+ * Listeners should treat the event as a hint and re-read the student: it only carries
+ * the id so that it stays valid after the publishing transaction has closed.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class StudentChangedEvent {
+
+    public enum ChangeType {
+        CREATED, UPDATED, DELETED, PAYMENT_APPLIED
+    }
+
+    private final Long studentId;
+    private final ChangeType changeType;
+
+    public static StudentChangedEvent created(Long studentId) {
+        return new StudentChangedEvent(studentId, ChangeType.CREATED);
+    }
+
+    public static StudentChangedEvent updated(Long studentId) {
+        return new StudentChangedEvent(studentId, ChangeType.UPDATED);
+    }
+
+    public static StudentChangedEvent deleted(Long studentId) {
+        return new StudentChangedEvent(studentId, ChangeType.DELETED);
+    }
+
+    public static StudentChangedEvent paymentApplied(Long studentId) {
+        return new StudentChangedEvent(studentId, ChangeType.PAYMENT_APPLIED);
+    }
+}
@@ -2,8 +2,11 @@ package com.system.SchoolManagementSystem.student.repository;
 
 import com.system.SchoolManagementSystem.student.entity.FamilyMember;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,4 +14,16 @@ public interface FamilyMemberRepository extends JpaRepository<FamilyMember, Long
     List<FamilyMember> findByStudentId(Long studentId);
     List<FamilyMember> findByIsPrimaryContactTrue();
     List<FamilyMember> findByIsEmergencyContactTrue();
-}
\ No newline at end of file
+
+    /**
+     * [studentId, fullName, phone] of every parent/guardian of an active student; siblings
+     * are left out since they don't pay fees. Feeds the transaction matcher's guardian index.
+     */
+    @Query("SELECT f.student.id, f.fullName, f.phone FROM FamilyMember f " +
+            "WHERE f.relation <> 'SIBLING' AND f.student.status = 'ACTIVE' AND f.student.deleted = false")
+    List<Object[]> findGuardianContactsOfActiveStudents();
+
+    @Query("SELECT f.student.id, f.fullName, f.phone FROM FamilyMember f " +
+            "WHERE f.relation <> 'SIBLING' AND f.student.id IN :studentIds")
+    List<Object[]> findGuardianContactsForStudents(@Param("studentIds") Collection<Long> studentIds);
+}
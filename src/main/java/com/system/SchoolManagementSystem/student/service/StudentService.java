@@ -2,6 +2,7 @@ package com.system.SchoolManagementSystem.student.service;
 
 import com.system.SchoolManagementSystem.student.dto.*;
 import com.system.SchoolManagementSystem.student.entity.*;
+import com.system.SchoolManagementSystem.student.event.StudentChangedEvent;
 import com.system.SchoolManagementSystem.student.repository.*;
 import com.system.SchoolManagementSystem.transaction.entity.PaymentTransaction;
 import com.system.SchoolManagementSystem.transaction.repository.PaymentTransactionRepository;
@@ -10,6 +11,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Page;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpStatus;
@@ -38,6 +40,7 @@ public class StudentService {
     private final StudentInterestRepository studentInterestRepository;
     private final FileStorageService fileStorageService;
     private final PaymentTransactionRepository paymentTransactionRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ========== STUDENT METHODS (WITH FEE INTEGRATION) ==========
 
@@ -178,6 +181,7 @@ public class StudentService {
 
             Student savedStudent = studentRepository.save(student);
             log.info("[STUDENT-SERVICE] [CREATE-STUDENT] Student saved to database with ID: {}", savedStudent.getId());
+            eventPublisher.publishEvent(StudentChangedEvent.created(savedStudent.getId()));
 
             StudentDTO result = convertToDTOWithFeeInfo(savedStudent);
             log.info("[STUDENT-SERVICE] [CREATE-STUDENT] Completed successfully. Created student: {} (ID: {})",
@@ -292,6 +296,7 @@ public class StudentService {
 
             Student updatedStudent = studentRepository.save(student);
             log.info("[STUDENT-SERVICE] [UPDATE-STUDENT] Student updated in database");
+            eventPublisher.publishEvent(StudentChangedEvent.updated(updatedStudent.getId()));
 
             StudentDTO result = convertToDTOWithFeeInfo(updatedStudent);
             log.info("[STUDENT-SERVICE] [UPDATE-STUDENT] Completed successfully for student: {} (ID: {})",
@@ -326,6 +331,7 @@ public class StudentService {
                         student.getFullName(), student.getStudentId());
             });
             studentRepository.deleteById(id);
+            eventPublisher.publishEvent(StudentChangedEvent.deleted(id));
             log.info("[STUDENT-SERVICE] [DELETE-STUDENT] Student with ID {} deleted successfully", id);
         } catch (ResponseStatusException e) {
             log.error("[STUDENT-SERVICE] [DELETE-STUDENT] NOT FOUND - Student with ID {} not found", id);
@@ -466,6 +472,8 @@ public class StudentService {
                     .build();
             FamilyMember savedMember = familyMemberRepository.save(familyMember);
             log.info("[STUDENT-SERVICE] [ADD-FAMILY-MEMBER] Family member saved with ID: {}", savedMember.getId());
+            // Guardian contacts are matched against payment narrations
+            eventPublisher.publishEvent(StudentChangedEvent.updated(studentId));
             FamilyMemberDTO result = convertToFamilyMemberDTO(savedMember);
             log.info("[STUDENT-SERVICE] [ADD-FAMILY-MEMBER] Completed successfully for student ID: {}", studentId);
             return result;
@@ -521,6 +529,7 @@ public class StudentService {
             familyMember.setIsEmergencyContact(updateDTO.getIsEmergencyContact());
             FamilyMember updatedMember = familyMemberRepository.save(familyMember);
             log.info("[STUDENT-SERVICE] [UPDATE-FAMILY-MEMBER] Family member updated with ID: {}", updatedMember.getId());
+            eventPublisher.publishEvent(StudentChangedEvent.updated(updatedMember.getStudent().getId()));
             FamilyMemberDTO result = convertToFamilyMemberDTO(updatedMember);
             log.info("[STUDENT-SERVICE] [UPDATE-FAMILY-MEMBER] Completed successfully");
             return result;
@@ -547,6 +556,7 @@ public class StudentService {
             familyMemberRepository.findById(familyMemberId).ifPresent(familyMember -> {
                 log.info("[STUDENT-SERVICE] [DELETE-FAMILY-MEMBER] Deleting family member: {} for student: {}",
                         familyMember.getFullName(), familyMember.getStudent().getFullName());
+                eventPublisher.publishEvent(StudentChangedEvent.updated(familyMember.getStudent().getId()));
             });
             familyMemberRepository.deleteById(familyMemberId);
             log.info("[STUDENT-SERVICE] [DELETE-FAMILY-MEMBER] Family member with ID {} deleted successfully", familyMemberId);
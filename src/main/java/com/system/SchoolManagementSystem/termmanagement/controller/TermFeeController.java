@@ -6,7 +6,9 @@ import com.system.SchoolManagementSystem.termmanagement.dto.request.*;
 import com.system.SchoolManagementSystem.termmanagement.dto.response.*;
 import com.system.SchoolManagementSystem.termmanagement.entity.AcademicTerm;
 import com.system.SchoolManagementSystem.termmanagement.entity.GradeTermFee;
+import com.system.SchoolManagementSystem.termmanagement.entity.StudentFeeBalance;
 import com.system.SchoolManagementSystem.termmanagement.entity.TermFeeItem;
+import com.system.SchoolManagementSystem.termmanagement.service.FeeLedgerService;
 import com.system.SchoolManagementSystem.termmanagement.service.TermFeeService;
 import com.system.SchoolManagementSystem.termmanagement.service.TermService;
 import com.system.SchoolManagementSystem.transaction.entity.PaymentTransaction;
@@ -41,6 +43,7 @@ public class TermFeeController {
 
     private final TermService termService;
     private final TermFeeService termFeeService;
+    private final FeeLedgerService feeLedgerService;
     private final StudentRepository studentRepository;
     private final PaymentTransactionRepository paymentTransactionRepository;
 
@@ -530,6 +533,34 @@ public class TermFeeController {
         }
     }
 
+    @GetMapping("/students/{studentId}/balance")
+    @PreAuthorize("hasAnyRole('ADMIN', 'ACCOUNTANT', 'TEACHER', 'PARENT')")
+    @Operation(summary = "Get student's running fee balance from the ledger")
+    public ResponseEntity<?> getStudentBalance(@PathVariable Long studentId) {
+        try {
+            StudentFeeBalance balance = feeLedgerService.getBalance(studentId)
+                    .orElseThrow(() -> new RuntimeException("No ledger postings yet for student: " + studentId));
+            return ResponseEntity.ok(createSuccessResponse("Balance retrieved successfully", balance));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/students/{studentId}/statement/{fromDate}/{toDate}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'ACCOUNTANT', 'TEACHER', 'PARENT')")
+    @Operation(summary = "Get student's fee statement for date range")
+    public ResponseEntity<?> getStudentStatement(
+            @PathVariable Long studentId,
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate) {
+        try {
+            FeeStatementResponse statement = feeLedgerService.getStatement(studentId, fromDate, toDate);
+            return ResponseEntity.ok(createSuccessResponse("Statement retrieved successfully", statement));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
     @GetMapping("/reports/overdue-fees")
     @PreAuthorize("hasAnyRole('ADMIN', 'ACCOUNTANT')")
     @Operation(summary = "Get overdue fees report")
@@ -0,0 +1,38 @@
+package com.system.SchoolManagementSystem.termmanagement.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class FeeStatementResponse {
+
+    private Long studentId;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+
+    private Double openingBalance;
+    private Double closingBalance;
+    // Entries that raised the balance, and those that lowered it (payments, credits, reversed charges)
+    private Double totalCharges;
+    private Double totalCredits;
+
+    private List<StatementLine> lines;
+
+    @Data
+    public static class StatementLine {
+        private Long entryId;
+        private String entryType;
+        private String description;
+        private String reference;
+        private Long termFeeItemId;
+        private Double amount;
+        private Double balanceAfter;
+
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime postedAt;
+    }
+}
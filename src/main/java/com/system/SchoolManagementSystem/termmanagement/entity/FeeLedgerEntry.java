@@ -0,0 +1,82 @@
+package com.system.SchoolManagementSystem.termmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * One posting to a student's fee account. Entries are only ever inserted: a mistake is put
+ * right with a REVERSAL, never by editing or deleting a row, so the ledger doubles as the
+ * audit trail. The student's running balance lives in {@link StudentFeeBalance} and is moved
+ * by every entry in the same transaction.
+ *
+ * Amounts are signed from the student's side: positive means they owe more (a charge, a
+ * payment reversed), negative means they owe less (a payment, a credit, a charge reversed).
+ */
+@Entity
+@Immutable
+@Table(name = "fee_ledger_entries",
+        indexes = {
+                @Index(name = "idx_ledger_student_posted", columnList = "student_id, posted_at"),
+                @Index(name = "idx_ledger_reference", columnList = "reference"),
+                @Index(name = "idx_ledger_fee_item", columnList = "term_fee_item_id")
+        })
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class FeeLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @Column(name = "student_id", nullable = false, updatable = false)
+    private Long studentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false, updatable = false, length = 20)
+    private EntryType entryType;
+
+    @Column(nullable = false, updatable = false)
+    private Double amount;
+
+    // For a REVERSAL, the kind of entry it takes back
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reverses_type", updatable = false, length = 20)
+    private EntryType reversesType;
+
+    // Student's balance once this entry is applied
+    @Column(name = "balance_after", nullable = false, updatable = false)
+    private Double balanceAfter;
+
+    @Column(name = "academic_term_id", updatable = false)
+    private Long academicTermId;
+
+    @Column(name = "term_fee_item_id", updatable = false)
+    private Long termFeeItemId;
+
+    @Column(length = 100, updatable = false)
+    private String reference;
+
+    @Column(length = 255, updatable = false)
+    private String description;
+
+    @Column(name = "posted_at", nullable = false, updatable = false)
+    private LocalDateTime postedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (postedAt == null) {
+            postedAt = LocalDateTime.now();
+        }
+    }
+
+    public enum EntryType {
+        OPENING, CHARGE, PAYMENT, REVERSAL, CREDIT
+    }
+}
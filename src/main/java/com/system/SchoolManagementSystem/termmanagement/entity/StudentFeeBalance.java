@@ -0,0 +1,89 @@
+package com.system.SchoolManagementSystem.termmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Running totals of a student's {@link FeeLedgerEntry} postings, one row per student. Moved
+ * by each posting in the posting's transaction, so a balance read is a primary-key lookup
+ * rather than a sum over term assignments or payments.
+ */
+@Entity
+@Table(name = "student_fee_balances")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class StudentFeeBalance {
+
+    @Id
+    @Column(name = "student_id")
+    @EqualsAndHashCode.Include
+    private Long studentId;
+
+    // Opening balances and charges, less charges reversed
+    @Column(name = "total_charged", nullable = false)
+    @Builder.Default
+    private Double totalCharged = 0.0;
+
+    // Payments, less payments reversed
+    @Column(name = "total_paid", nullable = false)
+    @Builder.Default
+    private Double totalPaid = 0.0;
+
+    @Column(name = "total_credited", nullable = false)
+    @Builder.Default
+    private Double totalCredited = 0.0;
+
+    // Charged - paid - credited; negative when the student is in credit
+    @Column(nullable = false)
+    @Builder.Default
+    private Double balance = 0.0;
+
+    @Column(name = "last_entry_id")
+    private Long lastEntryId;
+
+    @Column(name = "entry_count", nullable = false)
+    @Builder.Default
+    private Long entryCount = 0L;
+
+    @Version
+    @Column(name = "version", columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    /**
+     * Move the totals by one entry and stamp the entry with the resulting balance.
+     */
+    public void post(FeeLedgerEntry entry) {
+        double amount = entry.getAmount();
+        FeeLedgerEntry.EntryType type = entry.getEntryType() == FeeLedgerEntry.EntryType.REVERSAL &&
+                entry.getReversesType() != null
+                ? entry.getReversesType()
+                : entry.getEntryType();
+        switch (type) {
+            case OPENING, CHARGE -> totalCharged += amount;
+            case PAYMENT -> totalPaid -= amount;
+            case CREDIT -> totalCredited -= amount;
+            // A reversal that doesn't say what it reverses only moves the balance
+            case REVERSAL -> { }
+        }
+        balance += amount;
+        entryCount++;
+        updatedAt = LocalDateTime.now();
+        entry.setBalanceAfter(balance);
+    }
+
+    public double getPendingAmount() {
+        return Math.max(0, balance);
+    }
+
+    public double getCreditAmount() {
+        return Math.max(0, -balance);
+    }
+}
@@ -92,6 +92,11 @@ public class StudentTermAssignment {
     @Column(name = "notes", length = 500)
     private String notes;
 
+    // Optimistic lock for concurrent payment application; rows that predate the column start at 0
+    @Version
+    @Column(name = "version", columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
@@ -136,6 +141,22 @@ public class StudentTermAssignment {
         updateStatus();
     }
 
+    /**
+     * Move the totals by a payment just allocated to this term's items, instead of re-summing
+     * every item as {@link #calculateAmounts()} does.
+     */
+    public void applyPayment(double amount) {
+        if (totalTermFee == null) {
+            // Never totalled: the items already carry the payment
+            calculateAmounts();
+        } else {
+            paidAmount = (paidAmount != null ? paidAmount : 0.0) + amount;
+            pendingAmount = Math.max(0, totalTermFee - paidAmount);
+            updateStatus();
+        }
+        lastPaymentDate = LocalDate.now();
+    }
+
     private void updateStatus() {
         if (paidAmount >= totalTermFee) {
             this.termFeeStatus = FeeStatus.PAID;
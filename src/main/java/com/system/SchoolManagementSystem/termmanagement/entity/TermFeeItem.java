@@ -89,6 +89,11 @@ public class TermFeeItem {
     @Column(name = "notes", length = 500)
     private String notes;
 
+    // Optimistic lock for concurrent payment application; rows that predate the column start at 0
+    @Version
+    @Column(name = "version", columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
@@ -169,7 +169,7 @@ public interface AcademicTermRepository extends JpaRepository<AcademicTerm, Long
 
     // ========== TERM DURATION QUERIES ==========
 
-    @Query("SELECT t FROM AcademicTerm t WHERE FUNCTION('DATEDIFF', t.endDate, t.startDate) >= :minDays AND FUNCTION('DATEDIFF', t.endDate, t.startDate) <= :maxDays")
+    @Query("SELECT t FROM AcademicTerm t WHERE (t.endDate - t.startDate) BY DAY BETWEEN :minDays AND :maxDays")
     List<AcademicTerm> findTermsByDuration(@Param("minDays") Integer minDays,
                                            @Param("maxDays") Integer maxDays);
 
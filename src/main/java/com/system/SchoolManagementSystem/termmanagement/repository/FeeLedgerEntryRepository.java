@@ -0,0 +1,23 @@
+package com.system.SchoolManagementSystem.termmanagement.repository;
+
+import com.system.SchoolManagementSystem.termmanagement.entity.FeeLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FeeLedgerEntryRepository extends JpaRepository<FeeLedgerEntry, Long> {
+
+    // Statement lines: a range scan on (student_id, posted_at)
+    List<FeeLedgerEntry> findByStudentIdAndPostedAtGreaterThanEqualAndPostedAtLessThanOrderByPostedAtAscIdAsc(
+            Long studentId, LocalDateTime from, LocalDateTime to);
+
+    // Last entry before a statement starts; its balance_after is the brought-forward balance
+    Optional<FeeLedgerEntry> findFirstByStudentIdAndPostedAtLessThanOrderByPostedAtDescIdDesc(
+            Long studentId, LocalDateTime before);
+
+    List<FeeLedgerEntry> findByReferenceOrderByIdAsc(String reference);
+}
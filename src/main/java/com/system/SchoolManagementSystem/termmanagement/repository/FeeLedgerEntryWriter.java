@@ -0,0 +1,105 @@
+package com.system.SchoolManagementSystem.termmanagement.repository;
+
+import com.system.SchoolManagementSystem.termmanagement.entity.FeeLedgerEntry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Multi-row JDBC inserts for fee ledger entries.
+ *
+ * Entries use IDENTITY keys, so Hibernate would insert them one round trip at a time. This
+ * writer sends them as JDBC batches, rewritten into multi-row INSERTs by Connector/J's
+ * rewriteBatchedStatements. Entries are never read back through the persistence context, so
+ * their ids are not set; the caller gets each student's last entry id instead, read with one
+ * range query over (student_id, posted_at). The caller holds the students' balance rows
+ * locked, so no other posting for them can land in between.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class FeeLedgerEntryWriter {
+
+    private static final String INSERT_ENTRY =
+            "INSERT INTO fee_ledger_entries (student_id, entry_type, amount, reverses_type, balance_after, " +
+            "academic_term_id, term_fee_item_id, reference, description, posted_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Rows per JDBC batch
+    private static final int CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * Insert entries already stamped with their balance; returns the id of the last entry
+     * written for each student.
+     */
+    public Map<Long, Long> insert(List<FeeLedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime earliest = now;
+        Set<Long> studentIds = new HashSet<>();
+        for (FeeLedgerEntry entry : entries) {
+            if (entry.getPostedAt() == null) {
+                entry.setPostedAt(now);
+            } else if (entry.getPostedAt().isBefore(earliest)) {
+                earliest = entry.getPostedAt();
+            }
+            studentIds.add(entry.getStudentId());
+        }
+
+        for (int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+            List<FeeLedgerEntry> chunk = entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size()));
+            jdbcTemplate.batchUpdate(INSERT_ENTRY, chunk, chunk.size(), this::bindEntry);
+        }
+
+        Map<Long, Long> lastEntryIds = new HashMap<>();
+        namedParameterJdbcTemplate.query(
+                "SELECT student_id, MAX(id) FROM fee_ledger_entries " +
+                "WHERE student_id IN (:ids) AND posted_at >= :from GROUP BY student_id",
+                new MapSqlParameterSource("ids", studentIds).addValue("from", Timestamp.valueOf(earliest)),
+                rs -> {
+                    lastEntryIds.put(rs.getLong(1), rs.getLong(2));
+                });
+
+        log.debug("Bulk inserted {} ledger entries for {} students", entries.size(), studentIds.size());
+        return lastEntryIds;
+    }
+
+    private void bindEntry(PreparedStatement ps, FeeLedgerEntry entry) throws SQLException {
+        ps.setLong(1, entry.getStudentId());
+        ps.setString(2, entry.getEntryType().name());
+        ps.setDouble(3, entry.getAmount());
+        ps.setString(4, entry.getReversesType() != null ? entry.getReversesType().name() : null);
+        ps.setDouble(5, entry.getBalanceAfter());
+        setLong(ps, 6, entry.getAcademicTermId());
+        setLong(ps, 7, entry.getTermFeeItemId());
+        ps.setString(8, entry.getReference());
+        ps.setString(9, entry.getDescription());
+        ps.setTimestamp(10, Timestamp.valueOf(entry.getPostedAt()));
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+}
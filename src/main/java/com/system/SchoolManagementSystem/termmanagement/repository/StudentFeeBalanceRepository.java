@@ -0,0 +1,30 @@
+package com.system.SchoolManagementSystem.termmanagement.repository;
+
+import com.system.SchoolManagementSystem.termmanagement.entity.StudentFeeBalance;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StudentFeeBalanceRepository extends JpaRepository<StudentFeeBalance, Long> {
+
+    // Postings read-modify-write the rows, so they stay locked until the posting transaction ends;
+    // taken in student id order, so two batches never wait on each other in a cycle
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM StudentFeeBalance b WHERE b.studentId IN :studentIds ORDER BY b.studentId")
+    List<StudentFeeBalance> findAllForUpdate(@Param("studentIds") Collection<Long> studentIds);
+
+    // Opens the accounts that don't exist yet (even if opened concurrently), in one statement
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO student_fee_balances " +
+            "(student_id, total_charged, total_paid, total_credited, balance, entry_count, version, updated_at) " +
+            "SELECT s.id, 0, 0, 0, 0, 0, 0, NOW() FROM students s WHERE s.id IN (:studentIds)", nativeQuery = true)
+    int createIfAbsent(@Param("studentIds") Collection<Long> studentIds);
+}
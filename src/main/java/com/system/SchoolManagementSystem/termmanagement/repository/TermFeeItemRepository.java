@@ -1,7 +1,9 @@
 package com.system.SchoolManagementSystem.termmanagement.repository;
 
 import com.system.SchoolManagementSystem.termmanagement.entity.TermFeeItem;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -24,6 +26,14 @@ public interface TermFeeItemRepository extends JpaRepository<TermFeeItem, Long>
     @Query("SELECT t FROM TermFeeItem t WHERE t.studentTermAssignment.student.id = :studentId AND t.status IN ('PENDING', 'PARTIAL', 'OVERDUE') ORDER BY t.dueDate, t.sequenceOrder")
     List<TermFeeItem> findUnpaidItemsByStudentOrdered(@Param("studentId") Long studentId);
 
+    // Unpaid items with their assignment fetched, so a payment loads only what it can touch. A locking
+    // read, so a payment inside an older transaction still sees the last committed amounts; the term
+    // is left lazy to keep its shared row out of the lock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM TermFeeItem t JOIN FETCH t.studentTermAssignment a " +
+            "WHERE a.student.id IN :studentIds AND t.status IN ('PENDING', 'PARTIAL', 'OVERDUE')")
+    List<TermFeeItem> findUnpaidItemsForUpdate(@Param("studentIds") Set<Long> studentIds);
+
     @Query("SELECT t FROM TermFeeItem t WHERE t.studentTermAssignment.student.id = :studentId AND t.studentTermAssignment.academicTerm.id = :termId")
     List<TermFeeItem> findByStudentAndTerm(@Param("studentId") Long studentId, @Param("termId") Long termId);
 
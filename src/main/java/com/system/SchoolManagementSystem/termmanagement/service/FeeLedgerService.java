@@ -0,0 +1,307 @@
+package com.system.SchoolManagementSystem.termmanagement.service;
+
+import com.system.SchoolManagementSystem.student.entity.Student;
+import com.system.SchoolManagementSystem.termmanagement.dto.response.FeeStatementResponse;
+import com.system.SchoolManagementSystem.termmanagement.entity.FeeLedgerEntry;
+import com.system.SchoolManagementSystem.termmanagement.entity.StudentFeeBalance;
+import com.system.SchoolManagementSystem.termmanagement.entity.TermFeeItem;
+import com.system.SchoolManagementSystem.termmanagement.repository.FeeLedgerEntryRepository;
+import com.system.SchoolManagementSystem.termmanagement.repository.FeeLedgerEntryWriter;
+import com.system.SchoolManagementSystem.termmanagement.repository.StudentFeeBalanceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Append-only fee ledger with a running balance per student.
+ *
+ * Term billing, additional fees and payments applied through {@link TermFeeService} post an
+ * entry for each change to what a student owes, in the transaction that makes the change; the
+ * posting moves the student's {@link StudentFeeBalance} row under a row lock. Balances are then
+ * a primary-key read and statements a range scan over (student_id, posted_at), with no
+ * recomputation from term assignments or payment history. Fee changes made elsewhere
+ * (StudentFeeUpdateService, FeeAssignmentService) don't post yet, so student fee summaries
+ * still come from verified payments rather than from here.
+ *
+ * A student's account opens on their first posting, brought forward from the totals stored on
+ * the student at that moment, so callers open accounts before they refresh those totals. A
+ * batch of payments opens every account it touches with one locking query up front and writes
+ * all its entries with one multi-row insert at the end, see {@link #open} and {@link #post(Postings)}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FeeLedgerService {
+
+    // Anything smaller is rounding noise from the Double arithmetic upstream
+    private static final double MIN_POSTING = 0.005;
+
+    private final FeeLedgerEntryRepository feeLedgerEntryRepository;
+    private final FeeLedgerEntryWriter feeLedgerEntryWriter;
+    private final StudentFeeBalanceRepository studentFeeBalanceRepository;
+
+    // ========== POSTING ==========
+
+    @Transactional
+    public StudentFeeBalance post(Student student, FeeLedgerEntry entry) {
+        return post(student, List.of(entry));
+    }
+
+    /**
+     * Append entries to the student's ledger and move their running balance, in the caller's
+     * transaction. Zero amounts are skipped.
+     */
+    @Transactional
+    public StudentFeeBalance post(Student student, List<FeeLedgerEntry> entries) {
+        if (entries.stream().noneMatch(FeeLedgerService::isPosting)) {
+            return null;
+        }
+        Postings postings = open(List.of(student));
+        for (FeeLedgerEntry entry : entries) {
+            postings.add(student.getId(), entry);
+        }
+        post(postings);
+        return postings.balanceOf(student.getId());
+    }
+
+    /**
+     * Lock the accounts of the given students for a run of postings, in the caller's transaction:
+     * one IN query for the balance rows, one statement to open any that don't exist and one more
+     * to lock those. An account with nothing posted yet is brought forward from the totals stored
+     * on the student now, so call this before moving them.
+     */
+    @Transactional
+    public Postings open(Collection<Student> students) {
+        // Id order, matching the order the rows are locked in
+        Map<Long, Student> byId = new TreeMap<>();
+        for (Student student : students) {
+            byId.put(student.getId(), student);
+        }
+        Postings postings = new Postings();
+        if (byId.isEmpty()) {
+            return postings;
+        }
+
+        for (StudentFeeBalance balance : studentFeeBalanceRepository.findAllForUpdate(byId.keySet())) {
+            postings.accounts.put(balance.getStudentId(), balance);
+        }
+        List<Long> missing = new ArrayList<>();
+        for (Long studentId : byId.keySet()) {
+            if (!postings.accounts.containsKey(studentId)) {
+                missing.add(studentId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            studentFeeBalanceRepository.createIfAbsent(missing);
+            for (StudentFeeBalance balance : studentFeeBalanceRepository.findAllForUpdate(missing)) {
+                postings.accounts.put(balance.getStudentId(), balance);
+            }
+        }
+
+        for (Student student : byId.values()) {
+            StudentFeeBalance balance = postings.accounts.get(student.getId());
+            if (balance == null) {
+                throw new IllegalStateException("Fee account missing for student " + student.getId());
+            }
+            if (balance.getEntryCount() == 0) {
+                bringForward(student, postings);
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * Write everything added to the postings: the entries in one multi-row insert, the balance
+     * rows they moved at flush. Payment code calls this once, after its own flush.
+     */
+    @Transactional
+    public void post(Postings postings) {
+        if (postings.entries.isEmpty()) {
+            return;
+        }
+        List<FeeLedgerEntry> entries = new ArrayList<>(postings.entries);
+        postings.entries.clear();
+
+        Map<Long, Long> lastEntryIds = feeLedgerEntryWriter.insert(entries);
+        List<StudentFeeBalance> moved = new ArrayList<>(lastEntryIds.size());
+        for (Map.Entry<Long, Long> last : lastEntryIds.entrySet()) {
+            StudentFeeBalance balance = postings.accounts.get(last.getKey());
+            balance.setLastEntryId(last.getValue());
+            moved.add(balance);
+        }
+        studentFeeBalanceRepository.saveAll(moved);
+
+        log.debug("📒 Posted {} ledger entries for {} students", entries.size(), moved.size());
+    }
+
+    private void bringForward(Student student, Postings postings) {
+        double charged = student.getTotalFee() != null ? student.getTotalFee() : 0.0;
+        double paid = student.getPaidAmount() != null ? student.getPaidAmount() : 0.0;
+
+        postings.add(student.getId(), FeeLedgerEntry.builder()
+                .entryType(FeeLedgerEntry.EntryType.OPENING)
+                .amount(charged)
+                .reference("OPENING")
+                .description("Charges brought forward")
+                .build());
+        postings.add(student.getId(), FeeLedgerEntry.builder()
+                .entryType(FeeLedgerEntry.EntryType.PAYMENT)
+                .amount(-paid)
+                .reference("OPENING")
+                .description("Payments brought forward")
+                .build());
+        log.info("📒 Opened fee account for student {}: ₹{} charged, ₹{} paid brought forward",
+                student.getId(), charged, paid);
+    }
+
+    private static boolean isPosting(FeeLedgerEntry entry) {
+        return entry.getAmount() != null && Math.abs(entry.getAmount()) >= MIN_POSTING;
+    }
+
+    /**
+     * Locked accounts and the entries added to them, waiting to be written by
+     * {@link #post(Postings)}. Adding an entry moves the account's balance and stamps the entry
+     * with it straight away, so entries are numbered in the order they were added.
+     */
+    public static final class Postings {
+        private final Map<Long, StudentFeeBalance> accounts = new HashMap<>();
+        private final List<FeeLedgerEntry> entries = new ArrayList<>();
+
+        private Postings() {
+        }
+
+        /**
+         * Add an entry for a student whose account these postings opened. Zero amounts are skipped.
+         */
+        public void add(Long studentId, FeeLedgerEntry entry) {
+            StudentFeeBalance balance = accounts.get(studentId);
+            if (balance == null) {
+                throw new IllegalStateException("Fee account not opened for student " + studentId);
+            }
+            if (!isPosting(entry)) {
+                return;
+            }
+            entry.setStudentId(studentId);
+            balance.post(entry);
+            entries.add(entry);
+        }
+
+        public StudentFeeBalance balanceOf(Long studentId) {
+            return accounts.get(studentId);
+        }
+    }
+
+    // ========== ENTRY FACTORIES ==========
+
+    /**
+     * A fee item billed to the student; a negative item (a discount) is a credit.
+     */
+    public static FeeLedgerEntry charge(TermFeeItem item) {
+        return FeeLedgerEntry.builder()
+                .entryType(item.getAmount() >= 0 ? FeeLedgerEntry.EntryType.CHARGE : FeeLedgerEntry.EntryType.CREDIT)
+                .amount(item.getAmount())
+                .academicTermId(termIdOf(item))
+                .termFeeItemId(item.getId())
+                .description(item.getItemName())
+                .build();
+    }
+
+    /**
+     * Takes back what {@link #charge} posted for an item that has been removed.
+     */
+    public static FeeLedgerEntry chargeReversal(TermFeeItem item, String reason) {
+        return FeeLedgerEntry.builder()
+                .entryType(FeeLedgerEntry.EntryType.REVERSAL)
+                .reversesType(item.getAmount() >= 0 ? FeeLedgerEntry.EntryType.CHARGE : FeeLedgerEntry.EntryType.CREDIT)
+                .amount(-item.getAmount())
+                .academicTermId(termIdOf(item))
+                .termFeeItemId(item.getId())
+                .description(reason)
+                .build();
+    }
+
+    /**
+     * Money received; a negative amount is a payment being reversed.
+     */
+    public static FeeLedgerEntry payment(double amount, String reference, String description) {
+        boolean reversal = amount < 0;
+        return FeeLedgerEntry.builder()
+                .entryType(reversal ? FeeLedgerEntry.EntryType.REVERSAL : FeeLedgerEntry.EntryType.PAYMENT)
+                .reversesType(reversal ? FeeLedgerEntry.EntryType.PAYMENT : null)
+                .amount(-amount)
+                .reference(reference)
+                .description(description)
+                .build();
+    }
+
+    private static Long termIdOf(TermFeeItem item) {
+        return item.getStudentTermAssignment() != null && item.getStudentTermAssignment().getAcademicTerm() != null
+                ? item.getStudentTermAssignment().getAcademicTerm().getId()
+                : null;
+    }
+
+    // ========== READS ==========
+
+    /**
+     * Running balance, or empty if nothing has been posted for the student yet.
+     */
+    @Transactional(readOnly = true)
+    public Optional<StudentFeeBalance> getBalance(Long studentId) {
+        return studentFeeBalanceRepository.findById(studentId);
+    }
+
+    /**
+     * Entries posted between two dates (inclusive), with the balance brought forward.
+     */
+    @Transactional(readOnly = true)
+    public FeeStatementResponse getStatement(Long studentId, LocalDate fromDate, LocalDate toDate) {
+        double openingBalance = feeLedgerEntryRepository
+                .findFirstByStudentIdAndPostedAtLessThanOrderByPostedAtDescIdDesc(studentId, fromDate.atStartOfDay())
+                .map(FeeLedgerEntry::getBalanceAfter)
+                .orElse(0.0);
+
+        List<FeeLedgerEntry> entries = feeLedgerEntryRepository
+                .findByStudentIdAndPostedAtGreaterThanEqualAndPostedAtLessThanOrderByPostedAtAscIdAsc(
+                        studentId, fromDate.atStartOfDay(), toDate.plusDays(1).atStartOfDay());
+
+        FeeStatementResponse statement = new FeeStatementResponse();
+        statement.setStudentId(studentId);
+        statement.setFromDate(fromDate);
+        statement.setToDate(toDate);
+        statement.setOpeningBalance(openingBalance);
+
+        double charges = 0;
+        double credits = 0;
+        double closingBalance = openingBalance;
+        List<FeeStatementResponse.StatementLine> lines = new ArrayList<>(entries.size());
+        for (FeeLedgerEntry entry : entries) {
+            FeeStatementResponse.StatementLine line = new FeeStatementResponse.StatementLine();
+            line.setEntryId(entry.getId());
+            line.setEntryType(entry.getEntryType().name());
+            line.setDescription(entry.getDescription());
+            line.setReference(entry.getReference());
+            line.setTermFeeItemId(entry.getTermFeeItemId());
+            line.setAmount(entry.getAmount());
+            line.setBalanceAfter(entry.getBalanceAfter());
+            line.setPostedAt(entry.getPostedAt());
+            lines.add(line);
+
+            if (entry.getAmount() > 0) {
+                charges += entry.getAmount();
+            } else {
+                credits -= entry.getAmount();
+            }
+            closingBalance = entry.getBalanceAfter();
+        }
+
+        statement.setLines(lines);
+        statement.setTotalCharges(charges);
+        statement.setTotalCredits(credits);
+        statement.setClosingBalance(closingBalance);
+        return statement;
+    }
+}
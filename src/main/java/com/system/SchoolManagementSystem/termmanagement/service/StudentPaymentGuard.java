@@ -0,0 +1,195 @@
+package com.system.SchoolManagementSystem.termmanagement.service;
+
+import com.system.SchoolManagementSystem.student.entity.Student;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serialises fee payments per student inside this process and retries the ones that lose an
+ * optimistic-version race with another writer (another node, or code that doesn't come
+ * through here).
+ *
+ * Students are hashed onto a fixed set of lock stripes, so payments for different students
+ * run in parallel and payments for the same student queue behind one cheap in-memory lock
+ * instead of conflicting in the database. A lock is held until the transaction that did the
+ * work has completed, so the next payment for that student always reads committed totals.
+ *
+ * Once the stripes are held the students' rows are locked in the database too, which queues
+ * payments from other nodes the same way, and re-read: a copy the caller's persistence context
+ * loaded before the lock is refreshed, so the work never starts from a stale Student.
+ *
+ * Without a surrounding transaction the guard opens one per attempt and retries version
+ * conflicts with writers that don't come through here. Inside a caller's transaction the work
+ * joins it, as most payments arrive from transactional services that have already written rows
+ * referencing the student; there the row locks, not retries, keep it from conflicting.
+ */
+@Component
+@Slf4j
+public class StudentPaymentGuard {
+
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ReentrantLock[] stripes;
+    private final int maxAttempts;
+    private final long lockTimeoutMillis;
+
+    private final AtomicLong conflicts = new AtomicLong();
+
+    public StudentPaymentGuard(PlatformTransactionManager transactionManager,
+                               EntityManager entityManager,
+                               @Value("${fees.payment.lock-stripes:1024}") int lockStripes,
+                               @Value("${fees.payment.max-attempts:4}") int maxAttempts,
+                               @Value("${fees.payment.lock-timeout-ms:10000}") long lockTimeoutMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+        this.stripes = new ReentrantLock[Math.max(1, lockStripes)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    /**
+     * Run payment work for one student.
+     */
+    public <T> T run(Long studentId, Supplier<T> work) {
+        return run(Collections.singleton(studentId), work);
+    }
+
+    /**
+     * Run payment work touching several students, e.g. a batch of imported payments.
+     */
+    public <T> T run(Collection<Long> studentIds, Supplier<T> work) {
+        int[] held = stripesFor(studentIds);
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            lock(held);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    unlock(held);
+                }
+            });
+            lockStudentRows(studentIds, false);
+            return work.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            lock(held);
+            try {
+                return transactionTemplate.execute(status -> {
+                    lockStudentRows(studentIds, true);
+                    return work.get();
+                });
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                conflicts.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    log.warn("⚠️ Payment for students {} still conflicting after {} attempts", studentIds, attempt);
+                    throw e;
+                }
+                log.debug("Version conflict applying payment for students {}, retry {}", studentIds, attempt);
+            } finally {
+                unlock(held);
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Version conflicts seen so far (each one retried or reported).
+     */
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    // ========== STRIPES ==========
+
+    // Distinct stripe indexes in ascending order, so two multi-student callers never wait on each other in a cycle
+    private int[] stripesFor(Collection<Long> studentIds) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (Long studentId : studentIds) {
+            long h = studentId != null ? studentId * 0x9E3779B97F4A7C15L : 0;
+            indexes.add((int) ((h >>> 33) % stripes.length));
+        }
+        int[] result = new int[indexes.size()];
+        int i = 0;
+        for (int index : indexes) {
+            result[i++] = index;
+        }
+        return result;
+    }
+
+    private void lock(int[] held) {
+        for (int i = 0; i < held.length; i++) {
+            boolean acquired;
+            try {
+                acquired = stripes[held[i]].tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                // A caller's transaction may already hold a later stripe; give up rather than deadlock
+                unlock(Arrays.copyOf(held, i));
+                throw new CannotAcquireLockException("Timed out waiting for payment lock");
+            }
+        }
+    }
+
+    private void unlock(int[] held) {
+        for (int i = held.length - 1; i >= 0; i--) {
+            stripes[held[i]].unlock();
+        }
+    }
+
+    // ========== ROWS ==========
+
+    /**
+     * Lock the students' rows in id order with a locking read, which sees the last committed
+     * version even when the caller's transaction took its snapshot earlier. A transaction the
+     * guard opened itself holds nothing yet, so the locking read loads the student; inside a
+     * caller's transaction whatever copy its persistence context holds is refreshed, after its
+     * pending changes are flushed so the refresh doesn't throw them away.
+     */
+    private void lockStudentRows(Collection<Long> studentIds, boolean ownTransaction) {
+        if (!ownTransaction) {
+            entityManager.flush();
+        }
+        for (Long studentId : new TreeSet<>(studentIds)) {
+            if (ownTransaction) {
+                entityManager.find(Student.class, studentId, LockModeType.PESSIMISTIC_WRITE);
+                continue;
+            }
+            Student student = entityManager.find(Student.class, studentId);
+            if (student != null) {
+                entityManager.refresh(student, LockModeType.PESSIMISTIC_WRITE);
+            }
+        }
+    }
+
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(5, 20L * attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
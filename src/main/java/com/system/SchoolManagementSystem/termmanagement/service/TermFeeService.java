@@ -1,6 +1,7 @@
 package com.system.SchoolManagementSystem.termmanagement.service;
 
 import com.system.SchoolManagementSystem.student.entity.Student;
+import com.system.SchoolManagementSystem.student.event.StudentChangedEvent;
 import com.system.SchoolManagementSystem.student.repository.StudentRepository;
 import com.system.SchoolManagementSystem.termmanagement.dto.request.*;
 import com.system.SchoolManagementSystem.termmanagement.dto.response.*;
@@ -12,6 +13,7 @@ import com.system.SchoolManagementSystem.transaction.enums.PaymentMethod;
 import com.system.SchoolManagementSystem.transaction.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,6 +31,9 @@ import java.util.stream.Collectors;
 @Slf4j
 public class TermFeeService {
 
+    // Credit item holding the unallocated part of a payment, already in the ledger as that PAYMENT
+    private static final String PAYMENT_CREDIT_ITEM = "Payment Credit";
+
     // ========== REPOSITORIES ==========
     private final GradeTermFeeRepository gradeTermFeeRepository;
     private final StudentTermAssignmentRepository studentTermAssignmentRepository;
@@ -38,9 +43,12 @@ public class TermFeeService {
     private final FeeStructureRepository feeStructureRepository;
     private final PaymentTransactionRepository paymentTransactionRepository;
     private final AcademicTermRepository academicTermRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ========== DEPENDENT SERVICES ==========
     private final TermService termService;
+    private final StudentPaymentGuard studentPaymentGuard;
+    private final FeeLedgerService feeLedgerService;
 
     // ========== FEE STRUCTURE MANAGEMENT ==========
 
@@ -519,6 +527,11 @@ public class TermFeeService {
         // Save the assignment with fee items
         studentTermAssignmentRepository.save(savedAssignment);
 
+        // Post the charges before the student's totals are refreshed
+        feeLedgerService.post(student, savedAssignment.getFeeItems().stream()
+                .map(FeeLedgerService::charge)
+                .collect(Collectors.toList()));
+
         // Create or update fee assignment
         updateFeeAssignment(student, term, savedAssignment);
 
@@ -743,10 +756,16 @@ public class TermFeeService {
     // ========== PAYMENT PROCESSING ==========
 
     /**
-     * Apply payment to student's fee items (FIFO logic)
+     * Apply payment to student's fee items (FIFO logic). Serialised per student by
+     * {@link StudentPaymentGuard}, which locks and re-reads the student first; the items,
+     * assignments and fee assignment it moves are read with locking reads as well, so a payment
+     * made inside an older caller transaction still starts from the last committed totals.
      */
-    @Transactional
     public PaymentApplicationResponse applyPaymentToStudent(PaymentApplicationRequest request) {
+        return studentPaymentGuard.run(request.getStudentId(), () -> applyPaymentToStudentLocked(request));
+    }
+
+    private PaymentApplicationResponse applyPaymentToStudentLocked(PaymentApplicationRequest request) {
         long startTime = System.currentTimeMillis();
 
         Student student = studentRepository.findById(request.getStudentId())
@@ -757,9 +776,14 @@ public class TermFeeService {
         PaymentApplicationResponse response = PaymentApplicationResponse.fromStudent(student, request.getAmount());
         double remainingPayment = request.getAmount();
 
-        // Get unpaid items - fresh query every time
-        List<TermFeeItem> unpaidItems = termFeeItemRepository
-                .findUnpaidItemsByStudentOrdered(request.getStudentId());
+        // Get unpaid items with their assignments - fresh query every time
+        List<TermFeeItem> unpaidItems = unpaidItemsOrdered(termFeeItemRepository
+                .findUnpaidItemsForUpdate(Set.of(request.getStudentId())));
+
+        FeeLedgerEntry paymentEntry = paymentEntry(request, unpaidItems);
+        if (paymentEntry != null) {
+            feeLedgerService.post(student, paymentEntry);
+        }
 
         if (unpaidItems.isEmpty()) {
             log.warn("⚠️ No unpaid fee items found for student {}", student.getFullName());
@@ -771,8 +795,229 @@ public class TermFeeService {
 
         List<PaymentApplicationResponse.AppliedItem> appliedItems = new ArrayList<>();
         List<TermFeeItem> itemsToUpdate = new ArrayList<>();
+        Map<StudentTermAssignment, Double> assignmentDeltas = new LinkedHashMap<>();
 
         // Apply payment to items (FIFO)
+        remainingPayment = allocateToItems(unpaidItems, remainingPayment, appliedItems, itemsToUpdate, assignmentDeltas);
+
+        // Save all updated items
+        if (!itemsToUpdate.isEmpty()) {
+            termFeeItemRepository.saveAll(itemsToUpdate);
+        }
+
+        response.setAppliedItems(appliedItems);
+
+        // Move the touched assignments, this year's fee assignment and the student by what was applied
+        applyPaymentDeltas(student, assignmentDeltas, currentFeeAssignment(request.getStudentId()));
+
+        // Handle any overpayment
+        boolean allPaid;
+        if (remainingPayment > 0) {
+            // Rare: may credit or pay into other terms, so totals are recomputed in full
+            handleOverpayment(student, remainingPayment, request);
+            updateStudentFeeTotals(student);
+            allPaid = termFeeItemRepository.findUnpaidItemsByStudentOrdered(request.getStudentId()).isEmpty();
+        } else {
+            allPaid = unpaidItemsOrdered(unpaidItems).isEmpty();
+        }
+
+        response.calculateAppliedTotal();
+        response.setRemainingPayment(remainingPayment);
+        response.setAllPaid(allPaid);
+
+        // ========== UPDATE STUDENT AFTER PAYMENT ==========
+        // Clear due date if all paid - USE MANUAL METHOD
+        if (student.getPendingAmount() != null && student.getPendingAmount() <= 0) {
+            student.clearFeeDueDateManually();
+        }
+        studentRepository.save(student);
+        eventPublisher.publishEvent(StudentChangedEvent.paymentApplied(student.getId()));
+
+        long duration = System.currentTimeMillis() - startTime;
+        log.info("✅ Payment applied in {}ms: ₹{} used, ₹{} remaining, All paid: {}",
+                duration, request.getAmount() - remainingPayment,
+                remainingPayment, response.getAllPaid());
+
+        return response;
+    }
+
+    /**
+     * Apply many payments at once, e.g. every auto-matched line of an import batch.
+     *
+     * Same FIFO allocation as {@link #applyPaymentToStudent}, payment by payment in request
+     * order, but grouped by student and run against state prefetched with a few IN queries:
+     * the students, their unpaid fee items with assignments and terms, and the current year's
+     * fee assignments. Each payment moves only the items it touched, their assignments and the
+     * student, and everything is written back at flush as batched updates. Overpayments take
+     * the usual per-student path. Responses are returned in request order. Holds the payment
+     * locks of every student in the batch, like {@link #applyPaymentToStudent}.
+     *
+     * Ledger accounts are locked with one IN query before any totals move, and the batch's
+     * payment entries are written with one multi-row insert after the flush.
+     */
+    public List<PaymentApplicationResponse> applyPaymentsToStudents(List<PaymentApplicationRequest> requests) {
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Long> studentIds = requests.stream()
+                .map(PaymentApplicationRequest::getStudentId)
+                .collect(Collectors.toSet());
+        return studentPaymentGuard.run(studentIds, () -> applyPaymentsToStudentsLocked(requests));
+    }
+
+    private List<PaymentApplicationResponse> applyPaymentsToStudentsLocked(List<PaymentApplicationRequest> requests) {
+        long startTime = System.currentTimeMillis();
+
+        Map<Long, List<Integer>> requestsByStudent = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            requestsByStudent.computeIfAbsent(requests.get(i).getStudentId(), id -> new ArrayList<>()).add(i);
+        }
+        Set<Long> studentIds = requestsByStudent.keySet();
+
+        // ========== PREFETCH ==========
+        Map<Long, Student> students = studentRepository.findAllById(studentIds).stream()
+                .collect(Collectors.toMap(Student::getId, student -> student));
+
+        // Only what a payment can touch, not the students' whole fee history
+        Map<Long, List<TermFeeItem>> unpaidByStudent = new HashMap<>();
+        for (TermFeeItem item : termFeeItemRepository.findUnpaidItemsForUpdate(studentIds)) {
+            unpaidByStudent.computeIfAbsent(item.getStudentTermAssignment().getStudent().getId(), id -> new ArrayList<>())
+                    .add(item);
+        }
+
+        // Before anything moves the students' totals, which a new account is brought forward from
+        FeeLedgerService.Postings ledger = feeLedgerService.open(students.values());
+
+        String academicYear = termService.getCurrentTerm().map(AcademicTerm::getAcademicYear).orElse(null);
+        Map<Long, StudentFeeAssignment> feeAssignments = new HashMap<>();
+        if (academicYear != null) {
+            for (StudentFeeAssignment feeAssignment :
+                    studentFeeAssignmentRepository.findForUpdateByStudentIdsAndAcademicYear(studentIds, academicYear)) {
+                feeAssignments.putIfAbsent(feeAssignment.getStudent().getId(), feeAssignment);
+            }
+        }
+
+        // ========== ALLOCATE IN MEMORY ==========
+        PaymentApplicationResponse[] responses = new PaymentApplicationResponse[requests.size()];
+        Set<TermFeeItem> itemsToUpdate = new LinkedHashSet<>();
+        Set<StudentTermAssignment> assignmentsToUpdate = new LinkedHashSet<>();
+        List<Student> studentsToUpdate = new ArrayList<>(studentIds.size());
+
+        for (Map.Entry<Long, List<Integer>> entry : requestsByStudent.entrySet()) {
+            Long studentId = entry.getKey();
+            Student student = students.get(studentId);
+            if (student == null) {
+                throw new RuntimeException("Student not found: " + studentId);
+            }
+            List<TermFeeItem> openItems = unpaidByStudent.getOrDefault(studentId, new ArrayList<>());
+            boolean applied = false;
+
+            for (int index : entry.getValue()) {
+                PaymentApplicationRequest request = requests.get(index);
+                PaymentApplicationResponse response = PaymentApplicationResponse.fromStudent(student, request.getAmount());
+                responses[index] = response;
+
+                List<TermFeeItem> unpaidItems = unpaidItemsOrdered(openItems);
+                FeeLedgerEntry paymentEntry = paymentEntry(request, unpaidItems);
+                if (paymentEntry != null) {
+                    ledger.add(studentId, paymentEntry);
+                }
+                if (unpaidItems.isEmpty()) {
+                    log.warn("⚠️ No unpaid fee items found for student {}", student.getFullName());
+                    response.setAppliedPayment(0.0);
+                    response.setRemainingPayment(request.getAmount());
+                    response.setAllPaid(true);
+                    continue;
+                }
+
+                List<PaymentApplicationResponse.AppliedItem> appliedItems = new ArrayList<>();
+                Map<StudentTermAssignment, Double> assignmentDeltas = new LinkedHashMap<>();
+                double remainingPayment = allocateToItems(unpaidItems, request.getAmount(), appliedItems,
+                        itemsToUpdate, assignmentDeltas);
+                response.setAppliedItems(appliedItems);
+                applyPaymentDeltas(student, assignmentDeltas, feeAssignments.get(studentId));
+                assignmentsToUpdate.addAll(assignmentDeltas.keySet());
+                applied = true;
+
+                if (remainingPayment > 0) {
+                    // Rare: may create a credit item or even a new assignment, so recompute and re-read this student's
+                    handleOverpayment(student, remainingPayment, request);
+                    updateStudentFeeTotals(student);
+                    openItems = termFeeItemRepository.findUnpaidItemsForUpdate(Set.of(studentId));
+                }
+
+                response.calculateAppliedTotal();
+                response.setRemainingPayment(remainingPayment);
+                response.setAllPaid(unpaidItemsOrdered(openItems).isEmpty());
+            }
+
+            if (!applied) {
+                continue;
+            }
+
+            if (student.getPendingAmount() != null && student.getPendingAmount() <= 0) {
+                student.clearFeeDueDateManually();
+            }
+            studentsToUpdate.add(student);
+        }
+
+        // ========== FLUSH ==========
+        // Managed entities: these only register the changes, the UPDATEs go out batched at flush
+        termFeeItemRepository.saveAll(itemsToUpdate);
+        studentTermAssignmentRepository.saveAll(assignmentsToUpdate);
+        studentRepository.saveAll(studentsToUpdate);
+        feeLedgerService.post(ledger);
+
+        for (Student student : studentsToUpdate) {
+            eventPublisher.publishEvent(StudentChangedEvent.paymentApplied(student.getId()));
+        }
+
+        log.info("✅ Applied {} payments for {} students in {}ms ({} fee items updated)",
+                requests.size(), studentsToUpdate.size(), System.currentTimeMillis() - startTime,
+                itemsToUpdate.size());
+
+        return Arrays.asList(responses);
+    }
+
+    /**
+     * Ledger entry for a payment about to be applied, or null for a payment nothing can be applied
+     * to, as it leaves the fee items untouched; a reversal is always posted.
+     */
+    private static FeeLedgerEntry paymentEntry(PaymentApplicationRequest request, List<TermFeeItem> unpaidItems) {
+        if (request.getAmount() < 0 || !unpaidItems.isEmpty()) {
+            return FeeLedgerService.payment(request.getAmount(), request.getReference(), request.getNotes());
+        }
+        return null;
+    }
+
+    /**
+     * Items still unpaid, in the order findUnpaidItemsByStudentOrdered returns them
+     */
+    private static List<TermFeeItem> unpaidItemsOrdered(Collection<TermFeeItem> items) {
+        List<TermFeeItem> unpaid = new ArrayList<>();
+        for (TermFeeItem item : items) {
+            TermFeeItem.FeeStatus status = item.getStatus();
+            if (status == TermFeeItem.FeeStatus.PENDING || status == TermFeeItem.FeeStatus.PARTIAL ||
+                    status == TermFeeItem.FeeStatus.OVERDUE) {
+                unpaid.add(item);
+            }
+        }
+        // MySQL sorts NULLs first in ascending order
+        unpaid.sort(Comparator.comparing(TermFeeItem::getDueDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(TermFeeItem::getSequenceOrder, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(TermFeeItem::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+        return unpaid;
+    }
+
+    /**
+     * FIFO allocation of one payment over unpaid items (already in due order). Records what was
+     * applied, which items changed and how much landed on each of their assignments; returns
+     * what is left of the payment.
+     */
+    private double allocateToItems(List<TermFeeItem> unpaidItems, double remainingPayment,
+                                   List<PaymentApplicationResponse.AppliedItem> appliedItems,
+                                   Collection<TermFeeItem> itemsToUpdate,
+                                   Map<StudentTermAssignment, Double> assignmentDeltas) {
         for (TermFeeItem item : unpaidItems) {
             if (remainingPayment <= 0) break;
 
@@ -819,119 +1064,63 @@ public class TermFeeService {
 
                 remainingPayment -= amountToApply;
                 itemsToUpdate.add(item);
+                assignmentDeltas.merge(item.getStudentTermAssignment(), amountToApply, Double::sum);
 
                 log.debug("   Applied ₹{} to {} (ID: {}, Remaining: ₹{})",
                         amountToApply, item.getItemName(), item.getId(), item.getPendingAmount());
             }
         }
-
-        // Save all updated items
-        if (!itemsToUpdate.isEmpty()) {
-            termFeeItemRepository.saveAll(itemsToUpdate);
-        }
-
-        response.setAppliedItems(appliedItems);
-
-        // Update term assignments
-        updateTermAssignmentsAfterPayment(request.getStudentId());
-
-        // Handle any overpayment
-        if (remainingPayment > 0) {
-            handleOverpayment(student, remainingPayment, request);
-        }
-
-        response.calculateAppliedTotal();
-        response.setRemainingPayment(remainingPayment);
-
-        // Check if all items are paid (fresh query)
-        boolean allPaid = termFeeItemRepository.findUnpaidItemsByStudentOrdered(request.getStudentId()).isEmpty();
-        response.setAllPaid(allPaid);
-
-        // ========== UPDATE STUDENT AFTER PAYMENT ==========
-        updateStudentAfterPayment(student);
-
-        long duration = System.currentTimeMillis() - startTime;
-        log.info("✅ Payment applied in {}ms: ₹{} used, ₹{} remaining, All paid: {}",
-                duration, request.getAmount() - remainingPayment,
-                remainingPayment, response.getAllPaid());
-
-        return response;
+        return remainingPayment;
     }
 
     /**
-     * Update student after payment
+     * Push a payment up from the items it was allocated to: each touched assignment, the
+     * current year's fee assignment and the student move by exactly the amounts applied, so a
+     * payment updates the rows it affects instead of re-summing the student's whole history.
      */
-    private void updateStudentAfterPayment(Student student) {
-        try {
-            // Recalculate student totals
-            updateStudentFeeTotals(student);
-
-            // Clear due date if all paid - USE MANUAL METHOD
-            if (student.getPendingAmount() != null && student.getPendingAmount() <= 0) {
-                student.clearFeeDueDateManually();
+    private void applyPaymentDeltas(Student student, Map<StudentTermAssignment, Double> assignmentDeltas,
+                                    StudentFeeAssignment feeAssignment) {
+        double applied = 0;
+        double appliedInFeeYear = 0;
+        for (Map.Entry<StudentTermAssignment, Double> delta : assignmentDeltas.entrySet()) {
+            StudentTermAssignment assignment = delta.getKey();
+            assignment.applyPayment(delta.getValue());
+            applied += delta.getValue();
+
+            if (feeAssignment != null && assignment.getAcademicTerm() != null &&
+                    feeAssignment.getAcademicYear().equals(assignment.getAcademicTerm().getAcademicYear())) {
+                appliedInFeeYear += delta.getValue();
             }
-
-            studentRepository.save(student);
-
-            log.debug("📊 Updated student {} after payment: Status = {}, Due Date = {}",
-                    student.getId(), student.getFeeStatus(), student.getFeeDueDate());
-
-        } catch (Exception e) {
-            log.error("Error updating student after payment for {}: {}", student.getId(), e.getMessage());
         }
-    }
-
-    /**
-     * Update term assignments after payment
-     */
-    private void updateTermAssignmentsAfterPayment(Long studentId) {
-        // Get all term assignments for this student
-        List<StudentTermAssignment> assignments = studentTermAssignmentRepository
-                .findByStudentId(studentId);
 
-        // Update each assignment
-        for (StudentTermAssignment assignment : assignments) {
-            assignment.calculateAmounts();
+        if (appliedInFeeYear > 0) {
+            double total = feeAssignment.getTotalAmount() != null ? feeAssignment.getTotalAmount() : 0.0;
+            double paid = (feeAssignment.getPaidAmount() != null ? feeAssignment.getPaidAmount() : 0.0) + appliedInFeeYear;
+            setFeeAssignmentTotals(feeAssignment, total, paid);
+            studentFeeAssignmentRepository.save(feeAssignment);
         }
 
-        // Bulk save
-        if (!assignments.isEmpty()) {
-            studentTermAssignmentRepository.saveAll(assignments);
-        }
+        student.applyPayment(applied);
 
-        // Update student fee assignment
-        updateStudentFeeAssignment(studentId);
+        log.debug("📊 Payment of ₹{} moved {} term assignments for student {}",
+                applied, assignmentDeltas.size(), student.getId());
     }
 
     /**
-     * Update student fee assignment
+     * Fee assignment for the current academic year, if the student has one, locked for the payment
      */
-    private void updateStudentFeeAssignment(Long studentId) {
-        // Get current academic year
-        Optional<AcademicTerm> currentTerm = termService.getCurrentTerm();
-        if (currentTerm.isEmpty()) return;
-
-        String academicYear = currentTerm.get().getAcademicYear();
-
-        studentFeeAssignmentRepository
-                .findByStudentIdAndAcademicYear(studentId, academicYear)
-                .ifPresent(this::recalculateFeeAssignment);
+    private StudentFeeAssignment currentFeeAssignment(Long studentId) {
+        return termService.getCurrentTerm()
+                .flatMap(term -> studentFeeAssignmentRepository
+                        .findForUpdateByStudentIdsAndAcademicYear(Set.of(studentId), term.getAcademicYear())
+                        .stream().findFirst())
+                .orElse(null);
     }
 
     /**
-     * Recalculate fee assignment
+     * Set fee assignment totals and the status that follows from them
      */
-    private void recalculateFeeAssignment(StudentFeeAssignment assignment) {
-        // Get term assignments for academic year
-        List<StudentTermAssignment> termAssignments = getTermAssignmentsForAcademicYear(
-                assignment.getStudent().getId(), assignment.getAcademicYear());
-
-        double total = termAssignments.stream()
-                .mapToDouble(StudentTermAssignment::getTotalTermFee)
-                .sum();
-        double paid = termAssignments.stream()
-                .mapToDouble(StudentTermAssignment::getPaidAmount)
-                .sum();
+    private void setFeeAssignmentTotals(StudentFeeAssignment assignment, double total, double paid) {
         double pending = total - paid;
 
         assignment.setTotalAmount(total);
@@ -951,7 +1140,6 @@ public class TermFeeService {
         }
 
         assignment.setUpdatedAt(LocalDateTime.now());
-        studentFeeAssignmentRepository.save(assignment);
     }
 
     /**
@@ -1017,6 +1205,10 @@ public class TermFeeService {
         return remainingAmount;
     }
 
+    private static boolean isPaymentCredit(TermFeeItem item) {
+        return item.getAmount() < 0 && PAYMENT_CREDIT_ITEM.equals(item.getItemName());
+    }
+
     /**
      * Create payment credit
      */
@@ -1033,7 +1225,7 @@ public class TermFeeService {
 
             TermFeeItem creditItem = TermFeeItem.builder()
                     .studentTermAssignment(assignment)
-                    .itemName("Payment Credit")
+                    .itemName(PAYMENT_CREDIT_ITEM)
                     .feeType(TermFeeItem.FeeType.DISCOUNT)
                     .itemType("DISCOUNT")
                     .amount(-amount)
@@ -1091,6 +1283,8 @@ public class TermFeeService {
         termAssignment.addFeeItem(savedItem);
         studentTermAssignmentRepository.save(termAssignment);
 
+        feeLedgerService.post(student, FeeLedgerService.charge(savedItem));
+
         // Update student
         updateStudentFeeTotals(student);
         studentRepository.save(student);
@@ -1150,6 +1344,8 @@ public class TermFeeService {
                 .map(item -> {
                     if (!item.getIsAutoGenerated()) {
                         StudentTermAssignment assignment = item.getStudentTermAssignment();
+                        feeLedgerService.post(assignment.getStudent(),
+                                FeeLedgerService.chargeReversal(item, "Removed: " + item.getItemName()));
                         termFeeItemRepository.delete(item);
                         assignment.calculateAmounts();
                         studentTermAssignmentRepository.save(assignment);
@@ -2136,6 +2332,12 @@ public class TermFeeService {
             previousDetails.setIsBilled(previousAssignment.getIsBilled());
             response.setPreviousAssignment(previousDetails);
 
+            // Take the old charges off the ledger; payments and their credits stay with the student
+            feeLedgerService.post(student, previousAssignment.getFeeItems().stream()
+                    .filter(item -> !isPaymentCredit(item))
+                    .map(item -> FeeLedgerService.chargeReversal(item, "Bill regenerated: " + item.getItemName()))
+                    .collect(Collectors.toList()));
+
             // Delete existing assignment and fee items
             termFeeItemRepository.deleteAll(previousAssignment.getFeeItems());
             studentTermAssignmentRepository.delete(previousAssignment);
@@ -2497,13 +2699,6 @@ public class TermFeeService {
         return response;
     }
 
-    private List<StudentTermAssignment> getTermAssignmentsForAcademicYear(Long studentId, String academicYear) {
-        return studentTermAssignmentRepository.findByStudentId(studentId).stream()
-                .filter(ta -> ta.getAcademicTerm() != null &&
-                        ta.getAcademicTerm().getAcademicYear().equals(academicYear))
-                .collect(Collectors.toList());
-    }
-
     private double round(double value, int places) {
         if (places < 0) throw new IllegalArgumentException();
         BigDecimal bd = BigDecimal.valueOf(value);
@@ -7,6 +7,9 @@ import com.system.SchoolManagementSystem.transaction.util.TransactionMatcher;
 import com.system.SchoolManagementSystem.transaction.dto.request.*;
 import com.system.SchoolManagementSystem.transaction.dto.response.*;
 import com.system.SchoolManagementSystem.transaction.enums.TransactionStatus;
+import com.system.SchoolManagementSystem.transaction.service.BankImportJobService;
+import com.system.SchoolManagementSystem.transaction.service.BankReferenceIndexService;
+import com.system.SchoolManagementSystem.transaction.service.ImportProgressTracker;
 import com.system.SchoolManagementSystem.transaction.service.TransactionService;
 import com.system.SchoolManagementSystem.transaction.service.StudentCacheService;
 import com.system.SchoolManagementSystem.transaction.validation.TransactionValidationService;
@@ -23,6 +26,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -39,6 +43,9 @@ public class TransactionController {
     private final TransactionMatcher transactionMatcher;
     private final BankStatementParser bankStatementParser;
     private final TransactionValidationService transactionValidationService;
+    private final BankImportJobService bankImportJobService;
+    private final ImportProgressTracker importProgressTracker;
+    private final BankReferenceIndexService bankReferenceIndexService;
 
     // ========== OPTIMIZATION ENDPOINTS ==========
 
@@ -65,6 +72,15 @@ public class TransactionController {
         }
     }
 
+    @GetMapping("/optimization/reference-filter/stats")
+    public ResponseEntity<Map<String, Object>> getReferenceFilterStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", bankReferenceIndexService.getStats());
+        response.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/optimization/matcher/cache/status")
     public ResponseEntity<Map<String, Object>> getMatcherCacheStatus() {
         try {
@@ -144,8 +160,16 @@ public class TransactionController {
 
             log.info("🔍 Validating {} transactions before import", transactions.size());
 
+            // Already-imported references, checked against the warm filter before the database
+            Set<String> existingReferences = bankReferenceIndexService.findExisting(transactions.stream()
+                    .map(BankTransaction::getBankReference)
+                    .filter(Objects::nonNull)
+                    .map(String::trim)
+                    .toList());
+
             int validCount = 0;
             int invalidCount = 0;
+            int duplicateCount = 0;
             List<Map<String, Object>> validationResults = new ArrayList<>();
 
             for (BankTransaction transaction : transactions) {
@@ -155,6 +179,20 @@ public class TransactionController {
                 result.put("description", transaction.getDescription());
                 result.put("transactionDate", transaction.getTransactionDate());
 
+                boolean duplicate = transaction.getBankReference() != null
+                        && existingReferences.contains(transaction.getBankReference().trim());
+                result.put("duplicate", duplicate);
+                if (duplicate) {
+                    duplicateCount++;
+                    result.put("valid", false);
+                    result.put("validationMessage", "Bank reference already imported");
+                    result.put("errorCode", "DUPLICATE_REFERENCE");
+                    result.put("status", "DUPLICATE");
+                    result.put("recommendedAction", "Already imported; will be skipped");
+                    validationResults.add(result);
+                    continue;
+                }
+
                 // Try to match student
                 Optional<Student> matchedStudent = transactionMatcher.findMatchingStudent(transaction);
 
@@ -201,17 +239,21 @@ public class TransactionController {
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", String.format("Validation complete: %d valid, %d invalid",
-                    validCount, invalidCount));
+            response.put("message", String.format("Validation complete: %d valid, %d invalid, %d duplicates",
+                    validCount, invalidCount, duplicateCount));
             response.put("totalTransactions", transactions.size());
             response.put("validCount", validCount);
             response.put("invalidCount", invalidCount);
+            response.put("duplicateCount", duplicateCount);
             response.put("validationResults", validationResults);
             response.put("timestamp", LocalDateTime.now().toString());
 
             if (invalidCount > 0) {
                 response.put("warning", "Some transactions will be rejected if imported");
             }
+            if (duplicateCount > 0) {
+                response.put("duplicateWarning", duplicateCount + " transactions were already imported and will be skipped");
+            }
 
             return ResponseEntity.ok(response);
 
@@ -242,100 +284,133 @@ public class TransactionController {
             request.setValidationResults(validationResults);
             request.setImportBatchId(java.util.UUID.randomUUID().toString());
 
-            // Call service method that returns BankTransactionImportResponse
-            BankTransactionImportResponse importResponse = transactionService.importBankTransactions(request);
+            // Runs in the background; progress is streamed from /import/{importId}/progress
+            String importId = bankImportJobService.submit(request);
 
             Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Import started");
+            response.put("importId", importId);
+            response.put("statusUrl", "/api/transactions/import/" + importId);
+            response.put("progressUrl", "/api/transactions/import/" + importId + "/progress");
+            response.put("timestamp", LocalDateTime.now().toString());
 
-            if (importResponse.isSuccess()) {
-                // Import successful
-                ImportResult result = importResponse.getResult();
-
-                // Build success message with statistics
-                StringBuilder messageBuilder = new StringBuilder();
-                messageBuilder.append("Successfully imported ")
-                        .append(result.getSavedTransactions())
-                        .append(" transactions");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
 
-                if (result.getDuplicatesSkipped() > 0) {
-                    messageBuilder.append(" (")
-                            .append(result.getDuplicatesSkipped())
-                            .append(" duplicates skipped)");
-                }
+        } catch (Exception e) {
+            log.error("❌ Import failed", e);
 
-                if (result.getDuplicatesSkipped() > 0 && result.getSavedTransactions() == 0) {
-                    messageBuilder = new StringBuilder();
-                    messageBuilder.append("No new transactions imported. ")
-                            .append(result.getDuplicatesSkipped())
-                            .append(" duplicate transaction(s) were skipped.");
-                }
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Failed to import transactions: " + e.getMessage());
+            errorResponse.put("timestamp", LocalDateTime.now().toString());
 
-                response.put("success", true);
-                response.put("message", messageBuilder.toString());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
 
-                // Build response data
-                Map<String, Object> data = new HashMap<>();
+    @GetMapping(value = "/import/{importId}/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamImportProgress(@PathVariable String importId) {
+        SseEmitter emitter = importProgressTracker.subscribe(importId);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
 
-                // Keep backward compatibility - main transactions array
-                data.put("transactions", result.getTransactions());
+    @GetMapping("/import/{importId}")
+    public ResponseEntity<Map<String, Object>> getImportStatus(@PathVariable String importId) {
+        ImportProgressTracker.ImportProgress progress = importProgressTracker.getProgress(importId);
+        if (progress == null) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Import not found or expired: " + importId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
 
-                // Add import statistics
-                Map<String, Object> stats = new HashMap<>();
-                stats.put("totalTransactions", result.getTotalTransactions());
-                stats.put("savedTransactions", result.getSavedTransactions());
-                stats.put("duplicatesSkipped", result.getDuplicatesSkipped());
+        BankTransactionImportResponse importResponse = progress.getResponse();
+        Map<String, Object> response = importResponse != null
+                ? buildImportResponse(importResponse)
+                : new HashMap<>();
+        response.putIfAbsent("success", !"Failed".equals(progress.getCurrentStatus()));
+        response.put("progress", progress.toSnapshot());
+        response.put("timestamp", LocalDateTime.now().toString());
 
-                if (result.getDuplicatesSkipped() > 0 && result.getDuplicateReferences() != null) {
-                    stats.put("duplicateReferences", result.getDuplicateReferences());
-                }
+        return ResponseEntity.ok(response);
+    }
 
-                data.put("importStats", stats);
-                response.put("data", data);
+    private Map<String, Object> buildImportResponse(BankTransactionImportResponse importResponse) {
+        Map<String, Object> response = new HashMap<>();
 
-                // Add warnings if duplicates were found
-                if (result.getDuplicatesSkipped() > 0 && result.getWarningMessage() != null) {
-                    response.put("warning", result.getWarningMessage());
+        if (importResponse.isSuccess()) {
+            // Import successful
+            ImportResult result = importResponse.getResult();
 
-                    // Also include warnings array for frontend
-                    List<String> warnings = new ArrayList<>();
-                    warnings.add(result.getWarningMessage());
-                    response.put("warnings", warnings);
-                }
+            // Build success message with statistics
+            StringBuilder messageBuilder = new StringBuilder();
+            messageBuilder.append("Successfully imported ")
+                    .append(result.getSavedTransactions())
+                    .append(" transactions");
 
-            } else {
-                // Import failed
-                response.put("success", false);
-                response.put("message", importResponse.getMessage());
+            if (result.getDuplicatesSkipped() > 0) {
+                messageBuilder.append(" (")
+                        .append(result.getDuplicatesSkipped())
+                        .append(" duplicates skipped)");
+            }
 
-                // Add any warnings from service
-                if (importResponse.getWarnings() != null && !importResponse.getWarnings().isEmpty()) {
-                    response.put("warnings", importResponse.getWarnings());
-                }
+            if (result.getDuplicatesSkipped() > 0 && result.getSavedTransactions() == 0) {
+                messageBuilder = new StringBuilder();
+                messageBuilder.append("No new transactions imported. ")
+                        .append(result.getDuplicatesSkipped())
+                        .append(" duplicate transaction(s) were skipped.");
             }
 
-            response.put("timestamp", LocalDateTime.now().toString());
+            response.put("success", true);
+            response.put("message", messageBuilder.toString());
 
-            return ResponseEntity.ok(response);
+            // Build response data
+            Map<String, Object> data = new HashMap<>();
 
-        } catch (Exception e) {
-            log.error("❌ Import failed", e);
+            // Keep backward compatibility - main transactions array
+            data.put("transactions", result.getTransactions());
 
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
+            // Add import statistics
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("totalTransactions", result.getTotalTransactions());
+            stats.put("savedTransactions", result.getSavedTransactions());
+            stats.put("duplicatesSkipped", result.getDuplicatesSkipped());
+            stats.put("failedTransactions", result.getFailedTransactions());
+            stats.put("paymentFailures", result.getPaymentFailures());
 
-            // Check if it's a duplicate-related error
-            String errorMessage = e.getMessage();
-            if (errorMessage != null && errorMessage.contains("Duplicate")) {
-                errorResponse.put("message", "Duplicate transactions detected. " + errorMessage);
-                errorResponse.put("warning", "Some transactions may already exist in the database.");
-            } else {
-                errorResponse.put("message", "Failed to import transactions: " + errorMessage);
+            if (result.getDuplicatesSkipped() > 0 && result.getDuplicateReferences() != null) {
+                stats.put("duplicateReferences", result.getDuplicateReferences());
             }
 
-            errorResponse.put("timestamp", LocalDateTime.now().toString());
+            data.put("importStats", stats);
+            response.put("data", data);
 
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            // Add warnings for duplicates, validation issues and failed lines or payments
+            if (result.getWarningMessage() != null) {
+                response.put("warning", result.getWarningMessage());
+
+                // Also include warnings array for frontend
+                List<String> warnings = new ArrayList<>();
+                warnings.add(result.getWarningMessage());
+                response.put("warnings", warnings);
+            }
+
+        } else {
+            // Import failed
+            response.put("success", false);
+            response.put("message", importResponse.getMessage());
+
+            // Add any warnings from service
+            if (importResponse.getWarnings() != null && !importResponse.getWarnings().isEmpty()) {
+                response.put("warnings", importResponse.getWarnings());
+            }
         }
+
+        return response;
     }
 
     @GetMapping("/bank")
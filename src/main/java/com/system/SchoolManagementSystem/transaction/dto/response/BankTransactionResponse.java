@@ -9,6 +9,7 @@ import lombok.Data;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -71,6 +72,9 @@ public class BankTransactionResponse {
     private Boolean hasTermAssignments;
     private Integer termAssignmentCount;
 
+    // Ranked suggestions for unmatched transactions (manual matching screen)
+    private List<MatchCandidateResponse> matchCandidates;
+
     public void setStudentFeeStatus(Student.FeeStatus feeStatus) {
         this.studentFeeStatus = feeStatus;
     }
@@ -84,4 +88,15 @@ public class BankTransactionResponse {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Data
+    public static class MatchCandidateResponse {
+        private Integer rank;
+        private Long studentId;
+        private String admissionNumber;
+        private String studentName;
+        private Double pendingAmount;
+        private Double score;
+        private String reasons;
+    }
+}
@@ -9,6 +9,13 @@ public class ImportResult {
     private int totalTransactions;
     private int savedTransactions;
     private int duplicatesSkipped;
+    // Lines dated before the bank account's watermark; included in duplicatesSkipped
+    private int skippedBeforeWatermark;
+    // Lines that could not be saved, and saved lines whose payment could not be applied
+    private int failedTransactions;
+    private int paymentFailures;
+    // Set when the exact same file was imported before and nothing was processed
+    private String previousImportBatchId;
     private List<String> duplicateReferences;
     private String warningMessage;
     private List<BankTransactionResponse> transactions;
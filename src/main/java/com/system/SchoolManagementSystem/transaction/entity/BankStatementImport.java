@@ -0,0 +1,79 @@
+package com.system.SchoolManagementSystem.transaction.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One imported statement file. The file hash of a completed import makes exact re-uploads a
+ * no-op, and the latest transaction date of completed imports per bank account is the
+ * watermark below which lines of an overlapping statement are not processed again. A failed
+ * import is kept for the record only; the same file can be uploaded again.
+ */
+@Entity
+@Table(
+        name = "bank_statement_imports",
+        indexes = {
+                @Index(name = "idx_statement_import_file_hash", columnList = "file_hash", unique = true),
+                @Index(name = "idx_statement_import_account_last_date", columnList = "bank_account, last_transaction_date")
+        }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class BankStatementImport {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    // SHA-256 of the uploaded bytes, hex encoded
+    @Column(name = "file_hash", nullable = false, unique = true, length = 64)
+    private String fileHash;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "bank_account", length = 50)
+    private String bankAccount;
+
+    @Column(name = "import_batch_id", nullable = false)
+    private String importBatchId;
+
+    @Column(name = "first_transaction_date")
+    private LocalDate firstTransactionDate;
+
+    @Column(name = "last_transaction_date")
+    private LocalDate lastTransactionDate;
+
+    @Column(name = "lines_parsed")
+    private Integer linesParsed;
+
+    @Column(name = "lines_saved")
+    private Integer linesSaved;
+
+    @Column(name = "lines_skipped_before_watermark")
+    private Integer linesSkippedBeforeWatermark;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    @Builder.Default
+    private ImportStatus status = ImportStatus.COMPLETED;
+
+    @CreationTimestamp
+    @Column(name = "imported_at", nullable = false, updatable = false)
+    private LocalDateTime importedAt;
+
+    public enum ImportStatus {
+        COMPLETED, FAILED
+    }
+}
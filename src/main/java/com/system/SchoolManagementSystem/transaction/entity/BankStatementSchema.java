@@ -0,0 +1,74 @@
+package com.system.SchoolManagementSystem.transaction.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A statement layout learned from an uploaded file, keyed by its header fingerprint, so later
+ * files with the same header are parsed without inference.
+ */
+@Entity
+@Table(
+        name = "bank_statement_schemas",
+        indexes = {
+                @Index(name = "idx_statement_schema_fingerprint", columnList = "header_fingerprint", unique = true)
+        }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class BankStatementSchema {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @Column(name = "header_fingerprint", nullable = false, unique = true, length = 64)
+    private String headerFingerprint;
+
+    @Column(name = "format_name", length = 100)
+    private String formatName;
+
+    // Column indexes, -1 when the statement has no such column
+    @Column(name = "date_column", nullable = false)
+    private Integer dateColumn;
+
+    @Column(name = "description_column", nullable = false)
+    private Integer descriptionColumn;
+
+    @Column(name = "amount_column", nullable = false)
+    private Integer amountColumn;
+
+    @Column(name = "credit_column", nullable = false)
+    private Integer creditColumn;
+
+    @Column(name = "debit_column", nullable = false)
+    private Integer debitColumn;
+
+    @Column(name = "reference_column", nullable = false)
+    private Integer referenceColumn;
+
+    @Column(name = "status_column", nullable = false)
+    private Integer statusColumn;
+
+    // StatementSchema.DateLayout name, null when no layout fitted
+    @Column(name = "date_layout", length = 30)
+    private String dateLayout;
+
+    // StatementSchema.AmountConvention name
+    @Column(name = "amount_convention", nullable = false, length = 20)
+    private String amountConvention;
+
+    @Column(name = "decimal_separator", nullable = false, length = 1)
+    private String decimalSeparator;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
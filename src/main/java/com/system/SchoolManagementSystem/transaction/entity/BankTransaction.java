@@ -6,10 +6,13 @@ import com.system.SchoolManagementSystem.transaction.enums.TransactionStatus;
 import com.system.SchoolManagementSystem.auth.entity.User;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
 @Table(
@@ -18,7 +21,8 @@ import java.time.LocalDateTime;
                 @Index(name = "idx_bank_transaction_status_date", columnList = "status, transaction_date"), // Combined index
                 @Index(name = "idx_bank_transaction_student_status", columnList = "student_id, status"),
                 @Index(name = "idx_bank_transaction_import_batch", columnList = "import_batch_id"),
-                @Index(name = "idx_bank_transaction_bank_ref", columnList = "bank_reference", unique = true)
+                @Index(name = "idx_bank_transaction_bank_ref", columnList = "bank_reference", unique = true),
+                @Index(name = "idx_bank_transaction_fingerprint", columnList = "content_fingerprint")
         }
 )
 @Data
@@ -88,6 +92,14 @@ public class BankTransaction {
     @Column(name = "import_batch_id")
     private String importBatchId;
 
+    // SHA-256 of date + amount + normalized narration, set only for lines without a bank reference
+    @Column(name = "content_fingerprint", length = 64)
+    private String contentFingerprint;
+
+    // Random per bulk insert, so the writer can tell its own rows from ones already stored under the reference
+    @Column(name = "insert_token", length = 36, updatable = false)
+    private String insertToken;
+
     @Column(name = "sms_sent", nullable = false)
     private Boolean smsSent = false;
 
@@ -103,6 +115,14 @@ public class BankTransaction {
     @OneToOne(mappedBy = "bankTransaction", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private PaymentTransaction paymentTransaction;
 
+    // Top-ranked student suggestions for unmatched lines, best first
+    @OneToMany(mappedBy = "bankTransaction", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @OrderBy("candidateRank ASC")
+    @BatchSize(size = 50)
+    @ToString.Exclude
+    @Builder.Default
+    private List<BankTransactionCandidate> matchCandidates = new ArrayList<>();
+
     @PrePersist
     protected void onCreate() {
         if (paymentMethod == null) {
@@ -0,0 +1,63 @@
+package com.system.SchoolManagementSystem.transaction.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A ranked student suggestion for a bank transaction that could not be auto-matched,
+ * stored at import time so the manual matching screen does not have to search.
+ */
+@Entity
+@Table(
+        name = "bank_transaction_candidates",
+        indexes = {
+                @Index(name = "idx_bank_tx_candidate_tx_rank", columnList = "bank_transaction_id, candidate_rank")
+        }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class BankTransactionCandidate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "bank_transaction_id", nullable = false)
+    @ToString.Exclude
+    private BankTransaction bankTransaction;
+
+    @Column(name = "candidate_rank", nullable = false)
+    private Integer candidateRank;
+
+    @Column(name = "student_id", nullable = false)
+    private Long studentId;
+
+    // Snapshot of the student at ranking time, for display only
+    @Column(name = "admission_number", length = 50)
+    private String admissionNumber;
+
+    @Column(name = "student_name")
+    private String studentName;
+
+    @Column(name = "pending_amount")
+    private Double pendingAmount;
+
+    @Column(nullable = false)
+    private Double score;
+
+    // Short, comma-separated list of the signals that contributed ("student id, full name, amount")
+    @Column(length = 255)
+    private String reasons;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
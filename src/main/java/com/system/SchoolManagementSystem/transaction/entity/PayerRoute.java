@@ -0,0 +1,50 @@
+package com.system.SchoolManagementSystem.transaction.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A learned payer → student route (see PayerRouteTable), keyed by the payer's phone or
+ * name and the statement's bank account. Written with an upsert whenever staff confirm a match.
+ */
+@Entity
+@Table(
+        name = "payer_routes",
+        indexes = {
+                @Index(name = "idx_payer_route_key", columnList = "route_key", unique = true),
+                @Index(name = "idx_payer_route_student", columnList = "student_id")
+        }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class PayerRoute {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @Column(name = "route_key", nullable = false, unique = true, length = 200)
+    private String routeKey;
+
+    @Column(name = "student_id", nullable = false)
+    private Long studentId;
+
+    // Confidence as of updated_at; halves every configured half-life without a confirmation
+    @Column(nullable = false)
+    private Double confidence;
+
+    @Column(nullable = false)
+    private Integer confirmations;
+
+    @Column(nullable = false)
+    private Integer contradictions;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,43 @@
+package com.system.SchoolManagementSystem.transaction.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Next unreserved receipt number for one prefix and academic year. Nodes move it forward a
+ * whole block at a time (see ReceiptNumberService) and issue the numbers from memory.
+ */
+@Entity
+@Table(
+        name = "receipt_counters",
+        indexes = {
+                @Index(name = "idx_receipt_counter_key", columnList = "prefix, academic_year", unique = true)
+        }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class ReceiptCounter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String prefix;
+
+    // Starting year of the academic year, e.g. "2026" for 2026-2027
+    @Column(name = "academic_year", nullable = false, length = 20)
+    private String academicYear;
+
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
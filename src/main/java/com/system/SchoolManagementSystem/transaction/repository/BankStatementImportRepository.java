@@ -0,0 +1,21 @@
+package com.system.SchoolManagementSystem.transaction.repository;
+
+import com.system.SchoolManagementSystem.transaction.entity.BankStatementImport;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface BankStatementImportRepository extends JpaRepository<BankStatementImport, Long> {
+
+    Optional<BankStatementImport> findByFileHash(String fileHash);
+
+    // Latest line date of a completed import for the account; null when nothing was imported yet
+    @Query("SELECT MAX(s.lastTransactionDate) FROM BankStatementImport s " +
+           "WHERE s.bankAccount = :bankAccount AND s.status = 'COMPLETED'")
+    LocalDate findWatermark(@Param("bankAccount") String bankAccount);
+}
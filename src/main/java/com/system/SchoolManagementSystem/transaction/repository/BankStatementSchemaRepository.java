@@ -0,0 +1,9 @@
+package com.system.SchoolManagementSystem.transaction.repository;
+
+import com.system.SchoolManagementSystem.transaction.entity.BankStatementSchema;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BankStatementSchemaRepository extends JpaRepository<BankStatementSchema, Long> {
+}
@@ -5,11 +5,14 @@ import com.system.SchoolManagementSystem.transaction.enums.TransactionStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -99,4 +102,20 @@ public interface BankTransactionRepository extends JpaRepository<BankTransaction
     // Batch reference check - OPTIMIZED
     @Query("SELECT b.bankReference FROM BankTransaction b WHERE b.bankReference IN :references")
     Set<String> findExistingReferences(@Param("references") List<String> references);
+
+    // Batch content check for lines that carry no bank reference of their own
+    @Query("SELECT b.contentFingerprint FROM BankTransaction b WHERE b.contentFingerprint IN :fingerprints")
+    Set<String> findExistingFingerprints(@Param("fingerprints") List<String> fingerprints);
+
+    // Keyset page of [id, bankReference] for loading the reference filter
+    @Query("SELECT b.id, b.bankReference FROM BankTransaction b WHERE b.id > :afterId ORDER BY b.id")
+    List<Object[]> findReferencesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Sends imported lines back for review, e.g. when their payment could not be created
+    @Transactional
+    @Modifying
+    @Query("UPDATE BankTransaction b SET b.status = :status, b.notes = :notes WHERE b.id IN :ids")
+    int updateStatusAndNotes(@Param("ids") Collection<Long> ids,
+                             @Param("status") TransactionStatus status,
+                             @Param("notes") String notes);
 }
\ No newline at end of file
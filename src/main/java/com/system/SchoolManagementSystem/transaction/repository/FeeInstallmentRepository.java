@@ -3,9 +3,12 @@ package com.system.SchoolManagementSystem.transaction.repository;
 import com.system.SchoolManagementSystem.transaction.entity.FeeInstallment;
 import com.system.SchoolManagementSystem.transaction.enums.FeeStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,4 +23,18 @@ public interface FeeInstallmentRepository extends JpaRepository<FeeInstallment,
     List<FeeInstallment> findByDueDateBeforeAndStatus(LocalDate date, FeeStatus status);
 
     List<FeeInstallment> findByDueDateBetween(LocalDate startDate, LocalDate endDate);
+
+    // Open installments as [studentId, outstanding amount], earliest due first per student
+    @Query("SELECT fa.student.id, COALESCE(fi.netAmount, fi.amount) - COALESCE(fi.paidAmount, 0) " +
+            "FROM FeeInstallment fi JOIN fi.feeAssignment fa " +
+            "WHERE fa.isActive = true AND fi.status <> :paidStatus " +
+            "ORDER BY fa.student.id, fi.dueDate, fi.installmentNumber")
+    List<Object[]> findOpenInstallmentBalances(@Param("paidStatus") FeeStatus paidStatus);
+
+    @Query("SELECT fa.student.id, COALESCE(fi.netAmount, fi.amount) - COALESCE(fi.paidAmount, 0) " +
+            "FROM FeeInstallment fi JOIN fi.feeAssignment fa " +
+            "WHERE fa.isActive = true AND fi.status <> :paidStatus AND fa.student.id IN :studentIds " +
+            "ORDER BY fa.student.id, fi.dueDate, fi.installmentNumber")
+    List<Object[]> findOpenInstallmentBalancesForStudents(@Param("studentIds") Collection<Long> studentIds,
+                                                          @Param("paidStatus") FeeStatus paidStatus);
 }
\ No newline at end of file
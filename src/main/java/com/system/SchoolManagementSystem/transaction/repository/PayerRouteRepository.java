@@ -0,0 +1,28 @@
+package com.system.SchoolManagementSystem.transaction.repository;
+
+import com.system.SchoolManagementSystem.transaction.entity.PayerRoute;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface PayerRouteRepository extends JpaRepository<PayerRoute, Long> {
+
+    // The route is decided in memory; this only stores it, without a read or a duplicate-key failure
+    @Modifying
+    @Query(value = "INSERT INTO payer_routes (route_key, student_id, confidence, confirmations, contradictions, updated_at) " +
+            "VALUES (:routeKey, :studentId, :confidence, :confirmations, :contradictions, :updatedAt) " +
+            "ON DUPLICATE KEY UPDATE student_id = VALUES(student_id), confidence = VALUES(confidence), " +
+            "confirmations = VALUES(confirmations), contradictions = VALUES(contradictions), " +
+            "updated_at = VALUES(updated_at)", nativeQuery = true)
+    int upsert(@Param("routeKey") String routeKey,
+               @Param("studentId") Long studentId,
+               @Param("confidence") Double confidence,
+               @Param("confirmations") Integer confirmations,
+               @Param("contradictions") Integer contradictions,
+               @Param("updatedAt") LocalDateTime updatedAt);
+}
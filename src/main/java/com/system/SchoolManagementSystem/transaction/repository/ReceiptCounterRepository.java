@@ -0,0 +1,28 @@
+package com.system.SchoolManagementSystem.transaction.repository;
+
+import com.system.SchoolManagementSystem.transaction.entity.ReceiptCounter;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ReceiptCounterRepository extends JpaRepository<ReceiptCounter, Long> {
+
+    // Reserving a block read-modify-writes the row, so concurrent nodes queue on the row lock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ReceiptCounter c WHERE c.prefix = :prefix AND c.academicYear = :academicYear")
+    Optional<ReceiptCounter> findForUpdate(@Param("prefix") String prefix,
+                                           @Param("academicYear") String academicYear);
+
+    // 1 when this call created the counter, 0 when it already existed (even if created concurrently)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO receipt_counters (prefix, academic_year, next_value, updated_at) " +
+            "VALUES (:prefix, :academicYear, 1, NOW())", nativeQuery = true)
+    int createIfAbsent(@Param("prefix") String prefix, @Param("academicYear") String academicYear);
+}
@@ -2,12 +2,15 @@ package com.system.SchoolManagementSystem.transaction.repository;
 
 import com.system.SchoolManagementSystem.transaction.entity.StudentFeeAssignment;
 import com.system.SchoolManagementSystem.transaction.enums.FeeStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,6 +35,12 @@ public interface StudentFeeAssignmentRepository extends JpaRepository<StudentFee
     Optional<StudentFeeAssignment> findByStudentIdAndAcademicYear(@Param("studentId") Long studentId,
                                                                   @Param("academicYear") String academicYear);
 
+    // Locked for payment application, which moves the totals read-modify-write
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT sfa FROM StudentFeeAssignment sfa WHERE sfa.student.id IN :studentIds AND sfa.academicYear = :academicYear")
+    List<StudentFeeAssignment> findForUpdateByStudentIdsAndAcademicYear(@Param("studentIds") Collection<Long> studentIds,
+                                                                        @Param("academicYear") String academicYear);
+
     // NEW: Find by academic year and status
     List<StudentFeeAssignment> findByAcademicYearAndFeeStatus(String academicYear, FeeStatus feeStatus);
 
@@ -0,0 +1,311 @@
+package com.system.SchoolManagementSystem.transaction.repository;
+
+import com.system.SchoolManagementSystem.transaction.entity.BankTransaction;
+import com.system.SchoolManagementSystem.transaction.entity.BankTransactionCandidate;
+import com.system.SchoolManagementSystem.transaction.entity.PaymentTransaction;
+import com.system.SchoolManagementSystem.transaction.enums.PaymentMethod;
+import com.system.SchoolManagementSystem.transaction.enums.TransactionStatus;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Multi-row JDBC inserts for bank imports.
+ *
+ * Every entity uses IDENTITY keys, which makes Hibernate insert one row per round trip no
+ * matter what hibernate.jdbc.batch_size says. This writer sends each chunk as one JDBC batch
+ * (rewritten into multi-row INSERTs by Connector/J's rewriteBatchedStatements), lets
+ * MySQL drop rows whose unique key already exists, then reads the generated ids back with
+ * one IN query per chunk and sets them on the entities.
+ *
+ * Rewritten batches don't report per-row update counts, so a row counts as inserted only when
+ * it carries a value unique to this insert: a random token per chunk for bank transactions,
+ * the receipt number for payments. Anything else under the same key was there before.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class TransactionBulkWriter {
+
+    private static final String INSERT_BANK_TRANSACTION =
+            "INSERT INTO bank_transactions (bank_reference, transaction_date, description, amount, bank_account, " +
+            "bank_name, bank_branch, cheque_number, status, payment_method, student_id, imported_at, matched_at, " +
+            "matched_by, file_name, import_batch_id, sms_sent, sms_sent_at, sms_id, notes, content_fingerprint, " +
+            "insert_token) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE id = id";
+
+    private static final String INSERT_CANDIDATE =
+            "INSERT INTO bank_transaction_candidates (bank_transaction_id, candidate_rank, student_id, " +
+            "admission_number, student_name, pending_amount, score, reasons, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_PAYMENT_TRANSACTION =
+            "INSERT INTO payment_transactions (receipt_number, student_id, fee_assignment_id, installment_id, " +
+            "amount, payment_method, payment_date, bank_transaction_id, bank_reference, is_verified, sms_sent, " +
+            "sms_sent_at, sms_id, notes, created_at, updated_at, payment_for, discount_applied, late_fee_paid, " +
+            "convenience_fee, total_paid) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE id = id";
+
+    // Rows per JDBC batch; also bounds the IN list used to read ids back
+    private static final int CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * Insert bank transactions (and their match candidates). Rows whose bank_reference already
+     * exists are left untouched and reported as duplicates; inserted entities get their id.
+     */
+    public BulkInsertResult<BankTransaction> insertBankTransactions(List<BankTransaction> transactions) {
+        List<BankTransaction> inserted = new ArrayList<>(transactions.size());
+        List<String> duplicateReferences = new ArrayList<>();
+
+        for (int from = 0; from < transactions.size(); from += CHUNK_SIZE) {
+            List<BankTransaction> chunk = transactions.subList(from, Math.min(from + CHUNK_SIZE, transactions.size()));
+            LocalDateTime now = LocalDateTime.now();
+            String insertToken = UUID.randomUUID().toString();
+
+            for (BankTransaction transaction : chunk) {
+                applyBankTransactionDefaults(transaction, now);
+                transaction.setInsertToken(insertToken);
+            }
+            jdbcTemplate.batchUpdate(INSERT_BANK_TRANSACTION, chunk, chunk.size(), this::bindBankTransaction);
+
+            // Read ids back; a row under the same reference without this chunk's token is a duplicate,
+            // even when an earlier import used the same batch id
+            Map<String, Object[]> stored = new HashMap<>();
+            namedParameterJdbcTemplate.query(
+                    "SELECT id, bank_reference, insert_token FROM bank_transactions WHERE bank_reference IN (:refs)",
+                    new MapSqlParameterSource("refs", chunk.stream().map(BankTransaction::getBankReference).toList()),
+                    rs -> {
+                        stored.put(rs.getString(2), new Object[]{rs.getLong(1), rs.getString(3)});
+                    });
+
+            for (BankTransaction transaction : chunk) {
+                Object[] row = stored.get(transaction.getBankReference());
+                if (row != null && insertToken.equals(row[1])) {
+                    transaction.setId((Long) row[0]);
+                    inserted.add(transaction);
+                } else {
+                    duplicateReferences.add(transaction.getBankReference());
+                }
+            }
+        }
+
+        insertCandidates(inserted);
+
+        log.debug("Bulk inserted {} bank transactions ({} duplicates)", inserted.size(), duplicateReferences.size());
+        return new BulkInsertResult<>(inserted, duplicateReferences);
+    }
+
+    /**
+     * Insert payment transactions for already-stored bank transactions. At most one payment
+     * exists per bank transaction; an existing one is kept and the new row reported as a
+     * duplicate. Every payment must carry a receipt number from ReceiptNumberService.
+     */
+    public BulkInsertResult<PaymentTransaction> insertPaymentTransactions(List<PaymentTransaction> payments) {
+        List<PaymentTransaction> inserted = new ArrayList<>(payments.size());
+        List<String> duplicateReferences = new ArrayList<>();
+
+        for (int from = 0; from < payments.size(); from += CHUNK_SIZE) {
+            List<PaymentTransaction> chunk = payments.subList(from, Math.min(from + CHUNK_SIZE, payments.size()));
+            LocalDateTime now = LocalDateTime.now();
+
+            for (PaymentTransaction payment : chunk) {
+                applyPaymentDefaults(payment, now);
+            }
+            jdbcTemplate.batchUpdate(INSERT_PAYMENT_TRANSACTION, chunk, chunk.size(), this::bindPaymentTransaction);
+
+            Map<Long, Object[]> stored = new HashMap<>();
+            namedParameterJdbcTemplate.query(
+                    "SELECT id, bank_transaction_id, receipt_number FROM payment_transactions " +
+                    "WHERE bank_transaction_id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk.stream().map(p -> p.getBankTransaction().getId()).toList()),
+                    rs -> {
+                        stored.put(rs.getLong(2), new Object[]{rs.getLong(1), rs.getString(3)});
+                    });
+
+            // Receipt numbers are never reused, so only this insert can have stored ours
+            for (PaymentTransaction payment : chunk) {
+                Object[] row = stored.get(payment.getBankTransaction().getId());
+                if (row != null && Objects.equals(row[1], payment.getReceiptNumber())) {
+                    payment.setId((Long) row[0]);
+                    inserted.add(payment);
+                } else {
+                    duplicateReferences.add(payment.getBankReference());
+                }
+            }
+        }
+
+        log.debug("Bulk inserted {} payment transactions ({} already existed)", inserted.size(), duplicateReferences.size());
+        return new BulkInsertResult<>(inserted, duplicateReferences);
+    }
+
+    // ========== CANDIDATES ==========
+
+    private void insertCandidates(List<BankTransaction> transactions) {
+        List<BankTransactionCandidate> candidates = new ArrayList<>();
+        for (BankTransaction transaction : transactions) {
+            if (transaction.getMatchCandidates() != null) {
+                candidates.addAll(transaction.getMatchCandidates());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_CANDIDATE, candidates, CHUNK_SIZE, (ps, candidate) -> {
+            ps.setLong(1, candidate.getBankTransaction().getId());
+            ps.setInt(2, candidate.getCandidateRank());
+            ps.setLong(3, candidate.getStudentId());
+            ps.setString(4, candidate.getAdmissionNumber());
+            ps.setString(5, candidate.getStudentName());
+            setDouble(ps, 6, candidate.getPendingAmount());
+            ps.setDouble(7, candidate.getScore());
+            ps.setString(8, candidate.getReasons());
+            ps.setTimestamp(9, now);
+        });
+    }
+
+    // ========== BINDING ==========
+
+    // Mirrors the entity @PrePersist and @CreationTimestamp hooks that JDBC bypasses
+    private void applyBankTransactionDefaults(BankTransaction transaction, LocalDateTime now) {
+        if (transaction.getPaymentMethod() == null) {
+            transaction.setPaymentMethod(PaymentMethod.BANK_TRANSFER);
+        }
+        if (transaction.getStatus() == null) {
+            transaction.setStatus(TransactionStatus.UNVERIFIED);
+        }
+        if (transaction.getSmsSent() == null) {
+            transaction.setSmsSent(false);
+        }
+        if (transaction.getImportedAt() == null) {
+            transaction.setImportedAt(now);
+        }
+    }
+
+    private void applyPaymentDefaults(PaymentTransaction payment, LocalDateTime now) {
+        if (payment.getReceiptNumber() == null || payment.getReceiptNumber().isBlank()) {
+            throw new IllegalArgumentException("Payment for bank transaction "
+                    + payment.getBankTransaction().getId() + " has no receipt number");
+        }
+        if (payment.getBankReference() == null) {
+            payment.setBankReference(payment.getBankTransaction().getBankReference());
+        }
+        if (payment.getTotalPaid() == null) {
+            payment.setTotalPaid(payment.getAmount() - zeroIfNull(payment.getDiscountApplied())
+                    + zeroIfNull(payment.getLateFeePaid()) + zeroIfNull(payment.getConvenienceFee()));
+        }
+        payment.setCreatedAt(now);
+        payment.setUpdatedAt(now);
+    }
+
+    private void bindBankTransaction(PreparedStatement ps, BankTransaction transaction) throws SQLException {
+        ps.setString(1, transaction.getBankReference());
+        ps.setDate(2, Date.valueOf(transaction.getTransactionDate()));
+        ps.setString(3, transaction.getDescription());
+        ps.setDouble(4, transaction.getAmount());
+        ps.setString(5, transaction.getBankAccount());
+        ps.setString(6, transaction.getBankName());
+        ps.setString(7, transaction.getBankBranch());
+        ps.setString(8, transaction.getChequeNumber());
+        ps.setString(9, transaction.getStatus().name());
+        ps.setString(10, transaction.getPaymentMethod().name());
+        setLong(ps, 11, transaction.getStudent() != null ? transaction.getStudent().getId() : null);
+        ps.setTimestamp(12, Timestamp.valueOf(transaction.getImportedAt()));
+        setTimestamp(ps, 13, transaction.getMatchedAt());
+        ps.setString(14, transaction.getMatchedBy() != null ? transaction.getMatchedBy().getId() : null);
+        ps.setString(15, transaction.getFileName());
+        ps.setString(16, transaction.getImportBatchId());
+        ps.setBoolean(17, transaction.getSmsSent());
+        setTimestamp(ps, 18, transaction.getSmsSentAt());
+        ps.setString(19, transaction.getSmsId());
+        ps.setString(20, transaction.getNotes());
+        ps.setString(21, transaction.getContentFingerprint());
+        ps.setString(22, transaction.getInsertToken());
+    }
+
+    private void bindPaymentTransaction(PreparedStatement ps, PaymentTransaction payment) throws SQLException {
+        ps.setString(1, payment.getReceiptNumber());
+        ps.setLong(2, payment.getStudent().getId());
+        setLong(ps, 3, payment.getFeeAssignment() != null ? payment.getFeeAssignment().getId() : null);
+        setLong(ps, 4, payment.getInstallment() != null ? payment.getInstallment().getId() : null);
+        ps.setDouble(5, payment.getAmount());
+        ps.setString(6, payment.getPaymentMethod().name());
+        ps.setTimestamp(7, Timestamp.valueOf(payment.getPaymentDate()));
+        ps.setLong(8, payment.getBankTransaction().getId());
+        ps.setString(9, payment.getBankReference());
+        ps.setBoolean(10, Boolean.TRUE.equals(payment.getIsVerified()));
+        ps.setBoolean(11, Boolean.TRUE.equals(payment.getSmsSent()));
+        setTimestamp(ps, 12, payment.getSmsSentAt());
+        ps.setString(13, payment.getSmsId());
+        ps.setString(14, payment.getNotes());
+        ps.setTimestamp(15, Timestamp.valueOf(payment.getCreatedAt()));
+        ps.setTimestamp(16, Timestamp.valueOf(payment.getUpdatedAt()));
+        ps.setString(17, payment.getPaymentFor());
+        setDouble(ps, 18, payment.getDiscountApplied());
+        setDouble(ps, 19, payment.getLateFeePaid());
+        setDouble(ps, 20, payment.getConvenienceFee());
+        setDouble(ps, 21, payment.getTotalPaid());
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+
+    private static void setTimestamp(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.TIMESTAMP);
+        } else {
+            ps.setTimestamp(index, Timestamp.valueOf(value));
+        }
+    }
+
+    private static double zeroIfNull(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    /**
+     * Rows that were written, and the references of rows that already existed.
+     */
+    @Getter
+    public static class BulkInsertResult<T> {
+        private final List<T> inserted;
+        private final List<String> duplicateReferences;
+
+        public BulkInsertResult(List<T> inserted, List<String> duplicateReferences) {
+            this.inserted = inserted;
+            this.duplicateReferences = duplicateReferences;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.system.SchoolManagementSystem.transaction.service;
+
+import com.system.SchoolManagementSystem.transaction.dto.request.BankTransactionImportRequest;
+import com.system.SchoolManagementSystem.transaction.dto.response.BankTransactionImportResponse;
+import com.system.SchoolManagementSystem.transaction.util.TempFileMultipartFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs bank statement imports as background jobs.
+ *
+ * The upload is copied to a temp file before the request returns, the import id is handed
+ * back immediately, and the pipeline publishes progress to {@link ImportProgressTracker}
+ * where clients follow it over Server-Sent Events.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BankImportJobService {
+
+    private final TransactionService transactionService;
+    private final ImportProgressTracker importProgressTracker;
+
+    @Value("${transaction.import.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private ExecutorService jobExecutor;
+
+    @PostConstruct
+    public void init() {
+        jobExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrentJobs), runnable -> {
+            Thread thread = new Thread(runnable, "bank-import-job-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * Queue an import and return its id. Fails fast only if the upload cannot be stored or the
+     * job cannot be queued.
+     */
+    public String submit(BankTransactionImportRequest request) throws IOException {
+        String fileName = request.getFile().getOriginalFilename() != null
+                ? request.getFile().getOriginalFilename()
+                : "statement";
+
+        TempFileMultipartFile storedFile = TempFileMultipartFile.copyOf(request.getFile());
+        request.setFile(storedFile);
+
+        String importId = importProgressTracker.startImport(fileName);
+        ImportProgressTracker.ImportProgress progress = importProgressTracker.getProgress(importId);
+        progress.setCurrentStatus("Queued");
+
+        try {
+            jobExecutor.execute(() -> {
+                try {
+                    BankTransactionImportResponse response = transactionService.importBankTransactions(request, progress);
+                    if (response.isSuccess()) {
+                        importProgressTracker.completeImport(importId, response);
+                    } else {
+                        importProgressTracker.failImport(importId, response.getMessage(), response);
+                    }
+                } catch (Exception e) {
+                    log.error("❌ Import job {} failed", importId, e);
+                    importProgressTracker.failImport(importId, e.getMessage());
+                } finally {
+                    storedFile.delete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The job will never run, so nothing else would clean up after it
+            storedFile.delete();
+            importProgressTracker.failImport(importId, "Import could not be queued: " + e.getMessage());
+            throw e;
+        }
+
+        log.info("📥 Queued import {} ({} bytes)", importId, storedFile.getSize());
+        return importId;
+    }
+}
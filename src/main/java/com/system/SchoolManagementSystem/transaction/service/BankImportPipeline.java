@@ -0,0 +1,418 @@
+package com.system.SchoolManagementSystem.transaction.service;
+
+import com.system.SchoolManagementSystem.transaction.entity.BankTransaction;
+import com.system.SchoolManagementSystem.transaction.enums.TransactionStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Staged bank statement import: parse → match → dedupe + persist → apply payments.
+ *
+ * Stages run concurrently and are joined by bounded queues, so only a queue's worth of
+ * lines is ever in memory no matter how large the statement is, and parsing of later rows
+ * overlaps with database writes for earlier ones. Matching fans out over a configurable
+ * number of workers; persistence always writes fixed-size batches.
+ */
+@Component
+@Slf4j
+public class BankImportPipeline {
+
+    @Value("${transaction.import.match-parallelism:4}")
+    private int matchParallelism;
+
+    @Value("${transaction.import.persist-batch-size:100}")
+    private int persistBatchSize;
+
+    @Value("${transaction.import.queue-capacity:1000}")
+    private int queueCapacity;
+
+    // How many saved lines / duplicate references are kept for the response
+    @Value("${transaction.import.preview-limit:1000}")
+    private int previewLimit;
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    // Identity sentinels marking the end of a stage's output
+    private static final BankTransaction END_OF_LINES = new BankTransaction();
+    private static final List<BankTransaction> END_OF_BATCHES = new ArrayList<>(0);
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "bank-import-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Bank import pipeline ready: {} match workers, persist batch {}, queue capacity {}",
+                matchParallelism, persistBatchSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Pushes parsed lines into the pipeline, one at a time.
+     */
+    @FunctionalInterface
+    public interface Source {
+        void emit(Consumer<BankTransaction> sink) throws Exception;
+    }
+
+    /**
+     * Run a statement through all stages and block until the last payment is applied.
+     *
+     * @param progress  live progress to publish counts and the current stage to, may be null
+     * @param source    parser stage
+     * @param matcher   per-line matching/validation stage, safe to call from several threads
+     * @param persister dedupes and saves one batch, returning what was saved and skipped
+     * @param applier   creates/apply payments for a saved batch of matched lines, reporting the lines
+     *                  left without an applied payment
+     */
+    public Result run(ImportProgressTracker.ImportProgress progress,
+                      Source source,
+                      UnaryOperator<BankTransaction> matcher,
+                      Function<List<BankTransaction>, TransactionService.ImportBatchResult> persister,
+                      Function<List<BankTransaction>, TransactionService.PaymentBatchResult> applier)
+            throws Exception {
+
+        int workers = Math.max(1, matchParallelism);
+        int batchSize = Math.max(1, persistBatchSize);
+        int capacity = Math.max(batchSize, queueCapacity);
+
+        BlockingQueue<BankTransaction> parsedQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<BankTransaction> matchedQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<List<BankTransaction>> savedQueue = new ArrayBlockingQueue<>(Math.max(2, capacity / batchSize));
+
+        Result result = new Result(previewLimit, progress);
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        long startTime = System.currentTimeMillis();
+
+        List<Future<?>> stages = new ArrayList<>();
+
+        result.stage("Parsing");
+
+        // ========== STAGE 1: PARSE ==========
+        stages.add(executor.submit(stage("parse", aborted, () -> {
+            source.emit(transaction -> {
+                result.addParsed();
+                try {
+                    put(parsedQueue, transaction, aborted);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Import pipeline interrupted");
+                }
+            });
+            result.parsingFinished();
+            for (int i = 0; i < workers; i++) {
+                put(parsedQueue, END_OF_LINES, aborted);
+            }
+        })));
+
+        // ========== STAGE 2: MATCH ==========
+        for (int w = 0; w < workers; w++) {
+            stages.add(executor.submit(stage("match", aborted, () -> {
+                while (true) {
+                    BankTransaction transaction = take(parsedQueue, aborted);
+                    if (transaction == END_OF_LINES) {
+                        put(matchedQueue, END_OF_LINES, aborted);
+                        return;
+                    }
+                    try {
+                        transaction = matcher.apply(transaction);
+                    } catch (Exception e) {
+                        // Matching is best effort; the line is still imported for manual review
+                        log.warn("⚠️ Matching failed for {}: {}", transaction.getBankReference(), e.getMessage());
+                        transaction.setStudent(null);
+                        transaction.setStatus(TransactionStatus.UNVERIFIED);
+                        transaction.setNotes("Auto-matching failed: " + e.getMessage());
+                    }
+                    put(matchedQueue, transaction, aborted);
+                }
+            })));
+        }
+
+        // ========== STAGE 3: DEDUPE AND PERSIST ==========
+        stages.add(executor.submit(stage("persist", aborted, () -> {
+            List<BankTransaction> batch = new ArrayList<>(batchSize);
+            int finishedWorkers = 0;
+            while (finishedWorkers < workers) {
+                BankTransaction transaction = take(matchedQueue, aborted);
+                if (transaction == END_OF_LINES) {
+                    finishedWorkers++;
+                    continue;
+                }
+                batch.add(transaction);
+                if (batch.size() >= batchSize) {
+                    persistBatch(batch, persister, savedQueue, result, aborted);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            result.stage("Saving");
+            if (!batch.isEmpty()) {
+                persistBatch(batch, persister, savedQueue, result, aborted);
+            }
+            result.stage("Applying payments");
+            put(savedQueue, END_OF_BATCHES, aborted);
+        })));
+
+        // ========== STAGE 4: APPLY PAYMENTS ==========
+        stages.add(executor.submit(stage("apply", aborted, () -> {
+            while (true) {
+                List<BankTransaction> saved = take(savedQueue, aborted);
+                if (saved == END_OF_BATCHES) {
+                    return;
+                }
+                // These lines were already counted as saved, so payment failures are tallied on
+                // their own rather than as failed lines
+                try {
+                    TransactionService.PaymentBatchResult applied = applier.apply(saved);
+                    result.addPaymentsCreated(applied.getPaymentsCreated());
+                    result.addPaymentFailures(applied.getFailedLines());
+                } catch (Exception e) {
+                    log.error("❌ Payment application failed for batch of {}", saved.size(), e);
+                    result.addPaymentFailures(saved.size());
+                }
+            }
+        })));
+
+        // ========== WAIT FOR ALL STAGES ==========
+        Exception failure = null;
+        for (Future<?> stage : stages) {
+            try {
+                stage.get();
+            } catch (ExecutionException e) {
+                if (failure == null && !(e.getCause() instanceof CancellationException)) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            } catch (InterruptedException e) {
+                aborted.set(true);
+                Thread.currentThread().interrupt();
+                throw e;
+            }
+        }
+
+        result.elapsedMillis = System.currentTimeMillis() - startTime;
+        log.info("📊 Import pipeline finished in {}ms: {} parsed, {} saved, {} matched, {} duplicates, {} failed, " +
+                        "{} payments, {} payment failures",
+                result.elapsedMillis, result.parsed.get(), result.saved.get(), result.matched.get(),
+                result.duplicates.get(), result.failed.get(), result.paymentsCreated.get(),
+                result.paymentFailures.get());
+
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
+    }
+
+    // ========== STAGE HELPERS ==========
+
+    private void persistBatch(List<BankTransaction> batch,
+                              Function<List<BankTransaction>, TransactionService.ImportBatchResult> persister,
+                              BlockingQueue<List<BankTransaction>> savedQueue,
+                              Result result,
+                              AtomicBoolean aborted) throws InterruptedException {
+        TransactionService.ImportBatchResult batchResult;
+        try {
+            batchResult = persister.apply(batch);
+        } catch (Exception e) {
+            log.error("❌ Failed to persist batch of {} transactions", batch.size(), e);
+            result.addFailed(batch.size());
+            return;
+        }
+
+        List<BankTransaction> matchedForPayment = new ArrayList<>();
+        for (BankTransaction saved : batchResult.getSavedTransactions()) {
+            result.addSaved(saved);
+            if (saved.getStatus() == TransactionStatus.MATCHED) {
+                result.addMatched();
+                if (saved.getStudent() != null) {
+                    matchedForPayment.add(saved);
+                }
+            } else if (saved.getStatus() == TransactionStatus.UNVERIFIED
+                    && saved.getDescription() != null
+                    && saved.getDescription().contains("[VALIDATION ISSUE:")) {
+                result.issues.incrementAndGet();
+            }
+        }
+        result.addDuplicateReferences(batchResult.getDuplicateReferences());
+
+        if (!matchedForPayment.isEmpty()) {
+            put(savedQueue, matchedForPayment, aborted);
+        }
+    }
+
+    private Callable<Void> stage(String name, AtomicBoolean aborted, StageBody body) {
+        return () -> {
+            try {
+                body.run();
+                return null;
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                if (aborted.compareAndSet(false, true)) {
+                    log.error("❌ Import pipeline stage '{}' failed, aborting import", name, e);
+                }
+                throw e;
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface StageBody {
+        void run() throws Exception;
+    }
+
+    private static <E> void put(BlockingQueue<E> queue, E item, AtomicBoolean aborted) throws InterruptedException {
+        while (!queue.offer(item, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            if (aborted.get()) {
+                throw new CancellationException("Import pipeline aborted");
+            }
+        }
+    }
+
+    private static <E> E take(BlockingQueue<E> queue, AtomicBoolean aborted) throws InterruptedException {
+        E item;
+        while ((item = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) == null) {
+            if (aborted.get()) {
+                throw new CancellationException("Import pipeline aborted");
+            }
+        }
+        return item;
+    }
+
+    // ========== RESULT ==========
+
+    public static class Result {
+        private final int previewLimit;
+        private final ImportProgressTracker.ImportProgress progress;
+
+        private final AtomicInteger parsed = new AtomicInteger();
+        private final AtomicInteger saved = new AtomicInteger();
+        private final AtomicInteger matched = new AtomicInteger();
+        private final AtomicInteger issues = new AtomicInteger();
+        private final AtomicInteger duplicates = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger paymentsCreated = new AtomicInteger();
+        // Saved, matched lines whose payment could not be created or applied
+        private final AtomicInteger paymentFailures = new AtomicInteger();
+
+        // Bounded samples for the response; counts above are always exact
+        @Getter
+        private final List<BankTransaction> savedPreview = Collections.synchronizedList(new ArrayList<>());
+        @Getter
+        private final List<String> duplicateReferences = Collections.synchronizedList(new ArrayList<>());
+
+        @Getter
+        private long elapsedMillis;
+
+        Result(int previewLimit, ImportProgressTracker.ImportProgress progress) {
+            this.previewLimit = previewLimit;
+            this.progress = progress;
+        }
+
+        public int getParsed() { return parsed.get(); }
+        public int getSaved() { return saved.get(); }
+        public int getMatched() { return matched.get(); }
+        public int getIssues() { return issues.get(); }
+        public int getDuplicates() { return duplicates.get(); }
+        public int getFailed() { return failed.get(); }
+        public int getPaymentsCreated() { return paymentsCreated.get(); }
+        public int getPaymentFailures() { return paymentFailures.get(); }
+
+        // Counters are mirrored into the tracker's progress so subscribers see them live.
+        // The stage names the earliest stage still running.
+
+        private void stage(String stage) {
+            if (progress != null) {
+                progress.setCurrentStatus(stage);
+            }
+        }
+
+        private void addParsed() {
+            parsed.incrementAndGet();
+            if (progress != null) {
+                progress.getParsedTransactions().incrementAndGet();
+            }
+        }
+
+        private void parsingFinished() {
+            if (progress != null) {
+                progress.getTotalTransactions().set(parsed.get());
+            }
+            stage("Matching");
+        }
+
+        private void addSaved(BankTransaction transaction) {
+            saved.incrementAndGet();
+            if (savedPreview.size() < previewLimit) {
+                savedPreview.add(transaction);
+            }
+            if (progress != null) {
+                progress.getSavedTransactions().incrementAndGet();
+                progress.getProcessedTransactions().incrementAndGet();
+            }
+        }
+
+        private void addMatched() {
+            matched.incrementAndGet();
+            if (progress != null) {
+                progress.getMatchedTransactions().incrementAndGet();
+            }
+        }
+
+        private void addFailed(int count) {
+            failed.addAndGet(count);
+            if (progress != null) {
+                progress.getFailedTransactions().addAndGet(count);
+                progress.getProcessedTransactions().addAndGet(count);
+            }
+        }
+
+        private void addPaymentsCreated(int count) {
+            paymentsCreated.addAndGet(count);
+            if (progress != null) {
+                progress.getPaymentsCreated().addAndGet(count);
+            }
+        }
+
+        private void addPaymentFailures(int count) {
+            paymentFailures.addAndGet(count);
+            if (progress != null) {
+                progress.getPaymentFailures().addAndGet(count);
+            }
+        }
+
+        private void addDuplicateReferences(List<String> references) {
+            duplicates.addAndGet(references.size());
+            if (progress != null) {
+                progress.getDuplicateTransactions().addAndGet(references.size());
+                progress.getProcessedTransactions().addAndGet(references.size());
+            }
+            for (String reference : references) {
+                if (duplicateReferences.size() >= previewLimit) {
+                    return;
+                }
+                duplicateReferences.add(reference);
+            }
+        }
+    }
+}
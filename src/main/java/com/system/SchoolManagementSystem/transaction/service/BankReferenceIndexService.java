@@ -0,0 +1,211 @@
+package com.system.SchoolManagementSystem.transaction.service;
+
+import com.system.SchoolManagementSystem.transaction.repository.BankTransactionRepository;
+import com.system.SchoolManagementSystem.transaction.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warm membership filter over every stored bank_reference.
+ *
+ * A Bloom filter answers "definitely new" for most references of a fresh statement, so the
+ * database is only asked about probable hits. The filter is loaded once in the background,
+ * updated as imports insert rows, and rebuilt periodically or when it fills past its sizing.
+ * A reference the filter misses (e.g. a row written outside an import) can only cause a
+ * skipped pre-check: the unique index on bank_reference still rejects the duplicate insert.
+ */
+@Service
+@Slf4j
+public class BankReferenceIndexService {
+
+    private final BankTransactionRepository bankTransactionRepository;
+    private final TaskScheduler taskScheduler;
+
+    @Value("${transaction.import.reference-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    // Headroom over the current row count, so normal growth doesn't saturate the filter
+    @Value("${transaction.import.reference-filter.growth-factor:2.0}")
+    private double growthFactor;
+
+    private static final int LOAD_PAGE_SIZE = 10_000;
+    private static final long MIN_CAPACITY = 100_000;
+
+    private volatile BloomFilter filter;
+    private volatile boolean loaded;
+    private volatile long builtAt;
+
+    // References inserted while a rebuild is reading the table; replayed into the new filter
+    private volatile Queue<String> insertedDuringRebuild;
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    private final AtomicLong probableHits = new AtomicLong();
+    private final AtomicLong definiteMisses = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    public BankReferenceIndexService(BankTransactionRepository bankTransactionRepository,
+                                     TaskScheduler taskScheduler) {
+        this.bankTransactionRepository = bankTransactionRepository;
+        this.taskScheduler = taskScheduler;
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduleRebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${transaction.import.reference-filter.rebuild-interval-ms:21600000}",
+            initialDelayString = "${transaction.import.reference-filter.rebuild-interval-ms:21600000}")
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    // ========== QUERIES ==========
+
+    /**
+     * False means the reference is certainly not stored. True means it probably is
+     * (or the filter is not loaded yet) and the database must decide.
+     */
+    public boolean mightExist(String bankReference) {
+        if (!loaded) {
+            return true;
+        }
+        boolean hit = filter.mightContain(bankReference);
+        (hit ? probableHits : definiteMisses).incrementAndGet();
+        return hit;
+    }
+
+    /**
+     * Which of the references are already stored. Only probable hits reach the database.
+     */
+    public Set<String> findExisting(Collection<String> bankReferences) {
+        List<String> probable = new ArrayList<>();
+        for (String reference : bankReferences) {
+            if (reference != null && mightExist(reference)) {
+                probable.add(reference);
+            }
+        }
+        if (probable.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < probable.size(); from += 1000) {
+            existing.addAll(bankTransactionRepository.findExistingReferences(
+                    probable.subList(from, Math.min(from + 1000, probable.size()))));
+        }
+        if (loaded) {
+            falsePositives.addAndGet(probable.size() - existing.size());
+        }
+        return existing;
+    }
+
+    // ========== UPDATES ==========
+
+    /**
+     * Record references that have just been stored.
+     */
+    public void addAll(Collection<String> bankReferences) {
+        BloomFilter current = filter;
+        Queue<String> pending = insertedDuringRebuild;
+        for (String reference : bankReferences) {
+            if (current != null) {
+                current.put(reference);
+            }
+            if (pending != null) {
+                pending.add(reference);
+            }
+        }
+        if (current != null && current.isSaturated()) {
+            scheduleRebuild();
+        }
+    }
+
+    public void add(String bankReference) {
+        addAll(Collections.singletonList(bankReference));
+    }
+
+    /**
+     * Rebuild in the background; the current filter keeps answering until the new one is ready.
+     */
+    public void scheduleRebuild() {
+        taskScheduler.schedule(this::rebuild, Instant.now());
+    }
+
+    private void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Queue<String> pending = new ConcurrentLinkedQueue<>();
+        insertedDuringRebuild = pending;
+        try {
+            long startTime = System.currentTimeMillis();
+            long rows = bankTransactionRepository.count();
+            BloomFilter next = BloomFilter.create(Math.max(MIN_CAPACITY, (long) (rows * growthFactor)), falsePositiveRate);
+
+            long afterId = 0;
+            long loadedRows = 0;
+            while (true) {
+                List<Object[]> page = bankTransactionRepository.findReferencesAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+                for (Object[] row : page) {
+                    afterId = (Long) row[0];
+                    next.put((String) row[1]);
+                }
+                loadedRows += page.size();
+                if (page.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+            }
+
+            // Swap first, then replay what was inserted meanwhile
+            filter = next;
+            loaded = true;
+            builtAt = System.currentTimeMillis();
+            for (String reference; (reference = pending.poll()) != null; ) {
+                next.put(reference);
+            }
+
+            log.info("✅ Bank reference filter built in {}ms: {} references, capacity {}, ~{} KB",
+                    builtAt - startTime, loadedRows, next.getExpectedInsertions(), next.estimateHeapBytes() / 1024);
+        } catch (Exception e) {
+            log.error("❌ Failed to build bank reference filter", e);
+        } finally {
+            insertedDuringRebuild = null;
+            for (String reference; (reference = pending.poll()) != null; ) {
+                BloomFilter current = filter;
+                if (current != null) {
+                    current.put(reference);
+                }
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    // ========== STATS ==========
+
+    public Map<String, Object> getStats() {
+        BloomFilter current = filter;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("loaded", loaded);
+        stats.put("builtAt", builtAt);
+        stats.put("references", current != null ? current.getInsertions() : 0);
+        stats.put("capacity", current != null ? current.getExpectedInsertions() : 0);
+        stats.put("expectedFalsePositiveRate", current != null ? current.getExpectedFalsePositiveProbability() : 0);
+        stats.put("heapBytes", current != null ? current.estimateHeapBytes() : 0);
+        stats.put("probableHits", probableHits.get());
+        stats.put("definiteMisses", definiteMisses.get());
+        stats.put("falsePositives", falsePositives.get());
+        return stats;
+    }
+}
@@ -1,20 +1,44 @@
 package com.system.SchoolManagementSystem.transaction.service;
 
+import com.system.SchoolManagementSystem.transaction.dto.response.BankTransactionImportResponse;
 import lombok.Data;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class ImportProgressTracker {
 
+    // Shared application scheduler (spring.task.scheduling.*) used for retention
+    private final TaskScheduler taskScheduler;
+
+    @Value("${transaction.import.progress.retention-minutes:5}")
+    private long retentionMinutes;
+
+    @Value("${transaction.import.progress.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
     private final Map<String, ImportProgress> activeImports = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
 
     @Data
     public static class ImportProgress {
@@ -27,9 +51,17 @@ public class ImportProgressTracker {
         private AtomicInteger matchedTransactions = new AtomicInteger(0);
         private AtomicInteger failedTransactions = new AtomicInteger(0);
 
-        private String currentStatus = "Initializing";
-        private boolean isComplete = false;
-        private String errorMessage;
+        // Live counters published by BankImportPipeline
+        private AtomicInteger parsedTransactions = new AtomicInteger(0);
+        private AtomicInteger savedTransactions = new AtomicInteger(0);
+        private AtomicInteger duplicateTransactions = new AtomicInteger(0);
+        private AtomicInteger paymentsCreated = new AtomicInteger(0);
+        private AtomicInteger paymentFailures = new AtomicInteger(0);
+
+        private volatile String currentStatus = "Initializing";
+        private volatile boolean isComplete = false;
+        private volatile String errorMessage;
+        private volatile BankTransactionImportResponse response;
 
         public ImportProgress(String importId, String fileName) {
             this.importId = importId;
@@ -49,11 +81,36 @@ public class ImportProgressTracker {
         public int getRemainingTransactions() {
             return totalTransactions.get() - processedTransactions.get();
         }
+
+        /**
+         * Point-in-time view sent to progress subscribers.
+         */
+        public Map<String, Object> toSnapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("importId", importId);
+            snapshot.put("fileName", fileName);
+            snapshot.put("stage", currentStatus);
+            snapshot.put("parsed", parsedTransactions.get());
+            snapshot.put("matched", matchedTransactions.get());
+            snapshot.put("saved", savedTransactions.get());
+            snapshot.put("duplicates", duplicateTransactions.get());
+            snapshot.put("failed", failedTransactions.get());
+            snapshot.put("paymentsCreated", paymentsCreated.get());
+            snapshot.put("paymentFailures", paymentFailures.get());
+            snapshot.put("total", totalTransactions.get());
+            snapshot.put("progressPercentage", getProgressPercentage());
+            snapshot.put("complete", isComplete);
+            snapshot.put("elapsedMs", getElapsedTime());
+            if (errorMessage != null) {
+                snapshot.put("error", errorMessage);
+            }
+            return snapshot;
+        }
     }
 
     public String startImport(String fileName) {
-        String importId = "import_" + System.currentTimeMillis() + "_" +
-                fileName.hashCode();
+        // Unique even when the same file is uploaded twice in one millisecond
+        String importId = "import_" + UUID.randomUUID();
 
         ImportProgress progress = new ImportProgress(importId, fileName);
         activeImports.put(importId, progress);
@@ -86,8 +143,13 @@ public class ImportProgressTracker {
     }
 
     public void completeImport(String importId) {
+        completeImport(importId, null);
+    }
+
+    public void completeImport(String importId, BankTransactionImportResponse response) {
         ImportProgress progress = activeImports.get(importId);
         if (progress != null) {
+            progress.response = response;
             progress.isComplete = true;
             progress.currentStatus = "Completed";
 
@@ -98,27 +160,25 @@ public class ImportProgressTracker {
                     progress.failedTransactions.get(),
                     progress.getElapsedTime());
 
-            // Remove after 5 minutes
-            new java.util.Timer().schedule(
-                    new java.util.TimerTask() {
-                        @Override
-                        public void run() {
-                            activeImports.remove(importId);
-                        }
-                    },
-                    5 * 60 * 1000
-            );
+            finish(progress, "complete");
         }
     }
 
     public void failImport(String importId, String error) {
+        failImport(importId, error, null);
+    }
+
+    public void failImport(String importId, String error, BankTransactionImportResponse response) {
         ImportProgress progress = activeImports.get(importId);
         if (progress != null) {
+            progress.response = response;
             progress.isComplete = true;
             progress.currentStatus = "Failed";
             progress.errorMessage = error;
 
             log.error("Import {} failed: {}", importId, error);
+
+            finish(progress, "failed");
         }
     }
 
@@ -129,4 +189,92 @@ public class ImportProgressTracker {
     public Map<String, ImportProgress> getActiveImports() {
         return new HashMap<>(activeImports);
     }
-}
\ No newline at end of file
+
+    // ========== SERVER-SENT EVENTS ==========
+
+    /**
+     * Subscribe to progress events for an import, or null if the import is unknown.
+     * A finished import gets its final event straight away.
+     */
+    public SseEmitter subscribe(String importId) {
+        ImportProgress progress = activeImports.get(importId);
+        if (progress == null) {
+            return null;
+        }
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        if (progress.isComplete) {
+            sendFinal(emitter, progress, "Failed".equals(progress.currentStatus) ? "failed" : "complete");
+            return emitter;
+        }
+
+        List<SseEmitter> emitters = subscribers.computeIfAbsent(importId, id -> new CopyOnWriteArrayList<>());
+        emitters.add(emitter);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+
+        // The import may have finished while we were registering
+        if (progress.isComplete && emitters.remove(emitter)) {
+            sendFinal(emitter, progress, "Failed".equals(progress.currentStatus) ? "failed" : "complete");
+            return emitter;
+        }
+
+        send(emitter, "progress", progress.toSnapshot());
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${transaction.import.progress.publish-interval-ms:500}")
+    public void publishProgress() {
+        for (Map.Entry<String, List<SseEmitter>> entry : subscribers.entrySet()) {
+            ImportProgress progress = activeImports.get(entry.getKey());
+            if (progress == null || progress.isComplete || entry.getValue().isEmpty()) {
+                continue;
+            }
+            Map<String, Object> snapshot = progress.toSnapshot();
+            for (SseEmitter emitter : entry.getValue()) {
+                if (!send(emitter, "progress", snapshot)) {
+                    entry.getValue().remove(emitter);
+                }
+            }
+        }
+    }
+
+    private void finish(ImportProgress progress, String eventName) {
+        List<SseEmitter> emitters = subscribers.remove(progress.importId);
+        if (emitters != null) {
+            for (SseEmitter emitter : emitters) {
+                sendFinal(emitter, progress, eventName);
+            }
+        }
+
+        taskScheduler.schedule(
+                () -> {
+                    activeImports.remove(progress.importId);
+                    subscribers.remove(progress.importId);
+                },
+                Instant.now().plus(Duration.ofMinutes(retentionMinutes))
+        );
+    }
+
+    private void sendFinal(SseEmitter emitter, ImportProgress progress, String eventName) {
+        Map<String, Object> payload = progress.toSnapshot();
+        if (progress.response != null) {
+            payload.put("result", progress.response);
+        }
+        if (send(emitter, eventName, payload)) {
+            emitter.complete();
+        }
+    }
+
+    private boolean send(SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the emitter is dropped by its completion callbacks
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
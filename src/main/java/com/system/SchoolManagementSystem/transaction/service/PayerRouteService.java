@@ -0,0 +1,135 @@
+package com.system.SchoolManagementSystem.transaction.service;
+
+import com.system.SchoolManagementSystem.transaction.entity.BankTransaction;
+import com.system.SchoolManagementSystem.transaction.entity.PayerRoute;
+import com.system.SchoolManagementSystem.transaction.repository.PayerRouteRepository;
+import com.system.SchoolManagementSystem.transaction.util.NormalizedNarration;
+import com.system.SchoolManagementSystem.transaction.util.PayerRouteTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recurring payers, routed straight to the student staff last confirmed for them.
+ *
+ * Manual matches and payment verifications teach the table; the matcher asks it before any
+ * other strategy, so the parents who pay from the same number every term cost one hash probe
+ * per line. Routes live in memory (loaded on first use) and are written through to
+ * payer_routes so they survive restarts.
+ */
+@Service
+@Slf4j
+public class PayerRouteService {
+
+    private final PayerRouteRepository payerRouteRepository;
+
+    @Value("${transaction.matching.routes.enabled:true}")
+    private boolean enabled;
+
+    private final PayerRouteTable table;
+
+    private volatile boolean loaded;
+
+    private final AtomicLong routed = new AtomicLong();
+    private final AtomicLong unrouted = new AtomicLong();
+    private final AtomicLong confirmed = new AtomicLong();
+
+    public PayerRouteService(PayerRouteRepository payerRouteRepository,
+                             @Value("${transaction.matching.routes.min-confidence:1.5}") double minConfidence,
+                             @Value("${transaction.matching.routes.half-life-days:180}") double halfLifeDays) {
+        this.payerRouteRepository = payerRouteRepository;
+        this.table = new PayerRouteTable(minConfidence, halfLifeDays);
+    }
+
+    // ========== LOOKUP ==========
+
+    /**
+     * Student id the payer of this line is routed to, if a confident route exists.
+     */
+    public Optional<Long> route(BankTransaction transaction, NormalizedNarration narration) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        ensureLoaded();
+        Long studentId = table.lookup(PayerRouteTable.keyOf(narration, transaction.getBankAccount()),
+                System.currentTimeMillis());
+        (studentId != null ? routed : unrouted).incrementAndGet();
+        return Optional.ofNullable(studentId);
+    }
+
+    // ========== LEARNING ==========
+
+    /**
+     * Staff confirmed this line belongs to the student: strengthen (or move) its payer's route.
+     * Never fails the caller; a route that isn't stored is only a missed shortcut.
+     */
+    @Transactional
+    public void recordConfirmed(BankTransaction transaction, Long studentId) {
+        if (!enabled || transaction == null || studentId == null) {
+            return;
+        }
+        String key = PayerRouteTable.keyOf(NormalizedNarration.of(transaction.getDescription()),
+                transaction.getBankAccount());
+        if (key == null) {
+            return;
+        }
+
+        try {
+            ensureLoaded();
+            PayerRouteTable.Route route = table.confirm(key, studentId, System.currentTimeMillis());
+            payerRouteRepository.upsert(key, route.getStudentId(), route.getConfidence(),
+                    route.getConfirmations(), route.getContradictions(), toDateTime(route.getUpdatedAtMillis()));
+            confirmed.incrementAndGet();
+            log.debug("🧭 Payer route {} → student {} (confidence {})", key, route.getStudentId(),
+                    String.format("%.2f", route.getConfidence()));
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to record payer route {}: {}", key, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("payerRoutes", table.size());
+        stats.put("routeHits", routed.get());
+        stats.put("routeMisses", unrouted.get());
+        stats.put("routeConfirmations", confirmed.get());
+        return stats;
+    }
+
+    // ========== LOADING ==========
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            try {
+                for (PayerRoute entity : payerRouteRepository.findAll()) {
+                    table.put(entity.getRouteKey(), new PayerRouteTable.Route(entity.getStudentId(),
+                            entity.getConfidence(), entity.getConfirmations(), entity.getContradictions(),
+                            entity.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()));
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to load payer routes: {}", e.getMessage());
+            }
+            loaded = true;
+            log.info("✅ Payer route table ready: {} routes", table.size());
+        }
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
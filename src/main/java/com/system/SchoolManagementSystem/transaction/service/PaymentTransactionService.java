@@ -10,6 +10,7 @@ import com.system.SchoolManagementSystem.transaction.enums.TransactionStatus;
 import com.system.SchoolManagementSystem.transaction.repository.BankTransactionRepository;
 import com.system.SchoolManagementSystem.transaction.repository.PaymentTransactionRepository;
 import com.system.SchoolManagementSystem.transaction.repository.StudentFeeAssignmentRepository;
+import com.system.SchoolManagementSystem.transaction.repository.TransactionBulkWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -18,6 +19,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -32,6 +34,8 @@ public class PaymentTransactionService {
     private final BankTransactionRepository bankTransactionRepository;
     private final StudentRepository studentRepository;
     private final StudentFeeAssignmentRepository feeAssignmentRepository;
+    private final TransactionBulkWriter transactionBulkWriter;
+    private final ReceiptNumberService receiptNumberService;
 
     /**
      * Create payment transaction from matched bank transaction - UPDATED
@@ -68,23 +72,7 @@ public class PaymentTransactionService {
         }
 
         // Now create the payment transaction with the saved bank transaction
-        PaymentTransaction payment = PaymentTransaction.builder()
-                .student(student)
-                .amount(savedBankTransaction.getAmount())
-                .paymentMethod(savedBankTransaction.getPaymentMethod())
-                .paymentDate(savedBankTransaction.getTransactionDate().atStartOfDay())
-                .bankTransaction(savedBankTransaction) // Use saved transaction
-                .bankReference(savedBankTransaction.getBankReference())
-                .isVerified(false) // Not verified yet, just matched
-                .smsSent(savedBankTransaction.getSmsSent())
-                .smsSentAt(savedBankTransaction.getSmsSentAt())
-                .smsId(savedBankTransaction.getSmsId())
-                .notes("Auto-created from matched bank transaction: " + savedBankTransaction.getDescription())
-                .paymentFor("SCHOOL_FEE")
-                .discountApplied(0.0)
-                .lateFeePaid(0.0)
-                .convenienceFee(0.0)
-                .build();
+        PaymentTransaction payment = buildFromMatchedBankTransaction(savedBankTransaction);
 
         PaymentTransaction saved = paymentTransactionRepository.save(payment);
 
@@ -104,6 +92,58 @@ public class PaymentTransactionService {
         return saved;
     }
 
+    /**
+     * Bulk variant for imports: one multi-row insert for already-saved matched bank
+     * transactions that have no payment yet. Each created payment is linked back in memory.
+     */
+    public List<PaymentTransaction> createFromMatchedBankTransactions(List<BankTransaction> bankTransactions) {
+        List<PaymentTransaction> payments = new ArrayList<>(bankTransactions.size());
+        for (BankTransaction bankTransaction : bankTransactions) {
+            if (bankTransaction.getId() == null || bankTransaction.getStudent() == null
+                    || bankTransaction.getPaymentTransaction() != null) {
+                continue;
+            }
+            payments.add(buildFromMatchedBankTransaction(bankTransaction));
+        }
+        if (payments.isEmpty()) {
+            return payments;
+        }
+
+        TransactionBulkWriter.BulkInsertResult<PaymentTransaction> result =
+                transactionBulkWriter.insertPaymentTransactions(payments);
+        for (PaymentTransaction payment : result.getInserted()) {
+            payment.getBankTransaction().setPaymentTransaction(payment);
+        }
+        if (!result.getDuplicateReferences().isEmpty()) {
+            log.warn("Payment transactions already existed for {} bank transaction(s)",
+                    result.getDuplicateReferences().size());
+        }
+
+        log.info("✅ Bulk created {} payment transactions", result.getInserted().size());
+        return result.getInserted();
+    }
+
+    private PaymentTransaction buildFromMatchedBankTransaction(BankTransaction savedBankTransaction) {
+        return PaymentTransaction.builder()
+                .receiptNumber(receiptNumberService.next(ReceiptNumberService.RECEIPT_PREFIX))
+                .student(savedBankTransaction.getStudent())
+                .amount(savedBankTransaction.getAmount())
+                .paymentMethod(savedBankTransaction.getPaymentMethod())
+                .paymentDate(savedBankTransaction.getTransactionDate().atStartOfDay())
+                .bankTransaction(savedBankTransaction) // Use saved transaction
+                .bankReference(savedBankTransaction.getBankReference())
+                .isVerified(false) // Not verified yet, just matched
+                .smsSent(savedBankTransaction.getSmsSent())
+                .smsSentAt(savedBankTransaction.getSmsSentAt())
+                .smsId(savedBankTransaction.getSmsId())
+                .notes("Auto-created from matched bank transaction: " + savedBankTransaction.getDescription())
+                .paymentFor("SCHOOL_FEE")
+                .discountApplied(0.0)
+                .lateFeePaid(0.0)
+                .convenienceFee(0.0)
+                .build();
+    }
+
     /**
      * Alternative: Create payment transaction after bank transactions are saved
      * Use this in batch processing
@@ -192,6 +232,7 @@ public class PaymentTransactionService {
         }
 
         PaymentTransaction payment = PaymentTransaction.builder()
+                .receiptNumber(receiptNumberService.next(ReceiptNumberService.RECEIPT_PREFIX))
                 .student(student)
                 .feeAssignment(feeAssignment)
                 .amount(request.getAmount())
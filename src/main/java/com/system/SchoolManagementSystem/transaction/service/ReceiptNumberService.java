@@ -0,0 +1,156 @@
+package com.system.SchoolManagementSystem.transaction.service;
+
+import com.system.SchoolManagementSystem.termmanagement.entity.AcademicTerm;
+import com.system.SchoolManagementSystem.termmanagement.service.TermService;
+import com.system.SchoolManagementSystem.transaction.entity.ReceiptCounter;
+import com.system.SchoolManagementSystem.transaction.repository.ReceiptCounterRepository;
+import com.system.SchoolManagementSystem.transaction.util.ReceiptBlock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues receipt numbers such as RC-2026-000123, unique per prefix and academic year.
+ *
+ * Each node reserves a block of numbers at a time by moving the prefix/year row in
+ * receipt_counters forward under a row lock, in its own short transaction, and then issues
+ * numbers from that block in memory with no database round trip. Two nodes never hold the same
+ * block, and a restart always reserves a new one, so numbers are never issued twice; numbers
+ * left in a block when a node stops are skipped, so receipts can have gaps.
+ */
+@Service
+@Slf4j
+public class ReceiptNumberService {
+
+    public static final String RECEIPT_PREFIX = "RC";
+    public static final String MANUAL_PREFIX = "MANUAL";
+
+    private final ReceiptCounterRepository receiptCounterRepository;
+    private final TermService termService;
+    private final TransactionTemplate reserveTransaction;
+    private final int blockSize;
+    private final long yearRefreshMillis;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private volatile String currentYear;
+    private volatile long currentYearResolvedAt;
+
+    public ReceiptNumberService(ReceiptCounterRepository receiptCounterRepository,
+                                TermService termService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${transaction.receipts.block-size:100}") int blockSize,
+                                @Value("${transaction.receipts.year-refresh-ms:60000}") long yearRefreshMillis) {
+        this.receiptCounterRepository = receiptCounterRepository;
+        this.termService = termService;
+        // The block must stay reserved even if the payment that asked for it rolls back
+        this.reserveTransaction = new TransactionTemplate(transactionManager);
+        this.reserveTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = Math.max(1, blockSize);
+        this.yearRefreshMillis = yearRefreshMillis;
+    }
+
+    // ========== ISSUING ==========
+
+    /**
+     * Next receipt number for the prefix in the current academic year.
+     */
+    public String next(String prefix) {
+        return next(prefix, currentAcademicYear());
+    }
+
+    public String next(String prefix, String academicYear) {
+        String year = yearKey(academicYear);
+        Counter counter = counters.computeIfAbsent(prefix + "|" + year, key -> new Counter(prefix, year));
+        return String.format("%s-%s-%06d", prefix, year, counter.take());
+    }
+
+    // "2026-2027" and "2026" share a counter, since both print as 2026
+    private static String yearKey(String academicYear) {
+        if (academicYear == null || academicYear.isBlank()) {
+            return String.valueOf(Year.now().getValue());
+        }
+        return academicYear.split("-")[0].trim();
+    }
+
+    /**
+     * Numbers for one prefix/year. Takes are lock-free; only the thread that finds the block
+     * used up locks, to reserve the next one.
+     */
+    private final class Counter {
+        private final String prefix;
+        private final String academicYear;
+        private volatile ReceiptBlock block = ReceiptBlock.EMPTY;
+
+        Counter(String prefix, String academicYear) {
+            this.prefix = prefix;
+            this.academicYear = academicYear;
+        }
+
+        long take() {
+            while (true) {
+                ReceiptBlock current = block;
+                long value = current.take();
+                if (value >= 0) {
+                    return value;
+                }
+                refill(current);
+            }
+        }
+
+        private synchronized void refill(ReceiptBlock exhausted) {
+            // Another thread may have refilled while this one waited
+            if (block == exhausted) {
+                block = reserve(prefix, academicYear);
+            }
+        }
+    }
+
+    // ========== RESERVING ==========
+
+    private ReceiptBlock reserve(String prefix, String academicYear) {
+        return reserveTransaction.execute(status -> {
+            ReceiptCounter counter = receiptCounterRepository.findForUpdate(prefix, academicYear)
+                    .orElseGet(() -> {
+                        receiptCounterRepository.createIfAbsent(prefix, academicYear);
+                        return receiptCounterRepository.findForUpdate(prefix, academicYear)
+                                .orElseThrow(() -> new IllegalStateException(
+                                        "Receipt counter missing for " + prefix + "-" + academicYear));
+                    });
+
+            long start = counter.getNextValue();
+            counter.setNextValue(start + blockSize);
+            counter.setUpdatedAt(LocalDateTime.now());
+            receiptCounterRepository.save(counter);
+
+            log.debug("🧾 Reserved receipt numbers {}-{} {} to {}",
+                    prefix, academicYear, start, start + blockSize - 1);
+            return new ReceiptBlock(start, start + blockSize);
+        });
+    }
+
+    // ========== ACADEMIC YEAR ==========
+
+    // Looked up at most once per refresh interval, so issuing a number never waits on a query
+    private String currentAcademicYear() {
+        long now = System.currentTimeMillis();
+        String year = currentYear;
+        if (year == null || now - currentYearResolvedAt > yearRefreshMillis) {
+            year = termService.getCurrentTerm()
+                    .map(AcademicTerm::getAcademicYear)
+                    .orElse(null);
+            currentYear = yearKey(year);
+            currentYearResolvedAt = now;
+            year = currentYear;
+        }
+        return year;
+    }
+}
@@ -0,0 +1,201 @@
+package com.system.SchoolManagementSystem.transaction.service;
+
+import com.system.SchoolManagementSystem.transaction.entity.BankStatementImport;
+import com.system.SchoolManagementSystem.transaction.entity.BankTransaction;
+import com.system.SchoolManagementSystem.transaction.repository.BankStatementImportRepository;
+import com.system.SchoolManagementSystem.transaction.util.BankStatementParser;
+import com.system.SchoolManagementSystem.transaction.util.StatementFingerprint;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Statement-level idempotency for bank imports.
+ *
+ * Each import is recorded with the SHA-256 of the file and the date range it covered, as
+ * completed or failed. A byte-identical re-upload of a completed import is recognised before
+ * parsing; a failed one is simply imported again. For an overlapping
+ * statement of the same bank account, lines dated before the account's watermark (the latest
+ * date already imported) are dropped before matching; lines on the watermark date itself
+ * still go through, because the previous statement may have ended part way through that day,
+ * and the usual reference / fingerprint duplicate checks sort them out.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatementImportRegistry {
+
+    private final BankStatementImportRepository bankStatementImportRepository;
+
+    @Value("${transaction.import.idempotency.file-hash-enabled:true}")
+    private boolean fileHashEnabled;
+
+    @Value("${transaction.import.idempotency.watermark-enabled:true}")
+    private boolean watermarkEnabled;
+
+    /**
+     * Hash the upload and look for an earlier successful import of the same bytes.
+     */
+    public Run begin(MultipartFile file, String bankAccount, String importBatchId) throws IOException {
+        String fileHash = null;
+        BankStatementImport previousImport = null;
+        if (fileHashEnabled) {
+            try (InputStream in = file.getInputStream()) {
+                fileHash = StatementFingerprint.ofStream(in);
+            }
+            previousImport = bankStatementImportRepository.findByFileHash(fileHash)
+                    .filter(statementImport -> statementImport.getStatus() == BankStatementImport.ImportStatus.COMPLETED)
+                    .orElse(null);
+        }
+
+        // Without an explicit account every statement lands in DEFAULT_ACCOUNT; no safe watermark there
+        LocalDate watermark = null;
+        if (watermarkEnabled && previousImport == null && bankAccount != null && !bankAccount.isBlank()) {
+            watermark = bankStatementImportRepository.findWatermark(bankAccount);
+        }
+
+        if (watermark != null) {
+            log.info("🔖 Watermark for account {}: lines before {} are already imported", bankAccount, watermark);
+        }
+        return new Run(file, bankAccount, importBatchId, fileHash, previousImport, watermark);
+    }
+
+    /**
+     * Record a finished import so the same file is short-circuited next time and the
+     * account watermark moves forward.
+     */
+    public void complete(Run run, int linesParsed, int linesSaved) {
+        if (run.lastDate == null) {
+            return;
+        }
+        record(run, linesParsed, linesSaved, BankStatementImport.ImportStatus.COMPLETED);
+    }
+
+    /**
+     * Record an import that failed or only partly succeeded. It neither short-circuits a
+     * re-upload nor moves the watermark, so the file can be imported again. Never throws,
+     * so it cannot hide the failure that led here.
+     */
+    public void fail(Run run, int linesParsed, int linesSaved) {
+        try {
+            record(run, linesParsed, linesSaved, BankStatementImport.ImportStatus.FAILED);
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Could not record failed import of statement {}: {}", run.fileHash, e.getMessage());
+        }
+    }
+
+    private void record(Run run, int linesParsed, int linesSaved, BankStatementImport.ImportStatus status) {
+        if (run.fileHash == null) {
+            return;
+        }
+        // One row per file: a later run of a failed file replaces its row
+        Optional<BankStatementImport> existing = bankStatementImportRepository.findByFileHash(run.fileHash);
+        if (existing.isPresent()) {
+            if (existing.get().getStatus() == BankStatementImport.ImportStatus.COMPLETED) {
+                log.info("Statement {} was already recorded by another import", run.fileHash);
+                return;
+            }
+            bankStatementImportRepository.delete(existing.get());
+        }
+        BankStatementImport statementImport = BankStatementImport.builder()
+                .fileHash(run.fileHash)
+                .fileName(run.fileName)
+                .fileSize(run.fileSize)
+                .bankAccount(run.bankAccount)
+                .importBatchId(run.importBatchId)
+                .firstTransactionDate(run.firstDate)
+                .lastTransactionDate(run.lastDate)
+                .linesParsed(linesParsed)
+                .linesSaved(linesSaved)
+                .linesSkippedBeforeWatermark(run.skippedBeforeWatermark)
+                .status(status)
+                .build();
+        try {
+            bankStatementImportRepository.save(statementImport);
+        } catch (DataIntegrityViolationException e) {
+            // The same file finished importing concurrently; its record is as good as ours
+            log.info("Statement {} was already recorded by another import", run.fileHash);
+        }
+    }
+
+    // ========== PER-IMPORT STATE ==========
+
+    /**
+     * State of one import: the previous import of the same file, the watermark in force,
+     * and the date range and counts seen so far. Used from the single parse thread only.
+     */
+    @Getter
+    public static class Run {
+        private final String fileName;
+        private final long fileSize;
+        private final String bankAccount;
+        private final String importBatchId;
+        private final String fileHash;
+        private final BankStatementImport previousImport;
+        private final LocalDate watermark;
+
+        private LocalDate firstDate;
+        private LocalDate lastDate;
+        private int skippedBeforeWatermark;
+
+        // Identical reference-less lines seen so far in this statement, by content
+        private final Map<String, Integer> occurrences = new HashMap<>();
+
+        Run(MultipartFile file, String bankAccount, String importBatchId, String fileHash,
+            BankStatementImport previousImport, LocalDate watermark) {
+            this.fileName = file.getOriginalFilename();
+            this.fileSize = file.getSize();
+            this.bankAccount = bankAccount;
+            this.importBatchId = importBatchId;
+            this.fileHash = fileHash;
+            this.previousImport = previousImport;
+            this.watermark = watermark;
+        }
+
+        public boolean isAlreadyImported() {
+            return previousImport != null;
+        }
+
+        /**
+         * Fingerprint a parsed line and decide whether it still needs processing.
+         *
+         * @return false if the line is older than the account watermark
+         */
+        public boolean accept(BankTransaction transaction) {
+            LocalDate date = transaction.getTransactionDate();
+            if (date != null) {
+                if (firstDate == null || date.isBefore(firstDate)) {
+                    firstDate = date;
+                }
+                if (lastDate == null || date.isAfter(lastDate)) {
+                    lastDate = date;
+                }
+                if (watermark != null && date.isBefore(watermark)) {
+                    skippedBeforeWatermark++;
+                    return false;
+                }
+            }
+
+            if (BankStatementParser.isGeneratedReference(transaction.getBankReference())) {
+                String content = transaction.getTransactionDate() + "|" + transaction.getAmount() + "|"
+                        + StatementFingerprint.normalizeNarration(transaction.getDescription());
+                int occurrence = occurrences.merge(content, 1, Integer::sum) - 1;
+                transaction.setContentFingerprint(StatementFingerprint.ofRow(
+                        transaction.getTransactionDate(), transaction.getAmount(),
+                        transaction.getDescription(), occurrence));
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.system.SchoolManagementSystem.transaction.service;
+
+import com.system.SchoolManagementSystem.transaction.entity.BankStatementSchema;
+import com.system.SchoolManagementSystem.transaction.repository.BankStatementSchemaRepository;
+import com.system.SchoolManagementSystem.transaction.util.StatementFingerprint;
+import com.system.SchoolManagementSystem.transaction.util.StatementSchema;
+import com.system.SchoolManagementSystem.transaction.util.StatementSchema.DateLayout;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Statement layouts by header fingerprint: a built-in catalogue of the bank exports we
+ * receive most, plus every layout learned from an upload, persisted so it survives restarts.
+ * A file whose header is found here is parsed straight away, without sampling rows.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatementSchemaRegistry {
+
+    private final BankStatementSchemaRepository bankStatementSchemaRepository;
+
+    private final Map<String, StatementSchema> schemas = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * Known schema for the header, or null if the layout has to be inferred.
+     */
+    public StatementSchema find(String headerFingerprint) {
+        ensureLoaded();
+        return schemas.get(headerFingerprint);
+    }
+
+    /**
+     * Infer the schema of a new layout from its first rows. Confident results are kept
+     * for the next file with the same header.
+     */
+    public StatementSchema learn(String headerFingerprint, List<String> headers, List<String[]> samples) {
+        StatementSchema schema = StatementSchema.infer(headerFingerprint, headers, samples);
+        log.info("🧭 Inferred statement schema from {} rows: {}", samples.size(), schema);
+
+        if (schema.isConfident() && schemas.putIfAbsent(headerFingerprint, schema) == null) {
+            try {
+                bankStatementSchemaRepository.save(toEntity(schema));
+            } catch (DataIntegrityViolationException e) {
+                // Learned concurrently by another import
+                log.debug("Statement schema {} already stored", headerFingerprint);
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to store statement schema {}: {}", headerFingerprint, e.getMessage());
+            }
+        }
+        return schema;
+    }
+
+    // ========== CATALOGUE ==========
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            registerKnownFormats();
+            try {
+                for (BankStatementSchema entity : bankStatementSchemaRepository.findAll()) {
+                    schemas.putIfAbsent(entity.getHeaderFingerprint(), fromEntity(entity));
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to load stored statement schemas: {}", e.getMessage());
+            }
+            loaded = true;
+            log.info("✅ Statement schema registry ready: {} layouts", schemas.size());
+        }
+    }
+
+    // CSV exports as downloaded from each bank's internet banking / the M-Pesa org portal
+    private void registerKnownFormats() {
+        known("Equity Bank", List.of("Transaction Date", "Value Date", "Narrative", "Transaction Reference",
+                "Debit", "Credit", "Running Balance"), DateLayout.DD_MM_YYYY_SLASH);
+        known("KCB", List.of("Transaction Date", "Value Date", "Transaction Details", "Bank Reference",
+                "Money Out", "Money In", "Ledger Balance"), DateLayout.DD_MMM_YYYY_SPACE);
+        known("Co-operative Bank", List.of("Posting Date", "Value Date", "Narration", "Reference No",
+                "Debit Amount", "Credit Amount", "Balance"), DateLayout.DD_MM_YYYY_SLASH);
+        known("M-Pesa", List.of("Receipt No.", "Completion Time", "Initiation Time", "Details",
+                "Transaction Status", "Paid In", "Withdrawn", "Balance", "Balance Confirmed", "Reason Type",
+                "Other Party Info", "Linked Transaction ID", "A/C No."), DateLayout.YYYY_MM_DD_DASH);
+    }
+
+    private void known(String formatName, List<String> headers, DateLayout dateLayout) {
+        String fingerprint = StatementFingerprint.ofHeader("csv", headers);
+        schemas.put(fingerprint, StatementSchema.compile(fingerprint, formatName, headers, dateLayout, '.'));
+    }
+
+    // ========== MAPPING ==========
+
+    private static BankStatementSchema toEntity(StatementSchema schema) {
+        return BankStatementSchema.builder()
+                .headerFingerprint(schema.getHeaderFingerprint())
+                .formatName(schema.getFormatName())
+                .dateColumn(schema.getDateColumn())
+                .descriptionColumn(schema.getDescriptionColumn())
+                .amountColumn(schema.getAmountColumn())
+                .creditColumn(schema.getCreditColumn())
+                .debitColumn(schema.getDebitColumn())
+                .referenceColumn(schema.getReferenceColumn())
+                .statusColumn(schema.getStatusColumn())
+                .dateLayout(schema.getDateLayout() != null ? schema.getDateLayout().name() : null)
+                .amountConvention(schema.getAmountConvention().name())
+                .decimalSeparator(String.valueOf(schema.getDecimalSeparator()))
+                .build();
+    }
+
+    private static StatementSchema fromEntity(BankStatementSchema entity) {
+        return StatementSchema.builder()
+                .headerFingerprint(entity.getHeaderFingerprint())
+                .formatName(entity.getFormatName())
+                .dateColumn(entity.getDateColumn())
+                .descriptionColumn(entity.getDescriptionColumn())
+                .amountColumn(entity.getAmountColumn())
+                .creditColumn(entity.getCreditColumn())
+                .debitColumn(entity.getDebitColumn())
+                .referenceColumn(entity.getReferenceColumn())
+                .statusColumn(entity.getStatusColumn())
+                .dateLayout(entity.getDateLayout() != null ? DateLayout.valueOf(entity.getDateLayout()) : null)
+                .amountConvention(StatementSchema.AmountConvention.valueOf(entity.getAmountConvention()))
+                .decimalSeparator(entity.getDecimalSeparator().charAt(0))
+                .confident(true)
+                .build();
+    }
+}
@@ -1,39 +1,100 @@
 package com.system.SchoolManagementSystem.transaction.service;
 
 import com.system.SchoolManagementSystem.student.entity.Student;
+import com.system.SchoolManagementSystem.student.event.StudentChangedEvent;
+import com.system.SchoolManagementSystem.student.repository.FamilyMemberRepository;
 import com.system.SchoolManagementSystem.student.repository.StudentRepository;
+import com.system.SchoolManagementSystem.transaction.enums.FeeStatus;
+import com.system.SchoolManagementSystem.transaction.repository.FeeInstallmentRepository;
+import com.system.SchoolManagementSystem.transaction.util.FuzzyNameIndex;
+import com.system.SchoolManagementSystem.transaction.util.GuardianIndex;
+import com.system.SchoolManagementSystem.transaction.util.NameAutomaton;
+import com.system.SchoolManagementSystem.transaction.util.NormalizedNarration;
+import com.system.SchoolManagementSystem.transaction.util.StudentMatchIndex;
+import com.system.SchoolManagementSystem.transaction.util.StudentMatchIndex.StudentRef;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import jakarta.annotation.PostConstruct;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * In-memory indices over active students used by the bank transaction matcher.
+ *
+ * Students are held as a compact {@link StudentMatchIndex} projection, never as entities;
+ * {@link #loadStudent} fetches the entity once a match is decided.
+ * All indices live in one immutable {@link Snapshot}. A reload or a batch of student
+ * changes builds the next generation off to the side and publishes it with a single
+ * volatile write, so readers always see a complete old or a complete new index and
+ * matching keeps working while a reload is in progress.
+ *
+ * Payments, the bulk of the changes, only move balances: their generation shares the name
+ * indexes, guardian index and all unchanged balance chunks with the previous one. Admissions,
+ * renames and contact edits need the indexes rebuilt, which is deferred so that a burst of them
+ * costs a single rebuild.
+ */
 @Service
 @Slf4j
 public class StudentCacheService {
 
     private final StudentRepository studentRepository;
+    private final FamilyMemberRepository familyMemberRepository;
+    private final FeeInstallmentRepository feeInstallmentRepository;
+    private final TaskScheduler taskScheduler;
 
-    // Cache indices
-    private final Map<String, Student> exactNameCache = new ConcurrentHashMap<>();
-    private final Map<String, List<Student>> namePartCache = new ConcurrentHashMap<>();
-    private final Map<String, List<Student>> amountCache = new ConcurrentHashMap<>();
-    private final Set<String> allNames = ConcurrentHashMap.newKeySet();
+    // A payment matches an expected amount within max(toleranceKes, tolerancePercent of the payment)
+    @Value("${transaction.matching.amount.tolerance-kes:100}")
+    private double amountToleranceKes;
 
-    private final AtomicBoolean isLoaded = new AtomicBoolean(false);
+    @Value("${transaction.matching.amount.tolerance-percent:1.0}")
+    private double amountTolerancePercent;
 
-    // Common school fee amounts for quick matching
-    private static final Set<Double> COMMON_SCHOOL_AMOUNTS = Set.of(
-            500.0, 1000.0, 1500.0, 2000.0, 2500.0, 3000.0, 3500.0, 4000.0, 4500.0, 5000.0,
-            5500.0, 6000.0, 6500.0, 7000.0, 7500.0, 8000.0, 8500.0, 9000.0, 9500.0, 10000.0,
-            11000.0, 12000.0, 13000.0, 14000.0, 15000.0, 20000.0, 25000.0, 30000.0
-    );
+    // How long roster changes wait to be folded into one rebuild
+    @Value("${transaction.cache.rebuild-delay-ms:5000}")
+    private long rebuildDelayMillis;
 
-    public StudentCacheService(StudentRepository studentRepository) {
+    // Current generation; replaced, never mutated
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    // Serialises snapshot builders (full reloads and incremental batches)
+    private final Object publishLock = new Object();
+    private final AtomicLong generationCounter = new AtomicLong();
+
+    // Incremental maintenance: changed ids are batched into the next generation
+    private final Set<Long> pendingChanges = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean applyScheduled = new AtomicBoolean(false);
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+
+    // Students whose name, admission number, contacts or enrolment changed, for the next rebuild
+    private final Set<Long> pendingRebuild = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean(false);
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    // Coalesces bursts of student changes (e.g. payments during an import) into one generation
+    private static final long INCREMENTAL_BATCH_DELAY_MS = 200;
+
+    // Rebuild once this many rows (or an eighth of the roster) were updated or removed in place
+    private static final int REBUILD_AFTER_CHANGED_ROWS = 1024;
+
+    public StudentCacheService(StudentRepository studentRepository,
+                               FamilyMemberRepository familyMemberRepository,
+                               FeeInstallmentRepository feeInstallmentRepository,
+                               TaskScheduler taskScheduler) {
         this.studentRepository = studentRepository;
+        this.familyMemberRepository = familyMemberRepository;
+        this.feeInstallmentRepository = feeInstallmentRepository;
+        this.taskScheduler = taskScheduler;
     }
 
     @PostConstruct
@@ -43,129 +104,571 @@ public class StudentCacheService {
     }
 
     private void loadCacheAsync() {
-        new Thread(() -> {
-            try {
-                log.info("Loading student cache...");
+        taskScheduler.schedule(this::loadCache, Instant.now());
+    }
+
+    /**
+     * Full reload from the database. Only needed at startup and for recovery; day-to-day
+     * changes arrive as {@link StudentChangedEvent}s.
+     */
+    private void loadCache() {
+        try {
+            log.info("Loading student cache...");
+            synchronized (publishLock) {
                 long startTime = System.currentTimeMillis();
 
                 List<Student> students = studentRepository.findActiveAndNotDeleted();
+                Map<Long, Double> nextInstallments = nextInstallmentAmounts(
+                        feeInstallmentRepository.findOpenInstallmentBalances(FeeStatus.PAID));
+                List<Object[]> guardianContacts = familyMemberRepository.findGuardianContactsOfActiveStudents();
+                Snapshot next = Snapshot.build(students, nextInstallments, guardianContacts,
+                        generationCounter.incrementAndGet(), startTime);
+                snapshot = next;
 
-                for (Student student : students) {
-                    indexStudent(student);
+                log.info("✅ Student cache generation {} loaded in {}ms: {} students, {} name tokens, {} amount entries, {} automaton states, {} guardian contacts, ~{} KB",
+                        next.generation, next.buildMillis, next.index.size(), next.index.getVocabularySize(),
+                        next.index.getAmountEntryCount(), next.nameAutomaton.getStateCount(),
+                        next.guardianIndex.size(),
+                        (next.index.estimateHeapBytes() + next.guardianIndex.estimateHeapBytes()) / 1024);
+            }
+        } catch (Exception e) {
+            log.error("❌ Failed to load student cache", e);
+        }
+    }
+
+    // ========== INCREMENTAL MAINTENANCE ==========
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        if (event.getStudentId() == null) {
+            return;
+        }
+        pendingChanges.add(event.getStudentId());
+        if (event.getChangeType() != StudentChangedEvent.ChangeType.PAYMENT_APPLIED) {
+            pendingRebuild.add(event.getStudentId());
+        }
+        if (applyScheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::applyPendingChanges,
+                    Instant.now().plusMillis(INCREMENTAL_BATCH_DELAY_MS));
+        }
+    }
+
+    /**
+     * Re-read every changed student and publish a generation with their balances updated and
+     * unenrolled students removed. Anything more goes to the next rebuild.
+     */
+    private void applyPendingChanges() {
+        applyScheduled.set(false);
+        try {
+            synchronized (publishLock) {
+                Snapshot current = snapshot;
+                if (!current.loaded) {
+                    // The initial load will pick these up
+                    pendingChanges.clear();
+                    return;
+                }
+
+                Set<Long> ids = new HashSet<>(pendingChanges);
+                pendingChanges.removeAll(ids);
+                if (ids.isEmpty()) {
+                    return;
                 }
 
-                isLoaded.set(true);
-                long duration = System.currentTimeMillis() - startTime;
+                long startTime = System.currentTimeMillis();
+                Map<Long, Student> fresh = loadEnrolled(ids);
+                Map<Long, Double> nextInstallments = loadNextInstallments(fresh);
+
+                Snapshot next = current.withUpdates(ids, fresh, nextInstallments, pendingRebuild,
+                        generationCounter.incrementAndGet(), startTime);
+                snapshot = next;
+                incrementalUpdates.addAndGet(ids.size());
 
-                log.info("✅ Student cache loaded in {}ms: {} students, {} name parts, {} amount entries",
-                        duration, students.size(), namePartCache.size(), amountCache.size());
+                log.debug("Student cache generation {} built in {}ms: {} students changed",
+                        next.generation, next.buildMillis, ids.size());
 
-            } catch (Exception e) {
-                log.error("❌ Failed to load student cache", e);
+                if (!pendingRebuild.isEmpty() || next.index.changedSinceBuild()
+                        > Math.max(REBUILD_AFTER_CHANGED_ROWS, next.index.size() / 8)) {
+                    scheduleRebuild();
+                }
             }
-        }).start();
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to apply student changes to cache: {}", e.getMessage());
+        }
     }
 
-    private void indexStudent(Student student) {
-        String fullNameLower = student.getFullName().toLowerCase();
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::rebuildIndexes, Instant.now().plusMillis(rebuildDelayMillis));
+        }
+    }
 
-        // Index by exact name
-        exactNameCache.put(fullNameLower, student);
-        allNames.add(fullNameLower);
+    /**
+     * Rebuild the indexes with every student queued since the last rebuild re-read, and drop
+     * the rows removed or updated in place meanwhile. Copies the roster, but at most once
+     * per rebuild delay however many changes arrived.
+     */
+    private void rebuildIndexes() {
+        rebuildScheduled.set(false);
+        Set<Long> ids = new HashSet<>(pendingRebuild);
+        pendingRebuild.removeAll(ids);
+        try {
+            synchronized (publishLock) {
+                Snapshot current = snapshot;
+                if (!current.loaded) {
+                    // The initial load will pick these up
+                    return;
+                }
 
-        // Index by name parts
-        String[] nameParts = fullNameLower.split("\\s+");
-        for (String part : nameParts) {
-            if (part.length() > 2) {
-                namePartCache.computeIfAbsent(part, k -> new ArrayList<>())
-                        .add(student);
+                long startTime = System.currentTimeMillis();
+                Map<Long, Student> fresh = loadEnrolled(ids);
+                Map<Long, Double> nextInstallments = loadNextInstallments(fresh);
+                List<Object[]> guardianContacts = fresh.isEmpty() ? Collections.emptyList()
+                        : familyMemberRepository.findGuardianContactsForStudents(fresh.keySet());
+
+                Snapshot next = current.rebuiltWith(ids, fresh, nextInstallments, guardianContacts,
+                        generationCounter.incrementAndGet(), startTime);
+                snapshot = next;
+                rebuilds.incrementAndGet();
+
+                log.debug("Student cache generation {} rebuilt in {}ms: {} students re-read",
+                        next.generation, next.buildMillis, ids.size());
             }
+        } catch (Exception e) {
+            // Keep them queued; the next change schedules another attempt
+            pendingRebuild.addAll(ids);
+            log.warn("⚠️ Failed to rebuild student cache indexes: {}", e.getMessage());
         }
+    }
 
-        // Index by pending amount (rounded to nearest 100)
-        if (student.getPendingAmount() != null && student.getPendingAmount() > 0) {
-            String amountKey = String.valueOf(Math.round(student.getPendingAmount() / 100.0) * 100);
-            amountCache.computeIfAbsent(amountKey, k -> new ArrayList<>())
-                    .add(student);
+    // Students among the ids that are still enrolled, by id
+    private Map<Long, Student> loadEnrolled(Set<Long> ids) {
+        Map<Long, Student> fresh = new HashMap<>();
+        if (ids.isEmpty()) {
+            return fresh;
         }
+        for (Student student : studentRepository.findAllById(ids)) {
+            if (student.getStatus() == Student.StudentStatus.ACTIVE && !student.isDeleted()) {
+                fresh.put(student.getId(), student);
+            }
+        }
+        return fresh;
+    }
+
+    private Map<Long, Double> loadNextInstallments(Map<Long, Student> students) {
+        return students.isEmpty() ? Collections.emptyMap()
+                : nextInstallmentAmounts(feeInstallmentRepository
+                        .findOpenInstallmentBalancesForStudents(students.keySet(), FeeStatus.PAID));
     }
 
     // Public API methods
-    public Optional<Student> findByName(String name) {
-        if (!isLoaded.get()) {
+
+    /**
+     * Find every cached full name occurring in the (lower-cased) text in a single pass.
+     */
+    public List<NameAutomaton.Match> findNamesIn(String text) {
+        Snapshot current = snapshot;
+        if (!current.loaded || text == null) {
+            return Collections.emptyList();
+        }
+        return current.nameAutomaton.findAll(text);
+    }
+
+    /**
+     * Typo-tolerant candidates for the text, best first, scored 0..1.
+     */
+    public List<FuzzyNameIndex.Candidate<StudentRef>> findFuzzyCandidates(String text, int limit) {
+        Snapshot current = snapshot;
+        if (!current.loaded || text == null) {
+            return Collections.emptyList();
+        }
+        // The fuzzy index is only rebuilt on name changes, so resolve hits against this generation
+        List<FuzzyNameIndex.Candidate<Long>> candidates = current.fuzzyNameIndex.search(text, limit);
+        List<FuzzyNameIndex.Candidate<StudentRef>> resolved = new ArrayList<>(candidates.size());
+        for (FuzzyNameIndex.Candidate<Long> candidate : candidates) {
+            int row = current.index.rowOf(candidate.getItem());
+            if (row >= 0) {
+                resolved.add(new FuzzyNameIndex.Candidate<>(current.index.ref(row),
+                        candidate.getScore(), candidate.getMatchedTokens()));
+            }
+        }
+        return resolved;
+    }
+
+    public Optional<StudentRef> findByName(String name) {
+        Snapshot current = snapshot;
+        if (!current.loaded || name == null) {
             return Optional.empty();
         }
-        return Optional.ofNullable(exactNameCache.get(name.toLowerCase()));
+        int row = current.index.rowOfName(name);
+        return row >= 0 ? Optional.of(current.index.ref(row)) : Optional.empty();
     }
 
-    public List<Student> findByNamePart(String namePart) {
-        if (!isLoaded.get() || namePart.length() < 3) {
+    public Optional<StudentRef> findById(long id) {
+        Snapshot current = snapshot;
+        int row = current.index.rowOf(id);
+        return row >= 0 ? Optional.of(current.index.ref(row)) : Optional.empty();
+    }
+
+    /**
+     * Exact admission number lookup, tolerant of case, separators, STU/STD/ADM prefixes and
+     * leading zeros. Empty when no student, or more than one, has that number.
+     */
+    public Optional<StudentRef> findByStudentId(String studentId) {
+        Snapshot current = snapshot;
+        if (!current.loaded || studentId == null || studentId.isEmpty()) {
+            return Optional.empty();
+        }
+        int row = current.index.rowOfStudentId(studentId);
+        return row >= 0 ? Optional.of(current.index.ref(row)) : Optional.empty();
+    }
+
+    /**
+     * Students whose parent or guardian the narration names or gives the phone number of,
+     * with the {@link GuardianIndex} evidence bits for each. More than one means siblings.
+     */
+    public List<GuardianMatch> findByGuardian(NormalizedNarration narration) {
+        Snapshot current = snapshot;
+        if (!current.loaded || narration == null) {
+            return Collections.emptyList();
+        }
+        GuardianIndex.Hits hits = current.guardianIndex.find(narration);
+        if (hits.isEmpty()) {
             return Collections.emptyList();
         }
-        return namePartCache.getOrDefault(namePart.toLowerCase(), Collections.emptyList());
+        List<GuardianMatch> matches = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            int row = current.index.rowOf(hits.studentId(i));
+            if (row >= 0) {
+                matches.add(new GuardianMatch(current.index.ref(row), hits.evidence(i)));
+            }
+        }
+        return matches;
     }
 
-    public List<Student> findByAmount(Double amount) {
-        if (!isLoaded.get() || amount == null) {
+    public List<StudentRef> findByNamePart(String namePart) {
+        Snapshot current = snapshot;
+        if (!current.loaded || namePart.length() < 3) {
             return Collections.emptyList();
         }
+        return toRefs(current.index, current.index.rowsWithToken(namePart.toLowerCase()));
+    }
 
-        // Try exact amount match
-        String amountKey = String.valueOf(Math.round(amount / 100.0) * 100);
-        List<Student> candidates = amountCache.get(amountKey);
+    /**
+     * Students whose pending balance or next installment is within the configured tolerance
+     * of the amount, closest first.
+     */
+    public List<StudentRef> findByAmount(Double amount) {
+        if (amount == null) {
+            return Collections.emptyList();
+        }
+        return findByAmount(amount, getAmountTolerance(amount));
+    }
 
-        if (candidates != null && !candidates.isEmpty()) {
-            return candidates;
+    /**
+     * Students whose pending balance or next installment is within ±tolerance of the amount,
+     * closest first. O(log n + k) over the sorted cents index.
+     */
+    public List<StudentRef> findByAmount(double amount, double tolerance) {
+        Snapshot current = snapshot;
+        if (!current.loaded || amount <= 0) {
+            return Collections.emptyList();
         }
+        long cents = Math.round(amount * 100);
+        long toleranceCents = Math.round(Math.max(0, tolerance) * 100);
+        return toRefs(current.index, current.index.rowsWithAmountBetween(cents - toleranceCents, cents + toleranceCents));
+    }
 
-        // Try common school amounts (±10%)
-        for (Double commonAmount : COMMON_SCHOOL_AMOUNTS) {
-            if (Math.abs(amount - commonAmount) / commonAmount < 0.1) {
-                String commonKey = String.valueOf(Math.round(commonAmount));
-                candidates = amountCache.get(commonKey);
-                if (candidates != null && !candidates.isEmpty()) {
-                    return candidates;
-                }
-            }
+    /**
+     * How far a payment may be from an expected amount and still count as matching it.
+     */
+    public double getAmountTolerance(double amount) {
+        return Math.max(amountToleranceKes, Math.abs(amount) * amountTolerancePercent / 100.0);
+    }
+
+    /**
+     * Load the full entity for a decided match. The cache itself never holds entities.
+     */
+    public Optional<Student> loadStudent(StudentRef ref) {
+        if (ref == null) {
+            return Optional.empty();
         }
+        return studentRepository.findById(ref.getId());
+    }
 
-        return Collections.emptyList();
+    /**
+     * The current generation's match index, for callers that need several consistent lookups.
+     */
+    public StudentMatchIndex getIndex() {
+        return snapshot.index;
     }
 
-    public Set<String> getAllNames() {
-        return allNames;
+    public List<String> getAllNames() {
+        return snapshot.index.names();
     }
 
     public boolean isCacheLoaded() {
-        return isLoaded.get();
+        return snapshot.loaded;
     }
 
+    public long getGeneration() {
+        return snapshot.generation;
+    }
+
+    /**
+     * Changes only when names, admission numbers, guardian contacts or the set of enrolled
+     * students change, not when a payment moves a balance. Results that depend on the roster
+     * alone stay valid for as long as this does.
+     */
+    public long getRosterGeneration() {
+        return snapshot.rosterGeneration;
+    }
+
+    /**
+     * Rebuild the whole cache in the background. The current generation keeps serving
+     * lookups until the new one is published.
+     */
     public void refreshCache() {
-        log.info("Refreshing student cache...");
-        exactNameCache.clear();
-        namePartCache.clear();
-        amountCache.clear();
-        allNames.clear();
-        isLoaded.set(false);
+        log.info("Refreshing student cache (generation {} stays live until the reload completes)...",
+                snapshot.generation);
         loadCacheAsync();
     }
 
+    /**
+     * First (earliest due) open installment per student from [studentId, outstanding] rows.
+     */
+    private static Map<Long, Double> nextInstallmentAmounts(List<Object[]> rows) {
+        Map<Long, Double> amounts = new HashMap<>();
+        for (Object[] row : rows) {
+            Long studentId = (Long) row[0];
+            Double outstanding = row[1] != null ? ((Number) row[1]).doubleValue() : null;
+            if (outstanding != null && outstanding > 0) {
+                amounts.putIfAbsent(studentId, outstanding);
+            }
+        }
+        return amounts;
+    }
+
+    private static List<StudentRef> toRefs(StudentMatchIndex index, int[] rows) {
+        if (rows.length == 0) {
+            return Collections.emptyList();
+        }
+        List<StudentRef> refs = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            refs.add(index.ref(row));
+        }
+        return refs;
+    }
+
+    // ========== SNAPSHOT ==========
+
+    /**
+     * One immutable generation: the compact match index plus the name indexes built over it.
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, false,
+                StudentMatchIndex.empty(), NameAutomaton.empty(), FuzzyNameIndex.empty(), GuardianIndex.empty());
+
+        final long generation;
+        // Last generation that changed what a narration can match: names, admission numbers,
+        // guardians or who is enrolled. Balance-only generations keep the previous value.
+        final long rosterGeneration;
+        final long buildMillis;
+        final long builtAt;
+        final boolean loaded;
+
+        final StudentMatchIndex index;
+
+        // Multi-name automaton over every normalised name
+        final NameAutomaton nameAutomaton;
+
+        // Trigram + phonetic index for misspelt, truncated or reordered names, keyed by student id
+        final FuzzyNameIndex<Long> fuzzyNameIndex;
+
+        // Parents, guardians and emergency contacts by phone and name
+        final GuardianIndex guardianIndex;
+
+        private Snapshot(long generation, long rosterGeneration, long buildMillis, long builtAt, boolean loaded,
+                         StudentMatchIndex index, NameAutomaton nameAutomaton,
+                         FuzzyNameIndex<Long> fuzzyNameIndex, GuardianIndex guardianIndex) {
+            this.generation = generation;
+            this.rosterGeneration = rosterGeneration;
+            this.buildMillis = buildMillis;
+            this.builtAt = builtAt;
+            this.loaded = loaded;
+            this.index = index;
+            this.nameAutomaton = nameAutomaton;
+            this.fuzzyNameIndex = fuzzyNameIndex;
+            this.guardianIndex = guardianIndex;
+        }
+
+        /**
+         * @param guardianContacts [studentId, fullName, phone] rows of the students' family members
+         */
+        static Snapshot build(List<Student> students, Map<Long, Double> nextInstallments,
+                              List<Object[]> guardianContacts, long generation, long startTime) {
+            StudentMatchIndex.Builder builder = StudentMatchIndex.builder(students.size());
+            GuardianIndex.Builder guardians = GuardianIndex.builder(students.size() + guardianContacts.size());
+            for (Student student : students) {
+                builder.add(student.getId(), student.getStudentId(), student.getFullName(),
+                        student.getPendingAmount(), nextInstallments.get(student.getId()));
+                guardians.add(student.getId(), student.getEmergencyContactName(), student.getEmergencyContactPhone());
+            }
+            addContacts(guardians, guardianContacts);
+            return finish(generation, generation, startTime, builder.build(), guardians.build(), null);
+        }
+
+        /**
+         * Next generation with the students' balances replaced, or the students removed when
+         * absent from {@code fresh}, sharing everything else with this one. Removed students
+         * and changes this cannot express (not cached yet, renamed, new admission number) are
+         * added to {@code needsRebuild}.
+         */
+        Snapshot withUpdates(Set<Long> changedIds, Map<Long, Student> fresh, Map<Long, Double> nextInstallments,
+                             Set<Long> needsRebuild, long generation, long startTime) {
+            StudentMatchIndex.Update update = index.update();
+            boolean removed = false;
+            for (Long studentId : changedIds) {
+                Student updated = fresh.get(studentId);
+                if (updated == null) {
+                    // Masked out now; the rebuild drops the row and its guardians
+                    update.remove(studentId);
+                    needsRebuild.add(studentId);
+                    removed |= index.rowOf(studentId) >= 0;
+                    continue;
+                }
+                int row = index.rowOf(studentId);
+                boolean sameKeys = row >= 0
+                        && index.name(row).equals(StudentMatchIndex.normalize(updated.getFullName()))
+                        && Objects.equals(index.studentId(row), updated.getStudentId());
+                if (!sameKeys || !update.setAmounts(studentId, updated.getPendingAmount(), nextInstallments.get(studentId))) {
+                    needsRebuild.add(studentId);
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            return new Snapshot(generation, removed ? generation : rosterGeneration, now - startTime, now, true,
+                    update.build(), nameAutomaton, fuzzyNameIndex, guardianIndex);
+        }
+
+        /**
+         * Next generation with the given students replaced by their fresh state
+         * (or removed when absent from {@code fresh}) and every index rebuilt.
+         */
+        Snapshot rebuiltWith(Set<Long> changedIds, Map<Long, Student> fresh, Map<Long, Double> nextInstallments,
+                             List<Object[]> guardianContacts, long generation, long startTime) {
+            StudentMatchIndex.Builder builder = StudentMatchIndex.builder(index.size() + fresh.size())
+                    .addAll(index, changedIds);
+            GuardianIndex.Builder guardians = GuardianIndex.builder(guardianIndex.size() + guardianContacts.size())
+                    .addAll(guardianIndex, changedIds);
+
+            // Names of rows removed in place are still in the name indexes
+            boolean namesChanged = index.studentCount() < index.size();
+            for (Long studentId : changedIds) {
+                int previousRow = index.rowOf(studentId);
+                Student updated = fresh.get(studentId);
+                if (updated != null) {
+                    builder.add(updated.getId(), updated.getStudentId(), updated.getFullName(),
+                            updated.getPendingAmount(), nextInstallments.get(studentId));
+                    guardians.add(updated.getId(), updated.getEmergencyContactName(), updated.getEmergencyContactPhone());
+                }
+
+                namesChanged |= previousRow < 0 || updated == null
+                        || !index.name(previousRow).equals(StudentMatchIndex.normalize(updated.getFullName()));
+            }
+
+            addContacts(guardians, guardianContacts);
+
+            // A rebuild that only folds in-place balance updates back in leaves the roster as it was
+            long roster = changedIds.isEmpty() && index.studentCount() == index.size() ? rosterGeneration : generation;
+            return finish(generation, roster, startTime, builder.build(), guardians.build(), namesChanged ? null : this);
+        }
+
+        private static void addContacts(GuardianIndex.Builder guardians, List<Object[]> guardianContacts) {
+            for (Object[] row : guardianContacts) {
+                guardians.add((Long) row[0], (String) row[1], (String) row[2]);
+            }
+        }
+
+        // Name indexes are reused from {@code unchangedNames} when no name was added, removed or renamed
+        private static Snapshot finish(long generation, long rosterGeneration, long startTime, StudentMatchIndex index,
+                                       GuardianIndex guardianIndex, Snapshot unchangedNames) {
+            NameAutomaton automaton;
+            FuzzyNameIndex<Long> fuzzy;
+            if (unchangedNames != null) {
+                automaton = unchangedNames.nameAutomaton;
+                fuzzy = unchangedNames.fuzzyNameIndex;
+            } else {
+                automaton = NameAutomaton.build(index.names());
+                List<Long> ids = new ArrayList<>(index.size());
+                for (int row = 0; row < index.size(); row++) {
+                    ids.add(index.id(row));
+                }
+                fuzzy = FuzzyNameIndex.build(ids, id -> index.name(index.rowOf(id)));
+            }
+
+            long now = System.currentTimeMillis();
+            return new Snapshot(generation, rosterGeneration, now - startTime, now, true,
+                    index, automaton, fuzzy, guardianIndex);
+        }
+    }
+
+    /**
+     * A student linked to a narration through a parent or guardian.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class GuardianMatch {
+        private final StudentRef student;
+        // GuardianIndex.EVIDENCE_* bits
+        private final int evidence;
+
+        public boolean isPhoneEvidence() {
+            return (evidence & (GuardianIndex.EVIDENCE_PHONE | GuardianIndex.EVIDENCE_MASKED_PHONE)) != 0;
+        }
+    }
+
     @Data
     public static class CacheStats {
         private int studentCount;
         private int exactNameEntries;
         private int namePartEntries;
         private int amountEntries;
+        private int automatonStates;
+        private int fuzzyVocabularySize;
+        private int guardianContacts;
+        private int guardianPhones;
+        private long incrementalUpdates;
+        private long rebuilds;
+        private int pendingRebuilds;
+        private long generation;
+        private long rosterGeneration;
+        private long buildMillis;
+        private long builtAt;
+        private long indexHeapBytes;
         private boolean isLoaded;
 
         public static CacheStats fromService(StudentCacheService service) {
+            Snapshot current = service.snapshot;
             CacheStats stats = new CacheStats();
-            stats.studentCount = service.exactNameCache.size();
-            stats.exactNameEntries = service.exactNameCache.size();
-            stats.namePartEntries = service.namePartCache.size();
-            stats.amountEntries = service.amountCache.size();
-            stats.isLoaded = service.isLoaded.get();
+            stats.studentCount = current.index.studentCount();
+            stats.exactNameEntries = current.index.studentCount();
+            stats.namePartEntries = current.index.getVocabularySize();
+            stats.amountEntries = current.index.getAmountEntryCount();
+            stats.automatonStates = current.nameAutomaton.getStateCount();
+            stats.fuzzyVocabularySize = current.fuzzyNameIndex.getVocabularySize();
+            stats.guardianContacts = current.guardianIndex.size();
+            stats.guardianPhones = current.guardianIndex.getPhoneCount();
+            stats.incrementalUpdates = service.incrementalUpdates.get();
+            stats.rebuilds = service.rebuilds.get();
+            stats.pendingRebuilds = service.pendingRebuild.size();
+            stats.generation = current.generation;
+            stats.rosterGeneration = current.rosterGeneration;
+            stats.buildMillis = current.buildMillis;
+            stats.builtAt = current.builtAt;
+            stats.indexHeapBytes = current.index.estimateHeapBytes() + current.guardianIndex.estimateHeapBytes();
+            stats.isLoaded = current.loaded;
             return stats;
         }
     }
-}
\ No newline at end of file
+}
@@ -30,6 +30,7 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -71,6 +72,12 @@ public class TransactionService {
     private final StudentCacheService studentCacheService;
     private final StudentFeeUpdateService studentFeeUpdateService;
     private final PaymentTransactionService paymentTransactionService;
+    private final BankImportPipeline bankImportPipeline;
+    private final TransactionBulkWriter transactionBulkWriter;
+    private final BankReferenceIndexService bankReferenceIndexService;
+    private final StatementImportRegistry statementImportRegistry;
+    private final PayerRouteService payerRouteService;
+    private final ReceiptNumberService receiptNumberService;
 
     // ========== PERFORMANCE MONITORING ==========
     private final Map<String, ImportProgress> importProgressMap = new ConcurrentHashMap<>();
@@ -95,6 +102,14 @@ public class TransactionService {
         }
     }
 
+    // Payments created for a saved batch, and matched lines left without an applied payment
+    @Getter
+    @AllArgsConstructor
+    static class PaymentBatchResult {
+        private int paymentsCreated;
+        private int failedLines;
+    }
+
     @Getter
     @AllArgsConstructor
     static class BatchFilterResult {
@@ -118,7 +133,7 @@ public class TransactionService {
                 log.info("  StudentCacheService loaded: {}", studentCacheService.isCacheLoaded());
 
                 if (studentCacheService.isCacheLoaded()) {
-                    Set<String> names = studentCacheService.getAllNames();
+                    List<String> names = studentCacheService.getAllNames();
                     log.info("  StudentCacheService names: {}", names.size());
 
                     if (!names.isEmpty()) {
@@ -134,7 +149,23 @@ public class TransactionService {
 
     // ========== BANK TRANSACTION IMPORT METHOD ==========
 
+    /**
+     * Streams the statement through {@link BankImportPipeline}. Runs outside a surrounding
+     * transaction so every batch commits on its own and the persistence context never grows
+     * with the size of the file.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BankTransactionImportResponse importBankTransactions(BankTransactionImportRequest request) {
+        return importBankTransactions(request, null);
+    }
+
+    /**
+     * Same as {@link #importBankTransactions(BankTransactionImportRequest)}, publishing live
+     * counts and the current stage to the given progress as the pipeline runs.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BankTransactionImportResponse importBankTransactions(BankTransactionImportRequest request,
+                                                                ImportProgressTracker.ImportProgress progress) {
         log.info("📥 Importing bank transactions: {}", request.getFile().getOriginalFilename());
 
         // ========== PARSE VALIDATION RESULTS FROM FRONTEND ==========
@@ -170,61 +201,71 @@ public class TransactionService {
         }
         // =============================================================
 
-        List<BankTransaction> transactions;
         String fileType = request.getFile().getContentType();
+        String importBatchId = request.getImportBatchId() != null
+                ? request.getImportBatchId()
+                : UUID.randomUUID().toString();
 
         try {
+            // ========== STATEMENT IDEMPOTENCY ==========
+            StatementImportRegistry.Run statementRun = statementImportRegistry.begin(
+                    request.getFile(), request.getBankAccount(), importBatchId);
+            if (statementRun.isAlreadyImported()) {
+                return alreadyImportedResponse(statementRun.getPreviousImport());
+            }
+
+            BankImportPipeline.Source parser;
             if (fileType != null && fileType.contains("csv")) {
-                transactions = bankStatementParser.parseCsv(request.getFile(), request.getBankAccount());
+                parser = sink -> bankStatementParser.streamCsv(
+                        request.getFile(), request.getBankAccount(), importBatchId, sink);
             } else if (fileType != null && (fileType.contains("excel") || fileType.contains("spreadsheet"))) {
-                transactions = bankStatementParser.parseExcel(request.getFile(), request.getBankAccount());
+                parser = sink -> bankStatementParser.streamExcel(
+                        request.getFile(), request.getBankAccount(), importBatchId, sink);
             } else {
                 throw new IllegalArgumentException("Unsupported file type: " + fileType);
             }
 
-            log.info("✅ Parser returned {} transactions", transactions.size());
-
-            // ========== PROCESS TRANSACTIONS WITH VALIDATION ISSUES ==========
-            List<BankTransaction> processedTransactions = processTransactionsWithValidation(transactions, validationIssues);
-
-            // ========== SAVE TRANSACTIONS WITH OPTIMIZED DUPLICATE CHECKING ==========
-            ImportBatchResult batchResult = saveTransactionsInBatchesOptimized(processedTransactions);
-            List<BankTransaction> savedTransactions = batchResult.getSavedTransactions();
-            List<String> duplicateReferences = batchResult.getDuplicateReferences();
-
-            // ========== COUNT STATISTICS ==========
-            long matchedCount = savedTransactions.stream()
-                    .filter(t -> t.getStatus() == TransactionStatus.MATCHED)
-                    .count();
+            // Lines older than the account watermark never reach matching
+            BankImportPipeline.Source source = sink -> parser.emit(transaction -> {
+                if (statementRun.accept(transaction)) {
+                    sink.accept(transaction);
+                }
+            });
 
-            long issueCount = savedTransactions.stream()
-                    .filter(t -> t.getStatus() == TransactionStatus.UNVERIFIED &&
-                            t.getDescription() != null &&
-                            t.getDescription().contains("[VALIDATION ISSUE:"))
-                    .count();
+            // ========== PARSE → MATCH → DEDUPE/PERSIST → APPLY PAYMENTS ==========
+            BankImportPipeline.Result pipelineResult = null;
+            try {
+                pipelineResult = bankImportPipeline.run(
+                        progress,
+                        source,
+                        transaction -> processTransactionWithValidation(transaction, validationIssues),
+                        this::saveTransactionsInBatchesOptimized,
+                        this::processPaymentsForMatchedTransactions
+                );
+            } finally {
+                // A thrown or partly failed import is recorded as failed, so the same file can be uploaded again
+                int linesParsed = (pipelineResult != null ? pipelineResult.getParsed() : 0)
+                        + statementRun.getSkippedBeforeWatermark();
+                int linesSaved = pipelineResult != null ? pipelineResult.getSaved() : 0;
+                if (pipelineResult != null && pipelineResult.getFailed() == 0) {
+                    statementImportRegistry.complete(statementRun, linesParsed, linesSaved);
+                } else {
+                    statementImportRegistry.fail(statementRun, linesParsed, linesSaved);
+                }
+            }
 
             log.info("📊 Processing results: {} total, {} matched, {} with issues",
-                    savedTransactions.size(), matchedCount, issueCount);
-
-            // ========== CREATE PAYMENTS FOR MATCHED TRANSACTIONS ==========
-            if (matchedCount > 0) {
-                processPaymentsForMatchedTransactions(savedTransactions);
-            }
+                    pipelineResult.getSaved(), pipelineResult.getMatched(), pipelineResult.getIssues());
 
             // ========== PREPARE RESPONSE ==========
-            ImportResult importResult = createImportResult(
-                    processedTransactions,
-                    savedTransactions,
-                    duplicateReferences,
-                    matchedCount,
-                    issueCount
-            );
+            ImportResult importResult = createImportResult(pipelineResult, statementRun.getSkippedBeforeWatermark());
 
             log.info("✅ Import completed: {} saved, {} duplicates skipped, {} matched, {} with issues",
-                    savedTransactions.size(), duplicateReferences.size(), matchedCount, issueCount);
+                    pipelineResult.getSaved(), pipelineResult.getDuplicates(),
+                    pipelineResult.getMatched(), pipelineResult.getIssues());
 
             return BankTransactionImportResponse.success(
-                    String.format("Successfully imported %d transactions", savedTransactions.size()),
+                    String.format("Successfully imported %d transactions", pipelineResult.getSaved()),
                     importResult
             );
 
@@ -264,16 +305,22 @@ public class TransactionService {
             log.info("    📊 Batch stats: {} unique, {} duplicates",
                     uniqueBatch.size(), filterResult.getDuplicateReferences().size());
 
-            // Step 2: Save unique transactions
+            // Step 2: Save unique transactions (multi-row JDBC insert; IDENTITY keys defeat Hibernate batching)
             if (!uniqueBatch.isEmpty()) {
                 try {
-                    List<BankTransaction> savedBatch = bankTransactionRepository.saveAll(uniqueBatch);
-                    savedTransactions.addAll(savedBatch);
-                    log.info("    ✅ Saved {} unique transactions", savedBatch.size());
+                    TransactionBulkWriter.BulkInsertResult<BankTransaction> insertResult =
+                            transactionBulkWriter.insertBankTransactions(uniqueBatch);
+                    savedTransactions.addAll(insertResult.getInserted());
+                    duplicateReferences.addAll(insertResult.getDuplicateReferences());
+                    bankReferenceIndexService.addAll(insertResult.getInserted().stream()
+                            .map(BankTransaction::getBankReference)
+                            .collect(Collectors.toList()));
+                    log.info("    ✅ Saved {} unique transactions", insertResult.getInserted().size());
 
                 } catch (Exception e) {
                     log.error("❌ Batch save failed, trying individual saves...", e);
-                    // Fallback to individual saves
+                    // The bulk insert rolled back; drop any ids it assigned before saving one by one
+                    uniqueBatch.forEach(transaction -> transaction.setId(null));
                     saveTransactionsIndividually(uniqueBatch, savedTransactions, duplicateReferences);
                 }
             } else {
@@ -340,11 +387,11 @@ public class TransactionService {
                 .map(BankTransaction::getBankReference)
                 .collect(Collectors.toList());
 
-        // Step 3: OPTIMIZED - Batch check against database
+        // Step 3: OPTIMIZED - Batch check against database (only references the filter can't rule out)
         Set<String> existingReferences = new HashSet<>();
         if (!allReferences.isEmpty()) {
             try {
-                existingReferences = new HashSet<>(bankTransactionRepository.findExistingReferences(allReferences));
+                existingReferences = bankReferenceIndexService.findExisting(allReferences);
                 log.debug("🔍 Batch checked {} references, found {} existing",
                         allReferences.size(), existingReferences.size());
             } catch (Exception e) {
@@ -354,12 +401,30 @@ public class TransactionService {
             }
         }
 
+        // Step 3b: Lines without a bank reference get a new placeholder on every upload; match them by content
+        List<String> fingerprints = processedBatch.stream()
+                .map(BankTransaction::getContentFingerprint)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        Set<String> existingFingerprints = fingerprints.isEmpty()
+                ? Collections.emptySet()
+                : bankTransactionRepository.findExistingFingerprints(fingerprints);
+
         // Step 4: Filter using batch results
         Set<String> alreadyAddedInBatch = new HashSet<>();
         for (BankTransaction transaction : processedBatch) {
             String bankRef = transaction.getBankReference();
 
-            if (existingReferences.contains(bankRef)) {
+            if (transaction.getContentFingerprint() != null
+                    && existingFingerprints.contains(transaction.getContentFingerprint())) {
+                // Same date, amount and narration already imported from an earlier statement
+                duplicateReferences.add(bankRef + " [SAME_CONTENT]");
+
+                String notes = transaction.getNotes() != null ? transaction.getNotes() : "";
+                transaction.setNotes(notes + " [DUPLICATE SKIPPED: Same line already imported]");
+
+                log.debug("📛 Skipping duplicate by content: {}", bankRef);
+            } else if (existingReferences.contains(bankRef)) {
                 // Duplicate in database
                 duplicateReferences.add(bankRef);
 
@@ -398,7 +463,8 @@ public class TransactionService {
             }
 
             try {
-                boolean exists = bankTransactionRepository.existsByBankReference(bankRef);
+                boolean exists = bankReferenceIndexService.mightExist(bankRef)
+                        && bankTransactionRepository.existsByBankReference(bankRef);
                 if (exists) {
                     duplicateReferences.add(bankRef);
 
@@ -436,7 +502,8 @@ public class TransactionService {
                 String bankRef = transaction.getBankReference();
 
                 // Double-check before individual save
-                boolean exists = bankTransactionRepository.existsByBankReference(bankRef);
+                boolean exists = bankReferenceIndexService.mightExist(bankRef)
+                        && bankTransactionRepository.existsByBankReference(bankRef);
                 if (exists) {
                     duplicateReferences.add(bankRef);
                     duplicateCount++;
@@ -450,6 +517,7 @@ public class TransactionService {
 
                 BankTransaction saved = bankTransactionRepository.save(transaction);
                 savedTransactions.add(saved);
+                bankReferenceIndexService.add(saved.getBankReference());
                 savedCount++;
                 log.debug("✅ Saved individually: {}", saved.getBankReference());
 
@@ -473,173 +541,270 @@ public class TransactionService {
 
     // ========== CREATE IMPORT RESULT ==========
 
-    private ImportResult createImportResult(List<BankTransaction> allTransactions,
-                                            List<BankTransaction> savedTransactions,
-                                            List<String> duplicateReferences,
-                                            long matchedCount,
-                                            long issueCount) {
+    private ImportResult createImportResult(BankImportPipeline.Result pipelineResult, int skippedBeforeWatermark) {
         ImportResult result = new ImportResult();
-        result.setTotalTransactions(allTransactions.size());
-        result.setSavedTransactions(savedTransactions.size());
-        result.setDuplicatesSkipped(duplicateReferences.size());
-        result.setDuplicateReferences(duplicateReferences);
+        result.setTotalTransactions(pipelineResult.getParsed() + skippedBeforeWatermark);
+        result.setSavedTransactions(pipelineResult.getSaved());
+        result.setDuplicatesSkipped(pipelineResult.getDuplicates() + skippedBeforeWatermark);
+        result.setSkippedBeforeWatermark(skippedBeforeWatermark);
+        result.setFailedTransactions(pipelineResult.getFailed());
+        result.setPaymentFailures(pipelineResult.getPaymentFailures());
+        result.setDuplicateReferences(new ArrayList<>(pipelineResult.getDuplicateReferences()));
 
         // Set warning message
         StringBuilder warning = new StringBuilder();
-        if (!duplicateReferences.isEmpty()) {
-            warning.append(String.format("%d duplicate transaction(s) were skipped. ", duplicateReferences.size()));
+        if (skippedBeforeWatermark > 0) {
+            warning.append(String.format("%d transaction(s) predate the last imported statement and were skipped. ",
+                    skippedBeforeWatermark));
+        }
+        if (pipelineResult.getDuplicates() > 0) {
+            warning.append(String.format("%d duplicate transaction(s) were skipped. ", pipelineResult.getDuplicates()));
         }
-        if (issueCount > 0) {
-            warning.append(String.format("%d transaction(s) have validation issues. ", issueCount));
+        if (pipelineResult.getIssues() > 0) {
+            warning.append(String.format("%d transaction(s) have validation issues. ", pipelineResult.getIssues()));
+        }
+        if (pipelineResult.getFailed() > 0) {
+            warning.append(String.format("%d transaction(s) failed to import. ", pipelineResult.getFailed()));
+        }
+        if (pipelineResult.getPaymentFailures() > 0) {
+            warning.append(String.format("%d matched transaction(s) could not be applied as payments and need review. ",
+                    pipelineResult.getPaymentFailures()));
         }
         if (warning.length() > 0) {
             result.setWarningMessage(warning.toString().trim());
         }
 
-        // Convert to response DTOs
-        List<BankTransactionResponse> transactionResponses = savedTransactions.stream()
-                .map(this::convertToBankTransactionResponse)
-                .collect(Collectors.toList());
+        // Convert to response DTOs (bounded preview for very large statements)
+        List<BankTransactionResponse> transactionResponses;
+        synchronized (pipelineResult.getSavedPreview()) {
+            transactionResponses = pipelineResult.getSavedPreview().stream()
+                    .map(this::convertToBankTransactionResponse)
+                    .collect(Collectors.toList());
+        }
         result.setTransactions(transactionResponses);
 
         return result;
     }
 
+    private BankTransactionImportResponse alreadyImportedResponse(BankStatementImport previousImport) {
+        log.info("⏭️ Statement already imported on {} (batch {}), skipping",
+                previousImport.getImportedAt(), previousImport.getImportBatchId());
+
+        int lines = previousImport.getLinesParsed() != null ? previousImport.getLinesParsed() : 0;
+        ImportResult result = new ImportResult();
+        result.setTotalTransactions(lines);
+        result.setSavedTransactions(0);
+        result.setDuplicatesSkipped(lines);
+        result.setDuplicateReferences(Collections.emptyList());
+        result.setTransactions(Collections.emptyList());
+        result.setPreviousImportBatchId(previousImport.getImportBatchId());
+        result.setWarningMessage(String.format("This statement was already imported on %s; nothing was changed.",
+                previousImport.getImportedAt().toLocalDate()));
+
+        return BankTransactionImportResponse.success("Statement already imported", result);
+    }
+
     // ========== HELPER METHODS ==========
 
     private String generateUniqueReference() {
         return "GEN-" + UUID.randomUUID().toString().substring(0, 12).toUpperCase();
     }
 
-    private List<BankTransaction> processTransactionsWithValidation(
-            List<BankTransaction> transactions,
+    /**
+     * Match stage of the import pipeline: apply frontend validation issues or auto-match one line.
+     * Called concurrently from several match workers.
+     */
+    private BankTransaction processTransactionWithValidation(
+            BankTransaction transaction,
             Map<String, String> validationIssues) {
 
-        log.info("🔍 Processing {} transactions with {} validation issues",
-                transactions.size(), validationIssues.size());
-
-        List<BankTransaction> processed = new ArrayList<>();
+        // Check if this transaction has validation issues from frontend
+        String issueMessage = validationIssues.get(transaction.getBankReference());
 
-        for (BankTransaction transaction : transactions) {
-            // Check if this transaction has validation issues from frontend
-            String issueMessage = validationIssues.get(transaction.getBankReference());
-
-            if (issueMessage != null && !issueMessage.isEmpty()) {
-                // Mark as UNVERIFIED and append issue to description
-                transaction.setStatus(TransactionStatus.UNVERIFIED);
+        if (issueMessage != null && !issueMessage.isEmpty()) {
+            // Mark as UNVERIFIED and append issue to description
+            transaction.setStatus(TransactionStatus.UNVERIFIED);
 
-                String originalDescription = transaction.getDescription() != null
-                        ? transaction.getDescription()
-                        : "";
+            String originalDescription = transaction.getDescription() != null
+                    ? transaction.getDescription()
+                    : "";
 
-                // Append validation issue to description
-                String enhancedDescription = String.format("%s [VALIDATION ISSUE: %s]",
-                        originalDescription.trim(),
-                        issueMessage);
+            // Append validation issue to description
+            String enhancedDescription = String.format("%s [VALIDATION ISSUE: %s]",
+                    originalDescription.trim(),
+                    issueMessage);
 
-                transaction.setDescription(enhancedDescription);
-                transaction.setNotes("Imported with validation issue: " + issueMessage);
+            transaction.setDescription(enhancedDescription);
+            transaction.setNotes("Imported with validation issue: " + issueMessage);
 
-                log.info("⚠️ Transaction {} marked as UNVERIFIED with issue: {}",
-                        transaction.getBankReference(), issueMessage);
+            log.info("⚠️ Transaction {} marked as UNVERIFIED with issue: {}",
+                    transaction.getBankReference(), issueMessage);
 
-            } else {
-                // Try to auto-match
-                Optional<Student> matchedStudent = transactionMatcher.findMatchingStudent(transaction);
-
-                if (matchedStudent.isPresent()) {
-                    Student student = matchedStudent.get();
-
-                    // Validate student before matching
-                    TransactionValidationService.ValidationResult validation =
-                            transactionValidationService.validateStudentForPayment(
-                                    student.getId(),
-                                    student.getFullName()
-                            );
-
-                    if (validation.isValid()) {
-                        transaction.setStudent(student);
-                        transaction.setStatus(TransactionStatus.MATCHED);
-                        log.info("✅ Transaction {} auto-matched to student: {}",
-                                transaction.getBankReference(), student.getFullName());
-                    } else {
-                        // Student validation failed
-                        transaction.setStatus(TransactionStatus.UNVERIFIED);
-                        String studentIssue = String.format("Student validation failed: %s", validation.getMessage());
-
-                        String enhancedDescription = String.format("%s [VALIDATION ISSUE: %s]",
-                                transaction.getDescription() != null ? transaction.getDescription().trim() : "",
-                                studentIssue);
-
-                        transaction.setDescription(enhancedDescription);
-                        transaction.setNotes(studentIssue);
-
-                        log.warn("⚠️ Transaction {} could not be matched due to student validation: {}",
-                                transaction.getBankReference(), validation.getMessage());
-                    }
+        } else {
+            // Try to auto-match; the narration is normalised once for matching and ranking
+            NormalizedNarration narration = NormalizedNarration.of(transaction.getDescription());
+            Optional<Student> matchedStudent = transactionMatcher.findMatchingStudent(transaction, narration);
+
+            if (matchedStudent.isPresent()) {
+                Student student = matchedStudent.get();
+
+                // Validate student before matching
+                TransactionValidationService.ValidationResult validation =
+                        transactionValidationService.validateStudentForPayment(
+                                student.getId(),
+                                student.getFullName()
+                        );
+
+                if (validation.isValid()) {
+                    transaction.setStudent(student);
+                    transaction.setStatus(TransactionStatus.MATCHED);
+                    log.info("✅ Transaction {} auto-matched to student: {}",
+                            transaction.getBankReference(), student.getFullName());
                 } else {
-                    // No student match found
+                    // Student validation failed
                     transaction.setStatus(TransactionStatus.UNVERIFIED);
-                    transaction.setNotes("No matching student found during auto-matching");
+                    String studentIssue = String.format("Student validation failed: %s", validation.getMessage());
+
+                    String enhancedDescription = String.format("%s [VALIDATION ISSUE: %s]",
+                            transaction.getDescription() != null ? transaction.getDescription().trim() : "",
+                            studentIssue);
 
-                    log.info("❓ Transaction {} could not be auto-matched",
-                            transaction.getBankReference());
+                    transaction.setDescription(enhancedDescription);
+                    transaction.setNotes(studentIssue);
+
+                    log.warn("⚠️ Transaction {} could not be matched due to student validation: {}",
+                            transaction.getBankReference(), validation.getMessage());
+                    attachMatchCandidates(transaction, narration);
                 }
-            }
+            } else {
+                // No student match found
+                transaction.setStatus(TransactionStatus.UNVERIFIED);
+                transaction.setNotes("No matching student found during auto-matching");
 
-            processed.add(transaction);
+                log.info("❓ Transaction {} could not be auto-matched",
+                        transaction.getBankReference());
+                attachMatchCandidates(transaction, narration);
+            }
         }
 
-        return processed;
+        return transaction;
     }
 
-    private void processPaymentsForMatchedTransactions(List<BankTransaction> transactions) {
-        int paymentCreatedCount = 0;
-
-        for (BankTransaction transaction : transactions) {
-            if (transaction.getStudent() != null &&
-                    transaction.getStatus() == TransactionStatus.MATCHED &&
-                    transaction.getPaymentTransaction() == null) {
+    /**
+     * Rank the likeliest students for an unmatched line and keep them with it, so the
+     * manual matching screen can offer them without searching.
+     */
+    private void attachMatchCandidates(BankTransaction transaction, NormalizedNarration narration) {
+        try {
+            List<TransactionMatcher.RankedCandidate> ranked = transactionMatcher.rankCandidates(transaction, narration);
+            for (int i = 0; i < ranked.size(); i++) {
+                TransactionMatcher.RankedCandidate candidate = ranked.get(i);
+                transaction.getMatchCandidates().add(BankTransactionCandidate.builder()
+                        .bankTransaction(transaction)
+                        .candidateRank(i + 1)
+                        .studentId(candidate.getStudent().getId())
+                        .admissionNumber(candidate.getStudent().getStudentId())
+                        .studentName(toDisplayName(candidate.getStudent().getName()))
+                        .pendingAmount(candidate.getStudent().getPendingAmount())
+                        .score(Math.round(candidate.getScore() * 10) / 10.0)
+                        .reasons(candidate.getReasons())
+                        .build());
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Could not rank candidates for {}: {}", transaction.getBankReference(), e.getMessage());
+        }
+    }
 
-                try {
-                    PaymentTransaction paymentTransaction =
-                            paymentTransactionService.createFromMatchedBankTransaction(transaction);
-
-                    // Apply payment to term fees
-                    try {
-                        PaymentApplicationRequest feeRequest = new PaymentApplicationRequest();
-                        feeRequest.setStudentId(transaction.getStudent().getId());
-                        feeRequest.setAmount(transaction.getAmount());
-                        feeRequest.setReference(transaction.getBankReference());
-                        feeRequest.setNotes("Auto-matched from bank import");
-
-                        PaymentApplicationResponse feeResponse = termFeeService.applyPaymentToStudent(feeRequest);
-
-                        log.info("💰 Payment applied: {} +₹{} (Receipt: {}), Pending: ₹{}",
-                                transaction.getStudent().getFullName(),
-                                transaction.getAmount(),
-                                paymentTransaction.getReceiptNumber(),
-                                feeResponse.getRemainingPayment());
-
-                    } catch (Exception feeError) {
-                        log.warn("⚠️ Failed to apply payment to term fees: {}", feeError.getMessage());
-                    }
+    private PaymentBatchResult processPaymentsForMatchedTransactions(List<BankTransaction> transactions) {
+        List<BankTransaction> matched = transactions.stream()
+                .filter(transaction -> transaction.getStudent() != null &&
+                        transaction.getStatus() == TransactionStatus.MATCHED &&
+                        transaction.getPaymentTransaction() == null)
+                .collect(Collectors.toList());
+        if (matched.isEmpty()) {
+            return new PaymentBatchResult(0, 0);
+        }
 
-                    paymentCreatedCount++;
+        // One multi-row insert for the whole batch of payments
+        List<PaymentTransaction> payments;
+        try {
+            payments = paymentTransactionService.createFromMatchedBankTransactions(matched);
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to create payments for {} matched transactions: {}", matched.size(), e.getMessage());
+            // Otherwise they would sit as MATCHED with no payment, where nothing picks them up again
+            flagForReview(matched, TransactionStatus.UNVERIFIED, "Payment could not be created: " + e.getMessage());
+            return new PaymentBatchResult(0, matched.size());
+        }
 
-                    log.info("💰 Created payment for {}: Receipt {} - ₹{}",
-                            transaction.getStudent().getFullName(),
-                            paymentTransaction.getReceiptNumber(),
-                            transaction.getAmount());
+        // Term fees for the whole batch at once: grouped by student, prefetched, flushed together
+        List<PaymentApplicationRequest> feeRequests = new ArrayList<>(payments.size());
+        for (PaymentTransaction paymentTransaction : payments) {
+            BankTransaction transaction = paymentTransaction.getBankTransaction();
+            PaymentApplicationRequest feeRequest = new PaymentApplicationRequest();
+            feeRequest.setStudentId(transaction.getStudent().getId());
+            feeRequest.setAmount(transaction.getAmount());
+            feeRequest.setReference(transaction.getBankReference());
+            feeRequest.setNotes("Auto-matched from bank import");
+            feeRequests.add(feeRequest);
+        }
 
-                } catch (Exception e) {
-                    log.warn("⚠️ Failed to create payment for transaction {}: {}",
-                            transaction.getBankReference(), e.getMessage());
+        List<PaymentApplicationResponse> feeResponses;
+        try {
+            feeResponses = termFeeService.applyPaymentsToStudents(feeRequests);
+        } catch (Exception batchError) {
+            // The batch rolled back as a whole; apply one by one so a single bad line can't block the rest
+            log.warn("⚠️ Batched term fee application failed, applying {} payments individually: {}",
+                    feeRequests.size(), batchError.getMessage());
+            feeResponses = new ArrayList<>(feeRequests.size());
+            for (PaymentApplicationRequest feeRequest : feeRequests) {
+                try {
+                    feeResponses.add(termFeeService.applyPaymentToStudent(feeRequest));
+                } catch (Exception feeError) {
+                    log.warn("⚠️ Failed to apply payment {} to term fees: {}",
+                            feeRequest.getReference(), feeError.getMessage());
+                    feeResponses.add(null);
                 }
             }
         }
 
-        log.info("✅ Created {} payment transactions", paymentCreatedCount);
+        List<BankTransaction> feesNotApplied = new ArrayList<>();
+        for (int i = 0; i < payments.size(); i++) {
+            PaymentTransaction paymentTransaction = payments.get(i);
+            BankTransaction transaction = paymentTransaction.getBankTransaction();
+            PaymentApplicationResponse feeResponse = feeResponses.get(i);
+
+            if (feeResponse != null) {
+                log.info("💰 Payment applied: {} +₹{} (Receipt: {}), Pending: ₹{}",
+                        transaction.getStudent().getFullName(),
+                        transaction.getAmount(),
+                        paymentTransaction.getReceiptNumber(),
+                        feeResponse.getRemainingPayment());
+            } else {
+                feesNotApplied.add(transaction);
+            }
+        }
+        // The payment exists, so the line stays MATCHED; the note tells staff the fees still need applying
+        flagForReview(feesNotApplied, TransactionStatus.MATCHED,
+                "Payment created but not applied to term fees; apply it manually");
+
+        log.info("✅ Created {} payment transactions", payments.size());
+        return new PaymentBatchResult(payments.size(), feesNotApplied.size());
+    }
+
+    private void flagForReview(List<BankTransaction> transactions, TransactionStatus status, String notes) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        for (BankTransaction transaction : transactions) {
+            transaction.setStatus(status);
+            transaction.setNotes(notes);
+        }
+        try {
+            bankTransactionRepository.updateStatusAndNotes(
+                    transactions.stream().map(BankTransaction::getId).toList(), status, notes);
+        } catch (Exception e) {
+            log.error("❌ Could not flag {} bank transactions for review", transactions.size(), e);
+        }
     }
 
     // ========== CACHE MANAGEMENT METHODS ==========
@@ -677,7 +842,7 @@ public class TransactionService {
         status.put("studentCacheLoaded", isCacheLoaded);
 
         if (isCacheLoaded) {
-            Set<String> names = studentCacheService.getAllNames();
+            List<String> names = studentCacheService.getAllNames();
             status.put("studentCacheSize", names.size());
 
             // Get sample names
@@ -767,6 +932,8 @@ public class TransactionService {
         transaction.setStudent(student);
         transaction.setStatus(TransactionStatus.MATCHED);
         transaction.setMatchedAt(LocalDateTime.now());
+        // Suggestions are only for the manual matching queue
+        transaction.getMatchCandidates().clear();
 
         try {
             PaymentTransaction paymentTransaction =
@@ -802,6 +969,7 @@ public class TransactionService {
         }
 
         BankTransaction savedTransaction = bankTransactionRepository.save(transaction);
+        payerRouteService.recordConfirmed(savedTransaction, student.getId());
 
         if (savedTransaction.getPaymentTransaction() != null) {
             sendAutoMatchSms(student, savedTransaction, savedTransaction.getPaymentTransaction());
@@ -860,6 +1028,7 @@ public class TransactionService {
             bankTransaction.setStudent(student);
             bankTransaction.setStatus(TransactionStatus.VERIFIED);
             bankTransactionRepository.save(bankTransaction);
+            payerRouteService.recordConfirmed(bankTransaction, student.getId());
 
             paymentTransactionRepository.save(paymentTransaction);
         }
@@ -1155,7 +1324,7 @@ public class TransactionService {
                     .amount(amount)
                     .paymentMethod(com.system.SchoolManagementSystem.transaction.enums.PaymentMethod.CASH)
                     .paymentDate(LocalDateTime.now())
-                    .receiptNumber("MANUAL-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase())
+                    .receiptNumber(receiptNumberService.next(ReceiptNumberService.MANUAL_PREFIX))
                     .isVerified(true)
                     .verifiedAt(LocalDateTime.now())
                     .notes(notes)
@@ -1806,6 +1975,13 @@ public class TransactionService {
             response.setPaymentVerifiedAt(pt.getVerifiedAt());
         }
 
+        if (transaction.getStudent() == null && transaction.getMatchCandidates() != null
+                && !transaction.getMatchCandidates().isEmpty()) {
+            response.setMatchCandidates(transaction.getMatchCandidates().stream()
+                    .map(this::convertToMatchCandidateResponse)
+                    .collect(Collectors.toList()));
+        }
+
         if (transaction.getStudent() != null) {
             Student student = transaction.getStudent();
 
@@ -1842,6 +2018,31 @@ public class TransactionService {
         return convertToBankTransactionResponseWithTermData(transaction, new HashMap<>(), new HashMap<>());
     }
 
+    // Cached names are normalised to lower case; capitalise each word for display
+    private static String toDisplayName(String name) {
+        StringBuilder display = new StringBuilder(name.length());
+        boolean wordStart = true;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            display.append(wordStart ? Character.toUpperCase(c) : c);
+            wordStart = c == ' ' || c == '-' || c == '\'';
+        }
+        return display.toString();
+    }
+
+    private BankTransactionResponse.MatchCandidateResponse convertToMatchCandidateResponse(
+            BankTransactionCandidate candidate) {
+        BankTransactionResponse.MatchCandidateResponse response = new BankTransactionResponse.MatchCandidateResponse();
+        response.setRank(candidate.getCandidateRank());
+        response.setStudentId(candidate.getStudentId());
+        response.setAdmissionNumber(candidate.getAdmissionNumber());
+        response.setStudentName(candidate.getStudentName());
+        response.setPendingAmount(candidate.getPendingAmount());
+        response.setScore(candidate.getScore());
+        response.setReasons(candidate.getReasons());
+        return response;
+    }
+
     private PaymentTransactionResponse convertToPaymentTransactionResponse(PaymentTransaction transaction) {
         PaymentTransactionResponse response = new PaymentTransactionResponse();
         response.setId(transaction.getId());
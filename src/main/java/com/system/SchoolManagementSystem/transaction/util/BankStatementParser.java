@@ -1,59 +1,49 @@
 package com.system.SchoolManagementSystem.transaction.util;
 
+import com.github.pjfanning.xlsx.StreamingReader;
 import com.system.SchoolManagementSystem.transaction.entity.BankTransaction;
 import com.system.SchoolManagementSystem.transaction.enums.PaymentMethod;
 import com.system.SchoolManagementSystem.transaction.enums.TransactionStatus;
+import com.system.SchoolManagementSystem.transaction.service.StatementSchemaRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class BankStatementParser {
 
-    // ========== FLEXIBLE HEADER MAPPINGS ==========
-    // Add more variations to handle different bank formats
-    private static final List<String> DATE_COLUMNS = Arrays.asList(
-            "date", "transaction date", "txn date", "txndate", "transaction_date",
-            "value date", "value_date", "posting date", "posting_date",
-            "transactiondate", "tx date", "trandate"
-    );
-
-    private static final List<String> AMOUNT_COLUMNS = Arrays.asList(
-            "amount", "transaction amount", "debit", "credit", "amt", "transaction_amount",
-            "debit amount", "credit amount", "dr", "cr", "transaction_amt",
-            "withdrawal", "deposit", "txn amount"
-    );
+    private final StatementSchemaRegistry statementSchemaRegistry;
 
-    private static final List<String> DESC_COLUMNS = Arrays.asList(
-            "description", "narration", "particulars", "remarks", "details", "desc",
-            "transaction details", "transaction_detail", "narration details",
-            "particular", "payment details", "transaction_particulars"
-    );
-
-    private static final List<String> REF_COLUMNS = Arrays.asList(
-            "reference", "ref no", "transaction id", "cheque no", "ref", "reference no",
-            "cheque number", "transaction ref", "transaction_ref", "refno",
-            "transaction reference", "bank ref", "bank_ref", "transaction id"
-    );
-
-    private static final List<String> STATUS_COLUMNS = Arrays.asList(
-            "status", "transaction status", "txn status", "payment status"
-    );
+    // Header aliases live in StatementSchema, which compiles them into column indexes once per file
 
     // ========== DATE FORMATS ==========
     private static final List<DateTimeFormatter> DATE_FORMATS = Arrays.asList(
@@ -67,22 +57,111 @@ public class BankStatementParser {
             DateTimeFormatter.ofPattern("dd-MMM-yyyy")
     );
 
+    // Prefixes of the placeholder references given to lines that carry none
+    private static final List<String> GENERATED_REFERENCE_PREFIXES = Arrays.asList("IMP-", "NO-REF-", "ALT-");
+
+    /**
+     * True when the line had no bank reference of its own and one was made up at parse time.
+     * Such references differ on every upload, so they cannot be used to spot re-imports.
+     */
+    public static boolean isGeneratedReference(String reference) {
+        if (reference == null || reference.trim().isEmpty()) {
+            return true;
+        }
+        for (String prefix : GENERATED_REFERENCE_PREFIXES) {
+            if (reference.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ========== EXCEL READER SELECTION ==========
+    @Value("${transaction.import.excel.streaming-threshold-bytes:2097152}")
+    private long excelStreamingThresholdBytes = 2 * 1024 * 1024;
+
+    // Rows kept in memory by the streaming reader
+    @Value("${transaction.import.excel.row-cache-size:100}")
+    private int excelRowCacheSize = 100;
+
+    private static final int EXCEL_STREAM_BUFFER_SIZE = 4096;
+
+    // Rows sampled to infer the layout of a statement whose header is not known yet
+    @Value("${transaction.import.schema.sample-rows:50}")
+    private int schemaSampleRows = 50;
+
+    // ========== PARALLEL CSV SETTINGS ==========
+    @Value("${transaction.import.csv.parallel-threshold-bytes:8388608}")
+    private long csvParallelThresholdBytes = 8 * 1024 * 1024;
+
+    // Worker threads for chunk parsing, 0 = one per core
+    @Value("${transaction.import.csv.parallelism:0}")
+    private int csvParallelism = 0;
+
+    @Value("${transaction.import.csv.chunk-bytes:1048576}")
+    private int csvChunkBytes = 1024 * 1024;
+
+    private static final CSVFormat CSV_CHUNK_FORMAT = CSVFormat.DEFAULT
+            .withTrim()
+            .withIgnoreEmptyLines();
+
+    private volatile ExecutorService csvPool;
+
+    @PreDestroy
+    public void shutdown() {
+        if (csvPool != null) {
+            csvPool.shutdownNow();
+        }
+    }
+
     // ========== PUBLIC PARSING METHODS ==========
 
     public List<BankTransaction> parseCsv(MultipartFile file, String bankAccount) throws IOException {
-        log.info("=== CSV PARSER START ===");
-        log.info("File: {} ({} bytes, type: {})",
-                file.getOriginalFilename(), file.getSize(), file.getContentType());
+        List<BankTransaction> transactions = new ArrayList<>();
+        streamCsv(file, bankAccount, UUID.randomUUID().toString(), transactions::add);
+        log.info("✅ CSV Parser returning {} transactions", transactions.size());
+        return transactions;
+    }
 
+    public List<BankTransaction> parseExcel(MultipartFile file, String bankAccount) throws IOException {
         List<BankTransaction> transactions = new ArrayList<>();
-        String importBatchId = UUID.randomUUID().toString();
+        streamExcel(file, bankAccount, UUID.randomUUID().toString(), transactions::add);
+        log.info("✅ Excel Parser returning {} transactions", transactions.size());
+        return transactions;
+    }
+
+    // ========== STREAMING PARSING METHODS ==========
+
+    /**
+     * Parse a CSV statement record by record, handing each transaction to the sink as soon
+     * as it is built. Nothing is accumulated here, so heap use does not grow with file size.
+     *
+     * @return number of transactions emitted
+     */
+    public int streamCsv(MultipartFile file, String bankAccount, String importBatchId,
+                         Consumer<BankTransaction> sink) throws IOException {
+        return streamCsv(file, bankAccount, importBatchId, sink, shouldParseCsvInParallel(file));
+    }
+
+    int streamCsv(MultipartFile file, String bankAccount, String importBatchId,
+                  Consumer<BankTransaction> sink, boolean parallel) throws IOException {
+        log.info("=== CSV PARSER START ===");
+        log.info("File: {} ({} bytes, type: {}, {})",
+                file.getOriginalFilename(), file.getSize(), file.getContentType(),
+                parallel ? "parallel" : "sequential");
 
         // Check if file is empty
         if (file.isEmpty() || file.getSize() == 0) {
             log.error("❌ File is empty!");
-            return transactions;
+            return 0;
+        }
+
+        if (parallel) {
+            return streamCsvInParallel(file, bankAccount, importBatchId, sink);
         }
 
+        SchemaRowReader rows = null;
+
         try (Reader reader = new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8);
              CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT
                      .withFirstRecordAsHeader()
@@ -96,60 +175,64 @@ public class BankStatementParser {
 
             if (headerMap.isEmpty()) {
                 log.warn("⚠️ No headers found. Trying without headers...");
-                return parseCsvWithoutHeaders(file, bankAccount, importBatchId);
+                return emitAll(parseCsvWithoutHeaders(file, bankAccount, importBatchId), sink);
             }
 
-            int recordCount = 0;
-            int successCount = 0;
+            // Header names in column order
+            String[] headers = new String[headerMap.values().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1];
+            Arrays.fill(headers, "");
+            headerMap.forEach((name, index) -> headers[index] = name);
 
+            rows = new SchemaRowReader("csv", Arrays.asList(headers), bankAccount, importBatchId, "CSV Import", sink);
             for (CSVRecord record : csvParser) {
-                recordCount++;
-                try {
-                    log.debug("Parsing record {}: {}", recordCount, record);
-
-                    BankTransaction transaction = parseRecord(record, headerMap, bankAccount, importBatchId);
-                    if (transaction != null) {
-                        transactions.add(transaction);
-                        successCount++;
-                        log.debug("✅ Added transaction: Ref={}, Amount={}, Desc={}",
-                                transaction.getBankReference(),
-                                transaction.getAmount(),
-                                transaction.getDescription());
-                    }
-                } catch (Exception e) {
-                    log.warn("⚠️ Failed to parse record {}: {}", recordCount, e.getMessage());
-                    // Continue with next record
-                }
+                rows.accept(record.toList().toArray(new String[0]));
             }
+            rows.finish();
 
             log.info("📊 CSV Parsing complete: {} records processed, {} transactions created",
-                    recordCount, successCount);
+                    rows.getRowCount(), rows.getEmitted());
+            return rows.getEmitted();
 
         } catch (Exception e) {
+            int successCount = rows != null ? rows.getEmitted() : 0;
+            // Rows already handed downstream cannot be taken back, so only fall back
+            // when the file failed before producing anything
+            if (successCount > 0) {
+                log.error("❌ CSV parsing failed after {} transactions", successCount, e);
+                throw new IOException("Failed to parse CSV file: " + e.getMessage(), e);
+            }
             log.error("❌ Failed to parse CSV file", e);
             // Try alternative parsing method
-            return parseCsvWithAlternativeMethod(file, bankAccount, importBatchId);
+            return emitAll(parseCsvWithAlternativeMethod(file, bankAccount, importBatchId), sink);
         }
+    }
 
-        log.info("✅ CSV Parser returning {} transactions", transactions.size());
-        return transactions;
+    /**
+     * Parse an Excel statement row by row, handing each transaction to the sink.
+     * Large .xlsx files are read with the streaming reader (see {@link #shouldStreamExcel}).
+     *
+     * @return number of transactions emitted
+     */
+    public int streamExcel(MultipartFile file, String bankAccount, String importBatchId,
+                           Consumer<BankTransaction> sink) throws IOException {
+        return streamExcel(file, bankAccount, importBatchId, sink, shouldStreamExcel(file));
     }
 
-    public List<BankTransaction> parseExcel(MultipartFile file, String bankAccount) throws IOException {
+    int streamExcel(MultipartFile file, String bankAccount, String importBatchId,
+                    Consumer<BankTransaction> sink, boolean streaming) throws IOException {
         log.info("=== EXCEL PARSER START ===");
-        log.info("File: {} ({} bytes, type: {})",
-                file.getOriginalFilename(), file.getSize(), file.getContentType());
-
-        List<BankTransaction> transactions = new ArrayList<>();
-        String importBatchId = UUID.randomUUID().toString();
+        log.info("File: {} ({} bytes, type: {}, {} reader)",
+                file.getOriginalFilename(), file.getSize(), file.getContentType(),
+                streaming ? "streaming" : "in-memory");
 
-        try (Workbook workbook = WorkbookFactory.create(file.getInputStream())) {
+        try (InputStream in = file.getInputStream();
+             Workbook workbook = streaming ? openStreamingWorkbook(in) : WorkbookFactory.create(in)) {
             Sheet sheet = workbook.getSheetAt(0);
             Iterator<Row> rowIterator = sheet.iterator();
 
             if (!rowIterator.hasNext()) {
                 log.warn("⚠️ Excel sheet is empty");
-                return transactions;
+                return 0;
             }
 
             // Read headers from first row
@@ -167,177 +250,394 @@ public class BankStatementParser {
 
             if (headerMap.isEmpty()) {
                 log.warn("⚠️ No headers found in Excel. Using column positions...");
-                return parseExcelWithoutHeaders(sheet, bankAccount, importBatchId);
+                return parseExcelWithoutHeaders(rowIterator, bankAccount, importBatchId, sink);
             }
 
-            int rowCount = 0;
-            int successCount = 0;
+            String[] headers = new String[headerRow.getLastCellNum() > 0 ? headerRow.getLastCellNum() : 0];
+            for (int c = 0; c < headers.length; c++) {
+                headers[c] = getCellValue(headerRow.getCell(c)).toLowerCase().trim();
+            }
 
+            SchemaRowReader rows = new SchemaRowReader("xlsx", Arrays.asList(headers),
+                    bankAccount, importBatchId, "Excel Import", sink);
             while (rowIterator.hasNext()) {
                 Row row = rowIterator.next();
-                rowCount++;
-
-                try {
-                    BankTransaction transaction = parseExcelRow(row, headerMap, bankAccount, importBatchId);
-                    if (transaction != null) {
-                        transactions.add(transaction);
-                        successCount++;
-                    }
-                } catch (Exception e) {
-                    log.warn("⚠️ Failed to parse Excel row {}: {}", rowCount, e.getMessage());
+                String[] values = new String[headers.length];
+                for (int c = 0; c < values.length; c++) {
+                    values[c] = getCellValue(row.getCell(c));
                 }
+                rows.accept(values);
             }
+            rows.finish();
 
             log.info("📊 Excel Parsing complete: {} rows processed, {} transactions created",
-                    rowCount, successCount);
+                    rows.getRowCount(), rows.getEmitted());
+            return rows.getEmitted();
 
         } catch (Exception e) {
             log.error("❌ Failed to parse Excel file", e);
             throw new IOException("Failed to parse Excel file: " + e.getMessage(), e);
         }
+    }
 
-        log.info("✅ Excel Parser returning {} transactions", transactions.size());
-        return transactions;
+    /**
+     * The in-memory POI model costs tens of bytes of heap per byte of .xlsx, so files above
+     * the threshold are walked with excel-streaming-reader, which keeps only a small window of
+     * rows.
+     * Legacy .xls files have no streaming reader and always load in memory.
+     */
+    boolean shouldStreamExcel(MultipartFile file) {
+        if (file.getSize() < excelStreamingThresholdBytes) {
+            return false;
+        }
+        try (InputStream in = FileMagic.prepareToCheckMagic(file.getInputStream())) {
+            return FileMagic.valueOf(in) == FileMagic.OOXML;
+        } catch (IOException e) {
+            return false;
+        }
     }
 
-    // ========== PRIVATE PARSING METHODS ==========
+    private Workbook openStreamingWorkbook(InputStream in) {
+        return StreamingReader.builder()
+                .rowCacheSize(excelRowCacheSize)
+                .bufferSize(EXCEL_STREAM_BUFFER_SIZE)
+                .open(in);
+    }
 
-    private BankTransaction parseRecord(CSVRecord record, Map<String, Integer> headerMap,
-                                        String bankAccount, String importBatchId) {
-        // Debug: Show what we're trying to parse
-        if (log.isDebugEnabled()) {
-            log.debug("Record size: {}, Values: {}", record.size(), record.toString());
-        }
+    private int emitAll(List<BankTransaction> transactions, Consumer<BankTransaction> sink) {
+        transactions.forEach(sink);
+        return transactions.size();
+    }
 
-        String dateStr = getValueFromRecord(record, headerMap, DATE_COLUMNS);
-        String amountStr = getValueFromRecord(record, headerMap, AMOUNT_COLUMNS);
-        String description = getValueFromRecord(record, headerMap, DESC_COLUMNS);
-        String reference = getValueFromRecord(record, headerMap, REF_COLUMNS);
-        String statusStr = getValueFromRecord(record, headerMap, STATUS_COLUMNS);
+    // ========== PARALLEL CSV PARSING ==========
+
+    /**
+     * Large CSV statements are cut into record-aligned byte ranges (see {@link CsvChunker}) and
+     * parsed on a work-stealing pool. Chunks are handed to the sink strictly in file order, and
+     * only a window of a few chunks per worker is in flight, so heap use stays bounded.
+     */
+    boolean shouldParseCsvInParallel(MultipartFile file) {
+        return file.getSize() >= csvParallelThresholdBytes
+                && file.getSize() <= Integer.MAX_VALUE
+                && csvParallelism() > 1;
+    }
 
-        // Log what we found for debugging
-        log.debug("Parsed values - Date: [{}], Amount: [{}], Desc: [{}], Ref: [{}], Status: [{}]",
-                dateStr, amountStr, description, reference, statusStr);
+    private int streamCsvInParallel(MultipartFile file, String bankAccount, String importBatchId,
+                                    Consumer<BankTransaction> sink) throws IOException {
+        ByteBuffer data = readContent(file);
 
-        // Validate required fields
-        if (dateStr == null || dateStr.trim().isEmpty()) {
-            log.warn("⚠️ Skipping record - Missing date");
-            return null;
+        int headerEnd = CsvChunker.nextRecordEnd(data, 0, 1);
+        List<String> headers = parseCsvHeader(decode(data, 0, headerEnd));
+        if (headers.isEmpty()) {
+            log.warn("⚠️ No headers found. Parsing sequentially...");
+            return streamCsv(file, bankAccount, importBatchId, sink, false);
         }
 
-        if (amountStr == null || amountStr.trim().isEmpty()) {
-            log.warn("⚠️ Skipping record - Missing amount");
-            return null;
-        }
+        int[] bounds = CsvChunker.split(data, headerEnd, Math.max(4096, csvChunkBytes));
+        int chunks = bounds.length - 1;
+        log.info("✅ CSV Headers detected: {} ({} chunks)", headers, chunks);
 
-        if (description == null || description.trim().isEmpty()) {
-            log.warn("⚠️ Skipping record - Missing description");
-            return null;
-        }
+        StatementSchema schema = resolveCsvSchema(headers, data, bounds);
+
+        ExecutorService pool = csvPool();
+        int window = csvParallelism() * 2;
+        Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>(window);
+        int next = 0;
+        int rowCount = 0;
+        int emitted = 0;
 
         try {
-            LocalDate date = parseDate(dateStr);
-            Double amount = parseAmount(amountStr);
+            while (next < chunks && inFlight.size() < window) {
+                inFlight.add(submitChunk(pool, data, bounds, next++, schema, bankAccount, importBatchId));
+            }
+            while (!inFlight.isEmpty()) {
+                ParsedChunk chunk = inFlight.poll().get();
+                if (next < chunks) {
+                    inFlight.add(submitChunk(pool, data, bounds, next++, schema, bankAccount, importBatchId));
+                }
+                rowCount += chunk.rowCount;
+                for (BankTransaction transaction : chunk.transactions) {
+                    sink.accept(transaction);
+                    emitted++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV parsing interrupted", e);
+        } catch (ExecutionException e) {
+            log.error("❌ CSV parsing failed after {} transactions", emitted, e.getCause());
+            throw new IOException("Failed to parse CSV file: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+
+        log.info("📊 CSV Parsing complete: {} records processed, {} transactions created",
+                rowCount, emitted);
+        return emitted;
+    }
 
-            if (amount == null || amount == 0.0) {
-                log.warn("⚠️ Skipping record - Invalid amount: {}", amountStr);
-                return null;
+    private Future<ParsedChunk> submitChunk(ExecutorService pool, ByteBuffer data, int[] bounds, int index,
+                                            StatementSchema schema, String bankAccount, String importBatchId) {
+        return pool.submit(() -> parseChunk(data, bounds[index], bounds[index + 1], index,
+                schema, bankAccount, importBatchId));
+    }
+
+    private ParsedChunk parseChunk(ByteBuffer data, int start, int end, int index,
+                                   StatementSchema schema, String bankAccount, String importBatchId) {
+        List<String[]> rows = parseCsvChunk(decode(data, start, end), index);
+        List<BankTransaction> transactions = new ArrayList<>(rows.size());
+        for (String[] values : rows) {
+            try {
+                BankTransaction transaction = toTransaction(values, schema, bankAccount, importBatchId, "CSV Import");
+                if (transaction != null) {
+                    transactions.add(transaction);
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to parse row in chunk {}: {}", index, e.getMessage());
             }
+        }
+        return new ParsedChunk(rows.size(), transactions);
+    }
 
-            PaymentMethod paymentMethod = detectPaymentMethod(description);
-            TransactionStatus status = parseTransactionStatus(statusStr);
+    /**
+     * Records of one chunk. A chunk the CSV grammar rejects (stray quote, text after a closing
+     * quote) is split on plain separators instead, so the damage stays inside that chunk and
+     * the rest of the file is neither re-read nor affected.
+     */
+    private List<String[]> parseCsvChunk(String text, int index) {
+        List<String[]> rows = new ArrayList<>();
+        try (CSVParser parser = CSVParser.parse(text, CSV_CHUNK_FORMAT)) {
+            for (CSVRecord record : parser) {
+                rows.add(record.toList().toArray(new String[0]));
+            }
+            return rows;
+        } catch (Exception e) {
+            log.warn("⚠️ CSV chunk {} is malformed ({}). Splitting its lines instead...", index, e.getMessage());
+            return splitCsvLines(text);
+        }
+    }
 
-            // Generate reference if not provided
-            if (reference == null || reference.trim().isEmpty()) {
-                reference = "IMP-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    private List<String[]> splitCsvLines(String text) {
+        List<String[]> rows = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            // Try comma separator first, then semicolon
+            String[] parts = line.contains(";") ? line.split(";") : line.split(",");
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = parts[i].trim().replace("\"", "");
             }
+            rows.add(parts);
+        }
+        return rows;
+    }
 
-            // Clean and truncate description if too long
-            description = description.trim();
-            if (description.length() > 500) {
-                description = description.substring(0, 497) + "...";
+    private StatementSchema resolveCsvSchema(List<String> headers, ByteBuffer data, int[] bounds) {
+        String headerFingerprint = StatementFingerprint.ofHeader("csv", headers);
+        StatementSchema schema = statementSchemaRegistry.find(headerFingerprint);
+        if (schema != null) {
+            log.info("✅ Known statement layout: {}", schema.getFormatName());
+            return schema;
+        }
+        // Samples come from the first chunk, which is parsed again with the others
+        List<String[]> samples = bounds.length > 1
+                ? parseCsvChunk(decode(data, bounds[0], bounds[1]), 0)
+                : List.of();
+        return statementSchemaRegistry.learn(headerFingerprint, headers,
+                samples.subList(0, Math.min(samples.size(), schemaSampleRows)));
+    }
+
+    // Same names as the sequential parser's header map: trailing blank columns are dropped
+    private List<String> parseCsvHeader(String line) throws IOException {
+        try (CSVParser parser = CSVParser.parse(line, CSV_CHUNK_FORMAT)) {
+            Iterator<CSVRecord> records = parser.iterator();
+            if (!records.hasNext()) {
+                return List.of();
+            }
+            List<String> headers = new ArrayList<>(records.next().toList());
+            while (!headers.isEmpty() && headers.get(headers.size() - 1).isEmpty()) {
+                headers.remove(headers.size() - 1);
             }
+            return headers;
+        }
+    }
 
-            BankTransaction transaction = BankTransaction.builder()
-                    .bankReference(reference)
-                    .transactionDate(date)
-                    .description(description)
-                    .amount(amount)
-                    .bankAccount(bankAccount != null ? bankAccount : "DEFAULT_ACCOUNT")
-                    .status(status)
-                    .paymentMethod(paymentMethod)
-                    .fileName("CSV Import")
-                    .importBatchId(importBatchId)
-                    .smsSent(false)
-                    .build();
+    // Temp-file uploads are memory-mapped rather than copied onto the heap
+    private ByteBuffer readContent(MultipartFile file) throws IOException {
+        if (file instanceof TempFileMultipartFile tempFile) {
+            try (FileChannel channel = FileChannel.open(tempFile.getPath(), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        return ByteBuffer.wrap(file.getBytes());
+    }
 
-            log.debug("✅ Created transaction: Ref={}, Date={}, Amount={}, Desc={}",
-                    transaction.getBankReference(), transaction.getTransactionDate(),
-                    transaction.getAmount(), transaction.getDescription());
+    // Ranges end after a line feed, so they never split a UTF-8 sequence
+    private static String decode(ByteBuffer data, int start, int end) {
+        return StandardCharsets.UTF_8.decode(data.slice(start, end - start)).toString();
+    }
 
-            return transaction;
+    private int csvParallelism() {
+        return csvParallelism > 0 ? csvParallelism : Runtime.getRuntime().availableProcessors();
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Error parsing transaction values. Date: {}, Amount: {}, Desc: {}",
-                    dateStr, amountStr, description, e);
-            return null;
+    private ExecutorService csvPool() {
+        ExecutorService pool = csvPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = csvPool;
+                if (pool == null) {
+                    pool = Executors.newWorkStealingPool(csvParallelism());
+                    csvPool = pool;
+                }
+            }
         }
+        return pool;
     }
 
-    private BankTransaction parseExcelRow(Row row, Map<String, Integer> headerMap,
-                                          String bankAccount, String importBatchId) {
-        String dateStr = getValueFromRow(row, headerMap, DATE_COLUMNS);
-        String amountStr = getValueFromRow(row, headerMap, AMOUNT_COLUMNS);
-        String description = getValueFromRow(row, headerMap, DESC_COLUMNS);
-        String reference = getValueFromRow(row, headerMap, REF_COLUMNS);
-        String statusStr = getValueFromRow(row, headerMap, STATUS_COLUMNS);
+    private static final class ParsedChunk {
+        private final int rowCount;
+        private final List<BankTransaction> transactions;
 
-        // Validate required fields
-        if (dateStr == null || dateStr.trim().isEmpty() ||
-                amountStr == null || amountStr.trim().isEmpty() ||
-                description == null || description.trim().isEmpty()) {
-            return null;
+        ParsedChunk(int rowCount, List<BankTransaction> transactions) {
+            this.rowCount = rowCount;
+            this.transactions = transactions;
         }
+    }
 
-        try {
-            LocalDate date = parseDate(dateStr);
-            Double amount = parseAmount(amountStr);
+    // ========== SCHEMA-DRIVEN ROW PARSING ==========
+
+    /**
+     * Feeds rows through the file's compiled schema. If the header is not in the registry,
+     * the first rows are held back until enough have been seen to infer one.
+     */
+    private final class SchemaRowReader {
+        private final List<String> headers;
+        private final String headerFingerprint;
+        private final String bankAccount;
+        private final String importBatchId;
+        private final String fileName;
+        private final Consumer<BankTransaction> sink;
+
+        private StatementSchema schema;
+        private List<String[]> samples;
+        private int rowCount;
+        private int emitted;
+
+        SchemaRowReader(String kind, List<String> headers, String bankAccount, String importBatchId,
+                        String fileName, Consumer<BankTransaction> sink) {
+            this.headers = headers;
+            this.headerFingerprint = StatementFingerprint.ofHeader(kind, headers);
+            this.bankAccount = bankAccount;
+            this.importBatchId = importBatchId;
+            this.fileName = fileName;
+            this.sink = sink;
+            this.schema = statementSchemaRegistry.find(headerFingerprint);
+            if (schema != null) {
+                log.info("✅ Known statement layout: {}", schema.getFormatName());
+            } else {
+                samples = new ArrayList<>(schemaSampleRows);
+            }
+        }
 
-            if (amount == null || amount == 0.0) {
-                return null;
+        void accept(String[] values) {
+            rowCount++;
+            if (schema != null) {
+                emit(values, rowCount);
+                return;
+            }
+            samples.add(values);
+            if (samples.size() >= schemaSampleRows) {
+                compileFromSamples();
             }
+        }
 
-            PaymentMethod paymentMethod = detectPaymentMethod(description);
-            TransactionStatus status = parseTransactionStatus(statusStr);
+        void finish() {
+            if (schema == null) {
+                compileFromSamples();
+            }
+        }
+
+        int getRowCount() {
+            return rowCount;
+        }
 
-            // Generate reference if not provided
-            if (reference == null || reference.trim().isEmpty()) {
-                reference = "IMP-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        int getEmitted() {
+            return emitted;
+        }
+
+        private void compileFromSamples() {
+            schema = statementSchemaRegistry.learn(headerFingerprint, headers, samples);
+            List<String[]> held = samples;
+            samples = null;
+            for (int i = 0; i < held.size(); i++) {
+                emit(held.get(i), i + 1);
             }
+        }
 
-            // Clean description
-            description = description.trim();
-            if (description.length() > 500) {
-                description = description.substring(0, 497) + "...";
+        private void emit(String[] values, int rowNumber) {
+            BankTransaction transaction = null;
+            try {
+                transaction = toTransaction(values, schema, bankAccount, importBatchId, fileName);
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to parse row {}: {}", rowNumber, e.getMessage());
+            }
+            // Outside the per-row try: a failing sink must stop the parse, not skip a row
+            if (transaction != null) {
+                sink.accept(transaction);
+                emitted++;
             }
+        }
+    }
 
-            return BankTransaction.builder()
-                    .bankReference(reference)
-                    .transactionDate(date)
-                    .description(description)
-                    .amount(amount)
-                    .bankAccount(bankAccount != null ? bankAccount : "DEFAULT_ACCOUNT")
-                    .status(status)
-                    .paymentMethod(paymentMethod)
-                    .fileName("Excel Import")
-                    .importBatchId(importBatchId)
-                    .smsSent(false)
-                    .build();
+    private BankTransaction toTransaction(String[] values, StatementSchema schema,
+                                          String bankAccount, String importBatchId, String fileName) {
+        String dateStr = schema.date(values);
+        String description = schema.description(values);
+        String reference = schema.reference(values);
 
-        } catch (Exception e) {
-            log.error("Error parsing Excel row values", e);
+        // Validate required fields
+        if (dateStr == null || !schema.hasAmount(values) || description == null) {
+            log.debug("⚠️ Skipping row - missing date, amount or description");
+            return null;
+        }
+
+        Double amount = schema.amount(values);
+        if (amount == null || amount == 0.0) {
+            log.debug("⚠️ Skipping row - Invalid amount");
             return null;
         }
+
+        // Compiled layout first; only rows that don't fit it pay for the lenient parser
+        LocalDate date = schema.parseDate(dateStr);
+        if (date == null) {
+            date = parseDate(dateStr);
+        }
+
+        // Generate reference if not provided
+        if (reference == null) {
+            reference = "IMP-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        }
+
+        // Clean and truncate description if too long
+        if (description.length() > 500) {
+            description = description.substring(0, 497) + "...";
+        }
+
+        return BankTransaction.builder()
+                .bankReference(reference)
+                .transactionDate(date)
+                .description(description)
+                .amount(amount)
+                .bankAccount(bankAccount != null ? bankAccount : "DEFAULT_ACCOUNT")
+                .status(parseTransactionStatus(schema.status(values)))
+                .paymentMethod(detectPaymentMethod(description))
+                .fileName(fileName)
+                .importBatchId(importBatchId)
+                .smsSent(false)
+                .build();
     }
 
     // ========== FALLBACK PARSING METHODS ==========
@@ -403,17 +703,13 @@ public class BankStatementParser {
         return transactions;
     }
 
-    private List<BankTransaction> parseExcelWithoutHeaders(Sheet sheet, String bankAccount, String importBatchId) {
+    // Continues the caller's iterator (past the first row, which might be headers) so that a
+    // streaming sheet, which can only be walked once, works the same as an in-memory one
+    private int parseExcelWithoutHeaders(Iterator<Row> rowIterator, String bankAccount, String importBatchId,
+                                         Consumer<BankTransaction> sink) {
         log.info("🔄 Trying Excel parsing without headers...");
 
-        List<BankTransaction> transactions = new ArrayList<>();
-        Iterator<Row> rowIterator = sheet.iterator();
-
-        // Skip first row if it might be headers
-        if (rowIterator.hasNext()) {
-            rowIterator.next();
-        }
-
+        int successCount = 0;
         int rowCount = 0;
         while (rowIterator.hasNext()) {
             Row row = rowIterator.next();
@@ -450,15 +746,16 @@ public class BankStatementParser {
                             .smsSent(false)
                             .build();
 
-                    transactions.add(transaction);
+                    sink.accept(transaction);
+                    successCount++;
                 }
             } catch (Exception e) {
                 log.warn("Failed to parse headerless Excel row {}: {}", rowCount, e.getMessage());
             }
         }
 
-        log.info("📊 Headerless Excel parsing: {} transactions created", transactions.size());
-        return transactions;
+        log.info("📊 Headerless Excel parsing: {} transactions created", successCount);
+        return successCount;
     }
 
     private List<BankTransaction> parseCsvWithAlternativeMethod(MultipartFile file, String bankAccount, String importBatchId) {
@@ -535,37 +832,6 @@ public class BankStatementParser {
 
     // ========== HELPER METHODS ==========
 
-    private String getValueFromRecord(CSVRecord record, Map<String, Integer> headerMap, List<String> possibleKeys) {
-        for (String key : possibleKeys) {
-            if (headerMap.containsKey(key)) {
-                try {
-                    String value = record.get(key);
-                    if (value != null && !value.trim().isEmpty()) {
-                        return value.trim();
-                    }
-                } catch (IllegalArgumentException e) {
-                    // Column not found, try next key
-                }
-            }
-        }
-        return null;
-    }
-
-    private String getValueFromRow(Row row, Map<String, Integer> headerMap, List<String> possibleKeys) {
-        for (String key : possibleKeys) {
-            if (headerMap.containsKey(key)) {
-                Cell cell = row.getCell(headerMap.get(key));
-                if (cell != null) {
-                    String value = getCellValue(cell);
-                    if (value != null && !value.trim().isEmpty()) {
-                        return value.trim();
-                    }
-                }
-            }
-        }
-        return null;
-    }
-
     private String getCellValue(Cell cell) {
         if (cell == null) {
             return "";
@@ -0,0 +1,71 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits CSV bytes into record-aligned ranges that can be parsed independently.
+ *
+ * A range only ends at a line feed that terminates a record, never at one inside a quoted
+ * field, so a narration with an embedded newline is not cut in two. Quotes follow the rules
+ * of commons-csv's default format: a quote opens a quoted field only as the first character
+ * of the field, and a doubled quote inside one is a literal quote.
+ */
+final class CsvChunker {
+
+    private CsvChunker() {
+    }
+
+    /**
+     * Offsets of consecutive ranges covering {@code [from, data.limit())}: range i is
+     * {@code [bounds[i], bounds[i + 1])}. Each range is at least {@code targetBytes} long,
+     * except the last, and ends just after a record's line feed.
+     */
+    static int[] split(ByteBuffer data, int from, int targetBytes) {
+        int limit = data.limit();
+        int[] bounds = new int[16];
+        int count = 0;
+        bounds[count++] = from;
+        for (int start = from; start < limit; ) {
+            start = nextRecordEnd(data, start, targetBytes);
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, count * 2);
+            }
+            bounds[count++] = start;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Offset just past the first record-ending line feed at least {@code minBytes} after
+     * {@code from}, or the end of the data. {@code from} must be the start of a record.
+     */
+    static int nextRecordEnd(ByteBuffer data, int from, int minBytes) {
+        int limit = data.limit();
+        boolean quoted = false;
+        boolean fieldStart = true;
+        for (int i = from; i < limit; i++) {
+            byte b = data.get(i);
+            if (quoted) {
+                if (b == '"') {
+                    if (i + 1 < limit && data.get(i + 1) == '"') {
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                }
+            } else if (b == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else if (b == '\n') {
+                if (i + 1 - from >= minBytes) {
+                    return i + 1;
+                }
+                fieldStart = true;
+            } else {
+                fieldStart = b == ',';
+            }
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,540 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Typo-tolerant name index used when exact name matching fails.
+ *
+ * Every distinct name token is indexed by its character trigrams and by a phonetic key.
+ * A narration word pulls candidate tokens from both posting lists, candidates are scored
+ * with a bounded Damerau-Levenshtein distance (plus prefix credit for names truncated by
+ * the bank), and token scores are rolled up per student independent of word order, so
+ * "Wanjku Mary" still finds "Mary Wanjiku".
+ */
+public final class FuzzyNameIndex<T> {
+
+    private static final int MIN_TOKEN_LENGTH = 3;
+    private static final int MIN_PREFIX_LENGTH = 4;
+    private static final double PREFIX_SIMILARITY = 0.9;
+    private static final double PHONETIC_SIMILARITY = 0.75;
+    private static final double TRIGRAM_OVERLAP = 0.4;
+    private static final double ACCURACY_WEIGHT = 0.6;
+
+    private final List<T> items;
+    private final int[][] itemTokens;
+
+    private final String[] vocabulary;
+    private final String[] vocabularyKeys;
+    private final int[][] tokenItems;
+    private final Map<String, Integer> tokenIds;
+    private final Map<String, int[]> trigramPostings;
+    private final Map<String, int[]> phoneticPostings;
+
+    // Per-thread score arrays shared by every index, grown to the largest vocabulary searched,
+    // so a lookup allocates nothing that large and a rebuilt index leaves no arrays behind
+    private static final ThreadLocal<SearchScratch> SCRATCH = ThreadLocal.withInitial(SearchScratch::new);
+
+    private FuzzyNameIndex(List<T> items, int[][] itemTokens, String[] vocabulary, String[] vocabularyKeys,
+                           int[][] tokenItems, Map<String, Integer> tokenIds, Map<String, int[]> trigramPostings,
+                           Map<String, int[]> phoneticPostings) {
+        this.items = items;
+        this.itemTokens = itemTokens;
+        this.vocabulary = vocabulary;
+        this.vocabularyKeys = vocabularyKeys;
+        this.tokenItems = tokenItems;
+        this.tokenIds = tokenIds;
+        this.trigramPostings = trigramPostings;
+        this.phoneticPostings = phoneticPostings;
+    }
+
+    public static <T> FuzzyNameIndex<T> empty() {
+        return build(Collections.emptyList(), item -> null);
+    }
+
+    public static <T> FuzzyNameIndex<T> build(Collection<T> source, Function<T, String> nameFunction) {
+        List<T> items = new ArrayList<>(source.size());
+        List<int[]> itemTokenList = new ArrayList<>(source.size());
+        Map<String, Integer> tokenIds = new HashMap<>();
+        List<String> vocabulary = new ArrayList<>();
+        List<List<Integer>> tokenItemList = new ArrayList<>();
+
+        for (T item : source) {
+            List<String> tokens = tokenize(nameFunction.apply(item));
+            if (tokens.isEmpty()) {
+                continue;
+            }
+
+            int itemIndex = items.size();
+            items.add(item);
+
+            int[] ids = new int[tokens.size()];
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                Integer id = tokenIds.get(token);
+                if (id == null) {
+                    id = vocabulary.size();
+                    tokenIds.put(token, id);
+                    vocabulary.add(token);
+                    tokenItemList.add(new ArrayList<>(2));
+                }
+                ids[i] = id;
+                tokenItemList.get(id).add(itemIndex);
+            }
+            itemTokenList.add(ids);
+        }
+
+        Map<String, List<Integer>> trigrams = new HashMap<>();
+        Map<String, List<Integer>> phonetics = new HashMap<>();
+        String[] vocabularyKeys = new String[vocabulary.size()];
+        for (int id = 0; id < vocabulary.size(); id++) {
+            String token = vocabulary.get(id);
+            for (String trigram : trigrams(token)) {
+                trigrams.computeIfAbsent(trigram, k -> new ArrayList<>()).add(id);
+            }
+            vocabularyKeys[id] = phoneticKey(token);
+            phonetics.computeIfAbsent(vocabularyKeys[id], k -> new ArrayList<>()).add(id);
+        }
+
+        int[][] tokenItems = new int[tokenItemList.size()][];
+        for (int i = 0; i < tokenItems.length; i++) {
+            tokenItems[i] = toIntArray(tokenItemList.get(i));
+        }
+
+        return new FuzzyNameIndex<>(
+                items,
+                itemTokenList.toArray(new int[0][]),
+                vocabulary.toArray(new String[0]),
+                vocabularyKeys,
+                tokenItems,
+                tokenIds,
+                toPostings(trigrams),
+                toPostings(phonetics)
+        );
+    }
+
+    /**
+     * Rank items whose name tokens approximately appear in the text, best first.
+     */
+    public List<Candidate<T>> search(String text, int limit) {
+        List<String> words = tokenize(text);
+        if (words.isEmpty() || vocabulary.length == 0) {
+            return Collections.emptyList();
+        }
+
+        SearchScratch scratch = SCRATCH.get();
+        scratch.ensureCapacity(vocabulary.length);
+        try {
+            return search(words, limit, scratch);
+        } finally {
+            scratch.reset();
+        }
+    }
+
+    private List<Candidate<T>> search(List<String> words, int limit, SearchScratch scratch) {
+        float[] tokenScores = scratch.tokenScores;
+        int[] overlap = scratch.overlap;
+        IntBuffer scoredTokens = scratch.scoredTokens;
+        IntBuffer touched = scratch.touched;
+
+        String lastWord = words.get(words.size() - 1);
+        for (String word : new LinkedHashSet<>(words)) {
+            // Banks cut narrations at a fixed width, so only the last word may be a stub
+            int minPrefix = word.equals(lastWord) ? MIN_TOKEN_LENGTH : MIN_PREFIX_LENGTH;
+
+            String wordKey = phoneticKey(word);
+            Integer exactId = tokenIds.get(word);
+            if (exactId != null) {
+                recordScore(exactId, 1.0, tokenScores, scoredTokens);
+            }
+
+            List<String> wordTrigrams = trigrams(word);
+            for (String trigram : wordTrigrams) {
+                int[] posting = trigramPostings.get(trigram);
+                if (posting == null) {
+                    continue;
+                }
+                for (int id : posting) {
+                    if (overlap[id]++ == 0) {
+                        touched.add(id);
+                    }
+                }
+            }
+
+            int minOverlap = Math.max(1, (int) Math.ceil(wordTrigrams.size() * TRIGRAM_OVERLAP));
+            for (int i = 0; i < touched.size; i++) {
+                int id = touched.values[i];
+                if (overlap[id] >= minOverlap) {
+                    recordScore(id, similarity(word, wordKey, vocabulary[id], vocabularyKeys[id], minPrefix),
+                            tokenScores, scoredTokens);
+                }
+                overlap[id] = 0;
+            }
+            touched.clear();
+
+            int[] phoneticMatches = phoneticPostings.get(wordKey);
+            if (phoneticMatches != null) {
+                for (int id : phoneticMatches) {
+                    recordScore(id, similarity(word, wordKey, vocabulary[id], vocabularyKeys[id], minPrefix),
+                            tokenScores, scoredTokens);
+                }
+            }
+        }
+
+        // Only strong token hits seed candidates: a name made purely of phonetic
+        // look-alikes can never clear PHONETIC_SIMILARITY, so there is no point scoring it
+        Set<Integer> candidateItems = new HashSet<>();
+        for (int i = 0; i < scoredTokens.size; i++) {
+            int tokenId = scoredTokens.values[i];
+            if (tokenScores[tokenId] > PHONETIC_SIMILARITY) {
+                for (int itemIndex : tokenItems[tokenId]) {
+                    candidateItems.add(itemIndex);
+                }
+            }
+        }
+
+        List<Candidate<T>> candidates = new ArrayList<>();
+        for (int itemIndex : candidateItems) {
+            int[] tokens = itemTokens[itemIndex];
+            double sum = 0;
+            int matched = 0;
+            for (int tokenId : tokens) {
+                float score = tokenScores[tokenId];
+                if (score > 0) {
+                    sum += score;
+                    matched++;
+                }
+            }
+
+            // A single shared token (usually a surname) is never enough on its own
+            if (matched < Math.min(2, tokens.length)) {
+                continue;
+            }
+
+            // Weight how accurately the found tokens matched over how much of the name was
+            // found, so a name truncated after two of three tokens still ranks well
+            double accuracy = sum / matched;
+            double coverage = sum / tokens.length;
+            double score = ACCURACY_WEIGHT * accuracy + (1 - ACCURACY_WEIGHT) * coverage;
+
+            candidates.add(new Candidate<>(items.get(itemIndex), score, matched));
+        }
+
+        candidates.sort(Comparator.comparingDouble(Candidate<T>::getScore).reversed());
+        return candidates.size() > limit ? new ArrayList<>(candidates.subList(0, limit)) : candidates;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public int getVocabularySize() {
+        return vocabulary.length;
+    }
+
+    private static void recordScore(int tokenId, double similarity, float[] tokenScores, IntBuffer scoredTokens) {
+        if (similarity <= 0) {
+            return;
+        }
+        if (tokenScores[tokenId] == 0) {
+            scoredTokens.add(tokenId);
+        }
+        if (similarity > tokenScores[tokenId]) {
+            tokenScores[tokenId] = (float) similarity;
+        }
+    }
+
+    // ========== SCORING ==========
+
+    static double similarity(String word, String token, int minPrefixLength) {
+        return similarity(word, phoneticKey(word), token, phoneticKey(token), minPrefixLength);
+    }
+
+    private static double similarity(String word, String wordKey, String token, String tokenKey, int minPrefixLength) {
+        if (word.equals(token)) {
+            return 1.0;
+        }
+
+        double best = 0;
+
+        int maxEdits = Math.max(word.length(), token.length()) <= 5 ? 1 : 2;
+        int distance = boundedEditDistance(word, token, maxEdits);
+        if (distance <= maxEdits) {
+            best = 1.0 - (double) distance / Math.max(word.length(), token.length());
+        }
+
+        // Bank truncated the name mid-token
+        if (word.length() >= minPrefixLength && token.startsWith(word)) {
+            best = Math.max(best, PREFIX_SIMILARITY);
+        }
+
+        if (best < PHONETIC_SIMILARITY && wordKey.equals(tokenKey)
+                && Math.abs(word.length() - token.length()) <= 2) {
+            best = PHONETIC_SIMILARITY;
+        }
+
+        return best;
+    }
+
+    /**
+     * Optimal string alignment distance, abandoned as soon as it must exceed {@code max}.
+     * Returns {@code max + 1} when the strings are further apart than that.
+     */
+    static int boundedEditDistance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+
+        int[] previous2 = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                char cb = b.charAt(j - 1);
+                int cost = ca == cb ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+
+        return Math.min(previous[m], max + 1);
+    }
+
+    // ========== TOKENS, TRIGRAMS AND PHONETIC KEYS ==========
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? Character.toLowerCase(text.charAt(i)) : ' ';
+            if (c >= 'a' && c <= 'z') {
+                current.append(c);
+            } else if (current.length() > 0) {
+                if (current.length() >= MIN_TOKEN_LENGTH) {
+                    tokens.add(current.toString());
+                }
+                current.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private static List<String> trigrams(String token) {
+        // Single-space padding: the "  x" boundary gram matches every name starting
+        // with x and only inflates posting-list scans
+        String padded = " " + token + " ";
+        List<String> result = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /**
+     * Compact phonetic key in the spirit of (primary) Double Metaphone, tuned for the
+     * consonant clusters common in East African and English names. Vowels after the first
+     * letter are dropped and similar-sounding consonants share a code.
+     */
+    static String phoneticKey(String token) {
+        StringBuilder key = new StringBuilder(6);
+        int length = token.length();
+
+        for (int i = 0; i < length && key.length() < 6; i++) {
+            char c = token.charAt(i);
+            char next = i + 1 < length ? token.charAt(i + 1) : 0;
+            char code;
+
+            switch (c) {
+                case 'a': case 'e': case 'i': case 'o': case 'u':
+                    code = i == 0 ? 'A' : 0;
+                    break;
+                case 'y':
+                    code = i == 0 ? 'A' : (isVowel(next) ? 'Y' : 0);
+                    break;
+                case 'w':
+                    code = isVowel(next) ? 'W' : 0;
+                    break;
+                case 'h':
+                    code = i == 0 && isVowel(next) ? 'H' : 0;
+                    break;
+                case 'b': case 'p':
+                    if (c == 'p' && next == 'h') {
+                        code = 'F';
+                        i++;
+                    } else {
+                        code = 'P';
+                    }
+                    break;
+                case 'c':
+                    if (next == 'h') {
+                        code = 'X';
+                        i++;
+                    } else if (next == 'e' || next == 'i' || next == 'y') {
+                        code = 'S';
+                    } else {
+                        code = 'K';
+                    }
+                    break;
+                case 's':
+                    if (next == 'h') {
+                        code = 'X';
+                        i++;
+                    } else {
+                        code = 'S';
+                    }
+                    break;
+                case 't':
+                    if (next == 'h') {
+                        code = '0';
+                        i++;
+                    } else {
+                        code = 'T';
+                    }
+                    break;
+                case 'd':
+                    code = 'T';
+                    break;
+                case 'g':
+                    if (next == 'h') {
+                        code = 0;
+                        i++;
+                    } else if (next == 'e' || next == 'i' || next == 'y') {
+                        code = 'J';
+                    } else {
+                        code = 'K';
+                    }
+                    break;
+                case 'k': case 'q':
+                    code = i == 0 && next == 'n' ? 0 : 'K';
+                    break;
+                case 'x':
+                    code = 'S';
+                    break;
+                case 'z':
+                    code = 'S';
+                    break;
+                case 'v': case 'f':
+                    code = 'F';
+                    break;
+                case 'j':
+                    code = 'J';
+                    break;
+                case 'l': case 'm': case 'n': case 'r':
+                    code = Character.toUpperCase(c);
+                    break;
+                default:
+                    code = 0;
+            }
+
+            if (code != 0 && (key.length() == 0 || key.charAt(key.length() - 1) != code)) {
+                key.append(code);
+            }
+        }
+
+        return key.toString();
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u';
+    }
+
+    private static Map<String, int[]> toPostings(Map<String, List<Integer>> lists) {
+        Map<String, int[]> postings = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : lists.entrySet()) {
+            postings.put(entry.getKey(), toIntArray(entry.getValue()));
+        }
+        return postings;
+    }
+
+    private static int[] toIntArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    // ========== SEARCH SCRATCH ==========
+
+    private static final class SearchScratch {
+        // Best similarity seen for each vocabulary token across all narration words
+        private float[] tokenScores = new float[0];
+        // Trigrams each token shares with the current narration word
+        private int[] overlap = new int[0];
+        private final IntBuffer scoredTokens = new IntBuffer();
+        private final IntBuffer touched = new IntBuffer();
+
+        // Arrays are all zero between lookups, so growing needs no copy
+        void ensureCapacity(int vocabularySize) {
+            if (tokenScores.length < vocabularySize) {
+                int capacity = Math.max(vocabularySize, tokenScores.length + (tokenScores.length >> 1));
+                tokenScores = new float[capacity];
+                overlap = new int[capacity];
+            }
+        }
+
+        // Clears only what the last lookup wrote
+        void reset() {
+            for (int i = 0; i < scoredTokens.size; i++) {
+                tokenScores[scoredTokens.values[i]] = 0;
+            }
+            for (int i = 0; i < touched.size; i++) {
+                overlap[touched.values[i]] = 0;
+            }
+            scoredTokens.clear();
+            touched.clear();
+        }
+    }
+
+    // Growable int list, so posting-list scans don't box every token id
+    private static final class IntBuffer {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Candidate<T> {
+        private final T item;
+        private final double score;
+        private final int matchedTokens;
+    }
+}
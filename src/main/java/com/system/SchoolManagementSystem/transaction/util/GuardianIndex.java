@@ -0,0 +1,503 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import java.util.*;
+
+/**
+ * Parents, guardians and emergency contacts of the cached students, looked up by the phone
+ * number or name a payer leaves in the narration.
+ *
+ * Most fee payments are made by a parent, so the narration carries the payer's M-Pesa number
+ * or name rather than the student's. Every contact row (one per student it belongs to) is
+ * kept; a parent of several enrolled children therefore resolves to all of them, and the
+ * matcher treats that sibling set as candidates rather than a match.
+ *
+ * Phones are reduced to the 9-digit Kenyan subscriber number, so "+254 712 345 678",
+ * "254712345678", "0712-345678" and "712345678" are one key. Narrations with a masked number
+ * ("2547******678") are checked digit by digit against the contacts sharing its last three
+ * digits. Immutable; rebuilt with the rest of the student cache.
+ */
+public final class GuardianIndex {
+
+    private static final GuardianIndex EMPTY = builder(0).build();
+
+    public static final int EVIDENCE_PHONE = 1;
+    public static final int EVIDENCE_MASKED_PHONE = 1 << 1;
+    public static final int EVIDENCE_NAME = 1 << 2;
+
+    // A masked number alone must reveal this many subscriber digits to count
+    private static final int MIN_KNOWN_MASKED_DIGITS = 6;
+
+    // Digit groups joined when looking for a number split by spaces or dashes
+    private static final int MAX_PHONE_GROUPS = 4;
+
+    // ========== CONTACTS (struct-of-arrays) ==========
+    private final long[] studentIds;
+    private final String[] names;
+    // Subscriber number, 0 when the contact has none
+    private final long[] phones;
+    // Normalised name tokens per contact
+    private final String[][] nameTokens;
+
+    // ========== LOOKUP TABLES ==========
+    // Contacts with a phone, by phone; and by (last three digits, phone) for masked numbers
+    private final int[] byPhone;
+    private final int[] byPhoneSuffix;
+    // Contacts whose name contains the token
+    private final Map<String, int[]> contactsByToken;
+
+    private GuardianIndex(long[] studentIds, String[] names, long[] phones, String[][] nameTokens,
+                          int[] byPhone, int[] byPhoneSuffix, Map<String, int[]> contactsByToken) {
+        this.studentIds = studentIds;
+        this.names = names;
+        this.phones = phones;
+        this.nameTokens = nameTokens;
+        this.byPhone = byPhone;
+        this.byPhoneSuffix = byPhoneSuffix;
+        this.contactsByToken = contactsByToken;
+    }
+
+    public static GuardianIndex empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return studentIds.length;
+    }
+
+    public int getPhoneCount() {
+        return byPhone.length;
+    }
+
+    // ========== LOOKUP ==========
+
+    /**
+     * Students whose guardian's number or full name appears in the narration, each with the
+     * evidence bits that linked it. Several students means siblings (or namesake parents).
+     */
+    public Hits find(NormalizedNarration narration) {
+        if (studentIds.length == 0 || narration.isEmpty()) {
+            return Hits.NONE;
+        }
+        Map<Long, Integer> evidence = new LinkedHashMap<>();
+        String text = narration.getText();
+
+        // Phones first: the strongest link a narration can carry
+        Set<String> narrationTokens = null;
+        for (String number : phoneCandidates(text)) {
+            if (number.indexOf('*') < 0) {
+                long phone = Long.parseLong(number);
+                int from = firstWithPhone(phone);
+                for (int i = from; i < byPhone.length && phones[byPhone[i]] == phone; i++) {
+                    evidence.merge(studentIds[byPhone[i]], EVIDENCE_PHONE, (a, b) -> a | b);
+                }
+                continue;
+            }
+
+            // Masked: every visible digit must agree, and either enough digits are visible
+            // or the contact's name is in the narration too
+            int knownDigits = number.length() - countMasked(number);
+            int suffix = Integer.parseInt(number.substring(number.length() - 3));
+            for (int i = firstWithSuffix(suffix); i < byPhoneSuffix.length
+                    && phones[byPhoneSuffix[i]] % 1000 == suffix; i++) {
+                int contact = byPhoneSuffix[i];
+                if (!matchesMask(phones[contact], number)) {
+                    continue;
+                }
+                if (knownDigits < MIN_KNOWN_MASKED_DIGITS) {
+                    if (narrationTokens == null) {
+                        narrationTokens = tokens(narration);
+                    }
+                    if (!anyTokenPresent(contact, narrationTokens)) {
+                        continue;
+                    }
+                }
+                evidence.merge(studentIds[contact], EVIDENCE_MASKED_PHONE, (a, b) -> a | b);
+            }
+        }
+
+        // Names: first and last name of a contact both in the narration
+        if (narrationTokens == null) {
+            narrationTokens = tokens(narration);
+        }
+        for (String token : narrationTokens) {
+            int[] contacts = contactsByToken.get(token);
+            if (contacts == null) {
+                continue;
+            }
+            for (int contact : contacts) {
+                String[] parts = nameTokens[contact];
+                if (parts.length >= 2 && parts[0].equals(token)
+                        && narrationTokens.contains(parts[parts.length - 1])) {
+                    evidence.merge(studentIds[contact], EVIDENCE_NAME, (a, b) -> a | b);
+                }
+            }
+        }
+
+        if (evidence.isEmpty()) {
+            return Hits.NONE;
+        }
+        long[] ids = new long[evidence.size()];
+        int[] bits = new int[evidence.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : evidence.entrySet()) {
+            ids[i] = entry.getKey();
+            bits[i++] = entry.getValue();
+        }
+        return new Hits(ids, bits);
+    }
+
+    /**
+     * Guardian names recorded for a student, for logs and the manual matching screen.
+     */
+    public List<String> namesFor(long studentId) {
+        List<String> result = new ArrayList<>(2);
+        for (int contact = 0; contact < studentIds.length; contact++) {
+            if (studentIds[contact] == studentId && names[contact] != null && !result.contains(names[contact])) {
+                result.add(names[contact]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rough retained size, in bytes.
+     */
+    public long estimateHeapBytes() {
+        long bytes = 64 + studentIds.length * 8L + phones.length * 8L
+                + (byPhone.length + byPhoneSuffix.length) * 4L;
+        for (int contact = 0; contact < names.length; contact++) {
+            bytes += 16 + (names[contact] != null ? 40 + names[contact].length() : 0);
+            bytes += 16 + nameTokens[contact].length * 4L;
+        }
+        for (Map.Entry<String, int[]> entry : contactsByToken.entrySet()) {
+            bytes += 48 + 40 + entry.getKey().length() + 16 + entry.getValue().length * 4L;
+        }
+        return bytes;
+    }
+
+    // ========== PHONE NUMBERS ==========
+
+    /**
+     * 9-digit Kenyan subscriber number (7xxxxxxxx or 1xxxxxxxx) in any of the usual written
+     * forms, or -1 when the text is not one.
+     */
+    public static long normalizePhone(String phone) {
+        if (phone == null) {
+            return -1;
+        }
+        StringBuilder digits = new StringBuilder(13);
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        String subscriber = subscriberPart(digits.toString());
+        return subscriber != null ? Long.parseLong(subscriber) : -1;
+    }
+
+    /**
+     * Subscriber numbers written in the text, digit groups split by single spaces or dashes
+     * joined up. Masked digits stay as '*'.
+     */
+    static List<String> phoneCandidates(String text) {
+        // Maximal runs of digits and '*', and whether each follows the previous one directly
+        List<int[]> groups = new ArrayList<>();
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            char c = text.charAt(i);
+            if (!isPhoneChar(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && isPhoneChar(text.charAt(i))) {
+                i++;
+            }
+            boolean joined = !groups.isEmpty()
+                    && start - groups.get(groups.size() - 1)[1] == 1
+                    && (text.charAt(start - 1) == ' ' || text.charAt(start - 1) == '-');
+            groups.add(new int[]{start, i, joined ? 1 : 0});
+        }
+
+        List<String> numbers = new ArrayList<>(2);
+        for (int first = 0; first < groups.size(); first++) {
+            StringBuilder number = new StringBuilder(13);
+            for (int last = first; last < groups.size() && last < first + MAX_PHONE_GROUPS; last++) {
+                if (last > first && groups.get(last)[2] == 0) {
+                    break;
+                }
+                number.append(text, groups.get(last)[0], groups.get(last)[1]);
+                if (number.length() > 12) {
+                    break;
+                }
+                String subscriber = subscriberPart(number.toString());
+                if (subscriber != null && !numbers.contains(subscriber)) {
+                    numbers.add(subscriber);
+                }
+            }
+        }
+        return numbers;
+    }
+
+    // 254 + 9, 0 + 9, or 9 digits; masked digits allowed except in the prefix and the last three
+    private static String subscriberPart(String number) {
+        String subscriber;
+        if (number.length() == 13 && number.startsWith("2540")) {
+            subscriber = number.substring(4);
+        } else if (number.length() == 12 && number.startsWith("254")) {
+            subscriber = number.substring(3);
+        } else if (number.length() == 10 && number.charAt(0) == '0') {
+            subscriber = number.substring(1);
+        } else if (number.length() == 9) {
+            subscriber = number;
+        } else {
+            return null;
+        }
+        char first = subscriber.charAt(0);
+        if (first != '7' && first != '1') {
+            return null;
+        }
+        for (int i = subscriber.length() - 3; i < subscriber.length(); i++) {
+            if (subscriber.charAt(i) == '*') {
+                return null;
+            }
+        }
+        return subscriber;
+    }
+
+    private static boolean isPhoneChar(char c) {
+        return (c >= '0' && c <= '9') || c == '*';
+    }
+
+    private static int countMasked(String number) {
+        int masked = 0;
+        for (int i = 0; i < number.length(); i++) {
+            if (number.charAt(i) == '*') {
+                masked++;
+            }
+        }
+        return masked;
+    }
+
+    private static boolean matchesMask(long phone, String mask) {
+        String digits = Long.toString(phone);
+        if (digits.length() != mask.length()) {
+            return false;
+        }
+        for (int i = 0; i < mask.length(); i++) {
+            char c = mask.charAt(i);
+            if (c != '*' && c != digits.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ========== INTERNALS ==========
+
+    private int firstWithPhone(long phone) {
+        int low = 0;
+        int high = byPhone.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (phones[byPhone[mid]] < phone) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int firstWithSuffix(int suffix) {
+        int low = 0;
+        int high = byPhoneSuffix.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (phones[byPhoneSuffix[mid]] % 1000 < suffix) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean anyTokenPresent(int contact, Set<String> narrationTokens) {
+        for (String part : nameTokens[contact]) {
+            if (narrationTokens.contains(part)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> tokens(NormalizedNarration narration) {
+        Set<String> tokens = new HashSet<>(narration.tokenCount() * 2);
+        for (int t = 0; t < narration.tokenCount(); t++) {
+            if (narration.tokenLength(t) >= 2) {
+                tokens.add(narration.token(t));
+            }
+        }
+        return tokens;
+    }
+
+    private static String[] nameTokens(String name) {
+        if (name == null) {
+            return new String[0];
+        }
+        List<String> tokens = new ArrayList<>(3);
+        for (String token : name.split("[^a-z]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    // ========== RESULT ==========
+
+    /**
+     * Linked students and, per student, the EVIDENCE_* bits that linked it.
+     */
+    public static final class Hits {
+        static final Hits NONE = new Hits(new long[0], new int[0]);
+
+        private final long[] studentIds;
+        private final int[] evidence;
+
+        Hits(long[] studentIds, int[] evidence) {
+            this.studentIds = studentIds;
+            this.evidence = evidence;
+        }
+
+        public int size() {
+            return studentIds.length;
+        }
+
+        public boolean isEmpty() {
+            return studentIds.length == 0;
+        }
+
+        public long studentId(int index) {
+            return studentIds[index];
+        }
+
+        public int evidence(int index) {
+            return evidence[index];
+        }
+    }
+
+    // ========== BUILDER ==========
+
+    public static final class Builder {
+        private long[] studentIds;
+        private String[] names;
+        private long[] phones;
+        private int size;
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            studentIds = new long[capacity];
+            names = new String[capacity];
+            phones = new long[capacity];
+        }
+
+        /**
+         * One contact of one student. Contacts with neither a usable name nor phone are ignored.
+         */
+        public Builder add(Long studentId, String name, String phone) {
+            if (studentId == null) {
+                return this;
+            }
+            String normalizedName = name != null ? StudentMatchIndex.normalize(name) : "";
+            long normalizedPhone = normalizePhone(phone);
+            if (normalizedName.isEmpty() && normalizedPhone < 0) {
+                return this;
+            }
+            if (size == studentIds.length) {
+                int capacity = size * 2;
+                studentIds = Arrays.copyOf(studentIds, capacity);
+                names = Arrays.copyOf(names, capacity);
+                phones = Arrays.copyOf(phones, capacity);
+            }
+            studentIds[size] = studentId;
+            names[size] = normalizedName.isEmpty() ? null : normalizedName;
+            phones[size] = Math.max(0, normalizedPhone);
+            size++;
+            return this;
+        }
+
+        /**
+         * Copy every contact of {@code base} except those of the excluded students.
+         */
+        public Builder addAll(GuardianIndex base, Set<Long> excludedStudentIds) {
+            for (int contact = 0; contact < base.studentIds.length; contact++) {
+                if (!excludedStudentIds.contains(base.studentIds[contact])) {
+                    if (size == studentIds.length) {
+                        int capacity = size * 2;
+                        studentIds = Arrays.copyOf(studentIds, capacity);
+                        names = Arrays.copyOf(names, capacity);
+                        phones = Arrays.copyOf(phones, capacity);
+                    }
+                    studentIds[size] = base.studentIds[contact];
+                    names[size] = base.names[contact];
+                    phones[size] = base.phones[contact];
+                    size++;
+                }
+            }
+            return this;
+        }
+
+        public GuardianIndex build() {
+            long[] ids = Arrays.copyOf(studentIds, size);
+            String[] contactNames = Arrays.copyOf(names, size);
+            long[] contactPhones = Arrays.copyOf(phones, size);
+
+            String[][] tokens = new String[size][];
+            Map<String, List<Integer>> postings = new HashMap<>();
+            int withPhone = 0;
+            for (int contact = 0; contact < size; contact++) {
+                tokens[contact] = nameTokens(contactNames[contact]);
+                for (String token : tokens[contact]) {
+                    if (token.length() >= 2) {
+                        List<Integer> contacts = postings.computeIfAbsent(token, k -> new ArrayList<>(2));
+                        if (contacts.isEmpty() || contacts.get(contacts.size() - 1) != contact) {
+                            contacts.add(contact);
+                        }
+                    }
+                }
+                if (contactPhones[contact] > 0) {
+                    withPhone++;
+                }
+            }
+
+            Map<String, int[]> contactsByToken = new HashMap<>(postings.size() * 2);
+            postings.forEach((token, contacts) ->
+                    contactsByToken.put(token, contacts.stream().mapToInt(Integer::intValue).toArray()));
+
+            Integer[] phoneOrder = new Integer[withPhone];
+            int next = 0;
+            for (int contact = 0; contact < size; contact++) {
+                if (contactPhones[contact] > 0) {
+                    phoneOrder[next++] = contact;
+                }
+            }
+            Integer[] suffixOrder = phoneOrder.clone();
+            Arrays.sort(phoneOrder, Comparator.comparingLong(contact -> contactPhones[contact]));
+            Arrays.sort(suffixOrder, Comparator.<Integer>comparingLong(contact -> contactPhones[contact] % 1000)
+                    .thenComparingLong(contact -> contactPhones[contact]));
+
+            return new GuardianIndex(ids, contactNames, contactPhones, tokens,
+                    Arrays.stream(phoneOrder).mapToInt(Integer::intValue).toArray(),
+                    Arrays.stream(suffixOrder).mapToInt(Integer::intValue).toArray(),
+                    contactsByToken);
+        }
+    }
+}
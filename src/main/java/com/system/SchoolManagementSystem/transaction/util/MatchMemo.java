@@ -0,0 +1,216 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembered match outcomes, keyed by normalised narration plus amount band: standing orders
+ * and batch payments repeat the same line month after month, and the matcher's answer to it
+ * only changes when the roster does.
+ *
+ * Bounded LRU with a time-to-live, split into stripes so concurrent match workers rarely
+ * share a lock. "No match" is remembered too. Every entry records the student cache roster
+ * generation it was computed against; the first lookup under a newer one drops the whole
+ * memo, so nothing computed against an old roster is ever returned. Payments don't change
+ * the roster generation, so entries survive the balance updates of an import; the matcher
+ * therefore never stores an outcome that consulted balances, a miss included.
+ */
+public final class MatchMemo {
+
+    public static final long MISS = -2;
+    public static final long NO_MATCH = -1;
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long ttlMillis;
+    private volatile long generation = Long.MIN_VALUE;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public MatchMemo(int maxEntries, long ttlMillis) {
+        int perStripe = Math.max(1, maxEntries / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Amounts within the same whole shilling share an entry. Matching tolerances are at least
+     * KES 100, so the band only matters for an amount sitting right on a tolerance edge.
+     */
+    public static long amountBand(Double amount) {
+        return amount != null ? Math.round(amount) : Long.MIN_VALUE;
+    }
+
+    /**
+     * Remembered student id, {@link #NO_MATCH}, or {@link #MISS} when nothing valid is stored.
+     */
+    public long get(String narration, long amountBand, long currentGeneration, long nowMillis) {
+        advanceTo(currentGeneration);
+        Key key = new Key(narration, amountBand);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry entry = stripe.get(key);
+            if (entry != null) {
+                if (entry.generation == currentGeneration && nowMillis < entry.expiresAtMillis) {
+                    hits.incrementAndGet();
+                    return entry.studentId;
+                }
+                stripe.remove(key);
+                (entry.generation == currentGeneration ? expirations : invalidations).incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return MISS;
+    }
+
+    /**
+     * Remember the outcome: a student id or {@link #NO_MATCH}.
+     */
+    public void put(String narration, long amountBand, long currentGeneration, long studentId, long nowMillis) {
+        advanceTo(currentGeneration);
+        if (currentGeneration != generation) {
+            // Computed against a roster that has already been replaced
+            return;
+        }
+        Key key = new Key(narration, amountBand);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.put(key, new Entry(studentId, currentGeneration, nowMillis + ttlMillis));
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    // ========== METRICS ==========
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long lookups = hits.get() + misses.get();
+        return lookups == 0 ? 0 : (double) hits.get() / lookups;
+    }
+
+    /**
+     * Entries pushed out by the size bound.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Entries found past their time-to-live.
+     */
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Entries dropped because the student cache moved to a new roster generation.
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    // ========== INTERNALS ==========
+
+    private void advanceTo(long currentGeneration) {
+        if (currentGeneration <= generation) {
+            return;
+        }
+        synchronized (this) {
+            if (currentGeneration <= generation) {
+                return;
+            }
+            generation = currentGeneration;
+            int dropped = size();
+            clear();
+            invalidations.addAndGet(dropped);
+        }
+    }
+
+    private Stripe stripeFor(Key key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static final class Key {
+        private final String narration;
+        private final long amountBand;
+
+        Key(String narration, long amountBand) {
+            this.narration = narration;
+            this.amountBand = amountBand;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && amountBand == other.amountBand && narration.equals(other.narration);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * narration.hashCode() + Long.hashCode(amountBand);
+        }
+    }
+
+    private static final class Entry {
+        private final long studentId;
+        private final long generation;
+        private final long expiresAtMillis;
+
+        Entry(long studentId, long generation, long expiresAtMillis) {
+            this.studentId = studentId;
+            this.generation = generation;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    // Access-ordered, so the eldest entry is the least recently used
+    private final class Stripe extends LinkedHashMap<Key, Entry> {
+        private final int maxEntries;
+
+        Stripe(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over a fixed set of names.
+ *
+ * Built once per student cache generation and then shared read-only between threads.
+ * A description is scanned in a single linear pass and every name occurring in it is
+ * reported with its offsets, regardless of how many names the automaton holds.
+ * Transitions live in a primitive open-addressing table keyed by (state, char) so the
+ * automaton stays compact for rosters with tens of thousands of names.
+ */
+public final class NameAutomaton {
+
+    private static final NameAutomaton EMPTY = build(Collections.emptyList());
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private final String[] patterns;
+    private final int[] fail;
+    private final int[] output;
+    private final int[] outputLink;
+    private final int stateCount;
+    private final TransitionTable transitions;
+
+    private NameAutomaton(String[] patterns, int[] fail, int[] output, int[] outputLink,
+                          int stateCount, TransitionTable transitions) {
+        this.patterns = patterns;
+        this.fail = fail;
+        this.output = output;
+        this.outputLink = outputLink;
+        this.stateCount = stateCount;
+        this.transitions = transitions;
+    }
+
+    public static NameAutomaton empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Build an automaton over the given names. Names are matched exactly as given,
+     * so callers should normalise case before building and before scanning.
+     */
+    public static NameAutomaton build(Collection<String> names) {
+        List<String> unique = new ArrayList<>(names.size());
+        int estimatedStates = 1;
+        for (String name : names) {
+            if (name != null && !name.isEmpty()) {
+                unique.add(name);
+                estimatedStates += name.length();
+            }
+        }
+
+        TransitionTable table = new TransitionTable(estimatedStates);
+        IntList output = new IntList(estimatedStates);
+        IntList firstChild = new IntList(estimatedStates);
+        IntList nextSibling = new IntList(estimatedStates);
+        IntList edgeChar = new IntList(estimatedStates);
+
+        // Root state
+        output.add(NONE);
+        firstChild.add(NONE);
+        nextSibling.add(NONE);
+        edgeChar.add(0);
+        int stateCount = 1;
+
+        String[] patterns = new String[unique.size()];
+        int patternCount = 0;
+
+        // ========== PHASE 1: TRIE ==========
+        for (String name : unique) {
+            int state = ROOT;
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                int next = table.get(state, c);
+                if (next == NONE) {
+                    next = stateCount++;
+                    table.put(state, c, next);
+                    output.add(NONE);
+                    firstChild.add(NONE);
+                    nextSibling.add(firstChild.get(state));
+                    edgeChar.add(c);
+                    firstChild.set(state, next);
+                }
+                state = next;
+            }
+            if (output.get(state) == NONE) {
+                patterns[patternCount] = name;
+                output.set(state, patternCount++);
+            }
+        }
+
+        // ========== PHASE 2: FAILURE AND OUTPUT LINKS (BFS) ==========
+        int[] fail = new int[stateCount];
+        int[] outputLink = new int[stateCount];
+        Arrays.fill(outputLink, NONE);
+
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+
+        for (int child = firstChild.get(ROOT); child != NONE; child = nextSibling.get(child)) {
+            fail[child] = ROOT;
+            queue[tail++] = child;
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            for (int child = firstChild.get(state); child != NONE; child = nextSibling.get(child)) {
+                char c = (char) edgeChar.get(child);
+
+                int f = fail[state];
+                while (f != ROOT && table.get(f, c) == NONE) {
+                    f = fail[f];
+                }
+                int target = table.get(f, c);
+                fail[child] = (target != NONE && target != child) ? target : ROOT;
+
+                int failState = fail[child];
+                outputLink[child] = output.get(failState) != NONE ? failState : outputLink[failState];
+
+                queue[tail++] = child;
+            }
+        }
+
+        return new NameAutomaton(
+                Arrays.copyOf(patterns, patternCount),
+                fail,
+                output.toArray(),
+                outputLink,
+                stateCount,
+                table
+        );
+    }
+
+    /**
+     * Scan the text once and return every occurrence of every name, in order of end offset.
+     */
+    public List<Match> findAll(CharSequence text) {
+        if (text == null || text.length() == 0 || patterns.length == 0) {
+            return Collections.emptyList();
+        }
+
+        List<Match> matches = null;
+        int state = ROOT;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next = transitions.get(state, c);
+            while (next == NONE && state != ROOT) {
+                state = fail[state];
+                next = transitions.get(state, c);
+            }
+            state = next == NONE ? ROOT : next;
+
+            int hit = output[state] != NONE ? state : outputLink[state];
+            while (hit != NONE) {
+                String name = patterns[output[hit]];
+                if (matches == null) {
+                    matches = new ArrayList<>(4);
+                }
+                matches.add(new Match(name, i + 1 - name.length(), i + 1));
+                hit = outputLink[hit];
+            }
+        }
+
+        return matches != null ? matches : Collections.emptyList();
+    }
+
+    public int getPatternCount() {
+        return patterns.length;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /**
+     * A single occurrence of a name; {@code end} is exclusive.
+     */
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Match {
+        private final String name;
+        private final int start;
+        private final int end;
+
+        public int length() {
+            return end - start;
+        }
+    }
+
+    // ========== PRIMITIVE HELPERS ==========
+
+    /**
+     * Open-addressing map of (state, char) → state with no boxing.
+     */
+    private static final class TransitionTable {
+        private static final long EMPTY_KEY = -1L;
+
+        private long[] keys;
+        private int[] values;
+        private int mask;
+        private int size;
+
+        TransitionTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, EMPTY_KEY);
+            mask = capacity - 1;
+        }
+
+        int get(int state, char c) {
+            long key = ((long) state << 16) | c;
+            int slot = hash(key) & mask;
+            while (true) {
+                long k = keys[slot];
+                if (k == key) {
+                    return values[slot];
+                }
+                if (k == EMPTY_KEY) {
+                    return NONE;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        void put(int state, char c, int target) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            long key = ((long) state << 16) | c;
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY_KEY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY_KEY) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = target;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            Arrays.fill(keys, EMPTY_KEY);
+            mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                long key = oldKeys[i];
+                if (key != EMPTY_KEY) {
+                    int slot = hash(key) & mask;
+                    while (keys[slot] != EMPTY_KEY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = key;
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    private static final class IntList {
+        private int[] data;
+        private int size;
+
+        IntList(int capacity) {
+            data = new int[Math.max(16, capacity)];
+        }
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int index) {
+            return data[index];
+        }
+
+        void set(int index, int value) {
+            data[index] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
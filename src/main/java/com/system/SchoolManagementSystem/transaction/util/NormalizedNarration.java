@@ -0,0 +1,324 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import java.util.Arrays;
+
+/**
+ * A bank narration prepared for matching in one pass over its characters: lower-cased and
+ * trimmed, cut into letter-only tokens (the words {@code split("[^a-z]+")} used to yield,
+ * kept as offsets rather than strings), and classified against the school keyword and
+ * false-positive vendor lists.
+ *
+ * Classification runs a letters-only Aho-Corasick automaton alongside the lower-casing, so
+ * it costs one table lookup per character however many words are listed, and keeps the
+ * substring semantics of the {@code contains} checks it replaces ("fees" hits "fee").
+ * Token offsets are collected in a per-thread scratch buffer and copied out once.
+ *
+ * Built once per transaction and shared by every matching strategy; immutable.
+ */
+public final class NormalizedNarration {
+
+    // ========== WORD LISTS ==========
+    private static final String[] SCHOOL_KEYWORDS = {
+            "school", "tuition", "fee", "fees", "payment", "college",
+            "education", "academy", "institute", "admission", "exam"
+    };
+
+    private static final String[] FALSE_POSITIVE_VENDORS = {
+            "mpesa", "airtime", "safaricom", "equitel", "tkash", "kcb",
+            "cooperative", "sacco", "loan", "chama", "contribution",
+            "shopping", "naivas", "tuskys", "nakumatt", "carrefour",
+            "electricity", "kplc", "water", "rent", "fuel", "petrol"
+    };
+
+    // Payment channel and fee words dropped from the cleaned form, whole tokens only
+    private static final String[] NOISE_WORDS = {
+            "upi", "neft", "rtgs", "imps", "cash", "cheque", "card",
+            "tuition", "fee", "fees", "payment", "school", "admission"
+    };
+
+    private static final int SCHOOL_KEYWORD = 1;
+    private static final int FALSE_POSITIVE = 1 << 1;
+
+    private static final int ALPHABET = 26;
+
+    // Substring automaton over a-z: DFA[state * 26 + letter], FLAGS[state] = lists matched on entry
+    private static final int[] DFA;
+    private static final int[] FLAGS;
+
+    // Plain trie for whole-token lookups: -1 where no listed word continues
+    private static final int[] NOISE_TRIE;
+    private static final boolean[] NOISE_END;
+
+    static {
+        Trie keywords = new Trie();
+        for (String keyword : SCHOOL_KEYWORDS) {
+            keywords.add(keyword, SCHOOL_KEYWORD);
+        }
+        for (String vendor : FALSE_POSITIVE_VENDORS) {
+            keywords.add(vendor, FALSE_POSITIVE);
+        }
+        keywords.foldFailureLinks();
+        DFA = keywords.transitions();
+        FLAGS = keywords.flags();
+
+        Trie noise = new Trie();
+        for (String word : NOISE_WORDS) {
+            noise.add(word, 1);
+        }
+        NOISE_TRIE = noise.transitions();
+        NOISE_END = new boolean[noise.size];
+        for (int state = 0; state < noise.size; state++) {
+            NOISE_END[state] = noise.flags[state] != 0;
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private static final NormalizedNarration EMPTY = new NormalizedNarration("", new int[0], 0);
+
+    private final String text;
+    // Token t is text[tokens[2t] .. tokens[2t + 1])
+    private final int[] tokens;
+    private final int flags;
+    private String cleaned;
+
+    private NormalizedNarration(String text, int[] tokens, int flags) {
+        this.text = text;
+        this.tokens = tokens;
+        this.flags = flags;
+    }
+
+    public static NormalizedNarration of(String description) {
+        if (description == null) {
+            return EMPTY;
+        }
+
+        // Same bounds String.trim() would give
+        int from = 0;
+        int to = description.length();
+        while (from < to && description.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && description.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return EMPTY;
+        }
+
+        Scratch scratch = SCRATCH.get();
+        char[] chars = scratch.chars(to - from);
+        int[] bounds = scratch.bounds;
+        int tokenInts = 0;
+        int tokenStart = -1;
+        int state = 0;
+        int flags = 0;
+
+        for (int i = from; i < to; i++) {
+            char c = Character.toLowerCase(description.charAt(i));
+            int pos = i - from;
+            chars[pos] = c;
+
+            if (c >= 'a' && c <= 'z') {
+                if (tokenStart < 0) {
+                    tokenStart = pos;
+                }
+                state = DFA[state * ALPHABET + (c - 'a')];
+                flags |= FLAGS[state];
+            } else {
+                state = 0;
+                if (tokenStart >= 0) {
+                    bounds = scratch.ensureBounds(tokenInts + 2);
+                    bounds[tokenInts++] = tokenStart;
+                    bounds[tokenInts++] = pos;
+                    tokenStart = -1;
+                }
+            }
+        }
+        if (tokenStart >= 0) {
+            bounds = scratch.ensureBounds(tokenInts + 2);
+            bounds[tokenInts++] = tokenStart;
+            bounds[tokenInts++] = to - from;
+        }
+
+        return new NormalizedNarration(new String(chars, 0, to - from),
+                Arrays.copyOf(bounds, tokenInts), flags);
+    }
+
+    // ========== ACCESS ==========
+
+    /**
+     * Lower-cased, trimmed narration.
+     */
+    public String getText() {
+        return text;
+    }
+
+    public boolean isEmpty() {
+        return text.isEmpty();
+    }
+
+    public int tokenCount() {
+        return tokens.length / 2;
+    }
+
+    public int tokenStart(int token) {
+        return tokens[2 * token];
+    }
+
+    public int tokenEnd(int token) {
+        return tokens[2 * token + 1];
+    }
+
+    public int tokenLength(int token) {
+        return tokens[2 * token + 1] - tokens[2 * token];
+    }
+
+    /**
+     * Token as a string; allocates, so lookups should prefer the offsets.
+     */
+    public String token(int token) {
+        return text.substring(tokenStart(token), tokenEnd(token));
+    }
+
+    public boolean hasSchoolKeyword() {
+        return (flags & SCHOOL_KEYWORD) != 0;
+    }
+
+    public boolean isLikelyFalsePositive() {
+        return (flags & FALSE_POSITIVE) != 0;
+    }
+
+    /**
+     * Tokens without payment-channel and fee words, single-spaced: what is left is mostly
+     * names. Built on first use.
+     */
+    public String getCleaned() {
+        String result = cleaned;
+        if (result == null) {
+            StringBuilder builder = new StringBuilder(text.length());
+            for (int t = 0; t < tokenCount(); t++) {
+                if (!isNoiseWord(tokenStart(t), tokenEnd(t))) {
+                    if (builder.length() > 0) {
+                        builder.append(' ');
+                    }
+                    builder.append(text, tokenStart(t), tokenEnd(t));
+                }
+            }
+            result = builder.toString();
+            cleaned = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private boolean isNoiseWord(int start, int end) {
+        int state = 0;
+        for (int i = start; i < end && state >= 0; i++) {
+            state = NOISE_TRIE[state * ALPHABET + (text.charAt(i) - 'a')];
+        }
+        return state >= 0 && NOISE_END[state];
+    }
+
+    // ========== BUILDING ==========
+
+    /**
+     * Goto trie over a-z; {@link #foldFailureLinks} turns it into an Aho-Corasick DFA.
+     */
+    private static final class Trie {
+        private int[] next = new int[16 * ALPHABET];
+        private int[] flags = new int[16];
+        private int size = 1;
+
+        Trie() {
+            Arrays.fill(next, -1);
+        }
+
+        void add(String word, int flag) {
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                int slot = state * ALPHABET + (word.charAt(i) - 'a');
+                if (next[slot] < 0) {
+                    // newState() may grow the arrays, so take the id before indexing
+                    int child = newState();
+                    next[slot] = child;
+                }
+                state = next[slot];
+            }
+            flags[state] |= flag;
+        }
+
+        // Breadth-first: missing edges borrow the failure state's edge, outputs are inherited
+        void foldFailureLinks() {
+            int[] fail = new int[size];
+            int[] queue = new int[size];
+            int head = 0;
+            int tail = 0;
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = next[c];
+                if (child < 0) {
+                    next[c] = 0;
+                } else {
+                    fail[child] = 0;
+                    queue[tail++] = child;
+                }
+            }
+            while (head < tail) {
+                int state = queue[head++];
+                flags[state] |= flags[fail[state]];
+                for (int c = 0; c < ALPHABET; c++) {
+                    int slot = state * ALPHABET + c;
+                    int child = next[slot];
+                    int fallback = next[fail[state] * ALPHABET + c];
+                    if (child < 0) {
+                        next[slot] = fallback;
+                    } else {
+                        fail[child] = fallback;
+                        queue[tail++] = child;
+                    }
+                }
+            }
+        }
+
+        int[] transitions() {
+            return Arrays.copyOf(next, size * ALPHABET);
+        }
+
+        int[] flags() {
+            return Arrays.copyOf(flags, size);
+        }
+
+        private int newState() {
+            if (size == flags.length) {
+                flags = Arrays.copyOf(flags, size * 2);
+                int oldLength = next.length;
+                next = Arrays.copyOf(next, oldLength * 2);
+                Arrays.fill(next, oldLength, next.length, -1);
+            }
+            return size++;
+        }
+    }
+
+    private static final class Scratch {
+        private char[] chars = new char[256];
+        private int[] bounds = new int[64];
+
+        char[] chars(int length) {
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            return chars;
+        }
+
+        int[] ensureBounds(int length) {
+            if (bounds.length < length) {
+                bounds = Arrays.copyOf(bounds, Math.max(length, bounds.length * 2));
+            }
+            return bounds;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Learned payer → student routes: who a recurring payer (phone number or name in the
+ * narration, plus the statement's bank account) turned out to be paying for, as confirmed
+ * by staff when matching or verifying a line.
+ *
+ * Every route carries a confidence that grows by one per confirmation and halves every
+ * half-life without one, so a phone number handed to someone else stops routing on its own.
+ * A confirmation for a different student costs the route {@link #CONTRADICTION_PENALTY};
+ * once it is used up the route moves to the new student. A lookup is one hash probe.
+ *
+ * Thread-safe; updates to one key are atomic.
+ */
+public final class PayerRouteTable {
+
+    // One staff correction outweighs two confirmations of the old student
+    public static final double CONTRADICTION_PENALTY = 2.0;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    // Words every payer's narration may carry; they say nothing about who paid
+    private static final Set<String> GENERIC_WORDS = Set.of(
+            "upi", "neft", "rtgs", "imps", "cash", "cheque", "card", "tuition", "fee", "fees",
+            "payment", "payments", "school", "admission", "mpesa", "from", "for", "and", "the", "ref",
+            "bank", "transfer", "deposit", "paybill", "till", "term", "pay", "paid", "funds", "trf",
+            "via", "mobile", "online", "acc", "account", "balance", "exam", "lunch", "transport",
+            "trip", "uniform", "bus", "first", "second", "third", "jan", "feb", "mar", "apr", "may",
+            "jun", "jul", "aug", "sep", "sept", "oct", "nov", "dec", "january", "february", "march",
+            "april", "june", "july", "august", "september", "october", "november", "december");
+
+    // Name keys use at most this many words, so long narrations don't produce unique keys
+    private static final int MAX_NAME_TOKENS = 4;
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final double minConfidence;
+    private final double halfLifeDays;
+
+    public PayerRouteTable(double minConfidence, double halfLifeDays) {
+        this.minConfidence = minConfidence;
+        this.halfLifeDays = halfLifeDays;
+    }
+
+    // ========== KEYS ==========
+
+    /**
+     * Route key for a line, or null when the narration names no specific payer: a full phone
+     * number if there is one, otherwise two or more name-like words (sorted, so word order
+     * doesn't matter), qualified by the bank account when the statement has one.
+     */
+    public static String keyOf(NormalizedNarration narration, String bankAccount) {
+        if (narration == null || narration.isEmpty()) {
+            return null;
+        }
+
+        String payer = null;
+        for (String number : GuardianIndex.phoneCandidates(narration.getText())) {
+            if (number.indexOf('*') < 0) {
+                payer = "p:" + number;
+                break;
+            }
+        }
+
+        if (payer == null) {
+            String text = narration.getText();
+            TreeSet<String> words = new TreeSet<>();
+            for (int t = 0; t < narration.tokenCount(); t++) {
+                int start = narration.tokenStart(t);
+                int end = narration.tokenEnd(t);
+                // Letters glued to digits are references ("QK7AB21"), not names
+                if (end - start < 3
+                        || (start > 0 && Character.isDigit(text.charAt(start - 1)))
+                        || (end < text.length() && Character.isDigit(text.charAt(end)))) {
+                    continue;
+                }
+                String word = narration.token(t);
+                if (!GENERIC_WORDS.contains(word)) {
+                    words.add(word);
+                }
+            }
+            if (words.size() < 2) {
+                return null;
+            }
+            StringBuilder key = new StringBuilder("n:");
+            Iterator<String> iterator = words.iterator();
+            for (int i = 0; i < MAX_NAME_TOKENS && iterator.hasNext(); i++) {
+                if (i > 0) {
+                    key.append(' ');
+                }
+                key.append(iterator.next());
+            }
+            payer = key.toString();
+        }
+
+        String account = normalizeAccount(bankAccount);
+        return account.isEmpty() ? payer : payer + "@" + account;
+    }
+
+    private static String normalizeAccount(String bankAccount) {
+        if (bankAccount == null) {
+            return "";
+        }
+        StringBuilder account = new StringBuilder(bankAccount.length());
+        for (int i = 0; i < bankAccount.length(); i++) {
+            char c = bankAccount.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                account.append(Character.toUpperCase(c));
+            }
+        }
+        return account.toString();
+    }
+
+    // ========== LOOKUP ==========
+
+    /**
+     * Student the key routes to, or null when there is no route or its decayed confidence
+     * is below the threshold.
+     */
+    public Long lookup(String key, long nowMillis) {
+        if (key == null) {
+            return null;
+        }
+        Route route = routes.get(key);
+        if (route == null || confidenceAt(route, nowMillis) < minConfidence) {
+            return null;
+        }
+        return route.getStudentId();
+    }
+
+    public Route get(String key) {
+        return key != null ? routes.get(key) : null;
+    }
+
+    // ========== LEARNING ==========
+
+    /**
+     * Record that the payer behind {@code key} was confirmed as paying for {@code studentId}.
+     * Returns the route as it now stands.
+     */
+    public Route confirm(String key, long studentId, long nowMillis) {
+        return routes.compute(key, (k, current) -> {
+            if (current == null) {
+                return new Route(studentId, 1.0, 1, 0, nowMillis);
+            }
+            double confidence = confidenceAt(current, nowMillis);
+            if (current.getStudentId() == studentId) {
+                return new Route(studentId, confidence + 1.0, current.getConfirmations() + 1,
+                        current.getContradictions(), nowMillis);
+            }
+            double remaining = confidence - CONTRADICTION_PENALTY;
+            if (remaining <= 0) {
+                // Used up: the payer now pays for someone else
+                return new Route(studentId, 1.0, 1, 0, nowMillis);
+            }
+            return new Route(current.getStudentId(), remaining, current.getConfirmations(),
+                    current.getContradictions() + 1, nowMillis);
+        });
+    }
+
+    /**
+     * Put a stored route back, e.g. when loading from the database.
+     */
+    public void put(String key, Route route) {
+        routes.put(key, route);
+    }
+
+    public double confidenceAt(Route route, long nowMillis) {
+        if (halfLifeDays <= 0) {
+            return route.getConfidence();
+        }
+        double ageDays = Math.max(0, nowMillis - route.getUpdatedAtMillis()) / (double) MILLIS_PER_DAY;
+        return route.getConfidence() * Math.pow(0.5, ageDays / halfLifeDays);
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    /**
+     * One route. Confidence is as of {@code updatedAtMillis}; decay is applied on read.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Route {
+        private final long studentId;
+        private final double confidence;
+        private final int confirmations;
+        private final int contradictions;
+        private final long updatedAtMillis;
+    }
+}
@@ -0,0 +1,40 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A range of receipt numbers reserved from the database, handed out without locking.
+ *
+ * Threads take numbers with a single atomic increment. Once the range is used up every take
+ * fails, and the owner swaps in a freshly reserved block; numbers left in a block that is
+ * dropped (e.g. on shutdown) are never reused, only skipped.
+ */
+public class ReceiptBlock {
+
+    public static final ReceiptBlock EMPTY = new ReceiptBlock(0, 0);
+
+    private final AtomicLong next;
+    private final long end;
+
+    /**
+     * @param start first number in the block
+     * @param end   first number after the block
+     */
+    public ReceiptBlock(long start, long end) {
+        this.next = new AtomicLong(start);
+        this.end = end;
+    }
+
+    /**
+     * The next number, or -1 once the block is used up.
+     */
+    public long take() {
+        // Takes past the end keep counting up, which is harmless: they all fail
+        long value = next.getAndIncrement();
+        return value < end ? value : -1;
+    }
+
+    public long remaining() {
+        return Math.max(0, end - next.get());
+    }
+}
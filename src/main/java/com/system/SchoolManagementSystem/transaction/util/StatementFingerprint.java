@@ -0,0 +1,85 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * SHA-256 fingerprints used to recognise statements and lines that were imported before.
+ *
+ * A file fingerprint covers the raw bytes, so only a byte-identical re-upload matches.
+ * A row fingerprint covers date, amount in cents and the narration reduced to upper-case
+ * letters and digits, so the same line exported twice (different spacing, punctuation or
+ * column order) gets the same value.
+ */
+public final class StatementFingerprint {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private StatementFingerprint() {
+    }
+
+    public static String ofStream(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param occurrence how many identical lines came before this one in the same statement,
+     *                   so that two genuine same-day payments of equal amount stay distinct
+     */
+    public static String ofRow(LocalDate date, Double amount, String narration, int occurrence) {
+        StringBuilder key = new StringBuilder(64)
+                .append(date)
+                .append('|')
+                .append(amount != null ? Math.round(amount * 100) : 0)
+                .append('|')
+                .append(normalizeNarration(narration))
+                .append('|')
+                .append(occurrence);
+        return HexFormat.of().formatHex(sha256().digest(key.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Identifies a statement layout: the source kind ("csv", "xlsx") and the header names,
+     * case and surrounding whitespace ignored, in column order.
+     */
+    public static String ofHeader(String kind, List<String> headers) {
+        StringBuilder key = new StringBuilder(kind);
+        for (String header : headers) {
+            key.append('\u001F').append(header != null ? header.trim().toLowerCase() : "");
+        }
+        return HexFormat.of().formatHex(sha256().digest(key.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String normalizeNarration(String narration) {
+        if (narration == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(narration.length());
+        for (int i = 0; i < narration.length(); i++) {
+            char c = narration.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toUpperCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiled parse plan for one statement layout: which column holds what, which date
+ * layout the file uses and how amounts are written.
+ *
+ * A schema is worked out once per file from its header and first rows (or taken from the
+ * catalogue of known layouts), after which every row is read by fixed column index and
+ * parsed with hand-written scanners that return null instead of throwing. Rows that don't
+ * fit the plan are left for the parser's lenient fallback.
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@ToString
+public final class StatementSchema {
+
+    // ========== HEADER ALIASES ==========
+    // Same spellings the parser has always accepted, plus the exports of the banks we see most
+    static final List<String> DATE_COLUMNS = Arrays.asList(
+            "date", "transaction date", "txn date", "txndate", "transaction_date",
+            "value date", "value_date", "posting date", "posting_date",
+            "transactiondate", "tx date", "trandate", "tran date", "completion time"
+    );
+
+    // Single signed amount
+    static final List<String> AMOUNT_COLUMNS = Arrays.asList(
+            "amount", "transaction amount", "amt", "transaction_amount", "transaction_amt", "txn amount"
+    );
+
+    // Separate money-in / money-out columns
+    static final List<String> CREDIT_COLUMNS = Arrays.asList(
+            "credit", "credit amount", "cr", "deposit", "money in", "paid in"
+    );
+
+    static final List<String> DEBIT_COLUMNS = Arrays.asList(
+            "debit", "debit amount", "dr", "withdrawal", "money out", "withdrawn"
+    );
+
+    static final List<String> DESC_COLUMNS = Arrays.asList(
+            "description", "narration", "particulars", "remarks", "details", "desc",
+            "transaction details", "transaction_detail", "narration details",
+            "particular", "payment details", "transaction_particulars", "narrative"
+    );
+
+    static final List<String> REF_COLUMNS = Arrays.asList(
+            "reference", "ref no", "transaction id", "cheque no", "ref", "reference no",
+            "cheque number", "transaction ref", "transaction_ref", "refno",
+            "transaction reference", "bank ref", "bank_ref", "bank reference", "receipt no.", "receipt no"
+    );
+
+    static final List<String> STATUS_COLUMNS = Arrays.asList(
+            "status", "transaction status", "txn status", "payment status"
+    );
+
+    private static final int NONE = -1;
+
+    // Inferred schemas are only worth remembering when the sample was big and consistent enough
+    private static final int MIN_CONFIDENT_SAMPLES = 5;
+    private static final double MIN_DATE_HIT_RATE = 0.9;
+
+    private static final double[] POW10 = {
+            1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    public enum AmountConvention {
+        // One column, withdrawals negative
+        SIGNED,
+        // Money in and money out in separate, unsigned columns
+        CREDIT_DEBIT
+    }
+
+    private final String headerFingerprint;
+    // "Equity Bank", "KCB", ... for catalogue entries, "inferred" otherwise
+    private final String formatName;
+
+    private final int dateColumn;
+    private final int descriptionColumn;
+    private final int amountColumn;
+    private final int creditColumn;
+    private final int debitColumn;
+    private final int referenceColumn;
+    private final int statusColumn;
+
+    // Null when no layout fitted the sample; every row then takes the lenient path
+    private final DateLayout dateLayout;
+    private final AmountConvention amountConvention;
+    private final char decimalSeparator;
+
+    // Inferred from enough consistent rows to be reused for later files with the same header
+    private final boolean confident;
+
+    // ========== COMPILATION ==========
+
+    /**
+     * Schema for a known layout: columns come from the header, formats are given.
+     */
+    public static StatementSchema compile(String headerFingerprint, String formatName, List<String> headers,
+                                          DateLayout dateLayout, char decimalSeparator) {
+        return columns(headers)
+                .headerFingerprint(headerFingerprint)
+                .formatName(formatName)
+                .dateLayout(dateLayout)
+                .decimalSeparator(decimalSeparator)
+                .confident(true)
+                .build();
+    }
+
+    /**
+     * Work out the schema from the header and the first rows of a file.
+     */
+    public static StatementSchema infer(String headerFingerprint, List<String> headers, List<String[]> samples) {
+        StatementSchema plan = columns(headers)
+                .headerFingerprint(headerFingerprint)
+                .formatName("inferred")
+                .decimalSeparator('.')
+                .build();
+
+        // Date layout: the one that reads the most sample values; declaration order breaks ties
+        DateLayout bestLayout = null;
+        int bestHits = 0;
+        int dateSamples = 0;
+        for (String[] row : samples) {
+            if (plan.value(row, plan.dateColumn) != null) {
+                dateSamples++;
+            }
+        }
+        for (DateLayout layout : DateLayout.values()) {
+            int hits = 0;
+            for (String[] row : samples) {
+                String value = plan.value(row, plan.dateColumn);
+                if (value != null && layout.parse(value) != null) {
+                    hits++;
+                }
+            }
+            if (hits > bestHits) {
+                bestHits = hits;
+                bestLayout = layout;
+            }
+        }
+
+        // Decimal separator: whichever of '.' / ',' is last and followed by one or two digits
+        int commaVotes = 0;
+        int dotVotes = 0;
+        for (String[] row : samples) {
+            for (int column : new int[]{plan.amountColumn, plan.creditColumn, plan.debitColumn}) {
+                char separator = decimalSeparatorOf(plan.value(row, column));
+                if (separator == ',') {
+                    commaVotes++;
+                } else if (separator == '.') {
+                    dotVotes++;
+                }
+            }
+        }
+
+        boolean confident = samples.size() >= MIN_CONFIDENT_SAMPLES
+                && dateSamples > 0
+                && bestHits >= dateSamples * MIN_DATE_HIT_RATE;
+
+        return plan.toBuilder()
+                .dateLayout(bestLayout)
+                .decimalSeparator(commaVotes > dotVotes ? ',' : '.')
+                .confident(confident)
+                .build();
+    }
+
+    private static StatementSchemaBuilder columns(List<String> headers) {
+        String[] normalized = new String[headers.size()];
+        for (int i = 0; i < normalized.length; i++) {
+            normalized[i] = headers.get(i) != null ? headers.get(i).trim().toLowerCase() : "";
+        }
+        int amountColumn = column(normalized, AMOUNT_COLUMNS);
+        return builder()
+                .dateColumn(column(normalized, DATE_COLUMNS))
+                .descriptionColumn(column(normalized, DESC_COLUMNS))
+                .amountColumn(amountColumn)
+                .creditColumn(column(normalized, CREDIT_COLUMNS))
+                .debitColumn(column(normalized, DEBIT_COLUMNS))
+                .referenceColumn(column(normalized, REF_COLUMNS))
+                .statusColumn(column(normalized, STATUS_COLUMNS))
+                .amountConvention(amountColumn != NONE ? AmountConvention.SIGNED : AmountConvention.CREDIT_DEBIT);
+    }
+
+    // First alias (in list order) present in the header
+    private static int column(String[] headers, List<String> aliases) {
+        for (String alias : aliases) {
+            for (int i = 0; i < headers.length; i++) {
+                if (headers[i].equals(alias)) {
+                    return i;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    // ========== ROW ACCESS ==========
+
+    public String date(String[] row) {
+        return value(row, dateColumn);
+    }
+
+    public String description(String[] row) {
+        return value(row, descriptionColumn);
+    }
+
+    public String reference(String[] row) {
+        return value(row, referenceColumn);
+    }
+
+    public String status(String[] row) {
+        return value(row, statusColumn);
+    }
+
+    public boolean hasAmount(String[] row) {
+        return amountConvention == AmountConvention.SIGNED
+                ? value(row, amountColumn) != null
+                : value(row, creditColumn) != null || value(row, debitColumn) != null;
+    }
+
+    /**
+     * Signed amount of the row: money out is negative. Null when no amount cell has digits.
+     */
+    public Double amount(String[] row) {
+        if (amountConvention == AmountConvention.SIGNED) {
+            return parseAmount(value(row, amountColumn));
+        }
+        Double credit = parseAmount(value(row, creditColumn));
+        if (credit != null && credit != 0.0) {
+            return Math.abs(credit);
+        }
+        Double debit = parseAmount(value(row, debitColumn));
+        if (debit != null && debit != 0.0) {
+            return -Math.abs(debit);
+        }
+        return credit != null ? credit : debit;
+    }
+
+    /**
+     * Date of the row through the compiled layout; null if it doesn't fit.
+     */
+    public LocalDate parseDate(String value) {
+        return dateLayout != null && value != null ? dateLayout.parse(value) : null;
+    }
+
+    /**
+     * Digits with an optional decimal part; currency symbols, letters, spaces and grouping
+     * separators are skipped. A minus sign or parentheses make the value negative.
+     */
+    public Double parseAmount(String value) {
+        if (value == null) {
+            return null;
+        }
+        long units = 0;
+        int scale = NONE;
+        boolean negative = false;
+        boolean digits = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (units > (Long.MAX_VALUE - 9) / 10 || scale >= POW10.length - 1) {
+                    return null;
+                }
+                units = units * 10 + (c - '0');
+                digits = true;
+                if (scale != NONE) {
+                    scale++;
+                }
+            } else if (c == decimalSeparator) {
+                if (scale != NONE) {
+                    return null;
+                }
+                scale = 0;
+            } else if (c == '-' || c == '(') {
+                negative = true;
+            }
+        }
+        if (!digits) {
+            return null;
+        }
+        double amount = scale > 0 ? units / POW10[scale] : units;
+        return negative ? -amount : amount;
+    }
+
+    String value(String[] row, int column) {
+        if (column == NONE || column >= row.length || row[column] == null) {
+            return null;
+        }
+        String value = row[column].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static char decimalSeparatorOf(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int lastDot = value.lastIndexOf('.');
+        int lastComma = value.lastIndexOf(',');
+        int last = Math.max(lastDot, lastComma);
+        if (last < 0) {
+            return 0;
+        }
+        int fractionDigits = 0;
+        for (int i = last + 1; i < value.length() && Character.isDigit(value.charAt(i)); i++) {
+            fractionDigits++;
+        }
+        return fractionDigits == 1 || fractionDigits == 2 ? value.charAt(last) : 0;
+    }
+
+    // ========== DATE LAYOUTS ==========
+
+    /**
+     * The date layouts the parser knows, in the same preference order as its formatter list.
+     * Parsing scans characters directly and returns null on any mismatch. Anything after the
+     * date (a time of day, for instance) is ignored once a space or 'T' separates it.
+     */
+    public enum DateLayout {
+        DD_MM_YYYY_SLASH(Order.DMY, '/', false),
+        DD_MM_YYYY_DASH(Order.DMY, '-', false),
+        YYYY_MM_DD_DASH(Order.YMD, '-', false),
+        MM_DD_YYYY_SLASH(Order.MDY, '/', false),
+        DD_MM_YYYY_DOT(Order.DMY, '.', false),
+        YYYY_MM_DD_SLASH(Order.YMD, '/', false),
+        DD_MMM_YYYY_SPACE(Order.DMY, ' ', true),
+        DD_MMM_YYYY_DASH(Order.DMY, '-', true),
+        // Days since 1899-12-30, as Excel stores dates
+        EXCEL_SERIAL(null, (char) 0, false);
+
+        private enum Order { DMY, MDY, YMD }
+
+        private static final LocalDate EXCEL_EPOCH = LocalDate.of(1899, 12, 30);
+
+        private final Order order;
+        private final char separator;
+        private final boolean textMonth;
+
+        DateLayout(Order order, char separator, boolean textMonth) {
+            this.order = order;
+            this.separator = separator;
+            this.textMonth = textMonth;
+        }
+
+        public LocalDate parse(String text) {
+            if (order == null) {
+                return parseSerial(text);
+            }
+
+            int[] position = {0};
+            int first;
+            int second;
+            int third;
+            if (order == Order.YMD) {
+                first = digits(text, position, 4, 4);
+                if (first < 0 || !expect(text, position, separator)) return null;
+                second = digits(text, position, 1, 2);
+                if (second < 0 || !expect(text, position, separator)) return null;
+                third = digits(text, position, 1, 2);
+            } else {
+                first = digits(text, position, 1, 2);
+                if (first < 0 || !expect(text, position, separator)) return null;
+                second = textMonth ? month(text, position) : digits(text, position, 1, 2);
+                if (second < 0 || !expect(text, position, separator)) return null;
+                third = digits(text, position, 4, 4);
+            }
+            if (third < 0 || !atDateEnd(text, position[0])) {
+                return null;
+            }
+
+            int year = order == Order.YMD ? first : third;
+            int month = order == Order.MDY ? first : second;
+            int day = order == Order.YMD ? third : order == Order.MDY ? second : first;
+            return date(year, month, day);
+        }
+
+        private static LocalDate parseSerial(String text) {
+            int[] position = {0};
+            int days = digits(text, position, 5, 5);
+            if (days < 0) {
+                return null;
+            }
+            // Optional fractional day (time of day)
+            if (position[0] < text.length() && text.charAt(position[0]) == '.') {
+                position[0]++;
+                while (position[0] < text.length() && Character.isDigit(text.charAt(position[0]))) {
+                    position[0]++;
+                }
+            }
+            // 1954-10-03 .. 2119-01-18: wide enough for statements, narrow enough to reject amounts
+            if (position[0] != text.length() || days < 20_000 || days > 80_000) {
+                return null;
+            }
+            return EXCEL_EPOCH.plusDays(days);
+        }
+
+        private static int digits(String text, int[] position, int min, int max) {
+            int value = 0;
+            int count = 0;
+            int i = position[0];
+            while (i < text.length() && count < max) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+                count++;
+                i++;
+            }
+            if (count < min || (i < text.length() && Character.isDigit(text.charAt(i)))) {
+                return -1;
+            }
+            position[0] = i;
+            return value;
+        }
+
+        private static boolean expect(String text, int[] position, char c) {
+            if (position[0] < text.length() && text.charAt(position[0]) == c) {
+                position[0]++;
+                return true;
+            }
+            return false;
+        }
+
+        // "Jan", "january", "SEPT": the first three letters decide, the rest of the word is skipped
+        private static int month(String text, int[] position) {
+            int start = position[0];
+            int end = start;
+            while (end < text.length() && Character.isLetter(text.charAt(end))) {
+                end++;
+            }
+            if (end - start < 3) {
+                return -1;
+            }
+            position[0] = end;
+            char a = Character.toLowerCase(text.charAt(start));
+            char b = Character.toLowerCase(text.charAt(start + 1));
+            char c = Character.toLowerCase(text.charAt(start + 2));
+            switch (a) {
+                case 'j':
+                    return b == 'a' && c == 'n' ? 1 : b == 'u' && c == 'n' ? 6 : b == 'u' && c == 'l' ? 7 : -1;
+                case 'f':
+                    return b == 'e' && c == 'b' ? 2 : -1;
+                case 'm':
+                    return b == 'a' && c == 'r' ? 3 : b == 'a' && c == 'y' ? 5 : -1;
+                case 'a':
+                    return b == 'p' && c == 'r' ? 4 : b == 'u' && c == 'g' ? 8 : -1;
+                case 's':
+                    return b == 'e' && c == 'p' ? 9 : -1;
+                case 'o':
+                    return b == 'c' && c == 't' ? 10 : -1;
+                case 'n':
+                    return b == 'o' && c == 'v' ? 11 : -1;
+                case 'd':
+                    return b == 'e' && c == 'c' ? 12 : -1;
+                default:
+                    return -1;
+            }
+        }
+
+        private static boolean atDateEnd(String text, int position) {
+            if (position == text.length()) {
+                return true;
+            }
+            char c = text.charAt(position);
+            return c == ' ' || c == 'T';
+        }
+
+        private static LocalDate date(int year, int month, int day) {
+            if (year < 1900 || year > 2999 || month < 1 || month > 12 || day < 1) {
+                return null;
+            }
+            int length = switch (month) {
+                case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+                case 4, 6, 9, 11 -> 30;
+                default -> 31;
+            };
+            return day <= length ? LocalDate.of(year, month, day) : null;
+        }
+    }
+}
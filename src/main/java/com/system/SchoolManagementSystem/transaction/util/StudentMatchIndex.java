@@ -0,0 +1,1057 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact, immutable projection of the students the matcher can pick from.
+ *
+ * Only what matching needs is kept: id, admission number, normalised name tokens,
+ * pending amount and next open installment. Rows are stored struct-of-arrays, name
+ * tokens are interned into one shared vocabulary and referenced by int id, and every
+ * lookup table is a primitive open-addressing or sorted array, so a 100k-student roster
+ * costs a few megabytes and no Hibernate entities are pinned in the cache. The winning
+ * row is turned back into an entity by id only once a match has been decided.
+ *
+ * Payments only move balances, so {@link #update()} derives the next generation without a
+ * rebuild: balances live in fixed-size chunks and only the chunks holding a changed row are
+ * copied, removed students are masked out, and everything else is shared with this index.
+ * New students and name or admission number changes still need a {@link Builder} pass.
+ */
+public final class StudentMatchIndex {
+
+    private static final int NONE = -1;
+    private static final int[] NO_ROWS = new int[0];
+    private static final long[] NO_KEYS = new long[0];
+
+    private static final StudentMatchIndex EMPTY = builder(0).build();
+
+    // Admission-number prefixes banks and parents add or drop, longest first
+    private static final String[] STUDENT_ID_PREFIXES = {"ADMNO", "ADM", "STU", "STD", "ID", "S"};
+
+    // Amount keys pack the row into the low bits; cents get the remaining 39 (up to ~KES 5.4bn)
+    private static final int ROW_BITS = 24;
+    private static final long ROW_MASK = (1L << ROW_BITS) - 1;
+    private static final long MAX_AMOUNT_CENTS = (1L << (63 - ROW_BITS)) - 1;
+
+    // Balances are stored in chunks of 256 rows, the unit copied by an update
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // ========== ROWS (struct-of-arrays) ==========
+    private final long[] ids;
+    private final String[] studentIds;
+    // Row r is at [r >>> CHUNK_BITS][r & CHUNK_MASK]; unchanged chunks are shared across generations
+    private final long[][] pendingCents;
+    private final long[][] nextInstallmentCents;
+    // Tokens of row r are tokenIds[tokenStart[r] .. tokenStart[r + 1])
+    private final int[] tokenStart;
+    private final int[] tokenIds;
+
+    // ========== INTERNED VOCABULARY ==========
+    private final String[] tokens;
+    private final int[] tokenTable;
+    // Rows containing token t are postingRows[postingStart[t] .. postingStart[t + 1])
+    private final int[] postingStart;
+    private final int[] postingRows;
+
+    // ========== LOOKUP TABLES ==========
+    private final LongIntTable rowById;
+    private final int[] nameTable;
+    // Admission number lookups: compact form (prefix kept) and core form (prefix and leading
+    // zeros dropped). Slots hold row + 1, negated when several rows share the key.
+    private final int[] studentIdTable;
+    private final int[] studentIdCoreTable;
+    // Sorted (cents << ROW_BITS | row) for every pending balance and next installment at build time
+    private final long[] amountKeys;
+
+    // ========== CHANGES SINCE BUILD ==========
+    // Rows whose balances were updated, sorted; their amountKeys entries are stale
+    private final int[] updatedRows;
+    // Sorted keys of the current balances of updatedRows
+    private final long[] updatedAmountKeys;
+    // Rows of students no longer enrolled, sorted; every lookup skips them
+    private final int[] removedRows;
+
+    private StudentMatchIndex(long[] ids, String[] studentIds, long[][] pendingCents,
+                              long[][] nextInstallmentCents, int[] tokenStart, int[] tokenIds,
+                              String[] tokens, int[] tokenTable,
+                              int[] postingStart, int[] postingRows, LongIntTable rowById,
+                              int[] nameTable, int[] studentIdTable, int[] studentIdCoreTable,
+                              long[] amountKeys, int[] updatedRows, long[] updatedAmountKeys,
+                              int[] removedRows) {
+        this.ids = ids;
+        this.studentIds = studentIds;
+        this.pendingCents = pendingCents;
+        this.nextInstallmentCents = nextInstallmentCents;
+        this.tokenStart = tokenStart;
+        this.tokenIds = tokenIds;
+        this.tokens = tokens;
+        this.tokenTable = tokenTable;
+        this.postingStart = postingStart;
+        this.postingRows = postingRows;
+        this.rowById = rowById;
+        this.nameTable = nameTable;
+        this.studentIdTable = studentIdTable;
+        this.studentIdCoreTable = studentIdCoreTable;
+        this.amountKeys = amountKeys;
+        this.updatedRows = updatedRows;
+        this.updatedAmountKeys = updatedAmountKeys;
+        this.removedRows = removedRows;
+    }
+
+    public static StudentMatchIndex empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    /**
+     * Balance changes and removals on top of this index, sharing everything they don't touch.
+     */
+    public Update update() {
+        return new Update(this);
+    }
+
+    // ========== ROW ACCESS ==========
+
+    /**
+     * Number of rows, including removed ones until the next rebuild.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Number of enrolled students, i.e. rows that lookups can return.
+     */
+    public int studentCount() {
+        return ids.length - removedRows.length;
+    }
+
+    /**
+     * Rows updated or removed since this index was built. Amount lookups check each hit against
+     * them, so the owner should rebuild once they are a sizeable share of the roster.
+     */
+    public int changedSinceBuild() {
+        return updatedRows.length + removedRows.length;
+    }
+
+    public boolean isRemoved(int row) {
+        return removedRows.length > 0 && Arrays.binarySearch(removedRows, row) >= 0;
+    }
+
+    public long id(int row) {
+        return ids[row];
+    }
+
+    public String studentId(int row) {
+        return studentIds[row];
+    }
+
+    public double pendingAmount(int row) {
+        return pendingCents(row) / 100.0;
+    }
+
+    public long pendingCents(int row) {
+        return pendingCents[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    /**
+     * Outstanding amount of the row's earliest open installment, or 0 when it has none.
+     */
+    public double nextInstallmentAmount(int row) {
+        return nextInstallmentCents(row) / 100.0;
+    }
+
+    public long nextInstallmentCents(int row) {
+        return nextInstallmentCents[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    public int tokenCount(int row) {
+        return tokenStart[row + 1] - tokenStart[row];
+    }
+
+    public String token(int row, int index) {
+        return tokens[tokenIds[tokenStart[row] + index]];
+    }
+
+    /**
+     * Interned id of the row's index-th name token, comparable with {@link #tokenId(String)}.
+     */
+    public int tokenIdAt(int row, int index) {
+        return tokenIds[tokenStart[row] + index];
+    }
+
+    /**
+     * Normalised (lower-case, single-spaced) full name, rebuilt from the interned tokens.
+     */
+    public String name(int row) {
+        int start = tokenStart[row];
+        int end = tokenStart[row + 1];
+        if (end - start == 1) {
+            return tokens[tokenIds[start]];
+        }
+        StringBuilder name = new StringBuilder(24);
+        for (int i = start; i < end; i++) {
+            if (i > start) {
+                name.append(' ');
+            }
+            name.append(tokens[tokenIds[i]]);
+        }
+        return name.toString();
+    }
+
+    public StudentRef ref(int row) {
+        return new StudentRef(ids[row], studentIds[row], name(row),
+                pendingAmount(row), nextInstallmentAmount(row));
+    }
+
+    /**
+     * Every normalised name, materialised on access.
+     */
+    public List<String> names() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return name(index);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    // ========== LOOKUPS ==========
+
+    public int rowOf(long id) {
+        int row = rowById.get(id);
+        return row >= 0 && isRemoved(row) ? NONE : row;
+    }
+
+    /**
+     * Row whose normalised name equals the given name, or -1.
+     */
+    public int rowOfName(String name) {
+        String[] parts = normalize(name).split(" ");
+        if (parts.length == 0 || parts[0].isEmpty()) {
+            return NONE;
+        }
+        int[] key = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            key[i] = tokenId(parts[i]);
+            if (key[i] == NONE) {
+                return NONE;
+            }
+        }
+
+        int mask = nameTable.length - 1;
+        int slot = nameHash(key, 0, key.length) & mask;
+        while (nameTable[slot] != 0) {
+            int row = nameTable[slot] - 1;
+            if (sameTokens(row, key)) {
+                return isRemoved(row) ? NONE : row;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /**
+     * Row whose admission number equals the given one up to case, separators, the usual
+     * STU/STD/ADM prefixes and leading zeros, or -1 when there is none or it is ambiguous.
+     */
+    public int rowOfStudentId(String studentId) {
+        String compact = compactStudentId(studentId);
+        if (compact.isEmpty()) {
+            return NONE;
+        }
+        int row = lookupStudentId(studentIdTable, compact, false);
+        if (row != NONE) {
+            return row;
+        }
+        String core = studentIdCore(compact);
+        return core.isEmpty() ? NONE : lookupStudentId(studentIdCoreTable, core, true);
+    }
+
+    /**
+     * Rows whose name contains the given token.
+     */
+    public int[] rowsWithToken(String token) {
+        return rowsWithTokenId(tokenId(token));
+    }
+
+    public int[] rowsWithTokenId(int tokenId) {
+        if (tokenId == NONE) {
+            return NO_ROWS;
+        }
+        int start = postingStart[tokenId];
+        int end = postingStart[tokenId + 1];
+        if (removedRows.length == 0) {
+            return Arrays.copyOfRange(postingRows, start, end);
+        }
+        int[] rows = new int[end - start];
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (!isRemoved(postingRows[i])) {
+                rows[count++] = postingRows[i];
+            }
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Number of rows whose name contains the token; cheap, no copy. Counts removed rows
+     * until the next rebuild.
+     */
+    public int rowCountWithTokenId(int tokenId) {
+        return tokenId == NONE ? 0 : postingStart[tokenId + 1] - postingStart[tokenId];
+    }
+
+    /**
+     * Rows whose pending balance or next installment lies within [fromCents, toCents],
+     * nearest to the midpoint first. Binary search to the first key, then a scan of the k hits.
+     */
+    public int[] rowsWithAmountBetween(long fromCents, long toCents) {
+        if (toCents < fromCents || (amountKeys.length == 0 && updatedAmountKeys.length == 0)) {
+            return NO_ROWS;
+        }
+        long from = Math.max(0, Math.min(fromCents, MAX_AMOUNT_CENTS));
+        long to = Math.max(0, Math.min(toCents, MAX_AMOUNT_CENTS));
+        int start = lowerBound(amountKeys, from << ROW_BITS);
+        int end = lowerBound(amountKeys, (to + 1) << ROW_BITS);
+        int updatedStart = lowerBound(updatedAmountKeys, from << ROW_BITS);
+        int updatedEnd = lowerBound(updatedAmountKeys, (to + 1) << ROW_BITS);
+        int hits = (end - start) + (updatedEnd - updatedStart);
+        if (hits == 0) {
+            return NO_ROWS;
+        }
+
+        long target = (fromCents + toCents) / 2;
+        int[] rows = new int[hits];
+        long[] distances = new long[hits];
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            int row = (int) (amountKeys[i] & ROW_MASK);
+            // Build-time keys of updated rows are stale; their current balances are in updatedAmountKeys
+            boolean stale = updatedRows.length > 0 && Arrays.binarySearch(updatedRows, row) >= 0;
+            if (!stale && keepAmountHit(row, amountKeys[i] >>> ROW_BITS, from, to, target)) {
+                rows[count] = row;
+                distances[count++] = Math.abs((amountKeys[i] >>> ROW_BITS) - target);
+            }
+        }
+        for (int i = updatedStart; i < updatedEnd; i++) {
+            int row = (int) (updatedAmountKeys[i] & ROW_MASK);
+            if (keepAmountHit(row, updatedAmountKeys[i] >>> ROW_BITS, from, to, target)) {
+                rows[count] = row;
+                distances[count++] = Math.abs((updatedAmountKeys[i] >>> ROW_BITS) - target);
+            }
+        }
+        return sortByDistance(rows, distances, count);
+    }
+
+    // A row appears twice when both its balance and its installment are in range; keep the closer
+    private boolean keepAmountHit(int row, long cents, long from, long to, long target) {
+        if (isRemoved(row)) {
+            return false;
+        }
+        long pending = pendingCents(row);
+        long other = cents == pending ? nextInstallmentCents(row) : pending;
+        long distance = Math.abs(cents - target);
+        long otherDistance = Math.abs(other - target);
+        boolean otherWins = other > 0 && other != cents && other >= from && other <= to
+                && (otherDistance < distance || (otherDistance == distance && other == pending));
+        return !otherWins;
+    }
+
+    /**
+     * Distance in cents from the amount to the closer of the row's balance and next installment,
+     * or -1 when the row has neither.
+     */
+    public long amountDistanceCents(int row, long amountCents) {
+        long best = -1;
+        long pending = pendingCents(row);
+        long next = nextInstallmentCents(row);
+        if (pending > 0) {
+            best = Math.abs(pending - amountCents);
+        }
+        if (next > 0) {
+            long distance = Math.abs(next - amountCents);
+            best = best < 0 ? distance : Math.min(best, distance);
+        }
+        return best;
+    }
+
+    public int getVocabularySize() {
+        return tokens.length;
+    }
+
+    public int getAmountEntryCount() {
+        return amountKeys.length + updatedAmountKeys.length;
+    }
+
+    /**
+     * Approximate retained heap of this index (64-bit JVM, compressed oops, compact strings).
+     */
+    public long estimateHeapBytes() {
+        long bytes = 0;
+        bytes += arrayBytes(ids.length, 8) + arrayBytes(pendingCents.length, 4)
+                + arrayBytes(nextInstallmentCents.length, 4);
+        for (int chunk = 0; chunk < pendingCents.length; chunk++) {
+            bytes += arrayBytes(pendingCents[chunk].length, 8) + arrayBytes(nextInstallmentCents[chunk].length, 8);
+        }
+        bytes += arrayBytes(studentIds.length, 4) + arrayBytes(tokens.length, 4);
+        bytes += arrayBytes(tokenStart.length, 4) + arrayBytes(tokenIds.length, 4);
+        bytes += arrayBytes(tokenTable.length, 4) + arrayBytes(nameTable.length, 4);
+        bytes += arrayBytes(studentIdTable.length, 4) + arrayBytes(studentIdCoreTable.length, 4);
+        bytes += arrayBytes(postingStart.length, 4) + arrayBytes(postingRows.length, 4);
+        bytes += arrayBytes(amountKeys.length, 8) + rowById.estimateHeapBytes();
+        bytes += arrayBytes(updatedRows.length, 4) + arrayBytes(updatedAmountKeys.length, 8)
+                + arrayBytes(removedRows.length, 4);
+        for (String studentId : studentIds) {
+            bytes += stringBytes(studentId);
+        }
+        for (String token : tokens) {
+            bytes += stringBytes(token);
+        }
+        return bytes;
+    }
+
+    /**
+     * Interned id of a (normalised) name token, or -1 when no student name contains it.
+     */
+    public int tokenId(String token) {
+        if (token == null || token.isEmpty()) {
+            return NONE;
+        }
+        int mask = tokenTable.length - 1;
+        int slot = mix(token.hashCode()) & mask;
+        while (tokenTable[slot] != 0) {
+            int id = tokenTable[slot] - 1;
+            if (tokens[id].equals(token)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /**
+     * {@link #tokenId(String)} of {@code text[start, end)} without cutting it out: the hash
+     * is String's, computed over the range.
+     */
+    public int tokenId(String text, int start, int end) {
+        int length = end - start;
+        if (length <= 0) {
+            return NONE;
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int mask = tokenTable.length - 1;
+        int slot = mix(hash) & mask;
+        while (tokenTable[slot] != 0) {
+            int id = tokenTable[slot] - 1;
+            if (tokens[id].length() == length && tokens[id].regionMatches(0, text, start, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    // ========== INTERNALS ==========
+
+    private int lookupStudentId(int[] table, String key, boolean core) {
+        int mask = table.length - 1;
+        int slot = mix(key.hashCode()) & mask;
+        while (table[slot] != 0) {
+            int row = Math.abs(table[slot]) - 1;
+            String stored = compactStudentId(studentIds[row]);
+            if (key.equals(core ? studentIdCore(stored) : stored)) {
+                return table[slot] > 0 && !isRemoved(row) ? row : NONE;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    private boolean sameTokens(int row, int[] key) {
+        int start = tokenStart[row];
+        if (tokenStart[row + 1] - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (tokenIds[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lower-case, trimmed, single-spaced form used for every stored and looked-up name.
+     */
+    public static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Upper-case letters and digits only: "stu/2024-0025" becomes "STU20240025".
+     */
+    public static String compactStudentId(String studentId) {
+        if (studentId == null) {
+            return "";
+        }
+        StringBuilder compact = new StringBuilder(studentId.length());
+        for (int i = 0; i < studentId.length(); i++) {
+            char c = studentId.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                compact.append((char) (c - 32));
+            } else if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                compact.append(c);
+            }
+        }
+        return compact.toString();
+    }
+
+    /**
+     * Compact admission number without its prefix and leading zeros: "STU0025" becomes "25".
+     * Only applies when a digit follows the prefix, so purely alphabetic ids stay as they are.
+     */
+    public static String studentIdCore(String compact) {
+        int start = 0;
+        for (String prefix : STUDENT_ID_PREFIXES) {
+            if (compact.startsWith(prefix) && compact.length() > prefix.length()
+                    && Character.isDigit(compact.charAt(prefix.length()))) {
+                start = prefix.length();
+                break;
+            }
+        }
+        while (start < compact.length() - 1 && compact.charAt(start) == '0'
+                && Character.isDigit(compact.charAt(start + 1))) {
+            start++;
+        }
+        return compact.substring(start);
+    }
+
+    private static int nameHash(int[] ids, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + ids[i];
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSize(int entries) {
+        return Integer.highestOneBit(Math.max(8, entries * 2 - 1)) << 1;
+    }
+
+    private static int lowerBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int[] sortByDistance(int[] rows, long[] distances, int count) {
+        long[] keyed = new long[count];
+        for (int i = 0; i < count; i++) {
+            keyed[i] = (Math.min(distances[i], MAX_AMOUNT_CENTS) << ROW_BITS) | rows[i];
+        }
+        Arrays.sort(keyed);
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = (int) (keyed[i] & ROW_MASK);
+        }
+        return sorted;
+    }
+
+    private static int addAmountKeys(long[] keys, int count, int row, long pending, long next) {
+        if (pending > 0) {
+            keys[count++] = (Math.min(pending, MAX_AMOUNT_CENTS) << ROW_BITS) | row;
+        }
+        if (next > 0 && next != pending) {
+            keys[count++] = (Math.min(next, MAX_AMOUNT_CENTS) << ROW_BITS) | row;
+        }
+        return count;
+    }
+
+    private static long[][] chunked(long[] values, int size) {
+        long[][] chunks = new long[(size + CHUNK_MASK) >>> CHUNK_BITS][];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            int from = chunk << CHUNK_BITS;
+            chunks[chunk] = Arrays.copyOfRange(values, from, Math.min(size, from + CHUNK_SIZE));
+        }
+        return chunks;
+    }
+
+    // Sorted, distinct union of a sorted array and a set
+    private static int[] union(int[] sorted, Set<Integer> added) {
+        if (added.isEmpty()) {
+            return sorted;
+        }
+        int[] merged = Arrays.copyOf(sorted, sorted.length + added.size());
+        int count = sorted.length;
+        for (int row : added) {
+            if (Arrays.binarySearch(sorted, row) < 0) {
+                merged[count++] = row;
+            }
+        }
+        merged = Arrays.copyOf(merged, count);
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return align(16 + (long) length * elementBytes);
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : align(24) + arrayBytes(value.length(), 1);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Lightweight view of one row, handed to the matcher instead of an entity.
+     */
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class StudentRef {
+        private final long id;
+        private final String studentId;
+        private final String name;
+        private final double pendingAmount;
+        private final double nextInstallmentAmount;
+    }
+
+    // ========== BUILDER ==========
+
+    public static final class Builder {
+        private long[] ids;
+        private String[] studentIds;
+        private long[] pendingCents;
+        private long[] nextInstallmentCents;
+        private int size;
+
+        private final IntList tokenStart;
+        private final IntList tokenIds;
+        private final Map<String, Integer> tokenIdByText = new HashMap<>();
+        private final List<String> tokens = new ArrayList<>();
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            ids = new long[capacity];
+            studentIds = new String[capacity];
+            pendingCents = new long[capacity];
+            nextInstallmentCents = new long[capacity];
+            tokenStart = new IntList(capacity + 1);
+            tokenIds = new IntList(capacity * 3);
+            tokenStart.add(0);
+        }
+
+        public Builder add(Long id, String studentId, String fullName, Double pendingAmount) {
+            return add(id, studentId, fullName, pendingAmount, null);
+        }
+
+        public Builder add(Long id, String studentId, String fullName, Double pendingAmount,
+                           Double nextInstallmentAmount) {
+            String normalized = normalize(fullName);
+            if (id == null || normalized.isEmpty()) {
+                return this;
+            }
+            ensureCapacity();
+            ids[size] = id;
+            studentIds[size] = studentId;
+            pendingCents[size] = toCents(pendingAmount);
+            nextInstallmentCents[size] = toCents(nextInstallmentAmount);
+            for (String part : normalized.split(" ")) {
+                tokenIds.add(intern(part));
+            }
+            tokenStart.add(tokenIds.size());
+            size++;
+            return this;
+        }
+
+        /**
+         * Carry every row of an earlier index over, except removed rows and the given ids.
+         */
+        public Builder addAll(StudentMatchIndex base, Set<Long> excludedIds) {
+            for (int row = 0; row < base.size(); row++) {
+                if (excludedIds.contains(base.ids[row]) || base.isRemoved(row)) {
+                    continue;
+                }
+                ensureCapacity();
+                ids[size] = base.ids[row];
+                studentIds[size] = base.studentIds[row];
+                pendingCents[size] = base.pendingCents(row);
+                nextInstallmentCents[size] = base.nextInstallmentCents(row);
+                for (int i = base.tokenStart[row]; i < base.tokenStart[row + 1]; i++) {
+                    tokenIds.add(intern(base.tokens[base.tokenIds[i]]));
+                }
+                tokenStart.add(tokenIds.size());
+                size++;
+            }
+            return this;
+        }
+
+        public StudentMatchIndex build() {
+            long[] finalIds = Arrays.copyOf(ids, size);
+            int[] starts = tokenStart.toArray();
+            int[] rowTokens = tokenIds.toArray();
+            String[] vocabulary = tokens.toArray(new String[0]);
+
+            // Token lookup
+            int[] tokenTable = new int[tableSize(vocabulary.length)];
+            int tokenMask = tokenTable.length - 1;
+            for (int id = 0; id < vocabulary.length; id++) {
+                int slot = mix(vocabulary[id].hashCode()) & tokenMask;
+                while (tokenTable[slot] != 0) {
+                    slot = (slot + 1) & tokenMask;
+                }
+                tokenTable[slot] = id + 1;
+            }
+
+            // Token → rows postings (counting sort, rows ascending)
+            int[] postingStart = new int[vocabulary.length + 1];
+            for (int token : rowTokens) {
+                postingStart[token + 1]++;
+            }
+            for (int i = 0; i < vocabulary.length; i++) {
+                postingStart[i + 1] += postingStart[i];
+            }
+            int[] fill = Arrays.copyOf(postingStart, vocabulary.length);
+            int[] postingRows = new int[rowTokens.length];
+            int[] lastRowForToken = new int[vocabulary.length];
+            Arrays.fill(lastRowForToken, NONE);
+            for (int row = 0; row < size; row++) {
+                for (int i = starts[row]; i < starts[row + 1]; i++) {
+                    int token = rowTokens[i];
+                    if (lastRowForToken[token] != row) {
+                        lastRowForToken[token] = row;
+                        postingRows[fill[token]++] = row;
+                    }
+                }
+            }
+            // Tokens repeated within a name leave gaps; compact them
+            int write = 0;
+            for (int token = 0; token < vocabulary.length; token++) {
+                int from = postingStart[token];
+                postingStart[token] = write;
+                for (int i = from; i < fill[token]; i++) {
+                    postingRows[write++] = postingRows[i];
+                }
+            }
+            postingStart[vocabulary.length] = write;
+            postingRows = Arrays.copyOf(postingRows, write);
+
+            // Id and exact-name lookups; the first row wins for duplicate names
+            LongIntTable rowById = new LongIntTable(size);
+            int[] nameTable = new int[tableSize(size)];
+            int nameMask = nameTable.length - 1;
+            for (int row = 0; row < size; row++) {
+                rowById.put(finalIds[row], row);
+
+                int slot = nameHash(rowTokens, starts[row], starts[row + 1]) & nameMask;
+                boolean duplicate = false;
+                while (nameTable[slot] != 0) {
+                    int other = nameTable[slot] - 1;
+                    if (sameTokenRange(rowTokens, starts, other, row)) {
+                        duplicate = true;
+                        break;
+                    }
+                    slot = (slot + 1) & nameMask;
+                }
+                if (!duplicate) {
+                    nameTable[slot] = row + 1;
+                }
+            }
+
+            // Admission numbers, exact (compact) and by core; shared keys are marked ambiguous
+            String[] finalStudentIds = Arrays.copyOf(studentIds, size);
+            int[] studentIdTable = new int[tableSize(size)];
+            int[] studentIdCoreTable = new int[tableSize(size)];
+            for (int row = 0; row < size; row++) {
+                String compact = compactStudentId(finalStudentIds[row]);
+                if (!compact.isEmpty()) {
+                    putStudentId(studentIdTable, finalStudentIds, compact, row, false);
+                    putStudentId(studentIdCoreTable, finalStudentIds, studentIdCore(compact), row, true);
+                }
+            }
+
+            // Balances and next installments in cents, sorted for range lookups
+            if (size > ROW_MASK) {
+                throw new IllegalStateException("Too many students for the amount index: " + size);
+            }
+            long[] amountKeys = new long[size * 2];
+            int amountCount = 0;
+            for (int row = 0; row < size; row++) {
+                amountCount = addAmountKeys(amountKeys, amountCount, row, pendingCents[row], nextInstallmentCents[row]);
+            }
+            amountKeys = Arrays.copyOf(amountKeys, amountCount);
+            Arrays.sort(amountKeys);
+
+            return new StudentMatchIndex(
+                    finalIds,
+                    finalStudentIds,
+                    chunked(pendingCents, size),
+                    chunked(nextInstallmentCents, size),
+                    starts,
+                    rowTokens,
+                    vocabulary,
+                    tokenTable,
+                    postingStart,
+                    postingRows,
+                    rowById,
+                    nameTable,
+                    studentIdTable,
+                    studentIdCoreTable,
+                    amountKeys,
+                    NO_ROWS,
+                    NO_KEYS,
+                    NO_ROWS
+            );
+        }
+
+        private int intern(String token) {
+            Integer id = tokenIdByText.get(token);
+            if (id == null) {
+                id = tokens.size();
+                tokenIdByText.put(token, id);
+                tokens.add(token);
+            }
+            return id;
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                studentIds = Arrays.copyOf(studentIds, capacity);
+                pendingCents = Arrays.copyOf(pendingCents, capacity);
+                nextInstallmentCents = Arrays.copyOf(nextInstallmentCents, capacity);
+            }
+        }
+
+        private static long toCents(Double amount) {
+            return amount != null && amount > 0 ? Math.round(amount * 100) : 0;
+        }
+
+        private static void putStudentId(int[] table, String[] studentIds, String key, int row, boolean core) {
+            int mask = table.length - 1;
+            int slot = mix(key.hashCode()) & mask;
+            while (table[slot] != 0) {
+                int other = Math.abs(table[slot]) - 1;
+                String stored = compactStudentId(studentIds[other]);
+                if (key.equals(core ? studentIdCore(stored) : stored)) {
+                    table[slot] = -Math.abs(table[slot]);
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = row + 1;
+        }
+
+        private static boolean sameTokenRange(int[] rowTokens, int[] starts, int a, int b) {
+            int length = starts[a + 1] - starts[a];
+            if (starts[b + 1] - starts[b] != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (rowTokens[starts[a] + i] != rowTokens[starts[b] + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // ========== UPDATE ==========
+
+    /**
+     * Balance changes and removals applied to an existing index. Rows keep their numbers, and
+     * the vocabulary, postings and lookup tables are shared; only the balance chunks holding a
+     * changed row are copied, so the cost follows the number of changes, not the roster.
+     */
+    public static final class Update {
+        private final StudentMatchIndex base;
+        private final Map<Integer, long[]> amountsByRow = new HashMap<>();
+        private final Set<Integer> removed = new HashSet<>();
+
+        private Update(StudentMatchIndex base) {
+            this.base = base;
+        }
+
+        /**
+         * New balance and next installment for an enrolled student.
+         *
+         * @return false when the student has no row here, so the change needs a rebuild
+         */
+        public boolean setAmounts(long id, Double pendingAmount, Double nextInstallmentAmount) {
+            int row = base.rowOf(id);
+            if (row < 0) {
+                return false;
+            }
+            amountsByRow.put(row, new long[]{Builder.toCents(pendingAmount), Builder.toCents(nextInstallmentAmount)});
+            return true;
+        }
+
+        public Update remove(long id) {
+            int row = base.rowOf(id);
+            if (row >= 0) {
+                removed.add(row);
+                amountsByRow.remove(row);
+            }
+            return this;
+        }
+
+        public StudentMatchIndex build() {
+            if (amountsByRow.isEmpty() && removed.isEmpty()) {
+                return base;
+            }
+
+            long[][] pending = base.pendingCents.clone();
+            long[][] next = base.nextInstallmentCents.clone();
+            boolean[] copied = new boolean[pending.length];
+            for (Map.Entry<Integer, long[]> entry : amountsByRow.entrySet()) {
+                int row = entry.getKey();
+                int chunk = row >>> CHUNK_BITS;
+                if (!copied[chunk]) {
+                    pending[chunk] = pending[chunk].clone();
+                    next[chunk] = next[chunk].clone();
+                    copied[chunk] = true;
+                }
+                pending[chunk][row & CHUNK_MASK] = entry.getValue()[0];
+                next[chunk][row & CHUNK_MASK] = entry.getValue()[1];
+            }
+
+            // Keys of earlier updates carry over unless this update replaces or removes the row
+            int[] updatedRows = union(base.updatedRows, amountsByRow.keySet());
+            long[] keys = new long[updatedRows.length * 2];
+            int count = 0;
+            for (long key : base.updatedAmountKeys) {
+                int row = (int) (key & ROW_MASK);
+                if (!amountsByRow.containsKey(row) && !removed.contains(row)) {
+                    keys[count++] = key;
+                }
+            }
+            for (Map.Entry<Integer, long[]> entry : amountsByRow.entrySet()) {
+                count = addAmountKeys(keys, count, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+            keys = Arrays.copyOf(keys, count);
+            Arrays.sort(keys);
+
+            return new StudentMatchIndex(base.ids, base.studentIds, pending, next,
+                    base.tokenStart, base.tokenIds, base.tokens, base.tokenTable,
+                    base.postingStart, base.postingRows, base.rowById, base.nameTable,
+                    base.studentIdTable, base.studentIdCoreTable, base.amountKeys,
+                    updatedRows, keys, union(base.removedRows, removed));
+        }
+    }
+
+    // ========== PRIMITIVE HELPERS ==========
+
+    /**
+     * Open-addressing map of long → int with no boxing.
+     */
+    private static final class LongIntTable {
+        private final long[] keys;
+        private final int[] values;
+        private final boolean[] used;
+        private final int mask;
+
+        LongIntTable(int expected) {
+            int capacity = tableSize(expected);
+            keys = new long[capacity];
+            values = new int[capacity];
+            used = new boolean[capacity];
+            mask = capacity - 1;
+        }
+
+        int get(long key) {
+            int slot = hash(key) & mask;
+            while (used[slot]) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NONE;
+        }
+
+        void put(long key, int value) {
+            int slot = hash(key) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        long estimateHeapBytes() {
+            return arrayBytes(keys.length, 8) + arrayBytes(values.length, 4) + arrayBytes(used.length, 1);
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    private static final class IntList {
+        private int[] data;
+        private int size;
+
+        IntList(int capacity) {
+            data = new int[Math.max(16, capacity)];
+        }
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
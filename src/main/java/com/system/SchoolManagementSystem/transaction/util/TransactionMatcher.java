@@ -2,14 +2,21 @@ package com.system.SchoolManagementSystem.transaction.util;
 
 import com.system.SchoolManagementSystem.student.entity.Student;
 import com.system.SchoolManagementSystem.transaction.entity.BankTransaction;
+import com.system.SchoolManagementSystem.transaction.service.PayerRouteService;
 import com.system.SchoolManagementSystem.transaction.service.StudentCacheService;
+import com.system.SchoolManagementSystem.transaction.util.StudentMatchIndex.StudentRef;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,10 +27,59 @@ public class TransactionMatcher {
 
     // ========== DEPENDENCIES ==========
     private final StudentCacheService studentCacheService;
+    private final PayerRouteService payerRouteService;
+
+    // ========== CONFIGURATION ==========
+    @Value("${transaction.matching.fuzzy.enabled:true}")
+    private boolean fuzzyMatchingEnabled;
+
+    @Value("${transaction.matching.fuzzy.min-confidence:0.8}")
+    private double fuzzyMinConfidence;
+
+    // Runner-up must trail the winner by this much, otherwise the line is left for manual review
+    @Value("${transaction.matching.fuzzy.min-margin:0.05}")
+    private double fuzzyMinMargin;
+
+    // Suggestions kept per unmatched line, and the score a suggestion needs to be kept
+    @Value("${transaction.matching.candidates.limit:3}")
+    private int candidateLimit;
+
+    @Value("${transaction.matching.candidates.min-score:20}")
+    private double candidateMinScore;
+
+    // Remembered outcomes per narration + amount band, dropped whenever the roster changes
+    @Value("${transaction.matching.memo.enabled:true}")
+    private boolean memoEnabled;
+
+    @Value("${transaction.matching.memo.max-entries:20000}")
+    private int memoMaxEntries;
+
+    // Long enough for a monthly standing order to find last month's answer
+    @Value("${transaction.matching.memo.ttl-days:35}")
+    private long memoTtlDays;
+
+    private MatchMemo matchMemo;
+
+    // Name tokens shared by more students than this are too common to gather candidates from
+    private static final int MAX_TOKEN_POSTINGS = 1000;
+
+    // Amount hits only gather candidates when they narrow the roster down this far
+    private static final int MAX_AMOUNT_CANDIDATES = 50;
+
+    // Reason bits recorded per ranked candidate
+    private static final int REASON_STUDENT_ID = 1;
+    private static final int REASON_FULL_NAME = 1 << 1;
+    private static final int REASON_NAME_PARTS = 1 << 2;
+    private static final int REASON_FUZZY_NAME = 1 << 3;
+    private static final int REASON_AMOUNT = 1 << 4;
+    private static final int REASON_GUARDIAN_PHONE = 1 << 5;
+    private static final int REASON_GUARDIAN_NAME = 1 << 6;
 
     // ========== PATTERNS ==========
+    // Prefixed admission numbers: "STU20240025", "std 0025", "S/2024/025", "ADM NO: 1234"
     private static final Pattern STUDENT_ID_PATTERN =
-            Pattern.compile("\\b(STU|STD|S/|ID:?)\\s*\\d{4,}\\w*\\b", Pattern.CASE_INSENSITIVE);
+            Pattern.compile("\\b(?:STU|STD|ADM(?:\\s*NO)?|S|ID)\\s*[:/#.-]?\\s*\\d{3,}(?:[/-]\\d+)*[A-Z]?\\b",
+                    Pattern.CASE_INSENSITIVE);
 
     private static final Pattern NAME_PATTERN =
             Pattern.compile("\\b([A-Z][a-z]+(?:\\s+[A-Z][a-z]+)+)\\b");
@@ -36,6 +92,11 @@ public class TransactionMatcher {
             60000, 70000, 80000, 90000, 100000
     };
 
+    @PostConstruct
+    public void initMemo() {
+        matchMemo = new MatchMemo(memoMaxEntries, TimeUnit.DAYS.toMillis(memoTtlDays));
+    }
+
     // ========== PUBLIC METHODS ==========
 
     /**
@@ -45,8 +106,26 @@ public class TransactionMatcher {
         if (transaction == null || transaction.getDescription() == null) {
             return Optional.empty();
         }
+        return findMatchingStudent(transaction, NormalizedNarration.of(transaction.getDescription()));
+    }
 
-        String description = transaction.getDescription().toLowerCase().trim();
+    /**
+     * Same as {@link #findMatchingStudent(BankTransaction)} with the narration already normalised,
+     * so a caller that goes on to {@link #rankCandidates} does not normalise it twice.
+     */
+    public Optional<Student> findMatchingStudent(BankTransaction transaction, NormalizedNarration narration) {
+        if (transaction == null || narration.isEmpty()) {
+            return Optional.empty();
+        }
+        return findMatchingRef(transaction, narration).flatMap(studentCacheService::loadStudent);
+    }
+
+    /**
+     * Learned payer route first, then a remembered outcome, then every strategy against the
+     * compact cache; no entity is loaded until a match is decided.
+     */
+    private Optional<StudentRef> findMatchingRef(BankTransaction transaction, NormalizedNarration narration) {
+        String description = narration.getText();
         Double amount = transaction.getAmount();
 
         log.debug("🔍 Matcher searching: '{}' (KES {})", description, amount);
@@ -57,71 +136,116 @@ public class TransactionMatcher {
             return Optional.empty();
         }
 
-        // ========== STRATEGY 1: EXACT NAME MATCH ==========
-        Set<String> allStudentNames = studentCacheService.getAllNames();
-
-        for (String studentName : allStudentNames) {
-            if (description.contains(studentName)) {
-                Optional<Student> matchedStudent = studentCacheService.findByName(studentName);
-                if (matchedStudent.isPresent()) {
-                    log.info("🎯 Exact name match: '{}' → {}", studentName, matchedStudent.get().getFullName());
-                    return matchedStudent;
-                }
+        // ========== STRATEGY 0: LEARNED PAYER ROUTE ==========
+        // A payer staff have confirmed before goes straight to that student, if still active
+        Optional<Long> routedId = payerRouteService.route(transaction, narration);
+        if (routedId.isPresent()) {
+            Optional<StudentRef> routed = studentCacheService.findById(routedId.get());
+            if (routed.isPresent()) {
+                log.debug("🧭 Payer route: '{}' → {}", description, routed.get().getName());
+                return routed;
             }
         }
 
-        // ========== STRATEGY 2: NAME PARTS MATCH ==========
-        // Extract words from description that could be names
-        String[] words = description.split("[^a-z]+");
-        for (String word : words) {
-            if (word.length() >= 3) { // Only consider words with 3+ characters
-                List<Student> candidates = studentCacheService.findByNamePart(word);
-                if (!candidates.isEmpty()) {
-                    // Check if full name appears
-                    for (Student candidate : candidates) {
-                        String fullName = candidate.getFullName().toLowerCase();
-                        if (description.contains(fullName)) {
-                            log.info("🎯 Name part match: '{}' → {}", word, candidate.getFullName());
-                            return Optional.of(candidate);
-                        }
-                    }
+        // ========== MEMO ==========
+        // The same narration and amount band against the same roster gets the same answer;
+        // payments move balances without changing the roster
+        long generation = studentCacheService.getRosterGeneration();
+        long amountBand = MatchMemo.amountBand(amount);
+        if (memoEnabled) {
+            long remembered = matchMemo.get(description, amountBand, generation, System.currentTimeMillis());
+            if (remembered == MatchMemo.NO_MATCH) {
+                return Optional.empty();
+            }
+            if (remembered != MatchMemo.MISS) {
+                Optional<StudentRef> ref = studentCacheService.findById(remembered);
+                if (ref.isPresent()) {
+                    return ref;
                 }
             }
         }
 
-        // ========== STRATEGY 3: STUDENT ID MATCH ==========
-        Matcher studentIdMatcher = STUDENT_ID_PATTERN.matcher(description);
-        if (studentIdMatcher.find()) {
-            String possibleId = studentIdMatcher.group().replaceAll("(?i)(stu|std|s/|id:?)\\s*", "").trim();
-            // Search through all names to find student with this ID
-            for (String studentName : allStudentNames) {
-                Optional<Student> student = studentCacheService.findByName(studentName);
-                if (student.isPresent() && student.get().getStudentId() != null) {
-                    if (student.get().getStudentId().toLowerCase().contains(possibleId.toLowerCase())) {
-                        log.info("🎯 Student ID match: '{}' → {}", possibleId, student.get().getFullName());
-                        return student;
+        StrategyMatch match = findMatchingRefByStrategies(transaction, narration);
+        // Once balances were consulted, the answer (a miss included) may differ after the next payment
+        if (memoEnabled && !match.byBalance) {
+            matchMemo.put(description, amountBand, generation,
+                    match.student.map(StudentRef::getId).orElse(MatchMemo.NO_MATCH), System.currentTimeMillis());
+        }
+        return match.student;
+    }
+
+    /**
+     * Strategies 1-6, which depend only on the narration, the amount and the cache snapshot.
+     */
+    private StrategyMatch findMatchingRefByStrategies(BankTransaction transaction,
+                                                      NormalizedNarration narration) {
+        String description = narration.getText();
+        Double amount = transaction.getAmount();
+
+        // ========== STRATEGY 1: STUDENT ID MATCH ==========
+        // Highest-confidence signal: an exact admission number, looked up in O(1)
+        Optional<StudentRef> studentIdMatch = findStudentIdMatch(description);
+        if (studentIdMatch.isPresent()) {
+            return new StrategyMatch(studentIdMatch, false);
+        }
+
+        // ========== STRATEGY 2: EXACT NAME MATCH ==========
+        // Single pass over the description with the name automaton
+        Optional<StudentRef> exactNameMatch = findLongestNameMatch(description);
+        if (exactNameMatch.isPresent()) {
+            log.info("🎯 Exact name match: '{}' → {}", description, exactNameMatch.get().getName());
+            return new StrategyMatch(exactNameMatch, false);
+        }
+
+        // ========== STRATEGY 3: NAME PARTS MATCH ==========
+        // Words of the description that could be names, looked up by offset
+        StudentMatchIndex index = studentCacheService.getIndex();
+        for (int t = 0; t < narration.tokenCount(); t++) {
+            if (narration.tokenLength(t) >= 3) { // Only consider words with 3+ characters
+                int tokenId = index.tokenId(description, narration.tokenStart(t), narration.tokenEnd(t));
+                // Check if full name appears
+                for (int row : index.rowsWithTokenId(tokenId)) {
+                    if (description.contains(index.name(row))) {
+                        StudentRef candidate = index.ref(row);
+                        log.info("🎯 Name part match: '{}' → {}", narration.token(t), candidate.getName());
+                        return new StrategyMatch(Optional.of(candidate), false);
                     }
                 }
             }
         }
 
-        // ========== STRATEGY 4: AMOUNT MATCH ==========
+        // ========== STRATEGY 4: GUARDIAN MATCH ==========
+        // Parents pay with their own M-Pesa number and name; siblings are narrowed down or left
+        StrategyMatch guardianMatch = findGuardianMatch(narration, amount);
+        if (guardianMatch.student.isPresent()) {
+            return guardianMatch;
+        }
+        boolean byBalance = guardianMatch.byBalance;
+
+        // ========== STRATEGY 5: AMOUNT MATCH ==========
         if (amount != null && amount > 0) {
-            List<Student> amountCandidates = studentCacheService.findByAmount(amount);
+            byBalance = true;
+            // Balances and next installments within tolerance, closest first
+            List<StudentRef> amountCandidates = studentCacheService.findByAmount(amount);
             if (!amountCandidates.isEmpty()) {
                 // Filter by name in description
-                for (Student candidate : amountCandidates) {
-                    String studentName = candidate.getFullName().toLowerCase();
-                    if (description.contains(studentName)) {
-                        log.info("🎯 Amount + name match: KES {} → {}", amount, candidate.getFullName());
-                        return Optional.of(candidate);
+                for (StudentRef candidate : amountCandidates) {
+                    if (description.contains(candidate.getName())) {
+                        log.info("🎯 Amount + name match: KES {} → {}", amount, candidate.getName());
+                        return new StrategyMatch(Optional.of(candidate), true);
                     }
                 }
             }
         }
 
+        // ========== STRATEGY 6: FUZZY NAME MATCH ==========
+        Optional<StudentRef> fuzzyMatch = findFuzzyNameMatch(description);
+        if (fuzzyMatch.isPresent()) {
+            return new StrategyMatch(fuzzyMatch, byBalance);
+        }
+
         log.debug("❌ No match found for: '{}'", description);
-        return Optional.empty();
+        return byBalance ? StrategyMatch.NONE_BY_BALANCE : StrategyMatch.NONE;
     }
 
     /**
@@ -132,11 +256,11 @@ public class TransactionMatcher {
             return Optional.empty();
         }
 
-        String description = transaction.getDescription().toLowerCase();
-        log.debug("🔍 Enhanced matching for: '{}'", description);
+        NormalizedNarration narration = NormalizedNarration.of(transaction.getDescription());
+        log.debug("🔍 Enhanced matching for: '{}'", narration);
 
         // Clean description
-        String cleanedDesc = cleanDescriptionForMatching(description);
+        String cleanedDesc = narration.getCleaned();
 
         // Check cache
         if (!studentCacheService.isCacheLoaded()) {
@@ -144,25 +268,182 @@ public class TransactionMatcher {
         }
 
         // Try exact match first
-        Optional<Student> exactMatch = findMatchingStudent(transaction);
+        Optional<StudentRef> exactMatch = findMatchingRef(transaction, narration);
         if (exactMatch.isPresent()) {
-            return exactMatch;
+            return studentCacheService.loadStudent(exactMatch.get());
         }
 
         // Try with cleaned description
-        Set<String> allNames = studentCacheService.getAllNames();
-
-        for (String studentName : allNames) {
-            if (cleanedDesc.contains(studentName)) {
-                Optional<Student> student = studentCacheService.findByName(studentName);
-                if (student.isPresent()) {
-                    log.info("🎯 Enhanced match: '{}' → {}", studentName, student.get().getFullName());
-                    return student;
+        Optional<StudentRef> cleanedMatch = findLongestNameMatch(cleanedDesc);
+        if (cleanedMatch.isPresent()) {
+            log.info("🎯 Enhanced match: '{}' → {}", cleanedDesc, cleanedMatch.get().getName());
+            return studentCacheService.loadStudent(cleanedMatch.get());
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Rank the most likely students for a line, best first, using the configured limit.
+     */
+    public List<RankedCandidate> rankCandidates(BankTransaction transaction) {
+        return rankCandidates(transaction, candidateLimit);
+    }
+
+    public List<RankedCandidate> rankCandidates(BankTransaction transaction, NormalizedNarration narration) {
+        return rankCandidates(transaction, narration, candidateLimit);
+    }
+
+    public List<RankedCandidate> rankCandidates(BankTransaction transaction, int limit) {
+        if (transaction == null || transaction.getDescription() == null) {
+            return Collections.emptyList();
+        }
+        return rankCandidates(transaction, NormalizedNarration.of(transaction.getDescription()), limit);
+    }
+
+    /**
+     * Gather candidates from every index (admission number, full names, name tokens, amount,
+     * fuzzy names) and keep the best {@code limit} in a bounded min-heap. Scoring mirrors
+     * {@link #calculateMatchScore} but works on interned token ids, so no candidate name is
+     * split or lower-cased.
+     */
+    public List<RankedCandidate> rankCandidates(BankTransaction transaction, NormalizedNarration narration, int limit) {
+        if (transaction == null || narration.isEmpty() || limit <= 0
+                || !studentCacheService.isCacheLoaded()) {
+            return Collections.emptyList();
+        }
+
+        StudentMatchIndex index = studentCacheService.getIndex();
+        String description = narration.getText();
+        Double amount = transaction.getAmount();
+
+        // Per-line work, done once: description tokens and context points
+        int[] descriptionTokens = descriptionTokenIds(index, narration);
+        double contextScore = contextScore(transaction, narration);
+
+        // ========== GATHER ==========
+        Map<Integer, Integer> reasonsByRow = new HashMap<>();
+        Map<Integer, Double> fuzzyScoreByRow = new HashMap<>();
+
+        Matcher studentIdMatcher = STUDENT_ID_PATTERN.matcher(description);
+        while (studentIdMatcher.find()) {
+            addReason(reasonsByRow, index.rowOfStudentId(studentIdMatcher.group()), REASON_STUDENT_ID);
+        }
+
+        for (NameAutomaton.Match match : studentCacheService.findNamesIn(description)) {
+            addReason(reasonsByRow, index.rowOfName(match.getName()), REASON_FULL_NAME);
+        }
+
+        for (int tokenId : descriptionTokens) {
+            if (index.rowCountWithTokenId(tokenId) <= MAX_TOKEN_POSTINGS) {
+                for (int row : index.rowsWithTokenId(tokenId)) {
+                    addReason(reasonsByRow, row, 0);
                 }
             }
         }
 
-        return Optional.empty();
+        long amountCents = amount != null && amount > 0 ? Math.round(amount * 100) : 0;
+        long toleranceCents = amountCents > 0 ? Math.round(studentCacheService.getAmountTolerance(amount) * 100) : 0;
+        if (amountCents > 0) {
+            int[] amountRows = index.rowsWithAmountBetween(amountCents - toleranceCents, amountCents + toleranceCents);
+            if (amountRows.length <= MAX_AMOUNT_CANDIDATES) {
+                for (int row : amountRows) {
+                    addReason(reasonsByRow, row, 0);
+                }
+            }
+        }
+
+        for (StudentCacheService.GuardianMatch match : studentCacheService.findByGuardian(narration)) {
+            addReason(reasonsByRow, index.rowOf(match.getStudent().getId()),
+                    match.isPhoneEvidence() ? REASON_GUARDIAN_PHONE : REASON_GUARDIAN_NAME);
+        }
+
+        if (fuzzyMatchingEnabled) {
+            for (FuzzyNameIndex.Candidate<StudentRef> candidate
+                    : studentCacheService.findFuzzyCandidates(description, limit * 2)) {
+                int row = index.rowOf(candidate.getItem().getId());
+                if (row >= 0) {
+                    addReason(reasonsByRow, row, 0);
+                    fuzzyScoreByRow.put(row, candidate.getScore());
+                }
+            }
+        }
+
+        // ========== SCORE INTO A BOUNDED HEAP ==========
+        PriorityQueue<ScoredRow> heap = new PriorityQueue<>(limit + 1,
+                Comparator.comparingDouble((ScoredRow scored) -> scored.score)
+                        .thenComparing(scored -> -scored.row));
+
+        for (Map.Entry<Integer, Integer> entry : reasonsByRow.entrySet()) {
+            int row = entry.getKey();
+            int reasons = entry.getValue();
+            double score = 0;
+
+            if ((reasons & REASON_STUDENT_ID) != 0) {
+                score += 30;
+            }
+            if ((reasons & REASON_FULL_NAME) != 0) {
+                score += 25;
+            }
+
+            // Name parts: first and last name both present, else partial token overlap
+            int tokenCount = index.tokenCount(row);
+            int present = 0;
+            for (int i = 0; i < tokenCount; i++) {
+                if (Arrays.binarySearch(descriptionTokens, index.tokenIdAt(row, i)) >= 0) {
+                    present++;
+                }
+            }
+            if (tokenCount >= 2 && Arrays.binarySearch(descriptionTokens, index.tokenIdAt(row, 0)) >= 0
+                    && Arrays.binarySearch(descriptionTokens, index.tokenIdAt(row, tokenCount - 1)) >= 0) {
+                score += 15;
+                reasons |= REASON_NAME_PARTS;
+            } else if (present > 0) {
+                score += 10.0 * present / tokenCount;
+                reasons |= REASON_NAME_PARTS;
+            }
+
+            Double fuzzyScore = fuzzyScoreByRow.get(row);
+            if (fuzzyScore != null && (reasons & REASON_FULL_NAME) == 0) {
+                score += 20 * fuzzyScore;
+                reasons |= REASON_FUZZY_NAME;
+            }
+
+            // Every sibling of a recognised parent gets these points; amount and names separate them
+            if ((reasons & REASON_GUARDIAN_PHONE) != 0) {
+                score += 25;
+            } else if ((reasons & REASON_GUARDIAN_NAME) != 0) {
+                score += 20;
+            }
+
+            if (amountCents > 0) {
+                long distance = index.amountDistanceCents(row, amountCents);
+                if (distance >= 0 && distance <= toleranceCents) {
+                    score += distance < 1 ? 25 : 25 - 10.0 * distance / toleranceCents;
+                    reasons |= REASON_AMOUNT;
+                }
+            }
+
+            // The threshold applies to the student-specific evidence; context is the same for every row
+            if (score < candidateMinScore) {
+                continue;
+            }
+            score = Math.max(0, Math.min(score + contextScore, 100));
+            if (heap.size() < limit) {
+                heap.add(new ScoredRow(row, score, reasons));
+            } else if (score > heap.peek().score) {
+                heap.poll();
+                heap.add(new ScoredRow(row, score, reasons));
+            }
+        }
+
+        // Heap drains worst first
+        RankedCandidate[] ranked = new RankedCandidate[heap.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ScoredRow scored = heap.poll();
+            ranked[i] = new RankedCandidate(index.ref(scored.row), scored.score, describeReasons(scored.reasons));
+        }
+        return Arrays.asList(ranked);
     }
 
     /**
@@ -170,7 +451,8 @@ public class TransactionMatcher {
      */
     public Double calculateMatchScore(BankTransaction transaction, Student student, Double pendingFee) {
         double score = 0.0;
-        String description = transaction.getDescription().toLowerCase();
+        NormalizedNarration narration = NormalizedNarration.of(transaction.getDescription());
+        String description = narration.getText();
         String studentName = student.getFullName().toLowerCase();
         String[] studentNameParts = studentName.split("\\s+");
         Double transactionAmount = transaction.getAmount();
@@ -190,18 +472,16 @@ public class TransactionMatcher {
         }
 
         // Student ID match (high priority)
-        if (student.getStudentId() != null) {
-            String studentId = student.getStudentId().toLowerCase();
-            if (description.contains(studentId)) {
-                score += 30;
-            }
+        if (student.getStudentId() != null && mentionsStudentId(description, student.getStudentId())) {
+            score += 30;
         }
 
         // ========== AMOUNT MATCHING (MAX 30 POINTS) ==========
-        if (pendingFee != null && pendingFee > 0) {
-            if (Math.abs(transactionAmount - pendingFee) < 0.01) {
-                score += 25;
-            } else if (isCommonKenyanSchoolAmount(transactionAmount)) {
+        double amountScore = amountProximityScore(transactionAmount, student, pendingFee);
+        if (amountScore > 0) {
+            score += amountScore;
+        } else if (pendingFee != null && pendingFee > 0) {
+            if (isCommonKenyanSchoolAmount(transactionAmount)) {
                 score += 20;
             }
         } else if (isCommonKenyanSchoolAmount(transactionAmount)) {
@@ -214,12 +494,12 @@ public class TransactionMatcher {
             score += 10;
         }
 
-        if (hasSchoolKeywords(description)) {
+        if (narration.hasSchoolKeyword()) {
             score += 5;
         }
 
         // ========== PENALTIES ==========
-        if (isLikelyFalsePositive(description)) {
+        if (narration.isLikelyFalsePositive()) {
             score -= 30;
         }
 
@@ -231,58 +511,264 @@ public class TransactionMatcher {
 
     // ========== HELPER METHODS ==========
 
-    private String cleanDescriptionForMatching(String description) {
-        // Remove common transaction prefixes/suffixes
-        String cleaned = description
-                .replaceAll("(?i)(upi|neft|rtgs|imps|cash|cheque|card)[-_\\s]*", " ")
-                .replaceAll("(?i)(tuition|fee|fees|payment|school|admission)[-_\\s]*", " ")
-                .replaceAll("[^a-z\\s]", " ")  // Remove special characters
-                .replaceAll("\\s+", " ")      // Normalize spaces
-                .trim();
-
-        return cleaned;
+    /**
+     * First admission number in the description that resolves to exactly one student.
+     */
+    private Optional<StudentRef> findStudentIdMatch(String description) {
+        Matcher studentIdMatcher = STUDENT_ID_PATTERN.matcher(description);
+        while (studentIdMatcher.find()) {
+            String possibleId = studentIdMatcher.group();
+            Optional<StudentRef> student = studentCacheService.findByStudentId(possibleId);
+            if (student.isPresent()) {
+                log.info("🎯 Student ID match: '{}' → {}", possibleId, student.get().getName());
+                return student;
+            }
+        }
+        return Optional.empty();
     }
 
-    private boolean isCommonKenyanSchoolAmount(Double amount) {
-        if (amount == null) return false;
+    /**
+     * A student whose parent or guardian the narration identifies. Phone evidence beats name
+     * evidence; when a parent has several children enrolled, the sibling is picked by a first
+     * name in the narration or, failing that, by the one balance the amount fits. Otherwise
+     * the line is left for manual review with the siblings as ranked candidates.
+     */
+    private StrategyMatch findGuardianMatch(NormalizedNarration narration, Double amount) {
+        List<StudentCacheService.GuardianMatch> matches = studentCacheService.findByGuardian(narration);
+        if (matches.isEmpty()) {
+            return StrategyMatch.NONE;
+        }
 
-        for (double common : COMMON_KENYAN_SCHOOL_AMOUNTS) {
-            if (Math.abs(amount - common) < 0.01) {
-                return true;
+        List<StudentRef> siblings = new ArrayList<>(matches.size());
+        boolean anyPhone = matches.stream().anyMatch(StudentCacheService.GuardianMatch::isPhoneEvidence);
+        for (StudentCacheService.GuardianMatch match : matches) {
+            if (!anyPhone || match.isPhoneEvidence()) {
+                siblings.add(match.getStudent());
             }
         }
 
-        return amount % 100 == 0 || amount % 500 == 0 || amount % 1000 == 0;
+        if (siblings.size() == 1) {
+            log.info("🎯 Guardian match: '{}' → {}", narration, siblings.get(0).getName());
+            return new StrategyMatch(Optional.of(siblings.get(0)), false);
+        }
+
+        // First names: "fees for brian" among the children of one parent
+        StudentMatchIndex index = studentCacheService.getIndex();
+        int[] descriptionTokens = descriptionTokenIds(index, narration);
+        StudentRef named = null;
+        int namedCount = 0;
+        for (StudentRef sibling : siblings) {
+            int row = index.rowOf(sibling.getId());
+            if (row >= 0 && index.tokenCount(row) > 0
+                    && Arrays.binarySearch(descriptionTokens, index.tokenIdAt(row, 0)) >= 0) {
+                named = sibling;
+                namedCount++;
+            }
+        }
+        if (namedCount == 1) {
+            log.info("🎯 Guardian + first name match: '{}' → {}", narration, named.getName());
+            return new StrategyMatch(Optional.of(named), false);
+        }
+
+        // Amount: exactly one sibling's balance or next installment fits
+        boolean byBalance = false;
+        if (amount != null && amount > 0) {
+            byBalance = true;
+            long amountCents = Math.round(amount * 100);
+            long toleranceCents = Math.round(studentCacheService.getAmountTolerance(amount) * 100);
+            StudentRef fitting = null;
+            int fittingCount = 0;
+            for (StudentRef sibling : siblings) {
+                int row = index.rowOf(sibling.getId());
+                long distance = row >= 0 ? index.amountDistanceCents(row, amountCents) : -1;
+                if (distance >= 0 && distance <= toleranceCents) {
+                    fitting = sibling;
+                    fittingCount++;
+                }
+            }
+            if (fittingCount == 1) {
+                log.info("🎯 Guardian + amount match: KES {} → {}", amount, fitting.getName());
+                return new StrategyMatch(Optional.of(fitting), true);
+            }
+        }
+
+        log.debug("Guardian in '{}' has {} enrolled children; leaving for review", narration, siblings.size());
+        return byBalance ? StrategyMatch.NONE_BY_BALANCE : StrategyMatch.NONE;
     }
 
-    private boolean hasSchoolKeywords(String description) {
-        String[] keywords = {
-                "school", "tuition", "fee", "fees", "payment", "college",
-                "education", "academy", "institute", "admission", "exam"
-        };
+    /**
+     * Typo-tolerant match for misspelt ("Wanjku"), truncated or swapped names.
+     * Only accepts a confident, unambiguous winner.
+     */
+    private Optional<StudentRef> findFuzzyNameMatch(String description) {
+        if (!fuzzyMatchingEnabled) {
+            return Optional.empty();
+        }
+
+        List<FuzzyNameIndex.Candidate<StudentRef>> candidates =
+                studentCacheService.findFuzzyCandidates(description, 2);
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+
+        FuzzyNameIndex.Candidate<StudentRef> best = candidates.get(0);
+        if (best.getScore() < fuzzyMinConfidence) {
+            log.debug("Fuzzy candidate {} below threshold ({} < {})",
+                    best.getItem().getName(), best.getScore(), fuzzyMinConfidence);
+            return Optional.empty();
+        }
+
+        if (candidates.size() > 1 && best.getScore() - candidates.get(1).getScore() < fuzzyMinMargin) {
+            log.debug("Fuzzy match ambiguous between {} and {}",
+                    best.getItem().getName(), candidates.get(1).getItem().getName());
+            return Optional.empty();
+        }
+
+        log.info("🎯 Fuzzy name match: '{}' → {} (confidence {})",
+                description, best.getItem().getName(), best.getScore());
+        return Optional.of(best.getItem());
+    }
+
+    /**
+     * Scan the text once for all cached names and prefer the longest (most specific) one,
+     * so "mary wanjiku njeri" wins over "mary wanjiku" when both are enrolled.
+     */
+    private Optional<StudentRef> findLongestNameMatch(String text) {
+        List<NameAutomaton.Match> matches = studentCacheService.findNamesIn(text);
+        if (matches.isEmpty()) {
+            return Optional.empty();
+        }
+
+        NameAutomaton.Match best = null;
+        for (NameAutomaton.Match match : matches) {
+            if (best == null || match.length() > best.length()) {
+                best = match;
+            }
+        }
 
-        for (String keyword : keywords) {
-            if (description.contains(keyword)) {
+        return studentCacheService.findByName(best.getName());
+    }
+
+    private boolean mentionsStudentId(String description, String studentId) {
+        String compact = StudentMatchIndex.compactStudentId(studentId);
+        String core = StudentMatchIndex.studentIdCore(compact);
+        Matcher studentIdMatcher = STUDENT_ID_PATTERN.matcher(description);
+        while (studentIdMatcher.find()) {
+            String mentioned = StudentMatchIndex.compactStudentId(studentIdMatcher.group());
+            if (mentioned.equals(compact) || StudentMatchIndex.studentIdCore(mentioned).equals(core)) {
                 return true;
             }
         }
         return false;
     }
 
-    private boolean isLikelyFalsePositive(String description) {
-        String[] falsePositives = {
-                "mpesa", "airtime", "safaricom", "equitel", "tkash", "kcb",
-                "cooperative", "sacco", "loan", "chama", "contribution",
-                "shopping", "naivas", "tuskys", "nakumatt", "carrefour",
-                "electricity", "kplc", "water", "rent", "fuel", "petrol"
-        };
+    /**
+     * Sorted, distinct interned ids of the description words that occur in some student name.
+     */
+    private int[] descriptionTokenIds(StudentMatchIndex index, NormalizedNarration narration) {
+        int[] ids = new int[narration.tokenCount()];
+        int count = 0;
+        for (int t = 0; t < narration.tokenCount(); t++) {
+            if (narration.tokenLength(t) >= 2) {
+                int id = index.tokenId(narration.getText(), narration.tokenStart(t), narration.tokenEnd(t));
+                if (id >= 0) {
+                    ids[count++] = id;
+                }
+            }
+        }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    /**
+     * Context points from calculateMatchScore that depend only on the line, not the student.
+     */
+    private double contextScore(BankTransaction transaction, NormalizedNarration narration) {
+        double score = 0;
+        if (transaction.getTransactionDate() != null
+                && ChronoUnit.DAYS.between(transaction.getTransactionDate(), LocalDate.now()) <= 7) {
+            score += 10;
+        }
+        if (narration.hasSchoolKeyword()) {
+            score += 5;
+        }
+        if (narration.isLikelyFalsePositive()) {
+            score -= 30;
+        }
+        return score;
+    }
 
-        for (String fp : falsePositives) {
-            if (description.contains(fp)) {
+    private static void addReason(Map<Integer, Integer> reasonsByRow, int row, int reason) {
+        if (row >= 0) {
+            reasonsByRow.merge(row, reason, (a, b) -> a | b);
+        }
+    }
+
+    private static String describeReasons(int reasons) {
+        List<String> parts = new ArrayList<>(7);
+        if ((reasons & REASON_STUDENT_ID) != 0) parts.add("student id");
+        if ((reasons & REASON_FULL_NAME) != 0) parts.add("full name");
+        if ((reasons & REASON_NAME_PARTS) != 0) parts.add("name parts");
+        if ((reasons & REASON_FUZZY_NAME) != 0) parts.add("similar name");
+        if ((reasons & REASON_AMOUNT) != 0) parts.add("amount");
+        if ((reasons & REASON_GUARDIAN_PHONE) != 0) parts.add("guardian phone");
+        if ((reasons & REASON_GUARDIAN_NAME) != 0) parts.add("guardian name");
+        return String.join(", ", parts);
+    }
+
+    /**
+     * 25 points for an exact hit on the pending fee, the cached balance or the next installment,
+     * sliding down to 15 at the edge of the amount tolerance; 0 when none is within tolerance.
+     */
+    private double amountProximityScore(Double transactionAmount, Student student, Double pendingFee) {
+        if (transactionAmount == null || transactionAmount <= 0) {
+            return 0;
+        }
+
+        double closest = Double.MAX_VALUE;
+        if (pendingFee != null && pendingFee > 0) {
+            closest = Math.abs(transactionAmount - pendingFee);
+        }
+        if (student.getId() != null) {
+            Optional<StudentRef> cached = studentCacheService.findById(student.getId());
+            if (cached.isPresent()) {
+                StudentRef ref = cached.get();
+                if (ref.getPendingAmount() > 0) {
+                    closest = Math.min(closest, Math.abs(transactionAmount - ref.getPendingAmount()));
+                }
+                if (ref.getNextInstallmentAmount() > 0) {
+                    closest = Math.min(closest, Math.abs(transactionAmount - ref.getNextInstallmentAmount()));
+                }
+            }
+        }
+
+        if (closest < 0.01) {
+            return 25;
+        }
+        double tolerance = studentCacheService.getAmountTolerance(transactionAmount);
+        if (closest > tolerance) {
+            return 0;
+        }
+        return 25 - 10 * (closest / tolerance);
+    }
+
+    private boolean isCommonKenyanSchoolAmount(Double amount) {
+        if (amount == null) return false;
+
+        for (double common : COMMON_KENYAN_SCHOOL_AMOUNTS) {
+            if (Math.abs(amount - common) < 0.01) {
                 return true;
             }
         }
-        return false;
+
+        return amount % 100 == 0 || amount % 500 == 0 || amount % 1000 == 0;
     }
 
     /**
@@ -303,11 +789,69 @@ public class TransactionMatcher {
         result.put("exactNameEntries", stats.getExactNameEntries());
         result.put("namePartEntries", stats.getNamePartEntries());
         result.put("amountEntries", stats.getAmountEntries());
+        result.put("automatonStates", stats.getAutomatonStates());
+        result.put("fuzzyVocabularySize", stats.getFuzzyVocabularySize());
+        result.put("guardianContacts", stats.getGuardianContacts());
+        result.put("guardianPhones", stats.getGuardianPhones());
+        result.put("generation", stats.getGeneration());
+        result.put("rosterGeneration", stats.getRosterGeneration());
+        result.put("buildMillis", stats.getBuildMillis());
+        result.put("builtAt", stats.getBuiltAt());
+        result.put("incrementalUpdates", stats.getIncrementalUpdates());
+        result.put("indexHeapBytes", stats.getIndexHeapBytes());
         result.put("isLoaded", stats.isLoaded());
+        result.putAll(payerRouteService.getStats());
+        result.put("memoEntries", matchMemo.size());
+        result.put("memoHits", matchMemo.getHits());
+        result.put("memoMisses", matchMemo.getMisses());
+        result.put("memoHitRate", matchMemo.getHitRate());
+        result.put("memoEvictions", matchMemo.getEvictions());
+        result.put("memoExpirations", matchMemo.getExpirations());
+        result.put("memoInvalidations", matchMemo.getInvalidations());
 
         return result;
     }
 
+    // ========== RANKING TYPES ==========
+
+    /**
+     * One ranked suggestion: the student, a 0-100 score and the signals that produced it.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class RankedCandidate {
+        private final StudentRef student;
+        private final double score;
+        private final String reasons;
+    }
+
+    // Outcome of the strategies; byBalance when a balance or installment amount was checked on the
+    // way to it, whether or not it picked the student
+    private static final class StrategyMatch {
+        static final StrategyMatch NONE = new StrategyMatch(Optional.empty(), false);
+        static final StrategyMatch NONE_BY_BALANCE = new StrategyMatch(Optional.empty(), true);
+
+        final Optional<StudentRef> student;
+        final boolean byBalance;
+
+        StrategyMatch(Optional<StudentRef> student, boolean byBalance) {
+            this.student = student;
+            this.byBalance = byBalance;
+        }
+    }
+
+    private static final class ScoredRow {
+        final int row;
+        final double score;
+        final int reasons;
+
+        ScoredRow(int row, double score, int reasons) {
+            this.row = row;
+            this.score = score;
+            this.reasons = reasons;
+        }
+    }
+
     /**
      * Clear cache (delegates to StudentCacheService)
      */
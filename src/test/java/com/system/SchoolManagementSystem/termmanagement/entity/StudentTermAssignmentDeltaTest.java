@@ -0,0 +1,81 @@
+package com.system.SchoolManagementSystem.termmanagement.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Moving term totals by a payment's delta lands on the same totals and status as re-summing
+ * every item with calculateAmounts.
+ */
+class StudentTermAssignmentDeltaTest {
+
+    @Test
+    void deltaMatchesFullRecalculation() {
+        StudentTermAssignment assignment = assignmentWith(5000.0, 3000.0, 2000.0);
+        assignment.calculateAmounts();
+
+        double[] payments = {1500.0, 4000.0, 4500.0};
+        for (double payment : payments) {
+            allocate(assignment, payment);
+            assignment.applyPayment(payment);
+
+            StudentTermAssignment recalculated = StudentTermAssignment.builder()
+                    .dueDate(assignment.getDueDate())
+                    .feeItems(new ArrayList<>(assignment.getFeeItems()))
+                    .build();
+            recalculated.calculateAmounts();
+
+            assertEquals(recalculated.getTotalTermFee(), assignment.getTotalTermFee(), 1e-9);
+            assertEquals(recalculated.getPaidAmount(), assignment.getPaidAmount(), 1e-9);
+            assertEquals(recalculated.getPendingAmount(), assignment.getPendingAmount(), 1e-9);
+            assertEquals(recalculated.getTermFeeStatus(), assignment.getTermFeeStatus());
+        }
+
+        assertEquals(StudentTermAssignment.FeeStatus.PAID, assignment.getTermFeeStatus());
+        assertEquals(LocalDate.now(), assignment.getLastPaymentDate());
+    }
+
+    @Test
+    void neverTotalledFallsBackToItems() {
+        StudentTermAssignment assignment = assignmentWith(1000.0);
+        allocate(assignment, 400.0);
+        assignment.applyPayment(400.0);
+
+        assertEquals(1000.0, assignment.getTotalTermFee(), 1e-9);
+        assertEquals(400.0, assignment.getPaidAmount(), 1e-9);
+        assertEquals(StudentTermAssignment.FeeStatus.PARTIAL, assignment.getTermFeeStatus());
+    }
+
+    private static StudentTermAssignment assignmentWith(double... amounts) {
+        List<TermFeeItem> items = new ArrayList<>();
+        for (double amount : amounts) {
+            items.add(TermFeeItem.builder()
+                    .itemName("Fee " + items.size())
+                    .feeType(TermFeeItem.FeeType.TUITION)
+                    .amount(amount)
+                    .dueDate(LocalDate.now().plusDays(30))
+                    .build());
+        }
+        return StudentTermAssignment.builder()
+                .dueDate(LocalDate.now().plusDays(30))
+                .feeItems(items)
+                .build();
+    }
+
+    // FIFO over the items, as the payment service does
+    private static void allocate(StudentTermAssignment assignment, double payment) {
+        for (TermFeeItem item : assignment.getFeeItems()) {
+            double pending = item.getAmount() - item.getPaidAmount();
+            double applied = Math.min(payment, pending);
+            if (applied > 0) {
+                item.setPaidAmount(item.getPaidAmount() + applied);
+                payment -= applied;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.system.SchoolManagementSystem.termmanagement.service;
+
+import com.system.SchoolManagementSystem.termmanagement.entity.FeeLedgerEntry;
+import com.system.SchoolManagementSystem.termmanagement.entity.StudentFeeBalance;
+import com.system.SchoolManagementSystem.termmanagement.entity.TermFeeItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Running balance arithmetic: every kind of posting lands in the right total, each entry is
+ * stamped with the balance after it, and the running row always equals the sum of the entries.
+ */
+class FeeLedgerPostingTest {
+
+    @Test
+    void runningBalanceFollowsEveryKindOfEntry() {
+        StudentFeeBalance balance = StudentFeeBalance.builder().studentId(1L).build();
+        TermFeeItem tuition = item("Tuition Fee", 2000.0);
+        TermFeeItem discount = item("Sibling Discount", -500.0);
+
+        List<FeeLedgerEntry> entries = new ArrayList<>();
+        entries.add(FeeLedgerEntry.builder().entryType(FeeLedgerEntry.EntryType.OPENING).amount(10000.0).build());
+        entries.add(FeeLedgerService.payment(4000.0, "OPENING", null));
+        entries.add(FeeLedgerService.charge(tuition));
+        entries.add(FeeLedgerService.charge(discount));
+        entries.add(FeeLedgerService.payment(9000.0, "QK7AB21", "M-Pesa"));
+        entries.add(FeeLedgerService.payment(-3000.0, "REVERT_QK7AB21", "Bounced"));
+        entries.add(FeeLedgerService.chargeReversal(discount, "Removed: Sibling Discount"));
+
+        for (FeeLedgerEntry entry : entries) {
+            balance.post(entry);
+        }
+
+        assertEquals(FeeLedgerEntry.EntryType.CREDIT, entries.get(3).getEntryType());
+        assertEquals(FeeLedgerEntry.EntryType.REVERSAL, entries.get(5).getEntryType());
+        assertEquals(FeeLedgerEntry.EntryType.PAYMENT, entries.get(5).getReversesType());
+
+        // 10000 - 4000 + 2000 - 500 - 9000 = -1500: in credit until the payment bounced
+        assertEquals(-1500.0, entries.get(4).getBalanceAfter(), 1e-9);
+        assertEquals(1500.0, entries.get(5).getBalanceAfter(), 1e-9);
+
+        assertEquals(12000.0, balance.getTotalCharged(), 1e-9);
+        assertEquals(10000.0, balance.getTotalPaid(), 1e-9);
+        assertEquals(0.0, balance.getTotalCredited(), 1e-9);
+        assertEquals(2000.0, balance.getBalance(), 1e-9);
+        assertEquals(balance.getTotalCharged() - balance.getTotalPaid() - balance.getTotalCredited(),
+                balance.getBalance(), 1e-9);
+        assertEquals(entries.stream().mapToDouble(FeeLedgerEntry::getAmount).sum(), balance.getBalance(), 1e-9);
+        assertEquals(entries.size(), balance.getEntryCount());
+    }
+
+    @Test
+    void pendingAndCreditAreNeverNegative() {
+        StudentFeeBalance balance = StudentFeeBalance.builder().studentId(1L).build();
+        balance.post(FeeLedgerService.charge(item("Tuition Fee", 1000.0)));
+        assertEquals(1000.0, balance.getPendingAmount(), 1e-9);
+        assertEquals(0.0, balance.getCreditAmount(), 1e-9);
+
+        balance.post(FeeLedgerService.payment(1250.0, "QK7AB21", null));
+        assertEquals(0.0, balance.getPendingAmount(), 1e-9);
+        assertEquals(250.0, balance.getCreditAmount(), 1e-9);
+    }
+
+    private static TermFeeItem item(String name, double amount) {
+        return TermFeeItem.builder()
+                .itemName(name)
+                .feeType(amount < 0 ? TermFeeItem.FeeType.DISCOUNT : TermFeeItem.FeeType.TUITION)
+                .amount(amount)
+                .build();
+    }
+}
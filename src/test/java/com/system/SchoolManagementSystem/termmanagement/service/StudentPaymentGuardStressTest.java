@@ -0,0 +1,314 @@
+package com.system.SchoolManagementSystem.termmanagement.service;
+
+import com.system.SchoolManagementSystem.student.entity.Student;
+import com.system.SchoolManagementSystem.student.repository.StudentRepository;
+import com.system.SchoolManagementSystem.termmanagement.dto.request.PaymentApplicationRequest;
+import com.system.SchoolManagementSystem.termmanagement.entity.AcademicTerm;
+import com.system.SchoolManagementSystem.termmanagement.entity.StudentTermAssignment;
+import com.system.SchoolManagementSystem.termmanagement.entity.TermFeeItem;
+import com.system.SchoolManagementSystem.termmanagement.repository.*;
+import com.system.SchoolManagementSystem.transaction.repository.FeeStructureRepository;
+import com.system.SchoolManagementSystem.transaction.repository.PaymentTransactionRepository;
+import com.system.SchoolManagementSystem.transaction.repository.StudentFeeAssignmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many threads paying into a few students through {@link TermFeeService}, against real
+ * versioned entities: some payments arrive inside a caller transaction that loaded the student
+ * before the payment lock, as the transactional services do, some on their own and some as
+ * import batches. Every payment must end up in the persisted student total, the term
+ * assignments and the fee items, and none twice.
+ *
+ * Only the repositories the payment path uses are created. Several others hold MySQL-only
+ * queries that H2 refuses to validate.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:payments;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+        "spring.jpa.properties.hibernate.globally_quoted_identifiers_skip_column_definitions=true",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "fees.payment.lock-timeout-ms=2000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({TermFeeService.class, TermService.class, FeeLedgerService.class, FeeLedgerEntryWriter.class,
+        StudentPaymentGuard.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StudentPaymentGuardStressTest {
+
+    private static final int STUDENTS = 4;
+    private static final int THREADS = 8;
+    private static final int PAYMENTS_PER_THREAD = 40;
+    private static final double ITEM_AMOUNT = 1_000_000.0;
+
+    private static final AtomicInteger ADMISSIONS = new AtomicInteger();
+
+    @TestConfiguration
+    @EnableJpaRepositories(
+            basePackageClasses = {StudentRepository.class, AcademicTermRepository.class, PaymentTransactionRepository.class},
+            includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = {
+                    StudentRepository.class, AcademicTermRepository.class, StudentTermAssignmentRepository.class,
+                    TermFeeItemRepository.class, GradeTermFeeRepository.class, FeeLedgerEntryRepository.class,
+                    StudentFeeBalanceRepository.class, StudentFeeAssignmentRepository.class,
+                    FeeStructureRepository.class}))
+    static class PaymentRepositories {
+    }
+
+    // Only read by the payment history endpoints, and its queries are MySQL-only
+    @MockitoBean
+    private PaymentTransactionRepository paymentTransactionRepository;
+
+    @Autowired
+    private TermFeeService termFeeService;
+    @Autowired
+    private StudentPaymentGuard guard;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private AcademicTermRepository academicTermRepository;
+    @Autowired
+    private StudentTermAssignmentRepository studentTermAssignmentRepository;
+    @Autowired
+    private TermFeeItemRepository termFeeItemRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate callerTransaction;
+    private AcademicTerm term;
+
+    @BeforeEach
+    void setUp() {
+        callerTransaction = new TransactionTemplate(transactionManager);
+        // By code: TermService clears the current flag on terms whose dates have passed
+        term = academicTermRepository.findByTermCode("T1-2026").orElseGet(() -> academicTermRepository.save(AcademicTerm.builder()
+                .termName("Term 1")
+                .academicYear("2026-2027")
+                .termCode("T1-2026")
+                .startDate(LocalDate.of(2026, 1, 5))
+                .endDate(LocalDate.of(2026, 4, 3))
+                .status(AcademicTerm.TermStatus.ACTIVE)
+                .isCurrent(true)
+                .build()));
+    }
+
+    @Test
+    void everyPaymentIsPersistedOnceUnderContention() throws Exception {
+        List<Long> studentIds = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            studentIds.add(enrolStudent());
+        }
+        Map<Long, AtomicLong> expected = new ConcurrentHashMap<>();
+        for (Long studentId : studentIds) {
+            expected.put(studentId, new AtomicLong());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < PAYMENTS_PER_THREAD; i++) {
+                    Long studentId = studentIds.get(random.nextInt(STUDENTS));
+                    long amount = 1 + random.nextInt(500);
+                    switch (i % 3) {
+                        case 0 -> termFeeService.applyPaymentToStudent(payment(studentId, amount));
+                        case 1 -> callerTransaction.execute(status -> {
+                            // The caller reads the student first, before the payment lock is taken
+                            studentRepository.findById(studentId).orElseThrow();
+                            return termFeeService.applyPaymentToStudent(payment(studentId, amount));
+                        });
+                        default -> {
+                            Long other = studentIds.get(random.nextInt(STUDENTS));
+                            long otherAmount = 1 + random.nextInt(500);
+                            termFeeService.applyPaymentsToStudents(List.of(
+                                    payment(studentId, amount), payment(other, otherAmount)));
+                            expected.get(other).addAndGet(otherAmount);
+                        }
+                    }
+                    expected.get(studentId).addAndGet(amount);
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        for (Long studentId : studentIds) {
+            assertPaid(studentId, expected.get(studentId).get());
+        }
+    }
+
+    @Test
+    void callerTransactionSeesPaymentCommittedAfterItLoadedTheStudent() throws Exception {
+        Long studentId = enrolStudent();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        callerTransaction.execute(status -> {
+            Student loaded = studentRepository.findById(studentId).orElseThrow();
+            assertEquals(0.0, loaded.getPaidAmount(), 1e-9);
+
+            // Another request pays and commits while this transaction holds its now stale copy
+            try {
+                executor.submit(() -> termFeeService.applyPaymentToStudent(payment(studentId, 300)))
+                        .get(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+
+            termFeeService.applyPaymentToStudent(payment(studentId, 200));
+            return null;
+        });
+        executor.shutdown();
+
+        assertPaid(studentId, 500);
+    }
+
+    @Test
+    void sameStudentWaitsDifferentStudentDoesNot() throws Exception {
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> holder = executor.submit(() -> guard.run(1L, () -> {
+            holding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        holding.await();
+
+        assertEquals("other", guard.run(2L, () -> "other"));
+        assertThrows(CannotAcquireLockException.class, () -> guard.run(1L, () -> "same"));
+
+        release.countDown();
+        holder.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertEquals("same", guard.run(1L, () -> "same"));
+    }
+
+    @Test
+    void lockIsHeldUntilTheCallersTransactionCompletes() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        callerTransaction.execute(status -> {
+            guard.run(1L, () -> "applied");
+            // Work is done but the caller's transaction is still open
+            Future<?> other = executor.submit(() -> guard.run(1L, () -> "other"));
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> other.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(CannotAcquireLockException.class, failure.getCause());
+            return null;
+        });
+
+        assertEquals("other", executor.submit(() -> guard.run(1L, () -> "other")).get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    private void assertPaid(Long studentId, double expected) {
+        callerTransaction.execute(status -> {
+            Student student = studentRepository.findById(studentId).orElseThrow();
+            assertEquals(expected, student.getPaidAmount(), 1e-6, "student " + studentId);
+
+            double assignments = studentTermAssignmentRepository.findByStudentId(studentId).stream()
+                    .mapToDouble(StudentTermAssignment::getPaidAmount)
+                    .sum();
+            assertEquals(expected, assignments, 1e-6, "assignments of student " + studentId);
+
+            double items = termFeeItemRepository.findByStudentTermAssignmentStudentId(studentId).stream()
+                    .mapToDouble(TermFeeItem::getPaidAmount)
+                    .sum();
+            assertEquals(expected, items, 1e-6, "fee items of student " + studentId);
+            return null;
+        });
+    }
+
+    // A student billed two items too large for the test's payments to clear
+    private Long enrolStudent() {
+        return callerTransaction.execute(status -> {
+            int admission = ADMISSIONS.incrementAndGet();
+            Student student = studentRepository.save(Student.builder()
+                    .studentId("ADM-" + admission)
+                    .fullName("Student " + admission)
+                    .dateOfBirth(LocalDate.of(2014, 3, 1))
+                    .gender(Student.Gender.FEMALE)
+                    .admissionDate(LocalDate.of(2026, 1, 5))
+                    .academicYear("2026-2027")
+                    .grade("Grade 6")
+                    .status(Student.StudentStatus.ACTIVE)
+                    .totalFee(2 * ITEM_AMOUNT)
+                    .pendingAmount(2 * ITEM_AMOUNT)
+                    .build());
+
+            StudentTermAssignment assignment = studentTermAssignmentRepository.save(StudentTermAssignment.builder()
+                    .student(student)
+                    .academicTerm(term)
+                    .totalTermFee(2 * ITEM_AMOUNT)
+                    .paidAmount(0.0)
+                    .pendingAmount(2 * ITEM_AMOUNT)
+                    .termFeeStatus(StudentTermAssignment.FeeStatus.PENDING)
+                    .isBilled(true)
+                    .remindersSent(0)
+                    .build());
+
+            for (int sequence = 1; sequence <= 2; sequence++) {
+                termFeeItemRepository.save(TermFeeItem.builder()
+                        .studentTermAssignment(assignment)
+                        .itemName(sequence == 1 ? "Tuition Fee" : "Activity Fee")
+                        .feeType(sequence == 1 ? TermFeeItem.FeeType.TUITION : TermFeeItem.FeeType.ACTIVITY)
+                        .itemType("BASIC")
+                        .amount(ITEM_AMOUNT)
+                        .pendingAmount(ITEM_AMOUNT)
+                        .dueDate(LocalDate.of(2026, 1, 31).plusDays(sequence))
+                        .billingDate(LocalDate.of(2026, 1, 5))
+                        .sequenceOrder(sequence)
+                        .build());
+            }
+            return student.getId();
+        });
+    }
+
+    private static PaymentApplicationRequest payment(Long studentId, long amount) {
+        PaymentApplicationRequest request = new PaymentApplicationRequest();
+        request.setStudentId(studentId);
+        request.setAmount((double) amount);
+        request.setReference("QK" + studentId + "-" + amount);
+        request.setNotes("M-Pesa");
+        return request;
+    }
+}
@@ -0,0 +1,147 @@
+package com.system.SchoolManagementSystem.transaction.service;
+
+import com.system.SchoolManagementSystem.termmanagement.service.TermService;
+import com.system.SchoolManagementSystem.transaction.entity.ReceiptCounter;
+import com.system.SchoolManagementSystem.transaction.repository.ReceiptCounterRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Several nodes issuing from blocks of one shared counter row never hand out the same number,
+ * including a node started after the others, and each prefix/year counts on its own.
+ */
+class ReceiptNumberServiceTest {
+
+    private static final int THREADS_PER_NODE = 8;
+    private static final int RECEIPTS_PER_THREAD = 500;
+
+    @Test
+    void nodesNeverIssueTheSameNumber() throws Exception {
+        SharedCounters database = new SharedCounters();
+        List<ReceiptNumberService> nodes = List.of(database.node(7), database.node(7), database.node(50));
+
+        Set<String> issued = ConcurrentHashMap.newKeySet();
+        List<String> duplicates = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_PER_NODE * nodes.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (ReceiptNumberService node : nodes) {
+            for (int t = 0; t < THREADS_PER_NODE; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < RECEIPTS_PER_THREAD; i++) {
+                        String receipt = node.next(ReceiptNumberService.RECEIPT_PREFIX, "2026-2027");
+                        if (!issued.add(receipt)) {
+                            duplicates.add(receipt);
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertTrue(duplicates.isEmpty(), "Duplicate receipts: " + duplicates);
+        assertEquals(nodes.size() * THREADS_PER_NODE * RECEIPTS_PER_THREAD, issued.size());
+
+        // A restarted node starts past everything reserved before it
+        long highest = issued.stream().mapToLong(ReceiptNumberServiceTest::sequenceOf).max().orElseThrow();
+        String afterRestart = database.node(7).next(ReceiptNumberService.RECEIPT_PREFIX, "2026-2027");
+        assertTrue(sequenceOf(afterRestart) > highest);
+        assertFalse(issued.contains(afterRestart));
+    }
+
+    @Test
+    void eachPrefixAndYearCountsSeparately() {
+        ReceiptNumberService node = new SharedCounters().node(100);
+
+        assertEquals("RC-2026-000001", node.next(ReceiptNumberService.RECEIPT_PREFIX, "2026-2027"));
+        assertEquals("MANUAL-2026-000001", node.next(ReceiptNumberService.MANUAL_PREFIX, "2026-2027"));
+        assertEquals("RC-2027-000001", node.next(ReceiptNumberService.RECEIPT_PREFIX, "2027-2028"));
+        // Prints as 2026, so it must continue the 2026-2027 sequence
+        assertEquals("RC-2026-000002", node.next(ReceiptNumberService.RECEIPT_PREFIX, "2026"));
+    }
+
+    private static long sequenceOf(String receipt) {
+        return Long.parseLong(receipt.substring(receipt.lastIndexOf('-') + 1));
+    }
+
+    /**
+     * Counter rows as the database holds them. A reservation transaction holds the table lock
+     * from begin to commit, standing in for the row lock taken by findForUpdate.
+     */
+    private static final class SharedCounters {
+        private final Map<String, ReceiptCounter> rows = new ConcurrentHashMap<>();
+        private final ReentrantLock rowLock = new ReentrantLock();
+
+        ReceiptNumberService node(int blockSize) {
+            ReceiptCounterRepository repository = mock(ReceiptCounterRepository.class);
+            when(repository.findForUpdate(anyString(), anyString())).thenAnswer(invocation -> {
+                ReceiptCounter row = rows.get(invocation.getArgument(0) + "|" + invocation.getArgument(1));
+                // A copy, as a fresh persistence context would load it
+                return Optional.ofNullable(row).map(r -> ReceiptCounter.builder()
+                        .prefix(r.getPrefix())
+                        .academicYear(r.getAcademicYear())
+                        .nextValue(r.getNextValue())
+                        .build());
+            });
+            when(repository.createIfAbsent(anyString(), anyString())).thenAnswer(invocation -> {
+                String prefix = invocation.getArgument(0);
+                String year = invocation.getArgument(1);
+                ReceiptCounter created = ReceiptCounter.builder().prefix(prefix).academicYear(year).nextValue(1L).build();
+                return rows.putIfAbsent(prefix + "|" + year, created) == null ? 1 : 0;
+            });
+            when(repository.save(any(ReceiptCounter.class))).thenAnswer(invocation -> {
+                ReceiptCounter row = invocation.getArgument(0);
+                rows.put(row.getPrefix() + "|" + row.getAcademicYear(), row);
+                return row;
+            });
+            return new ReceiptNumberService(repository, mock(TermService.class),
+                    new LockingTransactionManager(rowLock), blockSize, 60_000);
+        }
+    }
+
+    private static final class LockingTransactionManager extends AbstractPlatformTransactionManager {
+        private final ReentrantLock lock;
+
+        LockingTransactionManager(ReentrantLock lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            lock.lock();
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            lock.unlock();
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import com.system.SchoolManagementSystem.transaction.entity.BankTransaction;
+import com.system.SchoolManagementSystem.transaction.repository.BankStatementSchemaRepository;
+import com.system.SchoolManagementSystem.transaction.service.StatementSchemaRegistry;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The streaming .xlsx reader produces the same transactions as the in-memory POI model, and
+ * is only chosen for large .xlsx statements. A benchmark reports peak heap under each reader.
+ */
+class ExcelStreamingReaderTest {
+
+    private static final int ROWS = 60_000;
+
+    @Test
+    void streamingReaderMatchesInMemoryReader() throws IOException {
+        MockMultipartFile file = statement(200);
+        BankStatementParser parser = newParser();
+
+        List<BankTransaction> inMemory = new ArrayList<>();
+        List<BankTransaction> streamed = new ArrayList<>();
+        parser.streamExcel(file, "ACC-1", "batch", inMemory::add, false);
+        parser.streamExcel(file, "ACC-1", "batch", streamed::add, true);
+
+        assertEquals(200, inMemory.size());
+        assertEquals(inMemory.size(), streamed.size());
+        for (int i = 0; i < inMemory.size(); i++) {
+            assertEquals(inMemory.get(i).getBankReference(), streamed.get(i).getBankReference());
+            assertEquals(inMemory.get(i).getTransactionDate(), streamed.get(i).getTransactionDate());
+            assertEquals(inMemory.get(i).getAmount(), streamed.get(i).getAmount());
+            assertEquals(inMemory.get(i).getDescription(), streamed.get(i).getDescription());
+        }
+    }
+
+    @Test
+    void selectsStreamingForLargeXlsxOnly() throws IOException {
+        BankStatementParser parser = newParser();
+        ReflectionTestUtils.setField(parser, "excelStreamingThresholdBytes", 64 * 1024L);
+
+        assertFalse(parser.shouldStreamExcel(statement(10)));
+        assertTrue(parser.shouldStreamExcel(statement(ROWS)));
+        assertFalse(parser.shouldStreamExcel(new MockMultipartFile("file", "statement.xls",
+                "application/vnd.ms-excel", new byte[4 * 1024 * 1024])));
+    }
+
+    // Heap readings depend on the collector, so it only runs when benchmarks are asked for (see pom.xml)
+    @Test
+    @Tag("benchmark")
+    void reportPeakHeap() throws IOException {
+        MockMultipartFile file = statement(ROWS);
+        BankStatementParser parser = newParser();
+
+        // Count only, so retained transactions don't blur the reader's own footprint
+        int[] count = new int[1];
+        long inMemoryPeak = peakHeapDuring(() -> parser.streamExcel(file, "ACC-1", "batch", t -> count[0]++, false));
+        int inMemoryCount = count[0];
+
+        count[0] = 0;
+        long streamingPeak = peakHeapDuring(() -> parser.streamExcel(file, "ACC-1", "batch", t -> count[0]++, true));
+
+        System.out.printf("Excel statement of %,d rows (%,d KB): in-memory reader peak %,d MB, "
+                        + "streaming reader peak %,d MB%n",
+                ROWS, file.getSize() / 1024, inMemoryPeak / (1024 * 1024), streamingPeak / (1024 * 1024));
+
+        assertEquals(ROWS, inMemoryCount);
+        assertEquals(ROWS, count[0]);
+        assertTrue(streamingPeak < inMemoryPeak);
+    }
+
+    // ========== HELPERS ==========
+
+    private static BankStatementParser newParser() {
+        return new BankStatementParser(new StatementSchemaRegistry(mock(BankStatementSchemaRepository.class)));
+    }
+
+    @FunctionalInterface
+    private interface ParseRun {
+        void run() throws IOException;
+    }
+
+    private static long peakHeapDuring(ParseRun run) throws IOException {
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        long baseline = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+            baseline += pool.getUsage().getUsed();
+        }
+
+        run.run();
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return peak - baseline;
+    }
+
+    private static MockMultipartFile statement(int rows) throws IOException {
+        Random random = new Random(11);
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Statement");
+            Row header = sheet.createRow(0);
+            String[] headers = {"Date", "Narration", "Amount", "Reference"};
+            for (int c = 0; c < headers.length; c++) {
+                header.createCell(c).setCellValue(headers[c]);
+            }
+            for (int r = 1; r <= rows; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(String.format("%02d/%02d/2025", 1 + random.nextInt(28), 1 + random.nextInt(12)));
+                row.createCell(1).setCellValue("MPESA PAYMENT FROM STUDENT " + random.nextInt(100_000) + " SCHOOL FEES");
+                row.createCell(2).setCellValue(500 + random.nextInt(40) * 500);
+                row.createCell(3).setCellValue(String.format("QK%08d", r));
+            }
+            workbook.write(out);
+            workbook.dispose();
+            return new MockMultipartFile("file", "statement.xlsx",
+                    "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", out.toByteArray());
+        }
+    }
+}
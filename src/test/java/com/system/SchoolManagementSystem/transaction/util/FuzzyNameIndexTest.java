@@ -0,0 +1,142 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Misspelt, truncated and swapped names still find the right student, a shared surname alone
+ * does not, and a lookup over a 50k-student roster stays under a millisecond.
+ */
+class FuzzyNameIndexTest {
+
+    private static final List<String> ROSTER = List.of(
+            "Mary Wanjiku", "Mary Wambui", "John Kamau", "Grace Akinyi Otieno", "Peter Mwangi");
+
+    private static final String CONSONANTS = "bcdfghjklmnprstvwyz";
+    private static final String VOWELS = "aeiou";
+
+    @Test
+    void findsMisspeltName() {
+        assertBest("Mary Wanjiku", "MPESA PAYMENT FROM MARY WANJKU");
+        assertBest("John Kamau", "SCHOOL FEES JOHN KAMUA");
+    }
+
+    @Test
+    void findsTruncatedName() {
+        // Bank cut the narration mid-token
+        assertBest("Mary Wanjiku", "FEES FOR MARY WANJ");
+        // Third name dropped altogether
+        assertBest("Grace Akinyi Otieno", "FEES GRACE AKINYI");
+    }
+
+    @Test
+    void findsSwappedName() {
+        List<FuzzyNameIndex.Candidate<String>> candidates = index(ROSTER).search("WANJIKU MARY TERM 2", 2);
+
+        assertFalse(candidates.isEmpty());
+        assertEquals("Mary Wanjiku", candidates.get(0).getItem());
+        assertEquals(1.0, candidates.get(0).getScore(), 1e-9);
+    }
+
+    @Test
+    void sharedSurnameAloneIsNotAMatch() {
+        List<FuzzyNameIndex.Candidate<String>> candidates = index(ROSTER).search("PAYMENT BY JAMES WANJIKU", 2);
+
+        assertTrue(candidates.stream().noneMatch(c -> c.getItem().equals("Mary Wanjiku")));
+    }
+
+    @Test
+    void indexesOfDifferentSizesShareOneThreadsScratch() {
+        Random random = new Random(7);
+        List<String> larger = new ArrayList<>(ROSTER);
+        for (int i = 0; i < 2_000; i++) {
+            larger.add(randomWord(random) + " " + randomWord(random));
+        }
+        FuzzyNameIndex<String> small = index(ROSTER);
+        FuzzyNameIndex<String> large = index(larger);
+
+        // Alternate so each lookup runs on arrays the other index last used
+        for (int round = 0; round < 3; round++) {
+            assertEquals("Mary Wanjiku", small.search("FEES FOR MARY WANJKU", 2).get(0).getItem());
+            assertEquals("John Kamau", large.search("SCHOOL FEES JOHN KAMUA", 2).get(0).getItem());
+        }
+    }
+
+    // Wall-clock check, so it only runs when benchmarks are asked for (see pom.xml)
+    @Test
+    @Tag("benchmark")
+    void lookupStaysUnderAMillisecondAt50kStudents() {
+        Random random = new Random(42);
+        Set<String> names = new LinkedHashSet<>();
+        while (names.size() < 50_000) {
+            names.add(randomWord(random) + " " + randomWord(random));
+        }
+        List<String> nameList = new ArrayList<>(names);
+        FuzzyNameIndex<String> index = index(nameList);
+
+        List<String> targets = new ArrayList<>();
+        List<String> narrations = new ArrayList<>();
+        while (narrations.size() < 2_000) {
+            String name = nameList.get(random.nextInt(nameList.size()));
+            String[] parts = name.split(" ");
+            // Shorter surnames lose too much to a dropped letter to be told apart from their neighbours
+            if (parts[1].length() < 6) {
+                continue;
+            }
+            // Drop one letter from the surname, as a teller typing in a hurry would
+            int cut = 1 + random.nextInt(parts[1].length() - 1);
+            targets.add(name);
+            narrations.add("MPESA PAYMENT FROM " + parts[0] + " "
+                    + parts[1].substring(0, cut) + parts[1].substring(cut + 1) + " REF " + narrations.size());
+        }
+
+        // Warm up the JIT before timing
+        for (String narration : narrations) {
+            index.search(narration, 2);
+        }
+
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < narrations.size(); i++) {
+            List<FuzzyNameIndex.Candidate<String>> candidates = index.search(narrations.get(i), 2);
+            String target = targets.get(i);
+            if (candidates.stream().anyMatch(c -> c.getItem().equals(target))) {
+                found++;
+            }
+        }
+        long averageNanos = (System.nanoTime() - start) / narrations.size();
+
+        assertEquals(narrations.size(), found);
+        assertTrue(averageNanos < TimeUnit.MILLISECONDS.toNanos(1),
+                "Average lookup took " + averageNanos + " ns");
+    }
+
+    private static void assertBest(String expected, String narration) {
+        List<FuzzyNameIndex.Candidate<String>> candidates = index(ROSTER).search(narration, 2);
+
+        assertFalse(candidates.isEmpty(), narration);
+        assertEquals(expected, candidates.get(0).getItem(), narration);
+    }
+
+    private static FuzzyNameIndex<String> index(Collection<String> names) {
+        return FuzzyNameIndex.build(names, name -> name);
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())))
+                    .append(VOWELS.charAt(random.nextInt(VOWELS.length())));
+        }
+        if (random.nextBoolean()) {
+            word.append(CONSONANTS.charAt(random.nextInt(CONSONANTS.length())));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guardian lookups by phone (every written form, masked numbers) and by name, and sibling sets.
+ */
+class GuardianIndexTest {
+
+    private static final GuardianIndex INDEX = GuardianIndex.builder(4)
+            // One parent, two enrolled children, phone recorded differently on each
+            .add(1L, "John Kamau", "+254 712 345 678")
+            .add(2L, "John  Kamau", "0712-345678")
+            .add(3L, "Grace Achieng", "254722000111")
+            .add(4L, "Peter Otieno", null)
+            .build();
+
+    @Test
+    void normalizesKenyanPhoneForms() {
+        assertEquals(712345678L, GuardianIndex.normalizePhone("+254712345678"));
+        assertEquals(712345678L, GuardianIndex.normalizePhone("254 712 345 678"));
+        assertEquals(712345678L, GuardianIndex.normalizePhone("0712345678"));
+        assertEquals(712345678L, GuardianIndex.normalizePhone("712345678"));
+        assertEquals(110345678L, GuardianIndex.normalizePhone("+254 (0) 110 345 678"));
+        assertEquals(-1L, GuardianIndex.normalizePhone("0212345678"));
+        assertEquals(-1L, GuardianIndex.normalizePhone("12345"));
+    }
+
+    @Test
+    void phoneResolvesToEverySibling() {
+        GuardianIndex.Hits hits = INDEX.find(NormalizedNarration.of("MPESA C2B 254712345678 SCHOOL FEES"));
+
+        assertEquals(2, hits.size());
+        assertEquals(Set.of(1L, 2L), Set.of(hits.studentId(0), hits.studentId(1)));
+        assertEquals(GuardianIndex.EVIDENCE_PHONE, hits.evidence(0));
+
+        assertEquals(2, INDEX.find(NormalizedNarration.of("Paid from 0712 345 678")).size());
+        assertTrue(INDEX.find(NormalizedNarration.of("Ref 90712345678")).isEmpty());
+    }
+
+    @Test
+    void maskedPhoneNeedsNameOrEnoughDigits() {
+        GuardianIndex.Hits withName = INDEX.find(NormalizedNarration.of("2547*****111 GRACE A"));
+        assertEquals(1, withName.size());
+        assertEquals(3L, withName.studentId(0));
+        assertEquals(GuardianIndex.EVIDENCE_MASKED_PHONE, withName.evidence(0));
+
+        assertTrue(INDEX.find(NormalizedNarration.of("2547*****111 SOMEONE ELSE")).isEmpty());
+        assertEquals(1, INDEX.find(NormalizedNarration.of("0722***111")).size());
+    }
+
+    @Test
+    void nameNeedsFirstAndLastName() {
+        GuardianIndex.Hits hits = INDEX.find(NormalizedNarration.of("Fees from PETER OTIENO"));
+        assertEquals(1, hits.size());
+        assertEquals(4L, hits.studentId(0));
+        assertEquals(GuardianIndex.EVIDENCE_NAME, hits.evidence(0));
+
+        assertTrue(INDEX.find(NormalizedNarration.of("Fees from PETER")).isEmpty());
+    }
+
+    @Test
+    void incrementalRebuildReplacesOnlyChangedStudents() {
+        GuardianIndex next = GuardianIndex.builder(4)
+                .addAll(INDEX, Set.of(2L))
+                .add(2L, "Mary Kamau", "0700111222")
+                .build();
+
+        GuardianIndex.Hits hits = next.find(NormalizedNarration.of("254712345678"));
+        assertEquals(1, hits.size());
+        assertEquals(1L, hits.studentId(0));
+        assertEquals(2L, next.find(NormalizedNarration.of("0700111222")).studentId(0));
+    }
+}
@@ -0,0 +1,63 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Memoised match outcomes: positive and negative hits, amount bands, time-to-live, size bound
+ * and invalidation by student cache generation.
+ */
+class MatchMemoTest {
+
+    private static final String NARRATION = "standing order j kamau school fees";
+
+    @Test
+    void remembersMatchesAndNoMatches() {
+        MatchMemo memo = new MatchMemo(1000, 60_000);
+        long band = MatchMemo.amountBand(15000.0);
+
+        assertEquals(MatchMemo.MISS, memo.get(NARRATION, band, 1, 0));
+        memo.put(NARRATION, band, 1, 42L, 0);
+        memo.put("airtime purchase", band, 1, MatchMemo.NO_MATCH, 0);
+
+        assertEquals(42L, memo.get(NARRATION, MatchMemo.amountBand(15000.4), 1, 10));
+        assertEquals(MatchMemo.NO_MATCH, memo.get("airtime purchase", band, 1, 10));
+        // Different band, different entry
+        assertEquals(MatchMemo.MISS, memo.get(NARRATION, MatchMemo.amountBand(15001.0), 1, 10));
+
+        assertEquals(2, memo.getHits());
+        assertEquals(2, memo.getMisses());
+        assertEquals(0.5, memo.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void newGenerationDropsEverything() {
+        MatchMemo memo = new MatchMemo(1000, 60_000);
+        memo.put(NARRATION, 15000, 1, 42L, 0);
+        memo.put("other", 15000, 1, 7L, 0);
+
+        assertEquals(MatchMemo.MISS, memo.get(NARRATION, 15000, 2, 10));
+        assertEquals(0, memo.size());
+        assertEquals(2, memo.getInvalidations());
+
+        // A result computed against the old roster is not stored
+        memo.put(NARRATION, 15000, 1, 42L, 20);
+        assertEquals(MatchMemo.MISS, memo.get(NARRATION, 15000, 2, 30));
+    }
+
+    @Test
+    void expiresAndEvicts() {
+        MatchMemo memo = new MatchMemo(16, 1_000);
+        memo.put(NARRATION, 15000, 1, 42L, 0);
+        assertEquals(42L, memo.get(NARRATION, 15000, 1, 999));
+        assertEquals(MatchMemo.MISS, memo.get(NARRATION, 15000, 1, 1000));
+        assertEquals(1, memo.getExpirations());
+
+        for (int i = 0; i < 1000; i++) {
+            memo.put("payer " + i, 100, 1, i, 2000);
+        }
+        assertTrue(memo.size() <= 16);
+        assertEquals(1000 - memo.size(), memo.getEvictions());
+    }
+}
@@ -0,0 +1,127 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A single automaton pass finds exactly the names the old per-name contains() loop found,
+ * over a synthetic 40k-student roster, and a benchmark prints matches per second for both.
+ */
+class NameAutomatonTest {
+
+    private static final String[] SYLLABLES = {
+            "ka", "ma", "ni", "wa", "ji", "ku", "o", "ti", "an", "ne", "re", "su", "mu", "ri"
+    };
+
+    @Test
+    void reportsEveryOccurrenceWithOffsets() {
+        NameAutomaton automaton = NameAutomaton.build(List.of("mary wanjiku", "wanjiku", "john"));
+
+        List<NameAutomaton.Match> matches = automaton.findAll("mpesa from mary wanjiku for john");
+
+        assertEquals(3, matches.size());
+        assertEquals("mary wanjiku", matches.get(0).getName());
+        assertEquals(11, matches.get(0).getStart());
+        assertEquals(23, matches.get(0).getEnd());
+        assertEquals("wanjiku", matches.get(1).getName());
+        assertEquals(16, matches.get(1).getStart());
+        assertEquals("john", matches.get(2).getName());
+    }
+
+    @Test
+    void findsTheSameNamesAsContainsLoop() {
+        Random random = new Random(42);
+        Set<String> names = new LinkedHashSet<>();
+        while (names.size() < 40_000) {
+            names.add(randomWord(random) + " " + randomWord(random));
+        }
+        List<String> nameList = new ArrayList<>(names);
+        NameAutomaton automaton = NameAutomaton.build(names);
+
+        for (int i = 0; i < 200; i++) {
+            String description = "mpesa payment from " + nameList.get(random.nextInt(nameList.size()))
+                    + " school fees term 2 ref " + i;
+
+            // Before: description.contains(name) for every cached name
+            Set<String> expected = new HashSet<>();
+            for (String name : names) {
+                if (description.contains(name)) {
+                    expected.add(name);
+                }
+            }
+
+            Set<String> found = new HashSet<>();
+            for (NameAutomaton.Match match : automaton.findAll(description)) {
+                found.add(match.getName());
+                assertEquals(match.getName(), description.substring(match.getStart(), match.getEnd()));
+            }
+            assertEquals(expected, found, description);
+        }
+    }
+
+    // Wall-clock check, so it only runs when benchmarks are asked for (see pom.xml)
+    @Test
+    @Tag("benchmark")
+    void benchmarkAgainstContainsLoop() {
+        Random random = new Random(42);
+        Set<String> names = new LinkedHashSet<>();
+        while (names.size() < 40_000) {
+            names.add(randomWord(random) + " " + randomWord(random));
+        }
+        List<String> nameList = new ArrayList<>(names);
+
+        List<String> descriptions = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            descriptions.add("mpesa payment from " + nameList.get(random.nextInt(nameList.size()))
+                    + " school fees term 2 ref " + i);
+        }
+
+        // Before: description.contains(name) for every cached name
+        long start = System.nanoTime();
+        int naiveMatches = 0;
+        for (String description : descriptions) {
+            for (String name : names) {
+                if (description.contains(name)) {
+                    naiveMatches++;
+                }
+            }
+        }
+        double naiveSeconds = (System.nanoTime() - start) / 1e9;
+
+        // After: one automaton pass per description
+        NameAutomaton automaton = NameAutomaton.build(names);
+        int rounds = 20;
+        start = System.nanoTime();
+        int automatonMatches = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (String description : descriptions) {
+                automatonMatches += automaton.findAll(description).size();
+            }
+        }
+        double automatonSeconds = (System.nanoTime() - start) / 1e9 / rounds;
+        automatonMatches /= rounds;
+
+        System.out.printf("Name matching over %d names: contains loop %.0f lines/s, automaton %.0f lines/s (%d states)%n",
+                names.size(),
+                descriptions.size() / naiveSeconds,
+                descriptions.size() / automatonSeconds,
+                automaton.getStateCount());
+
+        assertEquals(naiveMatches, automatonMatches);
+        assertTrue(automatonSeconds < naiveSeconds);
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 3 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+}
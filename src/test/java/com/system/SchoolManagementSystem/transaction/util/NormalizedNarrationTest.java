@@ -0,0 +1,160 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * One {@link NormalizedNarration} pass gives the same text, tokens and keyword flags as the
+ * old per-line preparation (lower-case, regex split, keyword contains loops). A benchmark
+ * prints lines per second and bytes allocated per line for each.
+ */
+class NormalizedNarrationTest {
+
+    private static final String[] SCHOOL_KEYWORDS = {
+            "school", "tuition", "fee", "fees", "payment", "college",
+            "education", "academy", "institute", "admission", "exam"
+    };
+
+    private static final String[] FALSE_POSITIVE_VENDORS = {
+            "mpesa", "airtime", "safaricom", "equitel", "tkash", "kcb",
+            "cooperative", "sacco", "loan", "chama", "contribution",
+            "shopping", "naivas", "tuskys", "nakumatt", "carrefour",
+            "electricity", "kplc", "water", "rent", "fuel", "petrol"
+    };
+
+    private static final String[] WORDS = {
+            "MPESA", "Payment", "from", "JOHN", "kamau", "Wanjiku", "fees", "TERM", "2", "ADM",
+            "No:", "1234", "School", "KCB", "Naivas", "Mary", "otieno", "UPI/", "ref", "Parent",
+            "Tuition", "-", "Equity", "BANK", "transfer", "#88213", "Exam"
+    };
+
+    @Test
+    void classifiesLikeContainsChecks() {
+        NormalizedNarration narration = NormalizedNarration.of("  MPESA Payment from PARENT, Adm 1234 ");
+
+        assertEquals("mpesa payment from parent, adm 1234", narration.getText());
+        assertTrue(narration.hasSchoolKeyword());
+        // "parent" contains "rent", as it did with contains()
+        assertTrue(narration.isLikelyFalsePositive());
+        assertEquals(List.of("mpesa", "payment", "from", "parent", "adm"), tokens(narration));
+        assertEquals("mpesa from parent adm", narration.getCleaned());
+
+        NormalizedNarration plain = NormalizedNarration.of("Transfer to John Kamau");
+        assertFalse(plain.hasSchoolKeyword());
+        assertFalse(plain.isLikelyFalsePositive());
+        assertTrue(NormalizedNarration.of("   ").isEmpty());
+    }
+
+    @Test
+    void agreesWithRegexAndContainsOnRandomLines() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder line = new StringBuilder();
+            int words = 4 + random.nextInt(8);
+            for (int w = 0; w < words; w++) {
+                line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            String description = line.toString();
+
+            String lower = description.toLowerCase().trim();
+            NormalizedNarration narration = NormalizedNarration.of(description);
+            assertEquals(lower, narration.getText(), description);
+            assertEquals(containsAny(lower, SCHOOL_KEYWORDS), narration.hasSchoolKeyword(), description);
+            assertEquals(containsAny(lower, FALSE_POSITIVE_VENDORS), narration.isLikelyFalsePositive(), description);
+            assertEquals(splitWords(lower), tokens(narration), description);
+        }
+    }
+
+    // Wall-clock check, so it only runs when benchmarks are asked for (see pom.xml)
+    @Test
+    @Tag("benchmark")
+    void benchmarkAgainstRegexAndContains() {
+        Random random = new Random(42);
+        List<String> descriptions = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder line = new StringBuilder();
+            int words = 4 + random.nextInt(8);
+            for (int w = 0; w < words; w++) {
+                line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            descriptions.add(line.toString());
+        }
+
+        int rounds = 10;
+        long sink = 0;
+
+        // Before: what findMatchingRef and rankCandidates each redid per line
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (String description : descriptions) {
+                String lower = description.toLowerCase().trim();
+                sink += lower.split("[^a-z]+").length;
+                sink += containsAny(lower, SCHOOL_KEYWORDS) ? 1 : 0;
+                sink += containsAny(lower, FALSE_POSITIVE_VENDORS) ? 1 : 0;
+            }
+        }
+        double oldSeconds = (System.nanoTime() - start) / 1e9 / rounds;
+        long oldBytes = (allocatedBytes() - allocated) / rounds / descriptions.size();
+
+        // After: one pass, shared by every strategy
+        allocated = allocatedBytes();
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (String description : descriptions) {
+                NormalizedNarration narration = NormalizedNarration.of(description);
+                sink += narration.tokenCount();
+                sink += narration.hasSchoolKeyword() ? 1 : 0;
+                sink += narration.isLikelyFalsePositive() ? 1 : 0;
+            }
+        }
+        double newSeconds = (System.nanoTime() - start) / 1e9 / rounds;
+        long newBytes = (allocatedBytes() - allocated) / rounds / descriptions.size();
+
+        System.out.printf("Narration normalisation over %d lines: regex/contains %.0f lines/s (%d B/line), "
+                        + "single pass %.0f lines/s (%d B/line) [%d]%n",
+                descriptions.size(), descriptions.size() / oldSeconds, oldBytes,
+                descriptions.size() / newSeconds, newBytes, sink);
+
+        assertTrue(newSeconds < oldSeconds);
+    }
+
+    private static boolean containsAny(String text, String[] words) {
+        for (String word : words) {
+            if (text.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> splitWords(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : text.split("[^a-z]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static List<String> tokens(NormalizedNarration narration) {
+        List<String> tokens = new ArrayList<>();
+        for (int t = 0; t < narration.tokenCount(); t++) {
+            tokens.add(narration.token(t));
+        }
+        return tokens;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,136 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import com.system.SchoolManagementSystem.transaction.entity.BankTransaction;
+import com.system.SchoolManagementSystem.transaction.repository.BankStatementSchemaRepository;
+import com.system.SchoolManagementSystem.transaction.service.StatementSchemaRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Chunked CSV parsing: ranges never split a quoted field, the parallel parser emits the same
+ * transactions in the same order as the sequential one, and a throughput comparison of both.
+ */
+class ParallelCsvParsingTest {
+
+    private static final int ROWS = 300_000;
+
+    @Test
+    void chunksEndOnlyAtRecordBoundaries() {
+        String csv = "Date,Description\n"
+                + "01/05/2025,\"FEES FOR\nJOHN\"\n"
+                + "02/05/2025,\"SAYS \"\"HI\n\"\" TWICE\"\n"
+                + "03/05/2025,5\" TABLET\n"
+                + "04/05/2025,LAST";
+        ByteBuffer data = ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8));
+
+        int headerEnd = CsvChunker.nextRecordEnd(data, 0, 1);
+        int[] bounds = CsvChunker.split(data, headerEnd, 1);
+
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            chunks.add(csv.substring(bounds[i], bounds[i + 1]));
+        }
+        assertEquals("Date,Description\n", csv.substring(0, headerEnd));
+        assertEquals(List.of(
+                "01/05/2025,\"FEES FOR\nJOHN\"\n",
+                "02/05/2025,\"SAYS \"\"HI\n\"\" TWICE\"\n",
+                "03/05/2025,5\" TABLET\n",
+                "04/05/2025,LAST"), chunks);
+    }
+
+    @Test
+    void parallelParserMatchesSequentialParser() throws IOException {
+        MockMultipartFile file = statement(5_000);
+        BankStatementParser parser = newParser(4, 4096);
+
+        List<BankTransaction> sequential = new ArrayList<>();
+        List<BankTransaction> parallel = new ArrayList<>();
+        parser.streamCsv(file, "ACC-1", "batch", sequential::add, false);
+        parser.streamCsv(file, "ACC-1", "batch", parallel::add, true);
+
+        assertEquals(5_000, sequential.size());
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getBankReference(), parallel.get(i).getBankReference());
+            assertEquals(sequential.get(i).getTransactionDate(), parallel.get(i).getTransactionDate());
+            assertEquals(sequential.get(i).getAmount(), parallel.get(i).getAmount());
+            assertEquals(sequential.get(i).getDescription(), parallel.get(i).getDescription());
+        }
+        parser.shutdown();
+    }
+
+    // Wall-clock check, so it only runs when benchmarks are asked for (see pom.xml)
+    @Test
+    @Tag("benchmark")
+    void reportThroughput() throws IOException {
+        MockMultipartFile file = statement(ROWS);
+        int cores = Runtime.getRuntime().availableProcessors();
+        BankStatementParser parser = newParser(cores, 1024 * 1024);
+
+        // Warm up both paths, and learn the layout so neither run pays for inference
+        int[] count = new int[1];
+        parser.streamCsv(file, "ACC-1", "batch", t -> count[0]++, false);
+        parser.streamCsv(file, "ACC-1", "batch", t -> count[0]++, true);
+
+        count[0] = 0;
+        long start = System.nanoTime();
+        parser.streamCsv(file, "ACC-1", "batch", t -> count[0]++, false);
+        double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+        int sequentialCount = count[0];
+
+        count[0] = 0;
+        start = System.nanoTime();
+        parser.streamCsv(file, "ACC-1", "batch", t -> count[0]++, true);
+        double parallelSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("CSV statement of %,d rows (%,d KB) on %d cores: sequential %.0f rows/s, "
+                        + "parallel %.0f rows/s (%.1fx)%n",
+                ROWS, file.getSize() / 1024, cores, ROWS / sequentialSeconds, ROWS / parallelSeconds,
+                sequentialSeconds / parallelSeconds);
+
+        assertEquals(ROWS, sequentialCount);
+        assertEquals(sequentialCount, count[0]);
+        parser.shutdown();
+    }
+
+    private static BankStatementParser newParser(int parallelism, int chunkBytes) {
+        BankStatementParser parser = new BankStatementParser(
+                new StatementSchemaRegistry(mock(BankStatementSchemaRepository.class)));
+        ReflectionTestUtils.setField(parser, "csvParallelism", parallelism);
+        ReflectionTestUtils.setField(parser, "csvChunkBytes", chunkBytes);
+        return parser;
+    }
+
+    // Every 7th narration spans two lines and every 11th carries escaped quotes
+    private static MockMultipartFile statement(int rows) {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder("Transaction Date,Narration,Amount,Reference,Status\n");
+        for (int i = 0; i < rows; i++) {
+            String narration = "MPESA PAYMENT FROM PARENT " + random.nextInt(10_000) + " ADM " + i;
+            if (i % 7 == 0) {
+                narration = "\"" + narration + "\nTERM 2 FEES\"";
+            } else if (i % 11 == 0) {
+                narration = "\"" + narration + ", \"\"SCHOOL FEES\"\"\"";
+            }
+            csv.append(String.format("%02d/%02d/2025", 1 + i % 28, 1 + i % 12)).append(',')
+                    .append(narration).append(',')
+                    .append(1000 + random.nextInt(50_000)).append(".00,")
+                    .append("REF").append(i).append(',')
+                    .append("COMPLETED\n");
+        }
+        return new MockMultipartFile("file", "statement.csv", "text/csv",
+                csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
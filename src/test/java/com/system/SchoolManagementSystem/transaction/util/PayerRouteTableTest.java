@@ -0,0 +1,69 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Payer keys, confidence growth, decay and reassignment of learned routes.
+ */
+class PayerRouteTableTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    @Test
+    void keysOnPhoneThenNames() {
+        // Same payer, different M-Pesa receipt and term each time
+        assertEquals("p:712345678@01100223344",
+                PayerRouteTable.keyOf(NormalizedNarration.of("MPESA QK7AB21 FROM 254712345678 TERM 1"), "0110 0223 344"));
+        assertEquals("p:712345678",
+                PayerRouteTable.keyOf(NormalizedNarration.of("Paid by 0712 345 678 for term 2"), null));
+
+        String first = PayerRouteTable.keyOf(NormalizedNarration.of("FEES JOHN KAMAU REF QK7AB21 JANUARY"), null);
+        String second = PayerRouteTable.keyOf(NormalizedNarration.of("Kamau John school fees ref PL9XY04 may"), null);
+        assertEquals("n:john kamau", first);
+        assertEquals(first, second);
+
+        // Nothing specific to route on
+        assertNull(PayerRouteTable.keyOf(NormalizedNarration.of("CASH DEPOSIT 12345"), null));
+        assertNull(PayerRouteTable.keyOf(NormalizedNarration.of("School fees for term 3"), null));
+    }
+
+    @Test
+    void routesOnceConfidentAndDecays() {
+        PayerRouteTable table = new PayerRouteTable(1.5, 180);
+        String key = "p:712345678";
+
+        table.confirm(key, 7L, 0);
+        assertNull(table.lookup(key, 0));
+
+        table.confirm(key, 7L, 10 * DAY);
+        assertEquals(7L, table.lookup(key, 10 * DAY));
+        assertEquals(2, table.get(key).getConfirmations());
+
+        // A year without a payment: 2 → 0.5
+        assertNull(table.lookup(key, 370 * DAY));
+    }
+
+    @Test
+    void contradictionsMoveTheRoute() {
+        PayerRouteTable table = new PayerRouteTable(1.5, 0);
+        String key = "p:722000111";
+        for (int i = 0; i < 4; i++) {
+            table.confirm(key, 1L, 0);
+        }
+        assertEquals(1L, table.lookup(key, 0));
+
+        // Number handed to another family: first correction leaves 2.0 and still routes
+        table.confirm(key, 2L, 0);
+        assertEquals(1L, table.lookup(key, 0));
+        assertEquals(1, table.get(key).getContradictions());
+
+        // Second uses the route up: it moves, but has to earn confidence again
+        table.confirm(key, 2L, 0);
+        assertEquals(2L, table.get(key).getStudentId());
+        assertNull(table.lookup(key, 0));
+        table.confirm(key, 2L, 0);
+        assertEquals(2L, table.lookup(key, 0));
+    }
+}
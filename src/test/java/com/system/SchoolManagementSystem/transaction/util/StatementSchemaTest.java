@@ -0,0 +1,72 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Schema inference from a header and sample rows, and the exception-free scanners the
+ * compiled schema parses with.
+ */
+class StatementSchemaTest {
+
+    @Test
+    void infersColumnsLayoutAndCreditDebitConvention() {
+        List<String> headers = List.of("Tran Date", "Narrative", "Debit", "Credit", "Balance");
+        List<String[]> rows = new ArrayList<>();
+        for (int day = 1; day <= 10; day++) {
+            boolean moneyIn = day % 2 == 1;
+            rows.add(new String[]{
+                    // Day first, and the 13th+ rules out month-first
+                    String.format("%02d/05/2025", day + 12),
+                    "MPESA PAYMENT " + day,
+                    moneyIn ? "" : "1,200.50",
+                    moneyIn ? "3,000.00" : "",
+                    "10,000.00"
+            });
+        }
+
+        StatementSchema schema = StatementSchema.infer("fp", headers, rows);
+
+        assertTrue(schema.isConfident());
+        assertEquals(StatementSchema.DateLayout.DD_MM_YYYY_SLASH, schema.getDateLayout());
+        assertEquals(StatementSchema.AmountConvention.CREDIT_DEBIT, schema.getAmountConvention());
+        assertEquals(LocalDate.of(2025, 5, 13), schema.parseDate(schema.date(rows.get(0))));
+        assertEquals(3000.0, schema.amount(rows.get(0)));
+        assertEquals(-1200.5, schema.amount(rows.get(1)));
+        assertEquals("MPESA PAYMENT 1", schema.description(rows.get(0)));
+        assertNull(schema.reference(rows.get(0)));
+    }
+
+    @Test
+    void commaDecimalsAndTooFewRowsAreNotRemembered() {
+        List<String[]> rows = List.of(
+                new String[]{"2025-05-12 10:33:00", "1.234,50", "Fees"},
+                new String[]{"2025-05-13 08:01:12", "980,00", "Fees"});
+
+        StatementSchema schema = StatementSchema.infer("fp", List.of("Date", "Amount", "Description"), rows);
+
+        assertFalse(schema.isConfident());
+        assertEquals(StatementSchema.DateLayout.YYYY_MM_DD_DASH, schema.getDateLayout());
+        assertEquals(',', schema.getDecimalSeparator());
+        assertEquals(1234.5, schema.amount(rows.get(0)));
+    }
+
+    @Test
+    void scannersRejectInsteadOfThrowing() {
+        assertNull(StatementSchema.DateLayout.DD_MM_YYYY_SLASH.parse("31/02/2025"));
+        assertNull(StatementSchema.DateLayout.DD_MM_YYYY_SLASH.parse("2025-05-12"));
+        assertEquals(LocalDate.of(2025, 9, 12), StatementSchema.DateLayout.DD_MMM_YYYY_DASH.parse("12-Sept-2025"));
+        assertEquals(LocalDate.of(2023, 3, 15), StatementSchema.DateLayout.EXCEL_SERIAL.parse("45000"));
+        assertNull(StatementSchema.DateLayout.EXCEL_SERIAL.parse("1500"));
+
+        StatementSchema schema = StatementSchema.infer("fp", List.of("Date", "Amount", "Narration"), List.of());
+        assertEquals(-1000.0, schema.parseAmount("(1,000.00)"));
+        assertEquals(2500.0, schema.parseAmount("KES 2,500"));
+        assertNull(schema.parseAmount("n/a"));
+    }
+}
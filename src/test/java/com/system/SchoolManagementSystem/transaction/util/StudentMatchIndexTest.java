@@ -0,0 +1,233 @@
+package com.system.SchoolManagementSystem.transaction.util;
+
+import com.system.SchoolManagementSystem.student.entity.Student;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lookups on the compact StudentMatchIndex projection give the answers the previous entity
+ * maps did, and in-place updates move balances and hide removed students. A benchmark reports
+ * the heap footprint of both designs at 100k students.
+ */
+class StudentMatchIndexTest {
+
+    private static final int STUDENTS = 100_000;
+
+    private static final String[] SYLLABLES = {
+            "ka", "ma", "ni", "wa", "ji", "ku", "o", "ti", "an", "ne", "re", "su", "mu", "ri"
+    };
+
+    @Test
+    void lookupsMatchPreviousDesign() {
+        StudentMatchIndex index = StudentMatchIndex.builder(3)
+                .add(1L, "STU001", "Mary  Wanjiku Njeri", 1520.0)
+                .add(2L, "STU002", "John Otieno", 2049.0)
+                .add(3L, "STU003", "Anne Atieno", null)
+                .build();
+
+        assertEquals(0, index.rowOfName("MARY WANJIKU NJERI"));
+        assertEquals(-1, index.rowOfName("mary wanjiku"));
+        assertEquals(1, index.rowsWithToken("otieno").length);
+        assertEquals(1, index.rowsWithAmountBetween(145_000, 155_000).length);
+        assertEquals(0, index.rowsWithAmountBetween(295_000, 305_000).length);
+        assertEquals("mary wanjiku njeri", index.ref(0).getName());
+        assertEquals(2, index.rowOf(3L));
+    }
+
+    @Test
+    void studentIdVariantsResolveExactly() {
+        StudentMatchIndex index = StudentMatchIndex.builder(3)
+                .add(1L, "STU20240025", "Mary Wanjiku", null)
+                .add(2L, "STU0012", "John Otieno", null)
+                .add(3L, "ADM12", "Anne Atieno", null)
+                .build();
+
+        assertEquals(0, index.rowOfStudentId("stu/2024/0025"));
+        assertEquals(0, index.rowOfStudentId("STD 20240025"));
+        assertEquals(1, index.rowOfStudentId("stu 0012"));
+        assertEquals(2, index.rowOfStudentId("adm12"));
+        // "12" is both STU0012 and ADM12; substring matches like STU2024002 never hit
+        assertEquals(-1, index.rowOfStudentId("12"));
+        assertEquals(-1, index.rowOfStudentId("STU2024002"));
+    }
+
+    @Test
+    void amountRangeCoversBalancesAndNextInstallments() {
+        StudentMatchIndex index = StudentMatchIndex.builder(4)
+                .add(1L, "STU001", "Mary Wanjiku", 5000.0, 2500.0)
+                .add(2L, "STU002", "John Otieno", 4900.0, null)
+                .add(3L, "STU003", "Anne Atieno", 12000.0, 4960.0)
+                .add(4L, "STU004", "Peter Kamau", 4950.0, 4950.0)
+                .build();
+
+        // KES 4,950 ± 100: closest first, each student once
+        int[] rows = index.rowsWithAmountBetween(485_000, 505_000);
+        assertEquals(4, rows.length);
+        assertEquals(3, rows[0]);
+        assertEquals(2, rows[1]);
+        assertEquals(50_00, index.amountDistanceCents(0, 4950_00));
+
+        // Next installment alone
+        assertEquals(0, index.rowsWithAmountBetween(249_000, 251_000)[0]);
+        assertEquals(0, index.rowsWithAmountBetween(600_000, 1_100_000).length);
+    }
+
+    @Test
+    void updateMovesBalancesAndMasksRemovedStudents() {
+        StudentMatchIndex.Builder builder = StudentMatchIndex.builder(600);
+        for (int i = 1; i <= 600; i++) {
+            builder.add((long) i, String.format("STU%04d", i), "Student " + i + " Otieno", 1000.0 + i);
+        }
+        StudentMatchIndex base = builder.build();
+
+        StudentMatchIndex.Update update = base.update();
+        // Rows in different balance chunks
+        assertTrue(update.setAmounts(10L, 250.0, null));
+        assertTrue(update.setAmounts(500L, 9000.0, 4000.0));
+        assertFalse(update.setAmounts(601L, 100.0, null));
+        StudentMatchIndex updated = update.remove(20L).build();
+
+        // New balances are found, old ones are not
+        assertArrayEquals(new int[]{9}, updated.rowsWithAmountBetween(25_000, 25_000));
+        assertArrayEquals(new int[]{499}, updated.rowsWithAmountBetween(400_000, 400_000));
+        assertEquals(0, updated.rowsWithAmountBetween(101_000, 101_000).length);
+        assertEquals(250.0, updated.ref(9).getPendingAmount());
+
+        // The removed student is gone from every lookup
+        assertEquals(-1, updated.rowOf(20L));
+        assertEquals(-1, updated.rowOfName("student 20 otieno"));
+        assertEquals(-1, updated.rowOfStudentId("STU0020"));
+        assertEquals(0, updated.rowsWithAmountBetween(102_000, 102_000).length);
+        assertEquals(599, updated.rowsWithToken("otieno").length);
+        assertEquals(599, updated.studentCount());
+        assertEquals(3, updated.changedSinceBuild());
+
+        // The earlier generation is untouched
+        assertArrayEquals(new int[]{9}, base.rowsWithAmountBetween(101_000, 101_000));
+        assertEquals(19, base.rowOf(20L));
+
+        // A later update keeps earlier ones, and a rebuild carries them over
+        StudentMatchIndex later = updated.update().remove(10L).build();
+        assertArrayEquals(new int[]{499}, later.rowsWithAmountBetween(900_000, 900_000));
+        StudentMatchIndex rebuilt = StudentMatchIndex.builder(600).addAll(later, Set.of()).build();
+        assertEquals(598, rebuilt.size());
+        assertEquals(0, rebuilt.changedSinceBuild());
+        assertEquals(9000.0, rebuilt.ref(rebuilt.rowOf(500L)).getPendingAmount());
+    }
+
+    // Heap readings depend on the collector, so it only runs when benchmarks are asked for (see pom.xml)
+    @Test
+    @Tag("benchmark")
+    void reportFootprintAt100kStudents() {
+        Random random = new Random(7);
+        List<Student> students = new ArrayList<>(STUDENTS);
+        for (int i = 0; i < STUDENTS; i++) {
+            students.add(randomStudent(random, i));
+        }
+
+        // Before: detached entities pinned in four maps (entities themselves not counted)
+        long before = usedHeap();
+        Object legacy = buildLegacyMaps(students);
+        long legacyBytes = usedHeap() - before;
+
+        // After: the projection the cache keeps now
+        before = usedHeap();
+        StudentMatchIndex.Builder builder = StudentMatchIndex.builder(students.size());
+        for (Student student : students) {
+            builder.add(student.getId(), student.getStudentId(), student.getFullName(), student.getPendingAmount());
+        }
+        StudentMatchIndex index = builder.build();
+        long compactBytes = usedHeap() - before;
+
+        System.out.printf("Student match cache at %,d students: entity maps %,d KB, "
+                        + "compact index %,d KB measured / %,d KB estimated (%d maps retained)%n",
+                STUDENTS, legacyBytes / 1024, compactBytes / 1024,
+                index.estimateHeapBytes() / 1024, ((List<?>) legacy).size());
+
+        assertEquals(STUDENTS, index.size());
+        assertTrue(index.estimateHeapBytes() < legacyBytes);
+    }
+
+    // ========== HELPERS ==========
+
+    private static Object buildLegacyMaps(List<Student> students) {
+        Map<String, Student> exactNameCache = new ConcurrentHashMap<>();
+        Map<String, List<Student>> namePartCache = new ConcurrentHashMap<>();
+        Map<String, List<Student>> amountCache = new ConcurrentHashMap<>();
+        Set<String> allNames = ConcurrentHashMap.newKeySet();
+
+        for (Student student : students) {
+            String fullNameLower = student.getFullName().toLowerCase();
+            exactNameCache.put(fullNameLower, student);
+            allNames.add(fullNameLower);
+            for (String part : fullNameLower.split("\\s+")) {
+                if (part.length() > 2) {
+                    namePartCache.computeIfAbsent(part, k -> new ArrayList<>()).add(student);
+                }
+            }
+            if (student.getPendingAmount() != null && student.getPendingAmount() > 0) {
+                String amountKey = String.valueOf(Math.round(student.getPendingAmount() / 100.0) * 100);
+                amountCache.computeIfAbsent(amountKey, k -> new ArrayList<>()).add(student);
+            }
+        }
+        return List.of(exactNameCache, namePartCache, amountCache, allNames);
+    }
+
+    private static Student randomStudent(Random random, int i) {
+        String fullName = capitalize(randomWord(random)) + " " + capitalize(randomWord(random))
+                + (random.nextBoolean() ? " " + capitalize(randomWord(random)) : "");
+        double totalFee = 20_000 + random.nextInt(40) * 1_000;
+        double paid = random.nextInt((int) totalFee / 500) * 500.0;
+        return Student.builder()
+                .id((long) i + 1)
+                .studentId(String.format("STU%06d", i + 1))
+                .fullName(fullName)
+                .dateOfBirth(LocalDate.of(2010 + random.nextInt(8), 1 + random.nextInt(12), 1 + random.nextInt(28)))
+                .admissionDate(LocalDate.of(2020 + random.nextInt(5), 1, 15))
+                .academicYear("2025-2026")
+                .grade("Grade " + (1 + random.nextInt(12)))
+                .address("P.O. Box " + random.nextInt(99999) + ", Nairobi")
+                .phone("07" + (10_000_000 + random.nextInt(89_999_999)))
+                .email("student" + i + "@school.ac.ke")
+                .emergencyContactName(capitalize(randomWord(random)) + " " + capitalize(randomWord(random)))
+                .emergencyContactPhone("07" + (10_000_000 + random.nextInt(89_999_999)))
+                .totalFee(totalFee)
+                .paidAmount(paid)
+                .pendingAmount(totalFee - paid)
+                .tuitionFee(totalFee * 0.7)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}